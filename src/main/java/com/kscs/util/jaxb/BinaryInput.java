@@ -0,0 +1,241 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2014 Klemm Software Consulting, Mirko Klemm
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.kscs.util.jaxb;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StreamCorruptedException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.xml.datatype.DatatypeConfigurationException;
+import javax.xml.datatype.DatatypeFactory;
+import javax.xml.datatype.Duration;
+import javax.xml.datatype.XMLGregorianCalendar;
+import javax.xml.namespace.QName;
+
+/**
+ * Reads values written by a {@link BinaryOutput}.
+ * Instances are not thread-safe, and may read ahead
+ * of the data actually consumed from the input stream.
+ */
+public final class BinaryInput {
+	private static final int BUFFER_SIZE = 8192;
+	private static DatatypeFactory datatypeFactory = null;
+
+	private final InputStream in;
+	private final byte[] buffer = new byte[BinaryInput.BUFFER_SIZE];
+	private final List<String> strings = new ArrayList<>();
+	private int position = 0;
+	private int limit = 0;
+
+	public BinaryInput(final InputStream in) {
+		this.in = in;
+	}
+
+	/**
+	 * Reads the header written by {@link BinaryOutput#writeHeader(long)}
+	 * and checks that the data has been written with the same schema.
+	 * @param fingerprint The "BINARY_FINGERPRINT" of the generated classes.
+	 * @throws IOException if the data is not in the binary format, or
+	 * has been written by classes generated from a different schema.
+	 */
+	public void readHeader(final long fingerprint) throws IOException {
+		for (final byte b : BinaryOutput.MAGIC) {
+			if (readByte() != b) {
+				throw new StreamCorruptedException("Input is not in binary format");
+			}
+		}
+		final int formatVersion = readByte();
+		if (formatVersion != BinaryOutput.FORMAT_VERSION) {
+			throw new StreamCorruptedException("Unsupported binary format version " + formatVersion);
+		}
+		final long actualFingerprint = readFixedLong();
+		if (actualFingerprint != fingerprint) {
+			throw new IOException("Binary data has been written by classes generated from a different schema (fingerprint " + Long.toHexString(actualFingerprint) + ", expected " + Long.toHexString(fingerprint) + ")");
+		}
+	}
+
+	/**
+	 * Reads a bitmap written by {@link BinaryOutput#writePresence(boolean...)}.
+	 * @param count The number of values in the bitmap
+	 */
+	public boolean[] readPresence(final int count) throws IOException {
+		final boolean[] present = new boolean[count];
+		for (int i = 0; i < count; i += 8) {
+			final int bits = readByte();
+			for (int j = 0; j < 8 && i + j < count; j++) {
+				present[i + j] = (bits & (1 << j)) != 0;
+			}
+		}
+		return present;
+	}
+
+	public boolean readBoolean() throws IOException {
+		return readByte() != 0;
+	}
+
+	public byte readByte() throws IOException {
+		if (this.position == this.limit) {
+			fill();
+		}
+		return this.buffer[this.position++];
+	}
+
+	public short readShort() throws IOException {
+		return (short)readInt();
+	}
+
+	public int readInt() throws IOException {
+		final int value = readVarInt();
+		return (value >>> 1) ^ -(value & 1);
+	}
+
+	public long readLong() throws IOException {
+		final long value = readVarLong();
+		return (value >>> 1) ^ -(value & 1);
+	}
+
+	public int readVarInt() throws IOException {
+		int value = 0;
+		for (int shift = 0; shift < 35; shift += 7) {
+			final byte b = readByte();
+			value |= (b & 0x7F) << shift;
+			if (b >= 0) {
+				return value;
+			}
+		}
+		throw new StreamCorruptedException("Malformed variable-length integer");
+	}
+
+	public long readVarLong() throws IOException {
+		long value = 0;
+		for (int shift = 0; shift < 70; shift += 7) {
+			final byte b = readByte();
+			value |= (long)(b & 0x7F) << shift;
+			if (b >= 0) {
+				return value;
+			}
+		}
+		throw new StreamCorruptedException("Malformed variable-length integer");
+	}
+
+	public float readFloat() throws IOException {
+		int bits = 0;
+		for (int i = 0; i < 4; i++) {
+			bits = (bits << 8) | (readByte() & 0xFF);
+		}
+		return Float.intBitsToFloat(bits);
+	}
+
+	public double readDouble() throws IOException {
+		return Double.longBitsToDouble(readFixedLong());
+	}
+
+	public String readString() throws IOException {
+		final int reference = readVarInt();
+		if (reference == 0) {
+			return null;
+		} else if (reference == 1) {
+			final String value = new String(readBytes(), StandardCharsets.UTF_8);
+			this.strings.add(value);
+			return value;
+		} else if (reference - 2 < this.strings.size()) {
+			return this.strings.get(reference - 2);
+		} else {
+			throw new StreamCorruptedException("Invalid string reference " + reference);
+		}
+	}
+
+	public byte[] readBytes() throws IOException {
+		final byte[] value = new byte[readVarInt()];
+		int offset = 0;
+		while (offset < value.length) {
+			if (this.position == this.limit) {
+				fill();
+			}
+			final int length = Math.min(value.length - offset, this.limit - this.position);
+			System.arraycopy(this.buffer, this.position, value, offset, length);
+			this.position += length;
+			offset += length;
+		}
+		return value;
+	}
+
+	public BigInteger readBigInteger() throws IOException {
+		return new BigInteger(readBytes());
+	}
+
+	public BigDecimal readBigDecimal() throws IOException {
+		final int scale = readInt();
+		return new BigDecimal(readBigInteger(), scale);
+	}
+
+	public XMLGregorianCalendar readCalendar() throws IOException {
+		return getDatatypeFactory().newXMLGregorianCalendar(readString());
+	}
+
+	public Duration readDuration() throws IOException {
+		return getDatatypeFactory().newDuration(readString());
+	}
+
+	public QName readQName() throws IOException {
+		final String namespaceUri = readString();
+		final String localPart = readString();
+		return new QName(namespaceUri, localPart, readString());
+	}
+
+	private long readFixedLong() throws IOException {
+		long value = 0;
+		for (int i = 0; i < 8; i++) {
+			value = (value << 8) | (readByte() & 0xFF);
+		}
+		return value;
+	}
+
+	private void fill() throws IOException {
+		final int count = this.in.read(this.buffer, 0, this.buffer.length);
+		if (count < 0) {
+			throw new EOFException();
+		}
+		this.position = 0;
+		this.limit = count;
+	}
+
+	private static synchronized DatatypeFactory getDatatypeFactory() throws IOException {
+		if (BinaryInput.datatypeFactory == null) {
+			try {
+				BinaryInput.datatypeFactory = DatatypeFactory.newInstance();
+			} catch (final DatatypeConfigurationException e) {
+				throw new IOException(e);
+			}
+		}
+		return BinaryInput.datatypeFactory;
+	}
+}
@@ -0,0 +1,226 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2014 Klemm Software Consulting, Mirko Klemm
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.kscs.util.jaxb;
+
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.xml.datatype.Duration;
+import javax.xml.datatype.XMLGregorianCalendar;
+import javax.xml.namespace.QName;
+
+/**
+ * Writes values in the compact binary format used by the generated
+ * <code>writeBinary</code> methods.
+ * Integers are written as variable-length quantities, and each distinct
+ * string is written only once and referenced by its index afterwards.
+ * Instances are not thread-safe, and must be flushed after writing.
+ */
+public final class BinaryOutput implements Flushable {
+	static final byte[] MAGIC = {'J', 'X', 'B'};
+	static final int FORMAT_VERSION = 1;
+	private static final int BUFFER_SIZE = 8192;
+
+	private final OutputStream out;
+	private final byte[] buffer = new byte[BinaryOutput.BUFFER_SIZE];
+	private final Map<String, Integer> strings = new HashMap<>();
+	private int position = 0;
+
+	public BinaryOutput(final OutputStream out) {
+		this.out = out;
+	}
+
+	/**
+	 * Writes the header identifying the format and the schema the data
+	 * has been written with.
+	 * @param fingerprint The "BINARY_FINGERPRINT" of the generated classes.
+	 */
+	public void writeHeader(final long fingerprint) throws IOException {
+		for (final byte b : BinaryOutput.MAGIC) {
+			writeByte(b);
+		}
+		writeByte((byte)BinaryOutput.FORMAT_VERSION);
+		writeFixedLong(fingerprint);
+	}
+
+	/**
+	 * Writes a bitmap with one bit per value, which tells the reader
+	 * which of the following optional values have been written.
+	 */
+	public void writePresence(final boolean... present) throws IOException {
+		for (int i = 0; i < present.length; i += 8) {
+			int bits = 0;
+			for (int j = 0; j < 8 && i + j < present.length; j++) {
+				if (present[i + j]) {
+					bits |= 1 << j;
+				}
+			}
+			writeByte((byte)bits);
+		}
+	}
+
+	public void writeBoolean(final boolean value) throws IOException {
+		writeByte((byte)(value ? 1 : 0));
+	}
+
+	public void writeByte(final byte value) throws IOException {
+		if (this.position == this.buffer.length) {
+			flushBuffer();
+		}
+		this.buffer[this.position++] = value;
+	}
+
+	public void writeShort(final short value) throws IOException {
+		writeInt(value);
+	}
+
+	/**
+	 * Writes a signed integer in zig-zag encoding, so that
+	 * values of small magnitude take few bytes.
+	 */
+	public void writeInt(final int value) throws IOException {
+		writeVarInt((value << 1) ^ (value >> 31));
+	}
+
+	/**
+	 * Writes a signed long in zig-zag encoding, so that
+	 * values of small magnitude take few bytes.
+	 */
+	public void writeLong(final long value) throws IOException {
+		writeVarLong((value << 1) ^ (value >> 63));
+	}
+
+	/**
+	 * Writes an unsigned integer using 7 bits per byte.
+	 */
+	public void writeVarInt(final int value) throws IOException {
+		int rest = value;
+		while ((rest & ~0x7F) != 0) {
+			writeByte((byte)((rest & 0x7F) | 0x80));
+			rest >>>= 7;
+		}
+		writeByte((byte)rest);
+	}
+
+	/**
+	 * Writes an unsigned long using 7 bits per byte.
+	 */
+	public void writeVarLong(final long value) throws IOException {
+		long rest = value;
+		while ((rest & ~0x7FL) != 0) {
+			writeByte((byte)((rest & 0x7F) | 0x80));
+			rest >>>= 7;
+		}
+		writeByte((byte)rest);
+	}
+
+	public void writeFloat(final float value) throws IOException {
+		final int bits = Float.floatToIntBits(value);
+		writeByte((byte)(bits >>> 24));
+		writeByte((byte)(bits >>> 16));
+		writeByte((byte)(bits >>> 8));
+		writeByte((byte)bits);
+	}
+
+	public void writeDouble(final double value) throws IOException {
+		writeFixedLong(Double.doubleToLongBits(value));
+	}
+
+	/**
+	 * Writes a string, which may be null. A string that has been written
+	 * before by this instance is written as a reference to the first occurrence.
+	 */
+	public void writeString(final String value) throws IOException {
+		if (value == null) {
+			writeVarInt(0);
+		} else {
+			final Integer index = this.strings.get(value);
+			if (index != null) {
+				writeVarInt(index + 2);
+			} else {
+				this.strings.put(value, this.strings.size());
+				writeVarInt(1);
+				writeBytes(value.getBytes(StandardCharsets.UTF_8));
+			}
+		}
+	}
+
+	public void writeBytes(final byte[] value) throws IOException {
+		writeVarInt(value.length);
+		if (value.length > this.buffer.length - this.position) {
+			flushBuffer();
+			this.out.write(value);
+		} else {
+			System.arraycopy(value, 0, this.buffer, this.position, value.length);
+			this.position += value.length;
+		}
+	}
+
+	public void writeBigInteger(final BigInteger value) throws IOException {
+		writeBytes(value.toByteArray());
+	}
+
+	public void writeBigDecimal(final BigDecimal value) throws IOException {
+		writeInt(value.scale());
+		writeBigInteger(value.unscaledValue());
+	}
+
+	public void writeCalendar(final XMLGregorianCalendar value) throws IOException {
+		writeString(value.toXMLFormat());
+	}
+
+	public void writeDuration(final Duration value) throws IOException {
+		writeString(value.toString());
+	}
+
+	public void writeQName(final QName value) throws IOException {
+		writeString(value.getNamespaceURI());
+		writeString(value.getLocalPart());
+		writeString(value.getPrefix());
+	}
+
+	@Override
+	public void flush() throws IOException {
+		flushBuffer();
+		this.out.flush();
+	}
+
+	private void writeFixedLong(final long value) throws IOException {
+		for (int shift = 56; shift >= 0; shift -= 8) {
+			writeByte((byte)(value >>> shift));
+		}
+	}
+
+	private void flushBuffer() throws IOException {
+		this.out.write(this.buffer, 0, this.position);
+		this.position = 0;
+	}
+}
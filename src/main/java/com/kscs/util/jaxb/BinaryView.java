@@ -0,0 +1,226 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2014 Klemm Software Consulting, Mirko Klemm
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.kscs.util.jaxb;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.AbstractList;
+import java.util.RandomAccess;
+
+import javax.xml.datatype.DatatypeConfigurationException;
+import javax.xml.datatype.DatatypeFactory;
+import javax.xml.datatype.Duration;
+import javax.xml.datatype.XMLGregorianCalendar;
+import javax.xml.namespace.QName;
+
+/**
+ * Base class of the generated view classes, which read the
+ * properties of an object directly from a buffer written by {@link ViewOutput},
+ * without creating the object.
+ * A view only holds the buffer and the offset of the object in the buffer,
+ * so creating views of nested objects is cheap.
+ */
+public abstract class BinaryView {
+	private static volatile DatatypeFactory datatypeFactory = null;
+
+	protected final ByteBuffer buffer;
+	protected final int offset;
+
+	protected BinaryView(final ByteBuffer buffer, final int offset) {
+		this.buffer = buffer;
+		this.offset = offset;
+	}
+
+	/**
+	 * Checks the header of a buffer.
+	 * @param buffer The buffer, positioned at the start of the header
+	 * @param fingerprint The fingerprint of the generated classes reading the buffer
+	 * @return A view of the buffer, starting at the header, with the byte order of the layout
+	 * @throws IllegalArgumentException if the buffer was not written by {@link ViewOutput}, or by classes generated from a different schema
+	 */
+	protected static ByteBuffer prepare(final ByteBuffer buffer, final long fingerprint) {
+		final ByteBuffer view = buffer.slice().order(ByteOrder.BIG_ENDIAN);
+		if (view.remaining() < ViewOutput.HEADER_SIZE) {
+			throw new IllegalArgumentException("Buffer too short");
+		}
+		for (int i = 0; i < ViewOutput.MAGIC.length; i++) {
+			if (view.get(i) != ViewOutput.MAGIC[i]) {
+				throw new IllegalArgumentException("Not a view buffer");
+			}
+		}
+		if (view.get(ViewOutput.MAGIC.length) != ViewOutput.FORMAT_VERSION) {
+			throw new IllegalArgumentException("Unsupported format version " + view.get(ViewOutput.MAGIC.length));
+		}
+		if (view.getLong(4) != fingerprint) {
+			throw new IllegalArgumentException("Buffer was written by classes generated from a different schema");
+		}
+		return view;
+	}
+
+	protected static int rootOffset(final ByteBuffer buffer) {
+		return buffer.getInt(ViewOutput.ROOT_POSITION);
+	}
+
+	protected static boolean readBoolean(final ByteBuffer buffer, final int position) {
+		return buffer.get(position) != 0;
+	}
+
+	protected static byte readByte(final ByteBuffer buffer, final int position) {
+		return buffer.get(position);
+	}
+
+	protected static short readShort(final ByteBuffer buffer, final int position) {
+		return buffer.getShort(position);
+	}
+
+	protected static int readInt(final ByteBuffer buffer, final int position) {
+		return buffer.getInt(position);
+	}
+
+	protected static long readLong(final ByteBuffer buffer, final int position) {
+		return buffer.getLong(position);
+	}
+
+	protected static float readFloat(final ByteBuffer buffer, final int position) {
+		return buffer.getFloat(position);
+	}
+
+	protected static double readDouble(final ByteBuffer buffer, final int position) {
+		return buffer.getDouble(position);
+	}
+
+	protected static byte[] readBytes(final ByteBuffer buffer, final int position) {
+		final int blockOffset = buffer.getInt(position);
+		if (blockOffset == 0) {
+			return null;
+		}
+		final byte[] bytes = new byte[buffer.getInt(blockOffset)];
+		final ByteBuffer block = buffer.duplicate();
+		block.position(blockOffset + 4);
+		block.get(bytes);
+		return bytes;
+	}
+
+	protected static String readString(final ByteBuffer buffer, final int position) {
+		final int blockOffset = buffer.getInt(position);
+		if (blockOffset == 0) {
+			return null;
+		}
+		final int length = buffer.getInt(blockOffset);
+		if (buffer.hasArray()) {
+			return new String(buffer.array(), buffer.arrayOffset() + blockOffset + 4, length, StandardCharsets.UTF_8);
+		}
+		return new String(readBytes(buffer, position), StandardCharsets.UTF_8);
+	}
+
+	protected static BigInteger readBigInteger(final ByteBuffer buffer, final int position) {
+		final String value = readString(buffer, position);
+		return value == null ? null : new BigInteger(value);
+	}
+
+	protected static BigDecimal readBigDecimal(final ByteBuffer buffer, final int position) {
+		final String value = readString(buffer, position);
+		return value == null ? null : new BigDecimal(value);
+	}
+
+	protected static XMLGregorianCalendar readCalendar(final ByteBuffer buffer, final int position) {
+		final String value = readString(buffer, position);
+		return value == null ? null : getDatatypeFactory().newXMLGregorianCalendar(value);
+	}
+
+	protected static Duration readDuration(final ByteBuffer buffer, final int position) {
+		final String value = readString(buffer, position);
+		return value == null ? null : getDatatypeFactory().newDuration(value);
+	}
+
+	protected static QName readQName(final ByteBuffer buffer, final int position) {
+		final String value = readString(buffer, position);
+		return value == null ? null : QName.valueOf(value);
+	}
+
+	/**
+	 * Reads an enum constant stored as its ordinal plus one, where 0 stands for null.
+	 */
+	protected static <E extends Enum<E>> E readEnum(final E[] values, final ByteBuffer buffer, final int position) {
+		final int ordinal = buffer.getInt(position);
+		return ordinal == 0 ? null : values[ordinal - 1];
+	}
+
+	private static DatatypeFactory getDatatypeFactory() {
+		if (BinaryView.datatypeFactory == null) {
+			try {
+				BinaryView.datatypeFactory = DatatypeFactory.newInstance();
+			} catch (final DatatypeConfigurationException e) {
+				throw new IllegalStateException(e);
+			}
+		}
+		return BinaryView.datatypeFactory;
+	}
+
+	/**
+	 * Read-only list over a block of equally sized item slots,
+	 * reading each item only when it is accessed.
+	 * @param <T> The item type
+	 */
+	public abstract static class ListView<T> extends AbstractList<T> implements RandomAccess {
+		private final ByteBuffer buffer;
+		private final int offset;
+		private final int itemSize;
+		private final int size;
+
+		/**
+		 * @param buffer The buffer
+		 * @param offset The offset of the block, or 0 for an empty list
+		 * @param itemSize The size of an item slot
+		 */
+		protected ListView(final ByteBuffer buffer, final int offset, final int itemSize) {
+			this.buffer = buffer;
+			this.offset = offset;
+			this.itemSize = itemSize;
+			this.size = offset == 0 ? 0 : buffer.getInt(offset);
+		}
+
+		@Override
+		public T get(final int index) {
+			if (index < 0 || index >= this.size) {
+				throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + this.size);
+			}
+			return item(this.buffer, this.offset + 4 + index * this.itemSize);
+		}
+
+		@Override
+		public int size() {
+			return this.size;
+		}
+
+		/**
+		 * Reads the item stored in the given slot.
+		 */
+		protected abstract T item(final ByteBuffer buffer, final int position);
+	}
+}
@@ -0,0 +1,48 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2014 Klemm Software Consulting, Mirko Klemm
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.kscs.util.jaxb;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Implemented by generated classes that can write themselves
+ * in the binary format read by their static <code>readBinary</code> methods.
+ */
+public interface BinaryWritable {
+	/**
+	 * Writes the class id and the fields of this object, without header.
+	 * @param output The output to write to
+	 * @throws IOException if writing fails
+	 */
+	void writeBinary(BinaryOutput output) throws IOException;
+
+	/**
+	 * Writes a header and this object to a stream, and flushes the stream.
+	 * @param stream The stream to write to
+	 * @throws IOException if writing fails
+	 */
+	void writeBinary(OutputStream stream) throws IOException;
+}
@@ -0,0 +1,171 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2014 Klemm Software Consulting, Mirko Klemm
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.kscs.util.jaxb;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * A batch of objects stored in columns, one array per property.
+ * Numbers and booleans are stored in primitive arrays, with an
+ * additional null mask if the property is optional, all other
+ * values are stored as strings.
+ * The arrays are allocated once with the capacity of the batch,
+ * and reused when the batch is filled again.
+ * Subclasses are generated by the "meta" plugin with "-generateColumns=y",
+ * and expose the column arrays as public fields.
+ * @param <I> The type of the objects stored in a row
+ */
+public abstract class ColumnBatch<I> {
+	private final int capacity;
+	private final List<PropertyInfo<?, ?>> properties = new ArrayList<>();
+	private final List<Object> columns = new ArrayList<>();
+	private final List<boolean[]> nullMasks = new ArrayList<>();
+	private int size = 0;
+
+	protected ColumnBatch(final int capacity) {
+		if (capacity <= 0) {
+			throw new IllegalArgumentException("Capacity must be positive, but was " + capacity);
+		}
+		this.capacity = capacity;
+	}
+
+	/**
+	 * Registers a column.
+	 * @param property The property stored in the column
+	 * @param array The array holding the values of the column
+	 * @param nullMask The array telling which values are null, or null if the array can hold null values itself
+	 * @return The array
+	 */
+	protected final <A> A column(final PropertyInfo<?, ?> property, final A array, final boolean[] nullMask) {
+		this.properties.add(property);
+		this.columns.add(array);
+		this.nullMasks.add(nullMask);
+		return array;
+	}
+
+	/**
+	 * Stores the values of an object in a row of all columns.
+	 */
+	protected abstract void store(final I item, final int row);
+
+	public int capacity() {
+		return this.capacity;
+	}
+
+	/**
+	 * @return The number of rows filled.
+	 */
+	public int size() {
+		return this.size;
+	}
+
+	public boolean isFull() {
+		return this.size == this.capacity;
+	}
+
+	/**
+	 * @return The properties stored in the columns, in column order.
+	 */
+	public List<PropertyInfo<?, ?>> getProperties() {
+		return Collections.unmodifiableList(this.properties);
+	}
+
+	/**
+	 * @return The array holding the values of a column. Only the first {@link #size()} elements are valid.
+	 */
+	public Object getColumn(final int column) {
+		return this.columns.get(column);
+	}
+
+	/**
+	 * @return The array holding the values of the column storing the given property.
+	 * @throws IllegalArgumentException if the property is not stored in this batch
+	 */
+	public Object getColumn(final PropertyInfo<?, ?> property) {
+		final int column = this.properties.indexOf(property);
+		if (column < 0) {
+			throw new IllegalArgumentException("Property \"" + property.propertyName + "\" is not stored in this batch");
+		}
+		return this.columns.get(column);
+	}
+
+	/**
+	 * @return true if the value of a property was null.
+	 */
+	public boolean isNull(final int column, final int row) {
+		final boolean[] nullMask = this.nullMasks.get(column);
+		if (nullMask != null) {
+			return nullMask[row];
+		}
+		final Object array = this.columns.get(column);
+		return array instanceof Object[] && ((Object[])array)[row] == null;
+	}
+
+	/**
+	 * Adds an object as the next row.
+	 * @return false if the batch is full and the object has not been added.
+	 */
+	public boolean add(final I item) {
+		if (isFull()) {
+			return false;
+		}
+		store(item, this.size++);
+		return true;
+	}
+
+	/**
+	 * Clears the batch and refills it from an iterator, until the batch is full or the
+	 * iterator is exhausted. Null items are skipped.
+	 * To export a collection in batches, call this repeatedly with the same iterator
+	 * until it returns 0.
+	 * @return The number of rows filled
+	 */
+	public int fill(final Iterator<? extends I> items) {
+		clear();
+		while (this.size < this.capacity && items.hasNext()) {
+			final I item = items.next();
+			if (item != null) {
+				store(item, this.size++);
+			}
+		}
+		return this.size;
+	}
+
+	/**
+	 * Removes all rows. The column arrays are kept, only references to strings are released.
+	 */
+	public void clear() {
+		for (final Object array : this.columns) {
+			if (array instanceof Object[]) {
+				Arrays.fill((Object[])array, 0, this.size, null);
+			}
+		}
+		this.size = 0;
+	}
+}
@@ -0,0 +1,129 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2014 Klemm Software Consulting, Mirko Klemm
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.kscs.util.jaxb;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Static helpers shared by the classes generated in "compact" mode.
+ * Code that would otherwise be generated anew into every copy method,
+ * copy constructor and builder is implemented here once.
+ */
+public final class Copies {
+	private Copies() {
+	}
+
+	/**
+	 * Gets the sub-tree for a property of an object to be copied partially.
+	 * @param propertyTree The property tree of the object, may be null
+	 * @param propertyName The name of the property
+	 * @return The property tree of the property, or null if there is none
+	 */
+	public static PropertyTree child(final PropertyTree propertyTree, final String propertyName) {
+		return propertyTree == null ? null : propertyTree.get(propertyName);
+	}
+
+	/**
+	 * Determines whether a property is to be copied in a partial copy.
+	 * @param propertyTreeUse Whether the property tree denotes the properties to include or to exclude
+	 * @param propertyTree The property tree of the property, as returned by {@link #child(PropertyTree, String)}
+	 * @return true if the property is to be copied
+	 */
+	public static boolean includes(final PropertyTreeUse propertyTreeUse, final PropertyTree propertyTree) {
+		return propertyTreeUse == PropertyTreeUse.INCLUDE ? propertyTree != null : propertyTree == null || !propertyTree.isLeaf();
+	}
+
+	/**
+	 * Copies the items of a collection of objects that can copy themselves.
+	 * @param items The items, may be null, and may contain null
+	 * @param <E> The type of the items
+	 * @return A new list of the copies of the items, or null if items is null
+	 */
+	@SuppressWarnings("unchecked")
+	public static <E extends Copyable<?>> List<E> copyAll(final Collection<? extends E> items) {
+		if (items == null) {
+			return null;
+		}
+		final List<E> copies = new ArrayList<E>(items.size());
+		for (final E item : items) {
+			copies.add(item == null ? null : (E) item.createCopy());
+		}
+		return copies;
+	}
+
+	/**
+	 * Copies the items of a collection of objects that can copy themselves partially.
+	 * @param items The items, may be null, and may contain null
+	 * @param propertyTree The property tree of the collection property, as returned by {@link #child(PropertyTree, String)}
+	 * @param propertyTreeUse Whether the property tree denotes the properties to include or to exclude
+	 * @param <E> The type of the items
+	 * @return A new list of the partial copies of the items, or null if items is null
+	 */
+	@SuppressWarnings("unchecked")
+	public static <E extends PartialCopyable<?>> List<E> copyAll(final Collection<? extends E> items, final PropertyTree propertyTree, final PropertyTreeUse propertyTreeUse) {
+		if (items == null) {
+			return null;
+		}
+		final List<E> copies = new ArrayList<E>(items.size());
+		for (final E item : items) {
+			copies.add(item == null ? null : (E) item.createCopy(propertyTree, propertyTreeUse));
+		}
+		return copies;
+	}
+
+	/**
+	 * Wraps the items of a list of values that have no builder of their own
+	 * into {@link Buildable.PrimitiveBuildable} instances.
+	 * @param values The values, may be null
+	 * @return A new list of {@link Buildable}s, or null if values is null
+	 */
+	public static List<Buildable> toBuildables(final List<?> values) {
+		if (values == null) {
+			return null;
+		}
+		final List<Buildable> buildables = new ArrayList<Buildable>(values.size());
+		for (final Object value : values) {
+			buildables.add(value == null ? null : new Buildable.PrimitiveBuildable(value));
+		}
+		return buildables;
+	}
+
+	/**
+	 * Builds all items of a list of builders.
+	 * @param builders The builders, must not contain null items
+	 * @param <E> The type of the built items
+	 * @return A new list containing the built items
+	 */
+	@SuppressWarnings("unchecked")
+	public static <E> List<E> build(final List<? extends Buildable> builders) {
+		final List<E> products = new ArrayList<E>(builders.size());
+		for (final Buildable builder : builders) {
+			products.add((E) builder.build());
+		}
+		return products;
+	}
+}
@@ -0,0 +1,448 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2014 Klemm Software Consulting, Mirko Klemm
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.kscs.util.jaxb;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.Arrays;
+
+import javax.xml.bind.DatatypeConverter;
+import javax.xml.datatype.DatatypeConfigurationException;
+import javax.xml.datatype.DatatypeFactory;
+import javax.xml.datatype.Duration;
+import javax.xml.datatype.XMLGregorianCalendar;
+import javax.xml.namespace.QName;
+
+/**
+ * Reads JSON text from a {@link Reader}, one token at a time.
+ * Used by the code generated by the JSON plugin.
+ */
+public class JsonReader {
+	/**
+	 * Name of the property telling the class of an object whose
+	 * class has a super class or subclasses. It must be the first property of the object.
+	 */
+	public static final String TYPE_PROPERTY_NAME = "@type";
+
+	private static final int EMPTY_DOCUMENT = 0;
+	private static final int NONEMPTY_DOCUMENT = 1;
+	private static final int EMPTY_OBJECT = 2;
+	private static final int DANGLING_NAME = 3;
+	private static final int NONEMPTY_OBJECT = 4;
+	private static final int EMPTY_ARRAY = 5;
+	private static final int NONEMPTY_ARRAY = 6;
+
+	private final Reader reader;
+	private final char[] buffer = new char[8192];
+	private final StringBuilder text = new StringBuilder();
+	private int position = 0;
+	private int limit = 0;
+	private long offset = 0;
+	private int[] stack = new int[32];
+	private int stackSize = 1;
+	private Token peeked = null;
+	private DatatypeFactory datatypeFactory = null;
+
+	public JsonReader(final Reader reader) {
+		this.reader = reader;
+		this.stack[0] = JsonReader.EMPTY_DOCUMENT;
+	}
+
+	/**
+	 * @return The type of the next token, without consuming it.
+	 */
+	public Token peek() throws IOException {
+		if (this.peeked == null) {
+			this.peeked = readToken();
+		}
+		return this.peeked;
+	}
+
+	/**
+	 * @return true if the current object or array has more elements.
+	 */
+	public boolean hasNext() throws IOException {
+		final Token token = peek();
+		return token != Token.END_OBJECT && token != Token.END_ARRAY && token != Token.END_DOCUMENT;
+	}
+
+	public void beginObject() throws IOException {
+		consume(Token.BEGIN_OBJECT);
+		push(JsonReader.EMPTY_OBJECT);
+	}
+
+	public void endObject() throws IOException {
+		consume(Token.END_OBJECT);
+		this.stackSize--;
+	}
+
+	public void beginArray() throws IOException {
+		consume(Token.BEGIN_ARRAY);
+		push(JsonReader.EMPTY_ARRAY);
+	}
+
+	public void endArray() throws IOException {
+		consume(Token.END_ARRAY);
+		this.stackSize--;
+	}
+
+	public String nextName() throws IOException {
+		consume(Token.NAME);
+		return this.text.toString();
+	}
+
+	/**
+	 * Reads the type property, which must be the first property of an object.
+	 * @return The type name
+	 */
+	public String nextType() throws IOException {
+		final String name = nextName();
+		if (!JsonReader.TYPE_PROPERTY_NAME.equals(name)) {
+			throw syntaxError("Expected \"" + JsonReader.TYPE_PROPERTY_NAME + "\" as first property, but found \"" + name + "\"");
+		}
+		return nextString();
+	}
+
+	/**
+	 * Consumes the next value if it is null.
+	 * @return true if the next value was null.
+	 */
+	public boolean nextNull() throws IOException {
+		if (peek() == Token.NULL) {
+			this.peeked = null;
+			return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Reads a string, or the text of a number or boolean literal.
+	 * @return The string, or null if the value is null.
+	 */
+	public String nextString() throws IOException {
+		final Token token = peek();
+		if (token == Token.NULL) {
+			this.peeked = null;
+			return null;
+		} else if (token == Token.STRING || token == Token.NUMBER || token == Token.BOOLEAN) {
+			this.peeked = null;
+			return this.text.toString();
+		}
+		throw syntaxError("Expected a value but was " + token);
+	}
+
+	public boolean nextBoolean() throws IOException {
+		return Boolean.parseBoolean(nextNonNullString());
+	}
+
+	public byte nextByte() throws IOException {
+		return Byte.parseByte(nextNonNullString());
+	}
+
+	public short nextShort() throws IOException {
+		return Short.parseShort(nextNonNullString());
+	}
+
+	public int nextInt() throws IOException {
+		return Integer.parseInt(nextNonNullString());
+	}
+
+	public long nextLong() throws IOException {
+		return Long.parseLong(nextNonNullString());
+	}
+
+	public float nextFloat() throws IOException {
+		return Float.parseFloat(nextNonNullString());
+	}
+
+	public double nextDouble() throws IOException {
+		return Double.parseDouble(nextNonNullString());
+	}
+
+	public BigInteger nextBigInteger() throws IOException {
+		final String value = nextString();
+		return value == null ? null : new BigInteger(value);
+	}
+
+	public BigDecimal nextBigDecimal() throws IOException {
+		final String value = nextString();
+		return value == null ? null : new BigDecimal(value);
+	}
+
+	public XMLGregorianCalendar nextCalendar() throws IOException {
+		final String value = nextString();
+		return value == null ? null : getDatatypeFactory().newXMLGregorianCalendar(value);
+	}
+
+	public Duration nextDuration() throws IOException {
+		final String value = nextString();
+		return value == null ? null : getDatatypeFactory().newDuration(value);
+	}
+
+	public QName nextQName() throws IOException {
+		final String value = nextString();
+		return value == null ? null : QName.valueOf(value);
+	}
+
+	/**
+	 * Reads a base64 encoded string.
+	 */
+	public byte[] nextBytes() throws IOException {
+		final String value = nextString();
+		return value == null ? null : DatatypeConverter.parseBase64Binary(value);
+	}
+
+	/**
+	 * Skips the next value, including all nested values of an object or array.
+	 */
+	public void skipValue() throws IOException {
+		int depth = 0;
+		do {
+			switch (peek()) {
+				case BEGIN_OBJECT:
+					beginObject();
+					depth++;
+					break;
+				case BEGIN_ARRAY:
+					beginArray();
+					depth++;
+					break;
+				case END_OBJECT:
+					endObject();
+					depth--;
+					break;
+				case END_ARRAY:
+					endArray();
+					depth--;
+					break;
+				case END_DOCUMENT:
+					throw syntaxError("Unexpected end of document");
+				default:
+					this.peeked = null;
+			}
+		} while (depth > 0);
+	}
+
+	private String nextNonNullString() throws IOException {
+		final String value = nextString();
+		if (value == null) {
+			throw syntaxError("Expected a value but was null");
+		}
+		return value;
+	}
+
+	private void consume(final Token expected) throws IOException {
+		final Token token = peek();
+		if (token != expected) {
+			throw syntaxError("Expected " + expected + " but was " + token);
+		}
+		this.peeked = null;
+	}
+
+	private void push(final int scope) {
+		if (this.stackSize == this.stack.length) {
+			this.stack = Arrays.copyOf(this.stack, this.stack.length * 2);
+		}
+		this.stack[this.stackSize++] = scope;
+	}
+
+	private Token readToken() throws IOException {
+		final int top = this.stackSize - 1;
+		switch (this.stack[top]) {
+			case EMPTY_DOCUMENT:
+				this.stack[top] = JsonReader.NONEMPTY_DOCUMENT;
+				return readValue(nextNonWhitespace());
+			case NONEMPTY_DOCUMENT:
+				final int end = nextNonWhitespace();
+				if (end != -1) {
+					throw syntaxError("Unexpected content after end of document");
+				}
+				return Token.END_DOCUMENT;
+			case EMPTY_ARRAY:
+			case NONEMPTY_ARRAY:
+				int arrayChar = nextNonWhitespace();
+				if (arrayChar == ']') {
+					return Token.END_ARRAY;
+				}
+				if (this.stack[top] == JsonReader.NONEMPTY_ARRAY) {
+					if (arrayChar != ',') {
+						throw syntaxError("Expected ',' or ']'");
+					}
+					arrayChar = nextNonWhitespace();
+				}
+				this.stack[top] = JsonReader.NONEMPTY_ARRAY;
+				return readValue(arrayChar);
+			case EMPTY_OBJECT:
+			case NONEMPTY_OBJECT:
+				int objectChar = nextNonWhitespace();
+				if (objectChar == '}') {
+					return Token.END_OBJECT;
+				}
+				if (this.stack[top] == JsonReader.NONEMPTY_OBJECT) {
+					if (objectChar != ',') {
+						throw syntaxError("Expected ',' or '}'");
+					}
+					objectChar = nextNonWhitespace();
+				}
+				if (objectChar != '"') {
+					throw syntaxError("Expected a name");
+				}
+				readString();
+				this.stack[top] = JsonReader.DANGLING_NAME;
+				return Token.NAME;
+			default:
+				if (nextNonWhitespace() != ':') {
+					throw syntaxError("Expected ':'");
+				}
+				this.stack[top] = JsonReader.NONEMPTY_OBJECT;
+				return readValue(nextNonWhitespace());
+		}
+	}
+
+	private Token readValue(final int c) throws IOException {
+		switch (c) {
+			case '{':
+				return Token.BEGIN_OBJECT;
+			case '[':
+				return Token.BEGIN_ARRAY;
+			case '"':
+				readString();
+				return Token.STRING;
+			case -1:
+				throw syntaxError("Unexpected end of document");
+			default:
+				this.text.setLength(0);
+				this.text.append((char)c);
+				while (fillBuffer() && isLiteralChar(this.buffer[this.position])) {
+					this.text.append(this.buffer[this.position++]);
+				}
+				final String literal = this.text.toString();
+				if ("null".equals(literal)) {
+					return Token.NULL;
+				} else if ("true".equals(literal) || "false".equals(literal)) {
+					return Token.BOOLEAN;
+				} else if (c == '-' || (c >= '0' && c <= '9')) {
+					return Token.NUMBER;
+				}
+				throw syntaxError("Unexpected literal \"" + literal + "\"");
+		}
+	}
+
+	private void readString() throws IOException {
+		this.text.setLength(0);
+		while (true) {
+			final int c = nextChar();
+			if (c == '"') {
+				return;
+			} else if (c == '\\') {
+				final int escaped = nextChar();
+				switch (escaped) {
+					case 'b':
+						this.text.append('\b');
+						break;
+					case 'f':
+						this.text.append('\f');
+						break;
+					case 'n':
+						this.text.append('\n');
+						break;
+					case 'r':
+						this.text.append('\r');
+						break;
+					case 't':
+						this.text.append('\t');
+						break;
+					case 'u':
+						int code = 0;
+						for (int i = 0; i < 4; i++) {
+							final int digit = Character.digit(nextChar(), 16);
+							if (digit < 0) {
+								throw syntaxError("Invalid unicode escape");
+							}
+							code = code * 16 + digit;
+						}
+						this.text.append((char)code);
+						break;
+					default:
+						this.text.append((char)escaped);
+				}
+			} else if (c == -1) {
+				throw syntaxError("Unterminated string");
+			} else {
+				this.text.append((char)c);
+			}
+		}
+	}
+
+	private static boolean isLiteralChar(final char c) {
+		return (c >= '0' && c <= '9') || (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || c == '-' || c == '+' || c == '.';
+	}
+
+	private int nextNonWhitespace() throws IOException {
+		int c;
+		do {
+			c = nextChar();
+		} while (c == ' ' || c == '\t' || c == '\n' || c == '\r');
+		return c;
+	}
+
+	private int nextChar() throws IOException {
+		return fillBuffer() ? this.buffer[this.position++] : -1;
+	}
+
+	private boolean fillBuffer() throws IOException {
+		if (this.position < this.limit) {
+			return true;
+		}
+		this.offset += this.limit;
+		this.position = 0;
+		this.limit = Math.max(this.reader.read(this.buffer), 0);
+		return this.limit > 0;
+	}
+
+	private IOException syntaxError(final String message) {
+		return new IOException(message + " at offset " + (this.offset + this.position));
+	}
+
+	private DatatypeFactory getDatatypeFactory() {
+		if (this.datatypeFactory == null) {
+			try {
+				this.datatypeFactory = DatatypeFactory.newInstance();
+			} catch (final DatatypeConfigurationException e) {
+				throw new IllegalStateException(e);
+			}
+		}
+		return this.datatypeFactory;
+	}
+
+	/**
+	 * Types of JSON tokens.
+	 */
+	public enum Token {
+		BEGIN_OBJECT, END_OBJECT, BEGIN_ARRAY, END_ARRAY, NAME, STRING, NUMBER, BOOLEAN, NULL, END_DOCUMENT
+	}
+}
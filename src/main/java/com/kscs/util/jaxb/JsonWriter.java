@@ -0,0 +1,220 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2014 Klemm Software Consulting, Mirko Klemm
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.kscs.util.jaxb;
+
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.Arrays;
+
+import javax.xml.bind.DatatypeConverter;
+import javax.xml.datatype.Duration;
+import javax.xml.datatype.XMLGregorianCalendar;
+import javax.xml.namespace.QName;
+
+/**
+ * Writes JSON text to a {@link Writer}, one token at a time,
+ * inserting the separators between names and values.
+ * Used by the code generated by the JSON plugin.
+ */
+public class JsonWriter implements Flushable {
+	private static final int BUFFER_SIZE = 8192;
+
+	private final Writer writer;
+	private final StringBuilder buffer = new StringBuilder(JsonWriter.BUFFER_SIZE);
+	private boolean[] first = new boolean[32];
+	private int depth = 0;
+	private boolean afterName = false;
+
+	public JsonWriter(final Writer writer) {
+		this.writer = writer;
+		this.first[0] = true;
+	}
+
+	public JsonWriter beginObject() throws IOException {
+		return open('{');
+	}
+
+	public JsonWriter endObject() throws IOException {
+		return close('}');
+	}
+
+	public JsonWriter beginArray() throws IOException {
+		return open('[');
+	}
+
+	public JsonWriter endArray() throws IOException {
+		return close(']');
+	}
+
+	public JsonWriter name(final String name) throws IOException {
+		separate();
+		appendString(name);
+		this.buffer.append(':');
+		this.afterName = true;
+		return this;
+	}
+
+	public JsonWriter nullValue() throws IOException {
+		return raw("null");
+	}
+
+	public JsonWriter value(final String value) throws IOException {
+		if (value == null) {
+			return nullValue();
+		}
+		separate();
+		appendString(value);
+		return flushIfFull();
+	}
+
+	public JsonWriter value(final boolean value) throws IOException {
+		return raw(value ? "true" : "false");
+	}
+
+	public JsonWriter value(final long value) throws IOException {
+		return raw(Long.toString(value));
+	}
+
+	/**
+	 * Writes a floating point number. JSON cannot represent NaN and infinity, so they are written as strings.
+	 */
+	public JsonWriter value(final double value) throws IOException {
+		if (Double.isNaN(value) || Double.isInfinite(value)) {
+			return value(Double.toString(value));
+		}
+		return raw(Double.toString(value));
+	}
+
+	public JsonWriter value(final BigInteger value) throws IOException {
+		return value == null ? nullValue() : raw(value.toString());
+	}
+
+	public JsonWriter value(final BigDecimal value) throws IOException {
+		return value == null ? nullValue() : raw(value.toString());
+	}
+
+	public JsonWriter value(final XMLGregorianCalendar value) throws IOException {
+		return value(value == null ? null : value.toXMLFormat());
+	}
+
+	public JsonWriter value(final Duration value) throws IOException {
+		return value(value == null ? null : value.toString());
+	}
+
+	public JsonWriter value(final QName value) throws IOException {
+		return value(value == null ? null : value.toString());
+	}
+
+	/**
+	 * Writes a byte array as a base64 encoded string.
+	 */
+	public JsonWriter value(final byte[] value) throws IOException {
+		return value(value == null ? null : DatatypeConverter.printBase64Binary(value));
+	}
+
+	@Override
+	public void flush() throws IOException {
+		this.writer.append(this.buffer);
+		this.buffer.setLength(0);
+		this.writer.flush();
+	}
+
+	private JsonWriter open(final char bracket) throws IOException {
+		separate();
+		this.buffer.append(bracket);
+		if (++this.depth == this.first.length) {
+			this.first = Arrays.copyOf(this.first, this.first.length * 2);
+		}
+		this.first[this.depth] = true;
+		return this;
+	}
+
+	private JsonWriter close(final char bracket) throws IOException {
+		if (this.depth == 0) {
+			throw new IllegalStateException("Nesting problem: No open object or array");
+		}
+		this.depth--;
+		this.buffer.append(bracket);
+		return flushIfFull();
+	}
+
+	private JsonWriter raw(final String text) throws IOException {
+		separate();
+		this.buffer.append(text);
+		return flushIfFull();
+	}
+
+	private void separate() {
+		if (this.afterName) {
+			this.afterName = false;
+		} else if (this.first[this.depth]) {
+			this.first[this.depth] = false;
+		} else {
+			this.buffer.append(',');
+		}
+	}
+
+	private void appendString(final String value) {
+		this.buffer.append('"');
+		for (int i = 0; i < value.length(); i++) {
+			final char c = value.charAt(i);
+			switch (c) {
+				case '"':
+					this.buffer.append("\\\"");
+					break;
+				case '\\':
+					this.buffer.append("\\\\");
+					break;
+				case '\n':
+					this.buffer.append("\\n");
+					break;
+				case '\r':
+					this.buffer.append("\\r");
+					break;
+				case '\t':
+					this.buffer.append("\\t");
+					break;
+				default:
+					if (c < 0x20 || c == '\u2028' || c == '\u2029') {
+						this.buffer.append(String.format("\\u%04x", (int)c));
+					} else {
+						this.buffer.append(c);
+					}
+			}
+		}
+		this.buffer.append('"');
+	}
+
+	private JsonWriter flushIfFull() throws IOException {
+		if (this.buffer.length() >= JsonWriter.BUFFER_SIZE) {
+			this.writer.append(this.buffer);
+			this.buffer.setLength(0);
+		}
+		return this;
+	}
+}
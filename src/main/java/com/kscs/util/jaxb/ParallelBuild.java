@@ -0,0 +1,202 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2014 Klemm Software Consulting, Mirko Klemm
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+
+package com.kscs.util.jaxb;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Builds the items of large collection properties of a builder concurrently.
+ * A build started with {@link #build(Executor, int, Buildable)} makes the generated
+ * builders of the whole object tree build each collection of child builders with
+ * at least "threshold" items in parallel, with the items of the resulting list
+ * in the order in which they were added to the builder.
+ * The items are divided into chunks, which are claimed by the calling thread and
+ * by tasks submitted to the executor. The calling thread only waits for chunks
+ * already being built by another thread, so builds cannot starve each other
+ * even if nested collections are built on a bounded executor.
+ */
+public final class ParallelBuild {
+	/**
+	 * Default minimum number of items of a collection to build it in parallel
+	 */
+	public static final int DEFAULT_THRESHOLD = 256;
+	private static final int CHUNKS_PER_THREAD = 4;
+	private static final ThreadLocal<ParallelBuild> CURRENT = new ThreadLocal<ParallelBuild>();
+
+	private final Executor executor;
+	private final int threshold;
+	private final int parallelism;
+
+	private ParallelBuild(final Executor executor, final int threshold) {
+		this.executor = executor;
+		this.threshold = Math.max(threshold, 2);
+		this.parallelism = executor instanceof ForkJoinPool ? ((ForkJoinPool)executor).getParallelism() : Runtime.getRuntime().availableProcessors();
+	}
+
+	/**
+	 * Builds the product of a builder, building large collections of child builders in parallel.
+	 * @param executor The executor running the build tasks
+	 * @param threshold Minimum number of items of a collection to build it in parallel
+	 * @param builder The builder
+	 * @param <P> The type of the product
+	 * @return The product of the builder
+	 */
+	@SuppressWarnings("unchecked")
+	public static <P> P build(final Executor executor, final int threshold, final Buildable builder) {
+		return (P)new ParallelBuild(executor, threshold).run(builder);
+	}
+
+	/**
+	 * Determines whether a collection of child builders is to be built in parallel.
+	 * This is only the case during a build started by {@link #build(Executor, int, Buildable)}.
+	 * @param size The number of child builders
+	 * @return true if the collection is to be built by {@link #buildAll(List)}
+	 */
+	public static boolean isParallel(final int size) {
+		final ParallelBuild current = ParallelBuild.CURRENT.get();
+		return current != null && size >= current.threshold;
+	}
+
+	/**
+	 * Builds all items of a list of builders in parallel.
+	 * @param builders The builders, may contain null items
+	 * @param <E> The type of the built items
+	 * @return A new list containing the built items in the order of the builders
+	 */
+	@SuppressWarnings("unchecked")
+	public static <E> List<E> buildAll(final List<? extends Buildable> builders) {
+		final ParallelBuild current = ParallelBuild.CURRENT.get();
+		final Batch batch = new Batch(current, builders.toArray(new Buildable[builders.size()]));
+		batch.execute();
+		return new ArrayList<E>((List<E>)Arrays.asList(batch.products));
+	}
+
+	private Object run(final Buildable builder) {
+		final ParallelBuild previous = ParallelBuild.CURRENT.get();
+		ParallelBuild.CURRENT.set(this);
+		try {
+			return builder.build();
+		} finally {
+			restore(previous);
+		}
+	}
+
+	private static void restore(final ParallelBuild previous) {
+		if (previous == null) {
+			ParallelBuild.CURRENT.remove();
+		} else {
+			ParallelBuild.CURRENT.set(previous);
+		}
+	}
+
+	private static class Batch implements Runnable {
+		private final ParallelBuild context;
+		private final Buildable[] builders;
+		private final Object[] products;
+		private final int chunkSize;
+		private final int chunkCount;
+		private final AtomicInteger nextChunk = new AtomicInteger();
+		private final CountDownLatch pendingChunks;
+		private final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+
+		Batch(final ParallelBuild context, final Buildable[] builders) {
+			this.context = context;
+			this.builders = builders;
+			this.products = new Object[builders.length];
+			this.chunkSize = Math.max(1, (builders.length + context.parallelism * ParallelBuild.CHUNKS_PER_THREAD - 1) / (context.parallelism * ParallelBuild.CHUNKS_PER_THREAD));
+			this.chunkCount = (builders.length + this.chunkSize - 1) / this.chunkSize;
+			this.pendingChunks = new CountDownLatch(this.chunkCount);
+		}
+
+		void execute() {
+			final int taskCount = Math.min(this.chunkCount, this.context.parallelism) - 1;
+			try {
+				for (int i = 0; i < taskCount; i++) {
+					this.context.executor.execute(this);
+				}
+			} catch (final RejectedExecutionException rex) {
+				// remaining chunks are built by the calling thread
+			}
+			buildChunks();
+			boolean interrupted = false;
+			while (this.pendingChunks.getCount() > 0) {
+				try {
+					this.pendingChunks.await();
+				} catch (final InterruptedException iex) {
+					interrupted = true;
+				}
+			}
+			if (interrupted) {
+				Thread.currentThread().interrupt();
+			}
+			final Throwable throwable = this.failure.get();
+			if (throwable instanceof RuntimeException) {
+				throw (RuntimeException)throwable;
+			} else if (throwable instanceof Error) {
+				throw (Error)throwable;
+			} else if (throwable != null) {
+				throw new IllegalStateException(throwable);
+			}
+		}
+
+		@Override
+		public void run() {
+			final ParallelBuild previous = ParallelBuild.CURRENT.get();
+			ParallelBuild.CURRENT.set(this.context);
+			try {
+				buildChunks();
+			} finally {
+				restore(previous);
+			}
+		}
+
+		private void buildChunks() {
+			int chunk;
+			while ((chunk = this.nextChunk.getAndIncrement()) < this.chunkCount) {
+				try {
+					if (this.failure.get() == null) {
+						final int end = Math.min(this.builders.length, (chunk + 1) * this.chunkSize);
+						for (int i = chunk * this.chunkSize; i < end; i++) {
+							this.products[i] = this.builders[i] == null ? null : this.builders[i].build();
+						}
+					}
+				} catch (final Throwable t) {
+					this.failure.compareAndSet(null, t);
+				} finally {
+					this.pendingChunks.countDown();
+				}
+			}
+		}
+	}
+}
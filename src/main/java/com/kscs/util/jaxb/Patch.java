@@ -0,0 +1,242 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2014 Klemm Software Consulting, Mirko Klemm
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.kscs.util.jaxb;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Objects;
+
+import javax.xml.bind.JAXBElement;
+
+import org.w3c.dom.Node;
+
+/**
+ * List of changes between two object trees, as computed by the
+ * generated <code>diff</code> methods, which can be applied to
+ * another object tree by the generated <code>applyPatch</code> methods.
+ */
+public final class Patch implements Iterable<Patch.Change> {
+	private final List<Change> changes = new ArrayList<>();
+
+	/**
+	 * Records a change.
+	 * @param path The path of the changed property, relative to the object the diff started from
+	 * @param oldValue The value of the property in the original object
+	 * @param newValue The value of the property in the compared object
+	 */
+	public void add(final Path path, final Object oldValue, final Object newValue) {
+		this.changes.add(new Change(path, oldValue, newValue));
+	}
+
+	public List<Change> getChanges() {
+		return Collections.unmodifiableList(this.changes);
+	}
+
+	public boolean isEmpty() {
+		return this.changes.isEmpty();
+	}
+
+	public int size() {
+		return this.changes.size();
+	}
+
+	@Override
+	public Iterator<Change> iterator() {
+		return getChanges().iterator();
+	}
+
+	@Override
+	public String toString() {
+		return this.changes.toString();
+	}
+
+	/**
+	 * Compares two property values by their content. As neither {@link JAXBElement} nor
+	 * DOM nodes override {@link Object#equals(Object)}, JAXBElements are compared by
+	 * {@link #elementEquals(JAXBElement, JAXBElement)} and their values, and DOM nodes
+	 * by {@link Node#isEqualNode(Node)}. Other values are compared by {@link Objects#deepEquals(Object, Object)}.
+	 * @param value The value of the property in the original object
+	 * @param otherValue The value of the property in the compared object
+	 * @return true if the values are equal
+	 */
+	public static boolean valueEquals(final Object value, final Object otherValue) {
+		if (value == otherValue) {
+			return true;
+		} else if (value == null || otherValue == null) {
+			return false;
+		} else if (value instanceof JAXBElement && otherValue instanceof JAXBElement) {
+			final JAXBElement<?> element = (JAXBElement<?>)value;
+			final JAXBElement<?> otherElement = (JAXBElement<?>)otherValue;
+			return elementEquals(element, otherElement) && valueEquals(element.getValue(), otherElement.getValue());
+		} else if (value instanceof Node && otherValue instanceof Node) {
+			return ((Node)value).isEqualNode((Node)otherValue);
+		} else {
+			return Objects.deepEquals(value, otherValue);
+		}
+	}
+
+	/**
+	 * Compares the name, declared type, scope and nil flag of two JAXBElements,
+	 * and whether both or none of them have a value, but not the values themselves.
+	 * @param element The element in the original object
+	 * @param otherElement The element in the compared object
+	 * @return true if the elements are equal apart from their values
+	 */
+	public static boolean elementEquals(final JAXBElement<?> element, final JAXBElement<?> otherElement) {
+		if (element == otherElement) {
+			return true;
+		} else if (element == null || otherElement == null) {
+			return false;
+		} else {
+			return element.getName().equals(otherElement.getName())
+					&& element.getDeclaredType() == otherElement.getDeclaredType()
+					&& element.getScope() == otherElement.getScope()
+					&& element.isNil() == otherElement.isNil()
+					&& (element.getValue() == null) == (otherElement.getValue() == null);
+		}
+	}
+
+	/**
+	 * Path from an object to one of its properties, or to an item of one of its list properties.
+	 * Each node points to its parent node, so paths sharing a prefix share their nodes.
+	 */
+	public static final class Path {
+		private final Path parent;
+		private final String propertyName;
+		private final int index;
+		private final int depth;
+
+		/**
+		 * @param parent The path of the object containing the property, or null for the root object
+		 * @param propertyName The name of the property
+		 */
+		public Path(final Path parent, final String propertyName) {
+			this(parent, propertyName, -1);
+		}
+
+		/**
+		 * @param parent The path of the object containing the property, or null for the root object
+		 * @param propertyName The name of the property
+		 * @param index The index of the item in a list property, or -1 for the whole property
+		 */
+		public Path(final Path parent, final String propertyName, final int index) {
+			this.parent = parent;
+			this.propertyName = propertyName;
+			this.index = index;
+			this.depth = parent == null ? 1 : parent.depth + 1;
+		}
+
+		public Path getParent() {
+			return this.parent;
+		}
+
+		public String getPropertyName() {
+			return this.propertyName;
+		}
+
+		public int getIndex() {
+			return this.index;
+		}
+
+		/**
+		 * @return The number of nodes of this path.
+		 */
+		public int getDepth() {
+			return this.depth;
+		}
+
+		@Override
+		public String toString() {
+			final StringBuilder sb = new StringBuilder();
+			appendTo(sb);
+			return sb.toString();
+		}
+
+		private void appendTo(final StringBuilder sb) {
+			if (this.parent != null) {
+				this.parent.appendTo(sb);
+				sb.append('.');
+			}
+			sb.append(this.propertyName);
+			if (this.index >= 0) {
+				sb.append('[').append(this.index).append(']');
+			}
+		}
+	}
+
+	/**
+	 * A single changed property value.
+	 */
+	public static final class Change {
+		private final Path path;
+		private final Object oldValue;
+		private final Object newValue;
+		private final Path[] nodes;
+
+		Change(final Path path, final Object oldValue, final Object newValue) {
+			this.path = path;
+			this.oldValue = oldValue;
+			this.newValue = newValue;
+			this.nodes = new Path[path.getDepth()];
+			for (Path node = path; node != null; node = node.getParent()) {
+				this.nodes[node.getDepth() - 1] = node;
+			}
+		}
+
+		public Path getPath() {
+			return this.path;
+		}
+
+		public Object getOldValue() {
+			return this.oldValue;
+		}
+
+		public Object getNewValue() {
+			return this.newValue;
+		}
+
+		/**
+		 * @param depth The depth of the node, starting at 0 for the property of the root object
+		 * @return The node of the path at the given depth.
+		 */
+		public Path getNode(final int depth) {
+			return this.nodes[depth];
+		}
+
+		/**
+		 * @return true if the node at the given depth is the changed property itself
+		 */
+		public boolean isLast(final int depth) {
+			return depth == this.nodes.length - 1;
+		}
+
+		@Override
+		public String toString() {
+			return this.path + ": " + this.oldValue + " -> " + this.newValue;
+		}
+	}
+}
@@ -0,0 +1,131 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2014 Klemm Software Consulting, Mirko Klemm
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.kscs.util.jaxb;
+
+import java.util.AbstractList;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * Base class of the generated projection classes, which give read access
+ * to the properties of an object selected by a {@link PropertyTree},
+ * without copying the object.
+ * The getters of a projection return null, or an empty list, for properties
+ * not selected by the tree, and delegate to the object for selected properties.
+ * Projections of nested objects are created when their getter is called
+ * for the first time. As with a partial copy, a leaf of an inclusion tree
+ * selects the whole object below it.
+ * @param <T> The type of the projected object
+ */
+public abstract class PropertyProjection<T> {
+	protected final T source;
+	protected final PropertyTree propertyTree;
+	protected final PropertyTreeUse propertyTreeUse;
+
+	protected PropertyProjection(final T source, final PropertyTree propertyTree, final PropertyTreeUse propertyTreeUse) {
+		this.source = source;
+		if (propertyTreeUse == PropertyTreeUse.INCLUDE && propertyTree != null && propertyTree.isLeaf()) {
+			this.propertyTree = null;
+			this.propertyTreeUse = PropertyTreeUse.EXCLUDE;
+		} else {
+			this.propertyTree = propertyTree;
+			this.propertyTreeUse = propertyTreeUse;
+		}
+	}
+
+	/**
+	 * @return The projected object
+	 */
+	public T source() {
+		return this.source;
+	}
+
+	public PropertyTree propertyTree() {
+		return this.propertyTree;
+	}
+
+	public PropertyTreeUse propertyTreeUse() {
+		return this.propertyTreeUse;
+	}
+
+	/**
+	 * @return The subtree for a property, as passed on to projections of its value.
+	 */
+	protected final PropertyTree child(final String propertyName) {
+		return this.propertyTree == null ? null : this.propertyTree.get(propertyName);
+	}
+
+	/**
+	 * @param child The subtree for a property, as returned by {@link #child(String)}
+	 * @return true if the property is selected
+	 */
+	protected final boolean includes(final PropertyTree child) {
+		return this.propertyTreeUse == PropertyTreeUse.INCLUDE ? child != null : child == null || !child.isLeaf();
+	}
+
+	/**
+	 * A read-only list of projections of the items of a list, which are created
+	 * on first access.
+	 * @param <E> The type of the items of the source list
+	 * @param <P> The type of the projections
+	 */
+	public abstract static class ListProjection<E, P> extends AbstractList<P> implements RandomAccess {
+		private final List<E> source;
+		private final PropertyTree propertyTree;
+		private final PropertyTreeUse propertyTreeUse;
+		private final Object[] projections;
+
+		protected ListProjection(final List<E> source, final PropertyTree propertyTree, final PropertyTreeUse propertyTreeUse) {
+			this.source = source;
+			this.propertyTree = propertyTree;
+			this.propertyTreeUse = propertyTreeUse;
+			this.projections = new Object[source.size()];
+		}
+
+		@Override
+		@SuppressWarnings("unchecked")
+		public P get(final int index) {
+			P projection = (P)this.projections[index];
+			if (projection == null) {
+				final E item = this.source.get(index);
+				if (item != null) {
+					projection = project(item, this.propertyTree, this.propertyTreeUse);
+					this.projections[index] = projection;
+				}
+			}
+			return projection;
+		}
+
+		@Override
+		public int size() {
+			return this.projections.length;
+		}
+
+		/**
+		 * Creates the projection of an item.
+		 */
+		protected abstract P project(final E item, final PropertyTree propertyTree, final PropertyTreeUse propertyTreeUse);
+	}
+}
@@ -29,11 +29,51 @@ import java.util.LinkedHashMap;
 import java.util.Map;
 
 /**
- * Represents a property path for use in the clone() method
+ * Represents a property path for use in the clone() method.
+ * Instances are immutable, and their hash code is computed once
+ * on construction, so they can be shared and used as cache keys.
+ * <p>
+ * Besides property names, two patterns can be used as child names:
+ * {@link #WILDCARD} matches any property on its level, and
+ * {@link #RECURSIVE} matches the tree below it on any level of the
+ * object tree. Both are evaluated by {@link #get(String)} while the tree
+ * is traversed, they are never expanded.
+ * <p>
+ * As a {@link #RECURSIVE} pattern keeps applying to every level below it,
+ * {@link #get(String)} never returns null below it. Used with {@link PropertyTreeUse#INCLUDE},
+ * a tree containing e.g. <code>**.x</code> therefore includes every property on every level,
+ * not only the paths leading to an "x" property, and the "x" properties below it are copied
+ * completely. Use explicit paths or {@link Builder#withDepth(int)} to include only part of a
+ * tree, and {@link #RECURSIVE} patterns to exclude properties on any level.
+ * <p>
+ * A {@link #RECURSIVE} pattern as the last segment of a path, e.g. <code>a.**</code>,
+ * matches every property below its parent as a leaf, like {@link #WILDCARD} does on
+ * a single level. With {@link PropertyTreeUse#EXCLUDE}, it excludes everything below "a",
+ * with {@link PropertyTreeUse#INCLUDE}, it includes everything below "a".
  */
 public class PropertyTree {
+	/**
+	 * Child name matching any property not matched by name.
+	 */
+	public static final String WILDCARD = "*";
+	/**
+	 * Child name matching its subtree on any level below its parent.
+	 * With {@link PropertyTreeUse#INCLUDE}, it includes every property below its parent,
+	 * see the class documentation.
+	 */
+	public static final String RECURSIVE = "**";
+	/**
+	 * Maximum number of parsed expressions cached by {@link #parse(String)}.
+	 */
+	public static final int PARSE_CACHE_SIZE = 256;
+	private static final ParseCache PARSE_CACHE = new ParseCache();
+
 	private final Map<String, PropertyTree> children;
 	private final String propertyName;
+	private final int hashCode;
+	private final PropertyTree wildcard;
+	private final PropertyTree descendants;
+	private final PropertyTree continuation;
 
 	public static final class Builder {
 		private final Map<String, Builder> children = new LinkedHashMap<String, Builder>();
@@ -58,6 +98,43 @@ public class PropertyTree {
 			return child;
 		}
 
+		/**
+		 * Adds a child matching any property.
+		 * @return The builder of the child
+		 */
+		public Builder withAny() {
+			return with(PropertyTree.WILDCARD);
+		}
+
+		/**
+		 * Adds a child matching the following path on any level below this one,
+		 * e.g. <code>withDescendants().with("metadata")</code> selects every
+		 * "metadata" property of the object tree below this node.
+		 * With {@link PropertyTreeUse#INCLUDE}, this includes every property below this node,
+		 * as every property is on the way to a possible match.
+		 * @return The builder of the child
+		 */
+		public Builder withDescendants() {
+			return with(PropertyTree.RECURSIVE);
+		}
+
+		/**
+		 * Adds a path matching all properties down to the given depth, e.g. to include only
+		 * the top levels of the object tree with {@link PropertyTreeUse#INCLUDE}, or to exclude
+		 * everything below a certain depth with {@link PropertyTreeUse#EXCLUDE}.
+		 * @param depth The number of levels to match, must be positive
+		 * @return The builder of the deepest child
+		 */
+		public Builder withDepth(final int depth) {
+			if (depth <= 0) {
+				throw new IllegalArgumentException("Depth must be positive, but was " + depth);
+			}
+			Builder child = this;
+			for (int i = 0; i < depth; i++) {
+				child = child.withAny();
+			}
+			return child;
+		}
 
 		public PropertyTree build() {
 			if (this.parent != null) {
@@ -96,11 +173,60 @@ public class PropertyTree {
 
 	public PropertyTree(final String propertyName, final Map<String, PropertyTree> children) {
 		this.propertyName = propertyName;
-		this.children = Collections.unmodifiableMap(children);
+		this.descendants = children.get(PropertyTree.RECURSIVE);
+		this.children = Collections.unmodifiableMap(this.descendants == null ? children : inheritDescendants(children, this.descendants));
+		this.wildcard = this.children.get(PropertyTree.WILDCARD);
+		this.hashCode = 31 * (propertyName == null ? 0 : propertyName.hashCode()) + this.children.hashCode();
+		if (this.descendants == null) {
+			this.continuation = null;
+		} else if (this.children.size() == 1) {
+			this.continuation = this;
+		} else {
+			this.continuation = new PropertyTree(null, Collections.singletonMap(PropertyTree.RECURSIVE, this.descendants));
+		}
+	}
+
+	/**
+	 * Passes a recursive pattern on to all non-leaf children, so that it still applies
+	 * below properties matched by name.
+	 */
+	private static Map<String, PropertyTree> inheritDescendants(final Map<String, PropertyTree> children, final PropertyTree descendants) {
+		final Map<String, PropertyTree> inheritedChildren = new LinkedHashMap<String, PropertyTree>(children);
+		for (final Map.Entry<String, PropertyTree> entry : inheritedChildren.entrySet()) {
+			final PropertyTree child = entry.getValue();
+			if (!entry.getKey().equals(PropertyTree.RECURSIVE) && !child.isLeaf() && child.descendants != descendants) {
+				final Map<String, PropertyTree> grandChildren = new LinkedHashMap<String, PropertyTree>(child.children);
+				grandChildren.put(PropertyTree.RECURSIVE, descendants);
+				entry.setValue(new PropertyTree(child.propertyName, grandChildren));
+			}
+		}
+		return inheritedChildren;
 	}
 
+	/**
+	 * Gets the subtree for a property. A child with the given name takes precedence
+	 * over a {@link #WILDCARD} child, which takes precedence over a {@link #RECURSIVE} pattern.
+	 * A recursive pattern that does not match the property is returned itself, so it
+	 * keeps applying to the next level. A trailing recursive pattern matches every property
+	 * below its parent as a leaf.
+	 * @param propertyName The name of the property
+	 * @return The subtree for the property, or null if the property is not part of this tree
+	 */
 	public PropertyTree get(final String propertyName) {
-		return isLeaf() ? null : this.children.get(propertyName);
+		if (isLeaf()) {
+			return null;
+		}
+		PropertyTree child = this.children.get(propertyName);
+		if (child == null) {
+			child = this.wildcard;
+		}
+		if (child == null && this.descendants != null) {
+			child = this.descendants.isLeaf() ? this.descendants : this.descendants.get(propertyName);
+			if (child == null) {
+				child = this.continuation;
+			}
+		}
+		return child;
 	}
 
 	public boolean isLeaf() {
@@ -111,4 +237,300 @@ public class PropertyTree {
 		return this.propertyName;
 	}
 
+	/**
+	 * Checks whether a property path is part of this tree, evaluating patterns
+	 * like {@link #get(String)} does.
+	 * @param path The property names along the path, starting below this node
+	 * @return true if every property along the path is part of this tree
+	 */
+	public boolean includes(final String... path) {
+		PropertyTree node = this;
+		for (final String propertyName : path) {
+			node = node.get(propertyName);
+			if (node == null) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/*
+	 * The set operations treat a tree as the set of paths to its nodes,
+	 * and patterns like plain property names. Subtrees not affected by
+	 * an operation are shared with the operands, not copied.
+	 */
+
+	/**
+	 * @param other Another tree
+	 * @return A tree containing all paths contained in this or the other tree
+	 */
+	public PropertyTree union(final PropertyTree other) {
+		if (other == null || other == this || other.isLeaf()) {
+			return this;
+		}
+		if (isLeaf()) {
+			return hasSameName(other) ? other : withChildren(other.children);
+		}
+		Map<String, PropertyTree> result = null;
+		for (final Map.Entry<String, PropertyTree> otherEntry : other.children.entrySet()) {
+			final PropertyTree child = this.children.get(otherEntry.getKey());
+			final PropertyTree union = child == null ? otherEntry.getValue() : child.union(otherEntry.getValue());
+			if (union != child) {
+				result = put(result, otherEntry.getKey(), union);
+			}
+		}
+		if (result == null) {
+			return this;
+		}
+		return isSameChildren(result, other) ? other : withChildren(result);
+	}
+
+	private boolean isSameChildren(final Map<String, PropertyTree> children, final PropertyTree other) {
+		if (children.size() != other.children.size() || !hasSameName(other)) {
+			return false;
+		}
+		for (final Map.Entry<String, PropertyTree> entry : children.entrySet()) {
+			if (!entry.getValue().equals(other.children.get(entry.getKey()))) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * @param other Another tree
+	 * @return A tree containing all paths contained in both this and the other tree
+	 */
+	public PropertyTree intersection(final PropertyTree other) {
+		if (other == this) {
+			return this;
+		}
+		if (other == null || other.isLeaf()) {
+			return isLeaf() ? this : withChildren(Collections.<String, PropertyTree>emptyMap());
+		}
+		Map<String, PropertyTree> result = null;
+		for (final Map.Entry<String, PropertyTree> entry : this.children.entrySet()) {
+			final PropertyTree otherChild = other.children.get(entry.getKey());
+			final PropertyTree intersection = otherChild == null ? null : entry.getValue().intersection(otherChild);
+			if (intersection != entry.getValue()) {
+				result = put(result, entry.getKey(), intersection);
+			}
+		}
+		return result == null ? this : withChildren(result);
+	}
+
+	/**
+	 * @param other Another tree
+	 * @return A tree containing all paths contained in this tree, but not in the other tree, together with their parents
+	 */
+	public PropertyTree difference(final PropertyTree other) {
+		if (other == null || other.isLeaf() || isLeaf()) {
+			return this;
+		}
+		Map<String, PropertyTree> result = null;
+		for (final Map.Entry<String, PropertyTree> entry : this.children.entrySet()) {
+			final PropertyTree otherChild = other.children.get(entry.getKey());
+			if (otherChild != null) {
+				final PropertyTree difference = entry.getValue().difference(otherChild);
+				if (difference.isLeaf()) {
+					result = put(result, entry.getKey(), null);
+				} else if (difference != entry.getValue()) {
+					result = put(result, entry.getKey(), difference);
+				}
+			}
+		}
+		return result == null ? this : withChildren(result);
+	}
+
+	private Map<String, PropertyTree> put(final Map<String, PropertyTree> result, final String propertyName, final PropertyTree child) {
+		final Map<String, PropertyTree> children = result == null ? new LinkedHashMap<String, PropertyTree>(this.children) : result;
+		if (child == null) {
+			children.remove(propertyName);
+		} else {
+			children.put(propertyName, child);
+		}
+		return children;
+	}
+
+	private boolean hasSameName(final PropertyTree other) {
+		return this.propertyName == null ? other.propertyName == null : this.propertyName.equals(other.propertyName);
+	}
+
+	private PropertyTree withChildren(final Map<String, PropertyTree> children) {
+		return new PropertyTree(this.propertyName, children);
+	}
+
+	@Override
+	public boolean equals(final Object o) {
+		if (this == o) {
+			return true;
+		}
+		if (!(o instanceof PropertyTree)) {
+			return false;
+		}
+		final PropertyTree other = (PropertyTree)o;
+		return this.hashCode == other.hashCode
+				&& hasSameName(other)
+				&& this.children.equals(other.children);
+	}
+
+	@Override
+	public int hashCode() {
+		return this.hashCode;
+	}
+
+	/**
+	 * @return The tree in the syntax accepted by {@link #parse(String)}
+	 */
+	@Override
+	public String toString() {
+		final StringBuilder sb = new StringBuilder();
+		if (this.propertyName == null) {
+			appendChildren(sb);
+		} else {
+			sb.append(this.propertyName);
+			if (!isLeaf()) {
+				sb.append('.');
+				if (this.children.size() == 1) {
+					appendChildren(sb);
+				} else {
+					appendChildren(sb.append('{')).append('}');
+				}
+			}
+		}
+		return sb.toString();
+	}
+
+	private StringBuilder appendChildren(final StringBuilder sb) {
+		String separator = "";
+		for (final PropertyTree child : this.children.values()) {
+			sb.append(separator).append(child);
+			separator = ",";
+		}
+		return sb;
+	}
+
+	/**
+	 * Parses a property tree from a compact path expression. The expression is a comma-separated
+	 * list of paths, each path is a dot-separated list of property names, and a list of
+	 * paths in braces continues a path with several children, e.g. <code>"a.b,c.{d,e}"</code>.
+	 * {@link #WILDCARD} and {@link #RECURSIVE} can be used as property names.
+	 * Parsed trees are kept in a bounded cache, so parsing the same expression again
+	 * returns the same instance, also if it is parsed by several threads at once, as long as
+	 * it hasn't been evicted from the cache. The expression is parsed outside of the lock.
+	 * @param expression The path expression
+	 * @return The property tree
+	 * @throws IllegalArgumentException if the expression is not valid
+	 */
+	public static PropertyTree parse(final String expression) {
+		synchronized (PropertyTree.PARSE_CACHE) {
+			final PropertyTree cached = PropertyTree.PARSE_CACHE.get(expression);
+			if (cached != null) {
+				return cached;
+			}
+		}
+		final PropertyTree tree = new Parser(expression).parse();
+		synchronized (PropertyTree.PARSE_CACHE) {
+			final PropertyTree cached = PropertyTree.PARSE_CACHE.get(expression);
+			if (cached != null) {
+				return cached;
+			}
+			PropertyTree.PARSE_CACHE.put(expression, tree);
+		}
+		return tree;
+	}
+
+	private static final class ParseCache extends LinkedHashMap<String, PropertyTree> {
+		private static final long serialVersionUID = 1L;
+
+		ParseCache() {
+			super(16, 0.75f, true);
+		}
+
+		@Override
+		protected boolean removeEldestEntry(final Map.Entry<String, PropertyTree> eldest) {
+			return size() > PropertyTree.PARSE_CACHE_SIZE;
+		}
+	}
+
+	private static final class Parser {
+		private final String expression;
+		private int pos = 0;
+
+		Parser(final String expression) {
+			this.expression = expression;
+		}
+
+		PropertyTree parse() {
+			final Builder builder = new Builder();
+			skipWhitespace();
+			if (this.pos < this.expression.length()) {
+				parseList(builder);
+				if (this.pos < this.expression.length()) {
+					throw error("Unexpected '" + this.expression.charAt(this.pos) + "'");
+				}
+			}
+			return builder.build();
+		}
+
+		private void parseList(final Builder builder) {
+			parsePath(builder);
+			while (accept(',')) {
+				parsePath(builder);
+			}
+		}
+
+		private void parsePath(final Builder builder) {
+			final Builder child = builder.with(parseName());
+			if (accept('.')) {
+				if (accept('{')) {
+					parseList(child);
+					if (!accept('}')) {
+						throw error("Expected '}'");
+					}
+				} else {
+					parsePath(child);
+				}
+			}
+		}
+
+		private String parseName() {
+			final int start = this.pos;
+			while (this.pos < this.expression.length() && isNameChar(this.expression.charAt(this.pos))) {
+				this.pos++;
+			}
+			if (this.pos == start) {
+				throw error("Expected property name");
+			}
+			final String name = this.expression.substring(start, this.pos);
+			if (name.indexOf('*') >= 0 && !name.equals(PropertyTree.WILDCARD) && !name.equals(PropertyTree.RECURSIVE)) {
+				throw error("Invalid pattern \"" + name + "\"");
+			}
+			skipWhitespace();
+			return name;
+		}
+
+		private static boolean isNameChar(final char c) {
+			return Character.isJavaIdentifierPart(c) || c == '*';
+		}
+
+		private boolean accept(final char c) {
+			if (this.pos < this.expression.length() && this.expression.charAt(this.pos) == c) {
+				this.pos++;
+				skipWhitespace();
+				return true;
+			}
+			return false;
+		}
+
+		private void skipWhitespace() {
+			while (this.pos < this.expression.length() && Character.isWhitespace(this.expression.charAt(this.pos))) {
+				this.pos++;
+			}
+		}
+
+		private IllegalArgumentException error(final String message) {
+			return new IllegalArgumentException(message + " at position " + this.pos + " in property tree expression \"" + this.expression + "\"");
+		}
+	}
 }
@@ -36,6 +36,7 @@ public class Selector<TRoot extends Selector<TRoot, ?>, TParent> {
 	public final TParent _parent;
 	protected final String _propertyName;
 	protected final boolean _include;
+	private volatile PropertyTree _tree = null;
 
 	@SuppressWarnings("unchecked")
 	public Selector(final TRoot root, final TParent parent, final String propertyName, final boolean include) {
@@ -43,6 +44,10 @@ public class Selector<TRoot extends Selector<TRoot, ?>, TParent> {
 			this._parent = parent;
 			this._propertyName = propertyName;
 			this._include = include;
+			if (root != null) {
+				// A new child node changes the tree built by the root
+				((Selector<?, ?>)root)._tree = null;
+			}
 	}
 
 	public Selector(final TRoot root, final TParent parent, final String propertyName) {
@@ -58,11 +63,21 @@ public class Selector<TRoot extends Selector<TRoot, ?>, TParent> {
 	}
 
 	/**
-	 * Builds a property tree specified by this selector
+	 * Builds a property tree specified by this selector.
+	 * The tree is built once and cached in the root selector, so
+	 * repeated calls return the same instance until another
+	 * property is selected. Selecting properties is not thread-safe,
+	 * but a completely selected tree can be built concurrently.
 	 * @return A property tree specified by this selector
 	 */
 	public PropertyTree build() {
-		return this._root.init();
+		final Selector<TRoot, ?> root = this._root;
+		PropertyTree tree = root._tree;
+		if (tree == null) {
+			tree = root.init();
+			root._tree = tree;
+		}
+		return tree;
 	}
 
 	/**
@@ -0,0 +1,118 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2014 Klemm Software Consulting, Mirko Klemm
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.kscs.util.jaxb;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import javax.xml.namespace.QName;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+/**
+ * Reads the items of a repeating child element one at a time,
+ * without building the object containing the collection.
+ * Only the item being read is held in memory, so arbitrarily
+ * large documents can be processed in constant space.
+ * Instances are returned by the generated <code>stream&lt;Property&gt;</code> methods.
+ * @param <T> The item type
+ */
+public abstract class StaxCollectionReader<T> {
+	private final XMLStreamReader reader;
+	private final QName itemName;
+	private boolean pending = false;
+	private boolean finished = false;
+
+	/**
+	 * @param reader The reader, positioned at the start of the document
+	 *               or at the start tag of the element containing the items.
+	 * @param itemName The name of the item elements. All other child
+	 *                 elements are skipped.
+	 */
+	protected StaxCollectionReader(final XMLStreamReader reader, final QName itemName) throws XMLStreamException {
+		this.reader = reader;
+		this.itemName = itemName;
+		if (reader.getEventType() == XMLStreamConstants.START_DOCUMENT) {
+			reader.nextTag();
+		}
+		if (reader.getEventType() != XMLStreamConstants.START_ELEMENT) {
+			throw new XMLStreamException("Reader must be positioned at the start of an element", reader.getLocation());
+		}
+	}
+
+	/**
+	 * Advances the reader to the next item element.
+	 * @return true if there is another item, false if the end tag
+	 * of the containing element has been reached.
+	 */
+	public boolean hasNext() throws XMLStreamException {
+		while (!this.pending && !this.finished) {
+			final int event = this.reader.next();
+			if (event == XMLStreamConstants.START_ELEMENT) {
+				if (this.itemName.getLocalPart().equals(this.reader.getLocalName()) && this.itemName.getNamespaceURI().equals(StaxReading.namespaceUri(this.reader.getNamespaceURI()))) {
+					this.pending = true;
+				} else {
+					StaxReading.skipElement(this.reader);
+				}
+			} else if (event == XMLStreamConstants.END_ELEMENT || event == XMLStreamConstants.END_DOCUMENT) {
+				this.finished = true;
+			}
+		}
+		return this.pending;
+	}
+
+	/**
+	 * Reads the next item.
+	 * @return The fully built item
+	 * @throws NoSuchElementException if there are no more items
+	 */
+	public T next() throws XMLStreamException {
+		if (!hasNext()) {
+			throw new NoSuchElementException();
+		}
+		this.pending = false;
+		return readItem(this.reader);
+	}
+
+	/**
+	 * Reads up to <code>maxSize</code> items into a new list, which
+	 * can be handed over to another thread for processing.
+	 * @return The items read, an empty list if there are no more items
+	 */
+	public List<T> nextBatch(final int maxSize) throws XMLStreamException {
+		final List<T> batch = new ArrayList<>(maxSize);
+		while (batch.size() < maxSize && hasNext()) {
+			batch.add(next());
+		}
+		return batch;
+	}
+
+	/**
+	 * Reads a single item, leaving the reader positioned at its end tag.
+	 */
+	protected abstract T readItem(final XMLStreamReader reader) throws XMLStreamException;
+}
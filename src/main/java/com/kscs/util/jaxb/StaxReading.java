@@ -0,0 +1,270 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2014 Klemm Software Consulting, Mirko Klemm
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.kscs.util.jaxb;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.xml.XMLConstants;
+import javax.xml.bind.DatatypeConverter;
+import javax.xml.bind.annotation.adapters.XmlAdapter;
+import javax.xml.datatype.DatatypeConfigurationException;
+import javax.xml.datatype.DatatypeFactory;
+import javax.xml.datatype.Duration;
+import javax.xml.datatype.XMLGregorianCalendar;
+import javax.xml.namespace.QName;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+
+/**
+ * Static helpers used by the generated <code>readFrom</code> methods.
+ */
+public final class StaxReading {
+	private static final DatatypeFactory DATATYPE_FACTORY = newDatatypeFactory();
+	private static final ThreadLocal<DocumentBuilderFactory> DOCUMENT_BUILDER_FACTORY = new ThreadLocal<DocumentBuilderFactory>() {
+		@Override
+		protected DocumentBuilderFactory initialValue() {
+			final DocumentBuilderFactory documentBuilderFactory = DocumentBuilderFactory.newInstance();
+			documentBuilderFactory.setNamespaceAware(true);
+			return documentBuilderFactory;
+		}
+	};
+
+	private StaxReading() {
+	}
+
+	/**
+	 * Normalizes the namespace URI reported by a reader, which may
+	 * be null for names without namespace.
+	 */
+	public static String namespaceUri(final String namespaceUri) {
+		return namespaceUri == null ? XMLConstants.NULL_NS_URI : namespaceUri;
+	}
+
+	/**
+	 * @return The value of the "xsi:type" attribute of the current element, or null if there is none
+	 */
+	public static QName xsiType(final XMLStreamReader reader) throws XMLStreamException {
+		final String value = reader.getAttributeValue(XMLConstants.W3C_XML_SCHEMA_INSTANCE_NS_URI, "type");
+		return value == null ? null : parseQName(reader, value);
+	}
+
+	/**
+	 * Skips the current element if it has an attribute "xsi:nil" with the value "true".
+	 * @return true if the element has been skipped
+	 */
+	public static boolean readNil(final XMLStreamReader reader) throws XMLStreamException {
+		final String value = reader.getAttributeValue(XMLConstants.W3C_XML_SCHEMA_INSTANCE_NS_URI, "nil");
+		if (value != null && DatatypeConverter.parseBoolean(value)) {
+			skipElement(reader);
+			return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Skips the current element including its content, leaving
+	 * the reader positioned at its end tag.
+	 */
+	public static void skipElement(final XMLStreamReader reader) throws XMLStreamException {
+		int depth = 1;
+		while (depth > 0) {
+			final int event = reader.next();
+			if (event == XMLStreamConstants.START_ELEMENT) {
+				depth++;
+			} else if (event == XMLStreamConstants.END_ELEMENT) {
+				depth--;
+			}
+		}
+	}
+
+	/**
+	 * Reads the current element into a new DOM element, leaving
+	 * the reader positioned at its end tag.
+	 */
+	public static Element readElement(final XMLStreamReader reader) throws XMLStreamException {
+		final Document document;
+		try {
+			document = StaxReading.DOCUMENT_BUILDER_FACTORY.get().newDocumentBuilder().newDocument();
+		} catch (final ParserConfigurationException e) {
+			throw new XMLStreamException(e);
+		}
+		final Element element = createElement(document, reader);
+		document.appendChild(element);
+		Node current = element;
+		while (current != null) {
+			switch (reader.next()) {
+				case XMLStreamConstants.START_ELEMENT:
+					current = current.appendChild(createElement(document, reader));
+					break;
+				case XMLStreamConstants.END_ELEMENT:
+					current = current == element ? null : current.getParentNode();
+					break;
+				case XMLStreamConstants.CHARACTERS:
+				case XMLStreamConstants.SPACE:
+					current.appendChild(document.createTextNode(reader.getText()));
+					break;
+				case XMLStreamConstants.CDATA:
+					current.appendChild(document.createCDATASection(reader.getText()));
+					break;
+				case XMLStreamConstants.COMMENT:
+					current.appendChild(document.createComment(reader.getText()));
+					break;
+				case XMLStreamConstants.PROCESSING_INSTRUCTION:
+					current.appendChild(document.createProcessingInstruction(reader.getPITarget(), reader.getPIData()));
+					break;
+				default:
+					break;
+			}
+		}
+		return element;
+	}
+
+	public static boolean parseBoolean(final String text) {
+		return DatatypeConverter.parseBoolean(text);
+	}
+
+	public static byte parseByte(final String text) {
+		return DatatypeConverter.parseByte(text);
+	}
+
+	public static short parseShort(final String text) {
+		return DatatypeConverter.parseShort(text);
+	}
+
+	public static int parseInt(final String text) {
+		return DatatypeConverter.parseInt(text);
+	}
+
+	public static long parseLong(final String text) {
+		return DatatypeConverter.parseLong(text);
+	}
+
+	public static float parseFloat(final String text) {
+		return DatatypeConverter.parseFloat(text);
+	}
+
+	public static double parseDouble(final String text) {
+		return DatatypeConverter.parseDouble(text);
+	}
+
+	public static BigInteger parseInteger(final String text) {
+		return DatatypeConverter.parseInteger(text);
+	}
+
+	public static BigDecimal parseDecimal(final String text) {
+		return DatatypeConverter.parseDecimal(text);
+	}
+
+	public static XMLGregorianCalendar parseCalendar(final String text) {
+		return StaxReading.DATATYPE_FACTORY.newXMLGregorianCalendar(text.trim());
+	}
+
+	public static Duration parseDuration(final String text) {
+		return StaxReading.DATATYPE_FACTORY.newDuration(text.trim());
+	}
+
+	public static byte[] parseBase64(final String text) {
+		return DatatypeConverter.parseBase64Binary(text);
+	}
+
+	/**
+	 * Resolves a prefixed name against the namespace declarations
+	 * in scope of the current element.
+	 */
+	public static QName parseQName(final XMLStreamReader reader, final String text) throws XMLStreamException {
+		final String name = text.trim();
+		final int colon = name.indexOf(':');
+		final String prefix = colon < 0 ? XMLConstants.DEFAULT_NS_PREFIX : name.substring(0, colon);
+		final String namespaceUri = reader.getNamespaceURI(prefix);
+		if (namespaceUri == null && colon >= 0) {
+			throw new XMLStreamException("Undeclared namespace prefix \"" + prefix + "\"", reader.getLocation());
+		}
+		return new QName(namespaceUri(namespaceUri), name.substring(colon + 1), prefix);
+	}
+
+	/**
+	 * Splits the lexical representation of a list type into its items.
+	 */
+	public static List<String> tokens(final String text) {
+		final List<String> tokens = new ArrayList<>();
+		int start = -1;
+		for (int i = 0; i < text.length(); i++) {
+			if (Character.isWhitespace(text.charAt(i))) {
+				if (start >= 0) {
+					tokens.add(text.substring(start, i));
+					start = -1;
+				}
+			} else if (start < 0) {
+				start = i;
+			}
+		}
+		if (start >= 0) {
+			tokens.add(text.substring(start));
+		}
+		return tokens;
+	}
+
+	public static <V, B> B unmarshal(final XmlAdapter<V, B> adapter, final V value) throws XMLStreamException {
+		try {
+			return value == null ? null : adapter.unmarshal(value);
+		} catch (final Exception e) {
+			throw new XMLStreamException(e);
+		}
+	}
+
+	private static Element createElement(final Document document, final XMLStreamReader reader) {
+		final String prefix = reader.getPrefix();
+		final String namespaceUri = reader.getNamespaceURI();
+		final Element element = document.createElementNS(namespaceUri == null || namespaceUri.isEmpty() ? null : namespaceUri, prefix == null || prefix.isEmpty() ? reader.getLocalName() : prefix + ":" + reader.getLocalName());
+		for (int i = 0; i < reader.getNamespaceCount(); i++) {
+			final String namespacePrefix = reader.getNamespacePrefix(i);
+			element.setAttributeNS(XMLConstants.XMLNS_ATTRIBUTE_NS_URI, namespacePrefix == null || namespacePrefix.isEmpty() ? XMLConstants.XMLNS_ATTRIBUTE : XMLConstants.XMLNS_ATTRIBUTE + ":" + namespacePrefix, namespaceUri(reader.getNamespaceURI(i)));
+		}
+		for (int i = 0; i < reader.getAttributeCount(); i++) {
+			final String attributePrefix = reader.getAttributePrefix(i);
+			final String attributeNamespace = reader.getAttributeNamespace(i);
+			element.setAttributeNS(attributeNamespace == null || attributeNamespace.isEmpty() ? null : attributeNamespace, attributePrefix == null || attributePrefix.isEmpty() ? reader.getAttributeLocalName(i) : attributePrefix + ":" + reader.getAttributeLocalName(i), reader.getAttributeValue(i));
+		}
+		return element;
+	}
+
+	private static DatatypeFactory newDatatypeFactory() {
+		try {
+			return DatatypeFactory.newInstance();
+		} catch (final DatatypeConfigurationException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+}
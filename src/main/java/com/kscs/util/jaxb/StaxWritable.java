@@ -0,0 +1,59 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2014 Klemm Software Consulting, Mirko Klemm
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.kscs.util.jaxb;
+
+import javax.xml.namespace.QName;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+
+/**
+ * Implemented by generated classes that can write themselves
+ * to an {@link XMLStreamWriter} without the JAXB runtime.
+ */
+public interface StaxWritable {
+	/**
+	 * Writes this object as an XML element.
+	 * @param writer The writer to write to
+	 * @param elementName The name of the element
+	 * @param xsiType The type name to write as "xsi:type" attribute, or null
+	 * @throws XMLStreamException if writing fails
+	 */
+	void writeTo(XMLStreamWriter writer, QName elementName, QName xsiType) throws XMLStreamException;
+
+	/**
+	 * @return The name of the XML schema type of this object, or null if the type is anonymous
+	 */
+	QName xmlTypeName();
+
+	/**
+	 * @return The name of the global XML element of this object, or null if it is not a global element
+	 */
+	QName xmlElementName();
+
+	/**
+	 * @return The value of the "xs:ID" property of this object, or null if there is none
+	 */
+	String xmlId();
+}
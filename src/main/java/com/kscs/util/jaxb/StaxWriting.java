@@ -0,0 +1,335 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2014 Klemm Software Consulting, Mirko Klemm
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.kscs.util.jaxb;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+import javax.xml.XMLConstants;
+import javax.xml.bind.DatatypeConverter;
+import javax.xml.bind.JAXBElement;
+import javax.xml.bind.annotation.adapters.XmlAdapter;
+import javax.xml.datatype.Duration;
+import javax.xml.datatype.XMLGregorianCalendar;
+import javax.xml.namespace.NamespaceContext;
+import javax.xml.namespace.QName;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+
+import org.w3c.dom.Attr;
+import org.w3c.dom.NamedNodeMap;
+import org.w3c.dom.Node;
+
+/**
+ * Static helpers used by the generated {@link StaxWritable#writeTo} methods.
+ * Namespace prefixes are declared on demand, so the writer need not
+ * be namespace-repairing.
+ */
+public final class StaxWriting {
+	private static final String PREFIX_STEM = "ns";
+	private static final QName XSI_TYPE = new QName(XMLConstants.W3C_XML_SCHEMA_INSTANCE_NS_URI, "type", "xsi");
+	private static final QName XSI_NIL = new QName(XMLConstants.W3C_XML_SCHEMA_INSTANCE_NS_URI, "nil", "xsi");
+
+	private StaxWriting() {
+	}
+
+	public static void writeStartElement(final XMLStreamWriter writer, final QName name) throws XMLStreamException {
+		final String namespaceUri = name.getNamespaceURI();
+		if (namespaceUri.isEmpty()) {
+			writer.writeStartElement(name.getLocalPart());
+		} else {
+			final String prefix = writer.getPrefix(namespaceUri);
+			if (prefix == null) {
+				final String newPrefix = newPrefix(writer.getNamespaceContext(), name.getPrefix());
+				writer.writeStartElement(newPrefix, name.getLocalPart(), namespaceUri);
+				writer.writeNamespace(newPrefix, namespaceUri);
+			} else {
+				writer.writeStartElement(prefix, name.getLocalPart(), namespaceUri);
+			}
+		}
+	}
+
+	public static void writeAttribute(final XMLStreamWriter writer, final QName name, final String value) throws XMLStreamException {
+		if (value != null) {
+			final String namespaceUri = name.getNamespaceURI();
+			if (namespaceUri.isEmpty()) {
+				writer.writeAttribute(name.getLocalPart(), value);
+			} else {
+				writer.writeAttribute(prefix(writer, namespaceUri, name.getPrefix()), namespaceUri, name.getLocalPart(), value);
+			}
+		}
+	}
+
+	public static void writeXsiType(final XMLStreamWriter writer, final QName typeName) throws XMLStreamException {
+		writeAttribute(writer, StaxWriting.XSI_TYPE, printQName(writer, typeName));
+	}
+
+	public static void writeNil(final XMLStreamWriter writer, final QName name) throws XMLStreamException {
+		writeStartElement(writer, name);
+		writeAttribute(writer, StaxWriting.XSI_NIL, "true");
+		writer.writeEndElement();
+	}
+
+	public static void writeSimpleElement(final XMLStreamWriter writer, final QName name, final String text) throws XMLStreamException {
+		writeStartElement(writer, name);
+		if (text != null) {
+			writer.writeCharacters(text);
+		}
+		writer.writeEndElement();
+	}
+
+	/**
+	 * Writes an object of a generated class as element. If the runtime class of
+	 * the object differs from the declared type, an "xsi:type" attribute is written.
+	 */
+	public static void writeElement(final XMLStreamWriter writer, final QName name, final StaxWritable value, final Class<?> declaredType) throws XMLStreamException {
+		value.writeTo(writer, name, value.getClass() == declaredType ? null : value.xmlTypeName());
+	}
+
+	/**
+	 * Writes an element whose type is not known at generation time, e.g. of type "xs:anyType".
+	 */
+	public static void writeElement(final XMLStreamWriter writer, final QName name, final Object value) throws XMLStreamException {
+		if (value instanceof StaxWritable) {
+			writeElement(writer, name, (StaxWritable)value, Object.class);
+		} else if (value instanceof Node) {
+			writeStartElement(writer, name);
+			final Node node = (Node)value;
+			for (Node child = node.getFirstChild(); child != null; child = child.getNextSibling()) {
+				writeNode(writer, child);
+			}
+			writer.writeEndElement();
+		} else {
+			writeSimpleElement(writer, name, print(writer, value));
+		}
+	}
+
+	/**
+	 * Writes an item of a mixed, wildcard or element reference property,
+	 * i.e. a String, a {@link JAXBElement}, a DOM node or an object of a generated root element class.
+	 */
+	public static void writeItem(final XMLStreamWriter writer, final Object item) throws XMLStreamException {
+		if (item instanceof String) {
+			writer.writeCharacters((String)item);
+		} else if (item instanceof JAXBElement) {
+			final JAXBElement<?> element = (JAXBElement<?>)item;
+			if (element.isNil()) {
+				writeNil(writer, element.getName());
+			} else if (element.getValue() instanceof StaxWritable) {
+				writeElement(writer, element.getName(), (StaxWritable)element.getValue(), element.getDeclaredType());
+			} else {
+				writeElement(writer, element.getName(), element.getValue());
+			}
+		} else if (item instanceof StaxWritable) {
+			final StaxWritable writable = (StaxWritable)item;
+			final QName elementName = writable.xmlElementName();
+			if (elementName == null) {
+				throw new XMLStreamException("Object of type " + item.getClass().getName() + " is not a global element");
+			}
+			writable.writeTo(writer, elementName, null);
+		} else if (item instanceof Node) {
+			writeNode(writer, (Node)item);
+		} else if (item != null) {
+			throw new XMLStreamException("Cannot write object of type " + item.getClass().getName());
+		}
+	}
+
+	public static void writeNode(final XMLStreamWriter writer, final Node node) throws XMLStreamException {
+		switch (node.getNodeType()) {
+			case Node.ELEMENT_NODE:
+				writeStartElement(writer, new QName(node.getNamespaceURI() == null ? XMLConstants.NULL_NS_URI : node.getNamespaceURI(), node.getLocalName() == null ? node.getNodeName() : node.getLocalName(), node.getPrefix() == null ? XMLConstants.DEFAULT_NS_PREFIX : node.getPrefix()));
+				final NamedNodeMap attributes = node.getAttributes();
+				for (int i = 0; i < attributes.getLength(); i++) {
+					final Attr attr = (Attr)attributes.item(i);
+					if (!XMLConstants.XMLNS_ATTRIBUTE_NS_URI.equals(attr.getNamespaceURI())) {
+						writeAttribute(writer, new QName(attr.getNamespaceURI() == null ? XMLConstants.NULL_NS_URI : attr.getNamespaceURI(), attr.getLocalName() == null ? attr.getName() : attr.getLocalName(), attr.getPrefix() == null ? XMLConstants.DEFAULT_NS_PREFIX : attr.getPrefix()), attr.getValue());
+					}
+				}
+				for (Node child = node.getFirstChild(); child != null; child = child.getNextSibling()) {
+					writeNode(writer, child);
+				}
+				writer.writeEndElement();
+				break;
+			case Node.TEXT_NODE:
+				writer.writeCharacters(node.getNodeValue());
+				break;
+			case Node.CDATA_SECTION_NODE:
+				writer.writeCData(node.getNodeValue());
+				break;
+			case Node.COMMENT_NODE:
+				writer.writeComment(node.getNodeValue());
+				break;
+			case Node.PROCESSING_INSTRUCTION_NODE:
+				writer.writeProcessingInstruction(node.getNodeName(), node.getNodeValue());
+				break;
+			default:
+				break;
+		}
+	}
+
+	public static String print(final boolean value) {
+		return value ? "true" : "false";
+	}
+
+	public static String print(final byte value) {
+		return Byte.toString(value);
+	}
+
+	public static String print(final short value) {
+		return Short.toString(value);
+	}
+
+	public static String print(final int value) {
+		return Integer.toString(value);
+	}
+
+	public static String print(final long value) {
+		return Long.toString(value);
+	}
+
+	public static String print(final float value) {
+		return DatatypeConverter.printFloat(value);
+	}
+
+	public static String print(final double value) {
+		return DatatypeConverter.printDouble(value);
+	}
+
+	public static String print(final String value) {
+		return value;
+	}
+
+	/**
+	 * Converts a value of a simple type to its lexical representation.
+	 * @param writer The writer, needed to declare the prefix of a {@link QName} value
+	 * @param value The value
+	 * @return The lexical representation, or null if value is null
+	 */
+	public static String print(final XMLStreamWriter writer, final Object value) throws XMLStreamException {
+		if (value == null) {
+			return null;
+		} else if (value instanceof String) {
+			return (String)value;
+		} else if (value instanceof Float) {
+			return DatatypeConverter.printFloat((Float)value);
+		} else if (value instanceof Double) {
+			return DatatypeConverter.printDouble((Double)value);
+		} else if (value instanceof BigDecimal) {
+			return ((BigDecimal)value).toPlainString();
+		} else if (value instanceof XMLGregorianCalendar) {
+			return ((XMLGregorianCalendar)value).toXMLFormat();
+		} else if (value instanceof Duration) {
+			return value.toString();
+		} else if (value instanceof byte[]) {
+			return DatatypeConverter.printBase64Binary((byte[])value);
+		} else if (value instanceof QName) {
+			return printQName(writer, (QName)value);
+		} else if (value instanceof Enum) {
+			return ((Enum<?>)value).name();
+		} else if (value instanceof StaxWritable) {
+			return printIdRef(value);
+		} else {
+			return value.toString();
+		}
+	}
+
+	public static String printQName(final XMLStreamWriter writer, final QName value) throws XMLStreamException {
+		if (value == null) {
+			return null;
+		} else if (value.getNamespaceURI().isEmpty()) {
+			return value.getLocalPart();
+		} else {
+			return prefix(writer, value.getNamespaceURI(), value.getPrefix()) + ":" + value.getLocalPart();
+		}
+	}
+
+	/**
+	 * Converts the items of an "xs:list" type to a space-separated string.
+	 */
+	public static String printList(final XMLStreamWriter writer, final List<?> values) throws XMLStreamException {
+		if (values == null) {
+			return null;
+		}
+		final StringBuilder sb = new StringBuilder();
+		for (final Object value : values) {
+			if (sb.length() > 0) {
+				sb.append(' ');
+			}
+			sb.append(print(writer, value));
+		}
+		return sb.toString();
+	}
+
+	/**
+	 * Gets the ID of an object referenced by an "xs:IDREF" property.
+	 */
+	public static String printIdRef(final Object value) throws XMLStreamException {
+		if (value == null) {
+			return null;
+		} else if (value instanceof StaxWritable) {
+			return ((StaxWritable)value).xmlId();
+		} else {
+			throw new XMLStreamException("Cannot determine the ID of an object of type " + value.getClass().getName());
+		}
+	}
+
+	public static <V, B> V marshal(final XmlAdapter<V, B> adapter, final B value) throws XMLStreamException {
+		try {
+			return value == null ? null : adapter.marshal(value);
+		} catch (final Exception e) {
+			throw new XMLStreamException(e);
+		}
+	}
+
+	private static String prefix(final XMLStreamWriter writer, final String namespaceUri, final String preferredPrefix) throws XMLStreamException {
+		if (XMLConstants.XML_NS_URI.equals(namespaceUri)) {
+			return XMLConstants.XML_NS_PREFIX;
+		}
+		final String prefix = writer.getPrefix(namespaceUri);
+		if (prefix != null && !prefix.isEmpty()) {
+			return prefix;
+		}
+		final String newPrefix = newPrefix(writer.getNamespaceContext(), preferredPrefix);
+		writer.writeNamespace(newPrefix, namespaceUri);
+		return newPrefix;
+	}
+
+	private static String newPrefix(final NamespaceContext namespaceContext, final String preferredPrefix) {
+		if (preferredPrefix != null && !preferredPrefix.isEmpty() && isUnbound(namespaceContext, preferredPrefix)) {
+			return preferredPrefix;
+		}
+		for (int i = 1; ; i++) {
+			final String prefix = StaxWriting.PREFIX_STEM + i;
+			if (isUnbound(namespaceContext, prefix)) {
+				return prefix;
+			}
+		}
+	}
+
+	private static boolean isUnbound(final NamespaceContext namespaceContext, final String prefix) {
+		final String boundUri = namespaceContext.getNamespaceURI(prefix);
+		return boundUri == null || boundUri.isEmpty();
+	}
+}
@@ -0,0 +1,189 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2014 Klemm Software Consulting, Mirko Klemm
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.kscs.util.jaxb;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.xml.datatype.Duration;
+import javax.xml.datatype.XMLGregorianCalendar;
+import javax.xml.namespace.QName;
+
+/**
+ * Builds a buffer in the random-access layout read by the generated
+ * view classes. Each object is a block of fixed-size slots, in which
+ * primitive values are stored directly, boxed primitive values behind
+ * a presence byte, and all other values as the offset of a separate block,
+ * or 0 for null.
+ * Equal strings are stored only once.
+ */
+public final class ViewOutput {
+	static final byte[] MAGIC = {'J', 'X', 'V'};
+	static final int FORMAT_VERSION = 1;
+	static final int ROOT_POSITION = 12;
+	static final int HEADER_SIZE = 16;
+
+	private final Map<String, Integer> strings = new HashMap<>();
+	private byte[] buffer = new byte[1024];
+	private int size = 0;
+
+	/**
+	 * @param fingerprint The "BINARY_FINGERPRINT" of the generated classes.
+	 */
+	public ViewOutput(final long fingerprint) {
+		allocate(ViewOutput.HEADER_SIZE);
+		for (int i = 0; i < ViewOutput.MAGIC.length; i++) {
+			putByte(i, ViewOutput.MAGIC[i]);
+		}
+		putByte(ViewOutput.MAGIC.length, (byte)ViewOutput.FORMAT_VERSION);
+		putLong(4, fingerprint);
+	}
+
+	/**
+	 * Reserves a new zero-filled block.
+	 * @return The offset of the block
+	 */
+	public int allocate(final int blockSize) {
+		final int offset = this.size;
+		if (offset + blockSize > this.buffer.length) {
+			this.buffer = Arrays.copyOf(this.buffer, Math.max(this.buffer.length * 2, offset + blockSize));
+		}
+		this.size += blockSize;
+		return offset;
+	}
+
+	/**
+	 * Reserves a new block and stores its offset in the given slot.
+	 * @return The offset of the block
+	 */
+	public int allocateAt(final int position, final int blockSize) {
+		final int offset = allocate(blockSize);
+		putInt(position, offset);
+		return offset;
+	}
+
+	/**
+	 * Stores the offset of the object returned by the view classes' <code>of</code> methods.
+	 */
+	public void setRoot(final int offset) {
+		putInt(ViewOutput.ROOT_POSITION, offset);
+	}
+
+	public void putBoolean(final int position, final boolean value) {
+		putByte(position, (byte)(value ? 1 : 0));
+	}
+
+	public void putByte(final int position, final byte value) {
+		this.buffer[position] = value;
+	}
+
+	public void putShort(final int position, final short value) {
+		this.buffer[position] = (byte)(value >>> 8);
+		this.buffer[position + 1] = (byte)value;
+	}
+
+	public void putInt(final int position, final int value) {
+		for (int i = 0; i < 4; i++) {
+			this.buffer[position + i] = (byte)(value >>> (24 - 8 * i));
+		}
+	}
+
+	public void putLong(final int position, final long value) {
+		for (int i = 0; i < 8; i++) {
+			this.buffer[position + i] = (byte)(value >>> (56 - 8 * i));
+		}
+	}
+
+	public void putFloat(final int position, final float value) {
+		putInt(position, Float.floatToIntBits(value));
+	}
+
+	public void putDouble(final int position, final double value) {
+		putLong(position, Double.doubleToLongBits(value));
+	}
+
+	/**
+	 * Stores a string, or the offset of an equal string stored before,
+	 * and stores its offset in the given slot.
+	 */
+	public void putString(final int position, final String value) {
+		if (value != null) {
+			Integer offset = this.strings.get(value);
+			if (offset == null) {
+				offset = putBytesBlock(value.getBytes(StandardCharsets.UTF_8));
+				this.strings.put(value, offset);
+			}
+			putInt(position, offset);
+		}
+	}
+
+	public void putBytes(final int position, final byte[] value) {
+		if (value != null) {
+			putInt(position, putBytesBlock(value));
+		}
+	}
+
+	public void putBigInteger(final int position, final BigInteger value) {
+		putString(position, value == null ? null : value.toString());
+	}
+
+	public void putBigDecimal(final int position, final BigDecimal value) {
+		putString(position, value == null ? null : value.toString());
+	}
+
+	public void putCalendar(final int position, final XMLGregorianCalendar value) {
+		putString(position, value == null ? null : value.toXMLFormat());
+	}
+
+	public void putDuration(final int position, final Duration value) {
+		putString(position, value == null ? null : value.toString());
+	}
+
+	public void putQName(final int position, final QName value) {
+		putString(position, value == null ? null : value.toString());
+	}
+
+	public ByteBuffer toByteBuffer() {
+		return ByteBuffer.wrap(this.buffer, 0, this.size).slice();
+	}
+
+	public void writeTo(final OutputStream out) throws IOException {
+		out.write(this.buffer, 0, this.size);
+	}
+
+	private int putBytesBlock(final byte[] value) {
+		final int offset = allocate(4 + value.length);
+		putInt(offset, value.length);
+		System.arraycopy(value, 0, this.buffer, offset + 4, value.length);
+		return offset;
+	}
+}
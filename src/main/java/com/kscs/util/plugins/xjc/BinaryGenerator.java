@@ -0,0 +1,411 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2014 Klemm Software Consulting, Mirko Klemm
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.kscs.util.plugins.xjc;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Externalizable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
+import java.io.OutputStream;
+import java.io.StreamCorruptedException;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.kscs.util.jaxb.BinaryInput;
+import com.kscs.util.jaxb.BinaryOutput;
+import com.kscs.util.jaxb.BinaryWritable;
+import com.kscs.util.plugins.xjc.base.PluginUtil;
+import com.sun.codemodel.ClassType;
+import com.sun.codemodel.JBlock;
+import com.sun.codemodel.JClass;
+import com.sun.codemodel.JConditional;
+import com.sun.codemodel.JDefinedClass;
+import com.sun.codemodel.JExpr;
+import com.sun.codemodel.JExpression;
+import com.sun.codemodel.JFieldRef;
+import com.sun.codemodel.JFieldVar;
+import com.sun.codemodel.JForEach;
+import com.sun.codemodel.JForLoop;
+import com.sun.codemodel.JInvocation;
+import com.sun.codemodel.JMethod;
+import com.sun.codemodel.JMod;
+import com.sun.codemodel.JSwitch;
+import com.sun.codemodel.JType;
+import com.sun.codemodel.JVar;
+import com.sun.tools.xjc.outline.ClassOutline;
+import com.sun.tools.xjc.outline.FieldOutline;
+
+/**
+ * Generates the {@link BinaryWritable} implementation and the
+ * static <code>readBinary</code> methods of a class, which write the fields of an object in declaration
+ * order to a {@link BinaryOutput}, and read them back from a {@link BinaryInput}.
+ */
+class BinaryGenerator {
+	static final String OUTPUT_PARAM_NAME = "_output";
+	static final String INPUT_PARAM_NAME = "_input";
+	static final String STREAM_PARAM_NAME = "_stream";
+	static final String TYPE_ID_PARAM_NAME = "_typeId";
+	static final String VALUE_VAR_NAME = "_value";
+	static final String PRESENT_VAR_NAME = "_present";
+	static final String ITEM_VAR_NAME = "_item";
+	static final String SIZE_VAR_NAME = "_size";
+	static final String FINGERPRINT_FIELD_NAME = "BINARY_FINGERPRINT";
+	static final String WRITE_BINARY_METHOD_NAME = "writeBinary";
+	static final String WRITE_FIELDS_METHOD_NAME = "writeBinaryFields";
+	static final String READ_BINARY_METHOD_NAME = "readBinary";
+	static final String READ_FIELDS_METHOD_NAME = "readBinaryFields";
+	static final String OBJECT_OUTPUT_PARAM_NAME = "_out";
+	static final String OBJECT_INPUT_PARAM_NAME = "_in";
+	static final String BYTES_VAR_NAME = "_bytes";
+
+	private final PluginContext pluginContext;
+	private final ClassOutline classOutline;
+	private final JDefinedClass definedClass;
+	private final int typeId;
+	private final boolean hasSuperClass;
+	private final boolean hasCollectionProxies;
+	private final List<BinaryField> fields = new ArrayList<>();
+	private final List<FieldOutline> unsupportedFields = new ArrayList<>();
+
+	BinaryGenerator(final PluginContext pluginContext, final ClassOutline classOutline, final int typeId) {
+		this.pluginContext = pluginContext;
+		this.classOutline = classOutline;
+		this.definedClass = classOutline.implClass;
+		this.typeId = typeId;
+		this.hasSuperClass = classOutline.target.getBaseClass() != null || classOutline.target.getRefBaseClass() != null;
+		final BoundPropertiesPlugin boundPropertiesPlugin = pluginContext.findPlugin(BoundPropertiesPlugin.class);
+		this.hasCollectionProxies = boundPropertiesPlugin != null && (boundPropertiesPlugin.isConstrained() || boundPropertiesPlugin.isBound());
+		for (final FieldOutline fieldOutline : classOutline.getDeclaredFields()) {
+			final JFieldVar field = PluginUtil.getDeclaredField(fieldOutline);
+			if (field != null && (field.mods().getValue() & JMod.STATIC) == 0) {
+				final boolean collection = fieldOutline.getPropertyInfo().isCollection() && !field.type().isArray();
+				final JType valueType = collection ? ((JClass)field.type()).getTypeParameters().get(0) : field.type();
+				if (isSupported(valueType)) {
+					this.fields.add(new BinaryField(fieldOutline, field, valueType, collection));
+				} else {
+					this.unsupportedFields.add(fieldOutline);
+				}
+			}
+		}
+	}
+
+	ClassOutline getClassOutline() {
+		return this.classOutline;
+	}
+
+	int getTypeId() {
+		return this.typeId;
+	}
+
+	/**
+	 * @return The fields that are written, in declaration order.
+	 */
+	List<BinaryField> getFields() {
+		return this.fields;
+	}
+
+	/**
+	 * @return The fields that cannot be written, because their type is not supported.
+	 */
+	List<FieldOutline> getUnsupportedFields() {
+		return this.unsupportedFields;
+	}
+
+	/**
+	 * Appends a description of the binary layout of this class,
+	 * from which the fingerprint of the schema is computed.
+	 */
+	void appendSignature(final StringBuilder signature) {
+		signature.append(this.typeId).append(' ').append(this.definedClass.fullName());
+		if (this.definedClass._extends() != null) {
+			signature.append(" extends ").append(this.definedClass._extends().fullName());
+		}
+		for (final BinaryField binaryField : this.fields) {
+			signature.append(' ').append(binaryField.field.name()).append(':').append(binaryField.field.type().fullName());
+		}
+		signature.append('\n');
+	}
+
+	void generate(final long fingerprint, final List<BinaryGenerator> subClasses, final boolean externalizable) {
+		final JFieldVar fingerprintField = this.definedClass.field(JMod.PUBLIC | JMod.STATIC | JMod.FINAL, this.pluginContext.codeModel.LONG, BinaryGenerator.FINGERPRINT_FIELD_NAME, JExpr.lit(fingerprint));
+		final JClass binaryOutput = this.pluginContext.codeModel.ref(BinaryOutput.class);
+		final JClass binaryInput = this.pluginContext.codeModel.ref(BinaryInput.class);
+
+		if (!this.hasSuperClass) {
+			this.definedClass._implements(BinaryWritable.class);
+			if (externalizable) {
+				generateExternalizable(fingerprintField);
+			}
+		}
+		final JMethod writeBinaryMethod = this.definedClass.method(JMod.PUBLIC, this.pluginContext.voidType, BinaryGenerator.WRITE_BINARY_METHOD_NAME);
+		writeBinaryMethod.annotate(Override.class);
+		writeBinaryMethod._throws(IOException.class);
+		final JVar outputParam = writeBinaryMethod.param(JMod.FINAL, BinaryOutput.class, BinaryGenerator.OUTPUT_PARAM_NAME);
+		writeBinaryMethod.body().invoke(outputParam, "writeVarInt").arg(JExpr.lit(this.typeId));
+		writeBinaryMethod.body().invoke(BinaryGenerator.WRITE_FIELDS_METHOD_NAME).arg(outputParam);
+
+		if (!this.hasSuperClass) {
+			final JMethod writeStreamMethod = this.definedClass.method(JMod.PUBLIC, this.pluginContext.voidType, BinaryGenerator.WRITE_BINARY_METHOD_NAME);
+			writeStreamMethod.annotate(Override.class);
+			writeStreamMethod._throws(IOException.class);
+			final JVar streamParam = writeStreamMethod.param(JMod.FINAL, OutputStream.class, BinaryGenerator.STREAM_PARAM_NAME);
+			final JVar outputVar = writeStreamMethod.body().decl(JMod.FINAL, binaryOutput, BinaryGenerator.OUTPUT_PARAM_NAME, JExpr._new(binaryOutput).arg(streamParam));
+			writeStreamMethod.body().invoke(outputVar, "writeHeader").arg(fingerprintField);
+			writeStreamMethod.body().invoke(writeBinaryMethod).arg(outputVar);
+			writeStreamMethod.body().invoke(outputVar, "flush");
+		}
+
+		final JMethod writeFieldsMethod = this.definedClass.method(JMod.PROTECTED, this.pluginContext.voidType, BinaryGenerator.WRITE_FIELDS_METHOD_NAME);
+		writeFieldsMethod._throws(IOException.class);
+		final JVar writeFieldsOutputParam = writeFieldsMethod.param(JMod.FINAL, BinaryOutput.class, BinaryGenerator.OUTPUT_PARAM_NAME);
+		if (this.hasSuperClass) {
+			writeFieldsMethod.annotate(Override.class);
+			writeFieldsMethod.body().invoke(JExpr._super(), writeFieldsMethod).arg(writeFieldsOutputParam);
+		}
+		generateWriteFields(writeFieldsMethod.body(), writeFieldsOutputParam);
+
+		final JMethod readTypeMethod = this.definedClass.method(JMod.PUBLIC | JMod.STATIC, this.definedClass, BinaryGenerator.READ_BINARY_METHOD_NAME);
+		readTypeMethod._throws(IOException.class);
+		final JVar readTypeInputParam = readTypeMethod.param(JMod.FINAL, BinaryInput.class, BinaryGenerator.INPUT_PARAM_NAME);
+		final JVar typeIdParam = readTypeMethod.param(JMod.FINAL, this.pluginContext.codeModel.INT, BinaryGenerator.TYPE_ID_PARAM_NAME);
+		final JSwitch typeSwitch = readTypeMethod.body()._switch(typeIdParam);
+		typeSwitch._case(JExpr.lit(0)).body()._return(JExpr._null());
+		if (!this.definedClass.isAbstract()) {
+			final JBlock caseBody = typeSwitch._case(JExpr.lit(this.typeId)).body();
+			final JVar valueVar = caseBody.decl(JMod.FINAL, this.definedClass, BinaryGenerator.VALUE_VAR_NAME, JExpr._new(this.definedClass));
+			caseBody.invoke(valueVar, BinaryGenerator.READ_FIELDS_METHOD_NAME).arg(readTypeInputParam);
+			caseBody._return(valueVar);
+		}
+		for (final BinaryGenerator subClass : subClasses) {
+			typeSwitch._case(JExpr.lit(subClass.typeId)).body()._return(subClass.definedClass.staticInvoke(readTypeMethod.name()).arg(readTypeInputParam).arg(typeIdParam));
+		}
+		typeSwitch._default().body()._throw(JExpr._new(this.pluginContext.codeModel.ref(StreamCorruptedException.class))
+				.arg(JExpr.lit("Unexpected type id ").plus(typeIdParam).plus(JExpr.lit(" for " + this.definedClass.fullName()))));
+
+		final JMethod readBinaryMethod = this.definedClass.method(JMod.PUBLIC | JMod.STATIC, this.definedClass, BinaryGenerator.READ_BINARY_METHOD_NAME);
+		readBinaryMethod._throws(IOException.class);
+		final JVar inputParam = readBinaryMethod.param(JMod.FINAL, BinaryInput.class, BinaryGenerator.INPUT_PARAM_NAME);
+		readBinaryMethod.body()._return(JExpr.invoke(readTypeMethod).arg(inputParam).arg(inputParam.invoke("readVarInt")));
+
+		final JMethod readStreamMethod = this.definedClass.method(JMod.PUBLIC | JMod.STATIC, this.definedClass, BinaryGenerator.READ_BINARY_METHOD_NAME);
+		readStreamMethod._throws(IOException.class);
+		final JVar streamParam = readStreamMethod.param(JMod.FINAL, InputStream.class, BinaryGenerator.STREAM_PARAM_NAME);
+		final JVar inputVar = readStreamMethod.body().decl(JMod.FINAL, binaryInput, BinaryGenerator.INPUT_PARAM_NAME, JExpr._new(binaryInput).arg(streamParam));
+		readStreamMethod.body().invoke(inputVar, "readHeader").arg(fingerprintField);
+		readStreamMethod.body()._return(JExpr.invoke(readBinaryMethod).arg(inputVar));
+
+		final JMethod readFieldsMethod = this.definedClass.method(JMod.PROTECTED, this.pluginContext.voidType, BinaryGenerator.READ_FIELDS_METHOD_NAME);
+		readFieldsMethod._throws(IOException.class);
+		final JVar readFieldsInputParam = readFieldsMethod.param(JMod.FINAL, BinaryInput.class, BinaryGenerator.INPUT_PARAM_NAME);
+		if (this.hasSuperClass) {
+			readFieldsMethod.annotate(Override.class);
+			readFieldsMethod.body().invoke(JExpr._super(), readFieldsMethod).arg(readFieldsInputParam);
+		}
+		generateReadFields(readFieldsMethod.body(), readFieldsInputParam);
+	}
+
+	/**
+	 * Generates the {@link Externalizable} implementation, which writes the fields
+	 * in binary format to a byte array, and writes the array to the object stream.
+	 * Derived transient state, like read-only views of collections, is
+	 * rebuilt by <code>readBinaryFields</code>.
+	 */
+	private void generateExternalizable(final JFieldVar fingerprintField) {
+		this.definedClass._implements(Externalizable.class);
+		final JClass byteArrayOutputStream = this.pluginContext.codeModel.ref(ByteArrayOutputStream.class);
+		final JClass binaryOutput = this.pluginContext.codeModel.ref(BinaryOutput.class);
+		final JClass binaryInput = this.pluginContext.codeModel.ref(BinaryInput.class);
+
+		final JMethod writeExternalMethod = this.definedClass.method(JMod.PUBLIC, this.pluginContext.voidType, "writeExternal");
+		writeExternalMethod.annotate(Override.class);
+		writeExternalMethod._throws(IOException.class);
+		final JVar outParam = writeExternalMethod.param(JMod.FINAL, ObjectOutput.class, BinaryGenerator.OBJECT_OUTPUT_PARAM_NAME);
+		final JBlock writeBody = writeExternalMethod.body();
+		final JVar bytesVar = writeBody.decl(JMod.FINAL, byteArrayOutputStream, BinaryGenerator.BYTES_VAR_NAME, JExpr._new(byteArrayOutputStream));
+		final JVar outputVar = writeBody.decl(JMod.FINAL, binaryOutput, BinaryGenerator.OUTPUT_PARAM_NAME, JExpr._new(binaryOutput).arg(bytesVar));
+		writeBody.invoke(outputVar, "writeHeader").arg(fingerprintField);
+		writeBody.invoke(BinaryGenerator.WRITE_FIELDS_METHOD_NAME).arg(outputVar);
+		writeBody.invoke(outputVar, "flush");
+		writeBody.invoke(outParam, "writeInt").arg(bytesVar.invoke("size"));
+		writeBody.invoke(outParam, "write").arg(bytesVar.invoke("toByteArray"));
+
+		final JMethod readExternalMethod = this.definedClass.method(JMod.PUBLIC, this.pluginContext.voidType, "readExternal");
+		readExternalMethod.annotate(Override.class);
+		readExternalMethod._throws(IOException.class);
+		final JVar inParam = readExternalMethod.param(JMod.FINAL, ObjectInput.class, BinaryGenerator.OBJECT_INPUT_PARAM_NAME);
+		final JBlock readBody = readExternalMethod.body();
+		final JVar bytesArrayVar = readBody.decl(JMod.FINAL, this.pluginContext.codeModel.BYTE.array(), BinaryGenerator.BYTES_VAR_NAME, JExpr.newArray(this.pluginContext.codeModel.BYTE, inParam.invoke("readInt")));
+		readBody.invoke(inParam, "readFully").arg(bytesArrayVar);
+		final JVar inputVar = readBody.decl(JMod.FINAL, binaryInput, BinaryGenerator.INPUT_PARAM_NAME, JExpr._new(binaryInput).arg(JExpr._new(this.pluginContext.codeModel.ref(ByteArrayInputStream.class)).arg(bytesArrayVar)));
+		readBody.invoke(inputVar, "readHeader").arg(fingerprintField);
+		readBody.invoke(BinaryGenerator.READ_FIELDS_METHOD_NAME).arg(inputVar);
+	}
+
+	private void generateWriteFields(final JBlock body, final JVar outputParam) {
+		final JInvocation writePresence = outputParam.invoke("writePresence");
+		for (final BinaryField binaryField : this.fields) {
+			if (binaryField.isOptional()) {
+				writePresence.arg(JExpr._this().ref(binaryField.field).ne(JExpr._null()));
+			}
+		}
+		if (writePresence.listArgs().length > 0) {
+			body.add(writePresence);
+		}
+		for (final BinaryField binaryField : this.fields) {
+			final JFieldRef fieldRef = JExpr._this().ref(binaryField.field);
+			final JBlock block = binaryField.isOptional() ? body._if(fieldRef.ne(JExpr._null()))._then() : body;
+			if (binaryField.collection) {
+				block.invoke(outputParam, "writeVarInt").arg(fieldRef.invoke("size"));
+				final JForEach forEach = block.forEach(binaryField.valueType, BinaryGenerator.ITEM_VAR_NAME, fieldRef);
+				generateWriteValue(forEach.body(), outputParam, binaryField.valueType, forEach.var(), true);
+			} else {
+				generateWriteValue(block, outputParam, binaryField.valueType, fieldRef, false);
+			}
+		}
+	}
+
+	private void generateReadFields(final JBlock body, final JVar inputParam) {
+		int optionalCount = 0;
+		for (final BinaryField binaryField : this.fields) {
+			if (binaryField.isOptional()) {
+				optionalCount++;
+			}
+		}
+		final JVar presentVar = optionalCount > 0 ? body.decl(JMod.FINAL, this.pluginContext.codeModel.BOOLEAN.array(), BinaryGenerator.PRESENT_VAR_NAME, inputParam.invoke("readPresence").arg(JExpr.lit(optionalCount))) : null;
+		int optionalIndex = 0;
+		for (final BinaryField binaryField : this.fields) {
+			final JFieldRef fieldRef = JExpr._this().ref(binaryField.field);
+			final JBlock block = binaryField.isOptional() ? body._if(presentVar.component(JExpr.lit(optionalIndex++)))._then() : body;
+			if (binaryField.collection) {
+				final JVar sizeVar = block.decl(JMod.FINAL, this.pluginContext.codeModel.INT, BinaryGenerator.SIZE_VAR_NAME, inputParam.invoke("readVarInt"));
+				block.assign(fieldRef, this.pluginContext.newArrayList((JClass)binaryField.valueType).arg(sizeVar));
+				final JForLoop forLoop = block._for();
+				final JVar indexVar = forLoop.init(this.pluginContext.codeModel.INT, "_i", JExpr.lit(0));
+				forLoop.test(indexVar.lt(sizeVar));
+				forLoop.update(indexVar.incr());
+				forLoop.body().invoke(fieldRef, "add").arg(readValueExpression(inputParam, binaryField.valueType));
+				this.pluginContext.generateImmutableFieldInit(block, JExpr._this(), binaryField.field);
+				if (this.hasCollectionProxies) {
+					block.assign(JExpr._this().ref(binaryField.field.name() + BoundPropertiesPlugin.PROXY_SUFFIX), JExpr._null());
+				}
+			} else {
+				block.assign(fieldRef, readValueExpression(inputParam, binaryField.valueType));
+			}
+		}
+	}
+
+	private void generateWriteValue(final JBlock block, final JVar outputParam, final JType type, final JExpression value, final boolean nullable) {
+		if (isGeneratedClass(type)) {
+			if (nullable) {
+				final JConditional ifNull = block._if(value.eq(JExpr._null()));
+				ifNull._then().invoke(outputParam, "writeVarInt").arg(JExpr.lit(0));
+				ifNull._else().invoke(value, BinaryGenerator.WRITE_BINARY_METHOD_NAME).arg(outputParam);
+			} else {
+				block.invoke(value, BinaryGenerator.WRITE_BINARY_METHOD_NAME).arg(outputParam);
+			}
+		} else if (isEnum(type)) {
+			block.invoke(outputParam, "writeVarInt").arg(value.invoke("ordinal"));
+		} else {
+			block.invoke(outputParam, "write" + valueTypeName(type)).arg(value);
+		}
+	}
+
+	private JExpression readValueExpression(final JVar inputParam, final JType type) {
+		if (isGeneratedClass(type)) {
+			return ((JClass)type).staticInvoke(BinaryGenerator.READ_BINARY_METHOD_NAME).arg(inputParam);
+		} else if (isEnum(type)) {
+			return ((JClass)type).staticInvoke("values").component(inputParam.invoke("readVarInt"));
+		} else {
+			return inputParam.invoke("read" + valueTypeName(type));
+		}
+	}
+
+	private boolean isSupported(final JType type) {
+		return isGeneratedClass(type) || isEnum(type) || valueTypeName(type) != null;
+	}
+
+	boolean isGeneratedClass(final JType type) {
+		return this.pluginContext.getClassOutline(type) != null;
+	}
+
+	static boolean isEnum(final JType type) {
+		return type instanceof JDefinedClass && ((JDefinedClass)type).getClassType() == ClassType.ENUM;
+	}
+
+	/**
+	 * @return The suffix of the {@link BinaryOutput} and {@link BinaryInput} methods
+	 * writing and reading values of the given type, or null if the type is not supported.
+	 */
+	static String valueTypeName(final JType type) {
+		if (type.isArray()) {
+			return "byte".equals(type.elementType().fullName()) ? "Bytes" : null;
+		}
+		final JType primitiveType = type.unboxify();
+		if (primitiveType.isPrimitive()) {
+			final String name = primitiveType.name();
+			return "char".equals(name) || "void".equals(name) ? null : Character.toUpperCase(name.charAt(0)) + name.substring(1);
+		}
+		switch (type.fullName()) {
+			case "java.lang.String":
+				return "String";
+			case "java.math.BigInteger":
+				return "BigInteger";
+			case "java.math.BigDecimal":
+				return "BigDecimal";
+			case "javax.xml.datatype.XMLGregorianCalendar":
+				return "Calendar";
+			case "javax.xml.datatype.Duration":
+				return "Duration";
+			case "javax.xml.namespace.QName":
+				return "QName";
+			default:
+				return null;
+		}
+	}
+
+	static final class BinaryField {
+		final FieldOutline fieldOutline;
+		final JFieldVar field;
+		final JType valueType;
+		final boolean collection;
+
+		BinaryField(final FieldOutline fieldOutline, final JFieldVar field, final JType valueType, final boolean collection) {
+			this.fieldOutline = fieldOutline;
+			this.field = field;
+			this.valueType = valueType;
+			this.collection = collection;
+		}
+
+		/**
+		 * @return true if the field can be null, so its presence has to be recorded.
+		 */
+		boolean isOptional() {
+			return !this.field.type().isPrimitive();
+		}
+	}
+}
@@ -0,0 +1,277 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2014 Klemm Software Consulting, Mirko Klemm
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.kscs.util.plugins.xjc;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import com.kscs.util.jaxb.BinaryInput;
+import com.kscs.util.jaxb.BinaryOutput;
+import com.kscs.util.jaxb.BinaryView;
+import com.kscs.util.jaxb.BinaryWritable;
+import com.kscs.util.jaxb.ViewOutput;
+import com.kscs.util.plugins.xjc.base.AbstractPlugin;
+import com.kscs.util.plugins.xjc.base.Opt;
+import com.sun.codemodel.ClassType;
+import com.sun.codemodel.JClassAlreadyExistsException;
+import com.sun.codemodel.JDefinedClass;
+import com.sun.codemodel.JMod;
+import com.sun.tools.xjc.Options;
+import com.sun.tools.xjc.model.CClassInfo;
+import com.sun.tools.xjc.outline.ClassOutline;
+import com.sun.tools.xjc.outline.EnumConstantOutline;
+import com.sun.tools.xjc.outline.EnumOutline;
+import com.sun.tools.xjc.outline.FieldOutline;
+import com.sun.tools.xjc.outline.Outline;
+import org.xml.sax.ErrorHandler;
+import org.xml.sax.SAXException;
+import org.xml.sax.SAXParseException;
+
+/**
+ * XJC Plugin to generate methods writing and reading
+ * instances of the generated classes in a compact,
+ * schema-specific binary format.
+ */
+public class BinaryPlugin extends AbstractPlugin {
+	@Opt
+	private boolean generateTools = true;
+	@Opt
+	private boolean externalizable = false;
+	@Opt
+	private boolean generateViews = false;
+	@Opt
+	private String viewClassName = "View";
+
+	@Override
+	public String getOptionName() {
+		return "Xbinary";
+	}
+
+	@Override
+	public boolean run(final Outline outline, final Options opt, final ErrorHandler errorHandler) throws SAXException {
+		final PluginContext pluginContext = PluginContext.get(outline, opt, errorHandler);
+		try (final PluginContext.PluginRun pluginRun = pluginContext.beginRun(this)) {
+			if (this.generateTools) {
+				pluginContext.writeSourceFile(BinaryWritable.class);
+				pluginContext.writeSourceFile(BinaryOutput.class);
+				pluginContext.writeSourceFile(BinaryInput.class);
+				if (this.generateViews) {
+					pluginContext.writeSourceFile(ViewOutput.class);
+					pluginContext.writeSourceFile(BinaryView.class);
+				}
+			}
+			if (this.externalizable) {
+				final ImmutablePlugin immutablePlugin = pluginContext.findPlugin(ImmutablePlugin.class);
+				if (immutablePlugin != null && !"public".equalsIgnoreCase(immutablePlugin.getConstructorAccess())) {
+					errorHandler.error(new SAXParseException(getMessage("error.constructorAccess"), outline.getModel().getLocator()));
+				}
+			}
+			final List<BinaryGenerator> generators = new ArrayList<>();
+			int typeId = 1;
+			for (final ClassOutline classOutline : outline.getClasses()) {
+				final BinaryGenerator generator = new BinaryGenerator(pluginContext, classOutline, typeId++);
+				for (final FieldOutline fieldOutline : generator.getUnsupportedFields()) {
+					errorHandler.warning(new SAXParseException(getMessage("error.unsupportedField", classOutline.implClass.fullName(), fieldOutline.getPropertyInfo().getName(false)), fieldOutline.getPropertyInfo().getLocator()));
+				}
+				generators.add(generator);
+			}
+			final long fingerprint = fingerprint(outline, generators);
+			final Set<ClassOutline> incompleteClasses = this.externalizable ? findIncompleteClasses(pluginContext, generators) : Collections.<ClassOutline>emptySet();
+			for (final BinaryGenerator generator : generators) {
+				final ClassOutline classOutline = generator.getClassOutline();
+				final boolean externalizable = this.externalizable && !isIncompleteHierarchy(classOutline, incompleteClasses);
+				if (this.externalizable && !externalizable && classOutline.target.getBaseClass() == null && classOutline.target.getRefBaseClass() == null) {
+					errorHandler.warning(new SAXParseException(getMessage("error.notExternalizable", classOutline.implClass.fullName()), classOutline.target.getLocator()));
+				}
+				try (final GenerationProfile.Measurement classMeasurement = pluginContext.profile.phase("binary", classOutline.implClass.fullName())) {
+					generator.generate(fingerprint, findSubClasses(classOutline, generators), externalizable);
+				}
+			}
+			if (this.generateViews) {
+				generateViews(pluginContext, errorHandler, generators);
+			}
+			return true;
+		}
+	}
+
+	private void generateViews(final PluginContext pluginContext, final ErrorHandler errorHandler, final List<BinaryGenerator> generators) throws SAXException {
+		for (final BinaryGenerator generator : generators) {
+			if (generator.getClassOutline().target.getRefBaseClass() != null) {
+				errorHandler.warning(new SAXParseException(getMessage("error.episodeViews", generator.getClassOutline().implClass.fullName()), generator.getClassOutline().target.getLocator()));
+				return;
+			}
+		}
+		final Map<ClassOutline, ViewGenerator> viewGenerators = new LinkedHashMap<>();
+		for (final BinaryGenerator generator : generators) {
+			createViewGenerator(pluginContext, errorHandler, generator, generators, viewGenerators);
+		}
+		for (final BinaryGenerator generator : generators) {
+			final ViewGenerator viewGenerator = viewGenerators.get(generator.getClassOutline());
+			if (viewGenerator != null) {
+				try (final GenerationProfile.Measurement classMeasurement = pluginContext.profile.phase("binary-views", generator.getClassOutline().implClass.fullName())) {
+					viewGenerator.generate(findSubClasses(generator.getClassOutline(), generators), this.viewClassName);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Declares the view class of a class after those of its super classes,
+	 * because the layout of a class depends on the layout of its super class.
+	 * @return The generator, or null if the view class or the view class of a super class cannot be declared.
+	 */
+	private ViewGenerator createViewGenerator(final PluginContext pluginContext, final ErrorHandler errorHandler, final BinaryGenerator generator, final List<BinaryGenerator> generators, final Map<ClassOutline, ViewGenerator> viewGenerators) throws SAXException {
+		final ClassOutline classOutline = generator.getClassOutline();
+		if (viewGenerators.containsKey(classOutline)) {
+			return viewGenerators.get(classOutline);
+		}
+		ViewGenerator superGenerator = null;
+		if (classOutline.getSuperClass() != null) {
+			for (final BinaryGenerator superClassGenerator : generators) {
+				if (superClassGenerator.getClassOutline() == classOutline.getSuperClass()) {
+					superGenerator = createViewGenerator(pluginContext, errorHandler, superClassGenerator, generators, viewGenerators);
+				}
+			}
+		}
+		ViewGenerator viewGenerator = null;
+		if (classOutline.getSuperClass() == null || superGenerator != null) {
+			try {
+				final JDefinedClass viewClass = classOutline.implClass._class(JMod.PUBLIC | JMod.STATIC | (classOutline.implClass.isAbstract() ? JMod.ABSTRACT : 0), this.viewClassName, ClassType.CLASS);
+				viewGenerator = new ViewGenerator(pluginContext, generator, superGenerator, viewClass);
+			} catch (final JClassAlreadyExistsException e) {
+				errorHandler.warning(new SAXParseException(getMessage("error.viewClassExists", classOutline.implClass.fullName(), this.viewClassName), classOutline.target.getLocator(), e));
+			}
+		}
+		viewGenerators.put(classOutline, viewGenerator);
+		return viewGenerator;
+	}
+
+	/**
+	 * Computes a hash over the binary layout of all generated classes,
+	 * so that data written by classes generated from a different schema
+	 * is rejected when it is read.
+	 */
+	private static long fingerprint(final Outline outline, final Iterable<BinaryGenerator> generators) {
+		final StringBuilder signature = new StringBuilder();
+		for (final BinaryGenerator generator : generators) {
+			generator.appendSignature(signature);
+		}
+		for (final EnumOutline enumOutline : outline.getEnums()) {
+			signature.append(enumOutline.clazz.fullName());
+			for (final EnumConstantOutline constantOutline : enumOutline.constants) {
+				signature.append(' ').append(constantOutline.constRef.getName());
+			}
+			signature.append('\n');
+		}
+		try {
+			final byte[] digest = MessageDigest.getInstance("SHA-256").digest(signature.toString().getBytes(StandardCharsets.UTF_8));
+			long fingerprint = 0;
+			for (int i = 0; i < 8; i++) {
+				fingerprint = (fingerprint << 8) | (digest[i] & 0xFF);
+			}
+			return fingerprint;
+		} catch (final NoSuchAlgorithmException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	/**
+	 * Finds the classes whose instances cannot be written completely in binary format,
+	 * because they or their superclasses have fields of an unsupported type, or fields that
+	 * can contain an object of such a class. Java serialization must not write them in binary format,
+	 * as it would silently lose the values of the unsupported fields.
+	 */
+	private static Set<ClassOutline> findIncompleteClasses(final PluginContext pluginContext, final List<BinaryGenerator> generators) {
+		final Set<ClassOutline> incompleteClasses = new HashSet<>();
+		for (final BinaryGenerator generator : generators) {
+			if (!generator.getUnsupportedFields().isEmpty()) {
+				incompleteClasses.add(generator.getClassOutline());
+			}
+		}
+		boolean changed = !incompleteClasses.isEmpty();
+		while (changed) {
+			changed = false;
+			for (final BinaryGenerator generator : generators) {
+				final ClassOutline classOutline = generator.getClassOutline();
+				if (!incompleteClasses.contains(classOutline) && (incompleteClasses.contains(classOutline.getSuperClass()) || hasIncompleteField(pluginContext, generator, incompleteClasses))) {
+					incompleteClasses.add(classOutline);
+					changed = true;
+				}
+			}
+		}
+		return incompleteClasses;
+	}
+
+	private static boolean hasIncompleteField(final PluginContext pluginContext, final BinaryGenerator generator, final Set<ClassOutline> incompleteClasses) {
+		for (final BinaryGenerator.BinaryField binaryField : generator.getFields()) {
+			final ClassOutline fieldClass = pluginContext.getClassOutline(binaryField.valueType);
+			if (fieldClass != null && isIncompleteHierarchy(fieldClass, incompleteClasses)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * @return true if the class or any of its subclasses, abstract or not, cannot be written completely.
+	 */
+	private static boolean isIncompleteHierarchy(final ClassOutline classOutline, final Set<ClassOutline> incompleteClasses) {
+		for (final ClassOutline incompleteClass : incompleteClasses) {
+			for (CClassInfo classInfo = incompleteClass.target; classInfo != null; classInfo = classInfo.getBaseClass()) {
+				if (classInfo == classOutline.target) {
+					return true;
+				}
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Finds all classes whose instances can be found in a property declared
+	 * with the given class, and have to be distinguished by their type id.
+	 */
+	private static List<BinaryGenerator> findSubClasses(final ClassOutline superClass, final List<BinaryGenerator> generators) {
+		final List<BinaryGenerator> subClasses = new ArrayList<>();
+		for (final BinaryGenerator generator : generators) {
+			if (!generator.getClassOutline().implClass.isAbstract()) {
+				for (CClassInfo baseClass = generator.getClassOutline().target.getBaseClass(); baseClass != null; baseClass = baseClass.getBaseClass()) {
+					if (baseClass == superClass.target) {
+						subClasses.add(generator);
+						break;
+					}
+				}
+			}
+		}
+		return subClasses;
+	}
+}
@@ -85,89 +85,90 @@ public class BoundPropertiesPlugin extends AbstractPlugin {
 		}
 
 		final PluginContext pluginContext = PluginContext.get(outline, opt, errorHandler);
+		try (final PluginContext.PluginRun pluginRun = pluginContext.beginRun(this)) {
+			final JCodeModel m = outline.getCodeModel();
+
+			if (this.generateTools) {
+				// generate bound collection helper classes
+				pluginContext.writeSourceFile(BoundList.class);
+				pluginContext.writeSourceFile(BoundListProxy.class);
+				pluginContext.writeSourceFile(CollectionChangeEventType.class);
+				pluginContext.writeSourceFile(CollectionChangeEvent.class);
+				pluginContext.writeSourceFile(CollectionChangeListener.class);
+				pluginContext.writeSourceFile(VetoableCollectionChangeListener.class);
+			}
 
-		final JCodeModel m = outline.getCodeModel();
-
-		if (this.generateTools) {
-			// generate bound collection helper classes
-			pluginContext.writeSourceFile(BoundList.class);
-			pluginContext.writeSourceFile(BoundListProxy.class);
-			pluginContext.writeSourceFile(CollectionChangeEventType.class);
-			pluginContext.writeSourceFile(CollectionChangeEvent.class);
-			pluginContext.writeSourceFile(CollectionChangeListener.class);
-			pluginContext.writeSourceFile(VetoableCollectionChangeListener.class);
-		}
-
-		if(pluginContext.hasPlugin(ImmutablePlugin.class)) {
-			errorHandler.error(new SAXParseException(getMessage("error.immutableAndConstrainedProperties"), outline.getModel().getLocator()));
-		}
+			if(pluginContext.hasPlugin(ImmutablePlugin.class)) {
+				errorHandler.error(new SAXParseException(getMessage("error.immutableAndConstrainedProperties"), outline.getModel().getLocator()));
+			}
 
-		final int setterAccess = JMod.PUBLIC;
+			final int setterAccess = JMod.PUBLIC;
 
-		for (final ClassOutline classOutline : outline.getClasses()) {
-			final JDefinedClass definedClass = classOutline.implClass;
+			for (final ClassOutline classOutline : outline.getClasses()) {
+				final JDefinedClass definedClass = classOutline.implClass;
 
-			// Create bound collection proxies
-			for (final FieldOutline fieldOutline : classOutline.getDeclaredFields()) {
-				if (fieldOutline.getPropertyInfo().isCollection() && !definedClass.fields().get(fieldOutline.getPropertyInfo().getName(false)).type().isArray()) {
-					generateProxyField(classOutline, fieldOutline);
-					generateLazyProxyInitGetter(classOutline, fieldOutline);
+				// Create bound collection proxies
+				for (final FieldOutline fieldOutline : classOutline.getDeclaredFields()) {
+					if (fieldOutline.getPropertyInfo().isCollection() && !definedClass.fields().get(fieldOutline.getPropertyInfo().getName(false)).type().isArray()) {
+						generateProxyField(classOutline, fieldOutline);
+						generateLazyProxyInitGetter(classOutline, fieldOutline);
+					}
 				}
-			}
 
 
-			if (this.constrained && this.setterThrows) {
-				for (final JMethod method : definedClass.methods()) {
-					if (method.name().startsWith("with")
-							&& !"withVetoableChangeListener".equals(method.name())
-							&& !"withPropertyChangeListener".equals(method.name())
-							) {
-						method._throws(PropertyVetoException.class);
+				if (this.constrained && this.setterThrows) {
+					for (final JMethod method : definedClass.methods()) {
+						if (method.name().startsWith("with")
+								&& !"withVetoableChangeListener".equals(method.name())
+								&& !"withPropertyChangeListener".equals(method.name())
+								) {
+							method._throws(PropertyVetoException.class);
+						}
 					}
 				}
-			}
 
-			if (this.constrained)
-				createSupportProperty(outline, classOutline, VetoableChangeSupport.class, VetoableChangeListener.class, "vetoableChange");
-			if (this.bound)
-				createSupportProperty(outline, classOutline, PropertyChangeSupport.class, PropertyChangeListener.class, "propertyChange");
-
-
-			for (final JFieldVar field : definedClass.fields().values()) {
-				//final JFieldVar field = definedClass.fields().get(fieldOutline.getPropertyInfo().getName(false));
-				final JMethod oldSetter = definedClass.getMethod("set" + outline.getModel().getNameConverter().toPropertyName(field.name()), new JType[]{field.type()});
-				if (oldSetter != null && !field.type().isArray()) {
-					definedClass.methods().remove(oldSetter);
-					final JMethod setter = definedClass.method(setterAccess, m.VOID, "set" + outline.getModel().getNameConverter().toPropertyName(field.name()));
-					final JVar setterArg = setter.param(JMod.FINAL, field.type(), "value");
-					final JBlock body = setter.body();
-					final JVar oldValueVar = body.decl(JMod.FINAL, field.type(), BoundPropertiesPlugin.OLD_VALUE_VAR_NAME, JExpr._this().ref(field));
-
-					if (this.constrained) {
-						final JTryBlock tryBlock;
-						final JBlock block;
-						if (this.setterThrows) {
-							block = body;
-							setter._throws(PropertyVetoException.class);
-						} else {
-							tryBlock = body._try();
-							block = tryBlock.body();
-							final JCatchBlock catchBlock = tryBlock._catch(m.ref(PropertyVetoException.class));
-							final JVar exceptionVar = catchBlock.param("x");
-							catchBlock.body()._throw(JExpr._new(m.ref(RuntimeException.class)).arg(exceptionVar));
+				if (this.constrained)
+					createSupportProperty(outline, classOutline, VetoableChangeSupport.class, VetoableChangeListener.class, "vetoableChange");
+				if (this.bound)
+					createSupportProperty(outline, classOutline, PropertyChangeSupport.class, PropertyChangeListener.class, "propertyChange");
+
+
+				for (final JFieldVar field : definedClass.fields().values()) {
+					//final JFieldVar field = definedClass.fields().get(fieldOutline.getPropertyInfo().getName(false));
+					final JMethod oldSetter = definedClass.getMethod("set" + outline.getModel().getNameConverter().toPropertyName(field.name()), new JType[]{field.type()});
+					if (oldSetter != null && !field.type().isArray()) {
+						definedClass.methods().remove(oldSetter);
+						final JMethod setter = definedClass.method(setterAccess, m.VOID, "set" + outline.getModel().getNameConverter().toPropertyName(field.name()));
+						final JVar setterArg = setter.param(JMod.FINAL, field.type(), "value");
+						final JBlock body = setter.body();
+						final JVar oldValueVar = body.decl(JMod.FINAL, field.type(), BoundPropertiesPlugin.OLD_VALUE_VAR_NAME, JExpr._this().ref(field));
+
+						if (this.constrained) {
+							final JTryBlock tryBlock;
+							final JBlock block;
+							if (this.setterThrows) {
+								block = body;
+								setter._throws(PropertyVetoException.class);
+							} else {
+								tryBlock = body._try();
+								block = tryBlock.body();
+								final JCatchBlock catchBlock = tryBlock._catch(m.ref(PropertyVetoException.class));
+								final JVar exceptionVar = catchBlock.param("x");
+								catchBlock.body()._throw(JExpr._new(m.ref(RuntimeException.class)).arg(exceptionVar));
+							}
+							invokeListener(block, field, oldValueVar, setterArg, "vetoableChange");
 						}
-						invokeListener(block, field, oldValueVar, setterArg, "vetoableChange");
-					}
 
-					body.assign(JExpr._this().ref(field), setterArg);
+						body.assign(JExpr._this().ref(field), setterArg);
 
-					if (this.bound) {
-						invokeListener(body, field, oldValueVar, setterArg, "propertyChange");
+						if (this.bound) {
+							invokeListener(body, field, oldValueVar, setterArg, "propertyChange");
+						}
 					}
 				}
 			}
+			return true;
 		}
-		return true;
 	}
 
 	private void createSupportProperty(final Outline outline,
@@ -241,6 +242,10 @@ public class BoundPropertiesPlugin extends AbstractPlugin {
 		return this.constrained;
 	}
 
+	public boolean isBound() {
+		return this.bound;
+	}
+
 	public boolean isSetterThrows() {
 		return this.setterThrows;
 	}
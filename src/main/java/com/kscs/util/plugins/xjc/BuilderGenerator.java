@@ -28,6 +28,7 @@ import java.text.MessageFormat;
 import java.util.List;
 import java.util.Map;
 import java.util.ResourceBundle;
+import java.util.concurrent.Executor;
 
 import javax.xml.namespace.QName;
 
@@ -35,9 +36,11 @@ import org.xml.sax.SAXException;
 import org.xml.sax.SAXParseException;
 
 import com.kscs.util.jaxb.Buildable;
+import com.kscs.util.jaxb.ParallelBuild;
 import com.kscs.util.jaxb.PropertyTree;
 import com.kscs.util.plugins.xjc.codemodel.ClassName;
 import com.kscs.util.plugins.xjc.codemodel.GenerifiedClass;
+import com.kscs.util.plugins.xjc.outline.DefinedClassOutline;
 import com.kscs.util.plugins.xjc.outline.DefinedInterfaceOutline;
 import com.kscs.util.plugins.xjc.outline.DefinedPropertyOutline;
 import com.kscs.util.plugins.xjc.outline.DefinedTypeOutline;
@@ -82,7 +85,15 @@ class BuilderGenerator {
 	public static final String STORED_VALUE_PARAM_NAME = "_storedValue";
 	public static final String NEW_BUILDER_VAR_NAME = "_newBuilder";
 	public static final String COPY_FLAG_PARAM_NAME = "_copy";
+	public static final String RESET_METHOD_NAME = "reset";
+	public static final String POOLED_BUILDER_METHOD_NAME = "pooledBuilder";
+	public static final String POOLED_BUILDER_FIELD_NAME = "POOLED_BUILDER";
+	public static final String IN_USE_FIELD_NAME = "_inUse";
+	public static final String BUILD_PARALLEL_METHOD_NAME = "buildParallel";
 	private static final String ITEM_VAR_NAME = "_item";
+	private static final String POOLED_BUILDER_VAR_NAME = "_pooledBuilder";
+	private static final String EXECUTOR_PARAM_NAME = "_executor";
+	private static final String THRESHOLD_PARAM_NAME = "_threshold";
 	private final PluginContext pluginContext;
 	private final JDefinedClass definedClass;
 	private final GenerifiedClass builderClass;
@@ -108,7 +119,7 @@ class BuilderGenerator {
 			if (this.implement) {
 				this.parentBuilderField = this.builderClass.raw.field(JMod.PROTECTED | JMod.FINAL, this.builderClass.typeParam, BuilderGenerator.PARENT_BUILDER_PARAM_NAME);
 				endMethod.body()._return(JExpr._this().ref(this.parentBuilderField));
-				this.storedValueField = this.settings.isCopyAlways() ? null : this.builderClass.raw.field(JMod.PROTECTED | JMod.FINAL, this.definedClass, BuilderGenerator.STORED_VALUE_PARAM_NAME);
+				this.storedValueField = this.settings.isCopyAlways() ? null : this.builderClass.raw.field(JMod.PROTECTED | (this.settings.isGeneratingReset() ? JMod.NONE : JMod.FINAL), this.definedClass, BuilderGenerator.STORED_VALUE_PARAM_NAME);
 			} else {
 				this.parentBuilderField = null;
 				this.storedValueField = null;
@@ -217,7 +228,6 @@ class BuilderGenerator {
 			final BuilderOutline choiceChildBuilderOutline = getBuilderDeclaration(propertyOutline.getElementType());
 			final JClass childBuilderType = childBuilderOutline == null ? this.pluginContext.buildableInterface : childBuilderOutline.getBuilderClass().narrow(this.builderClass.type);
 			final JClass builderFieldElementType = choiceChildBuilderOutline == null ? this.pluginContext.buildableInterface : choiceChildBuilderOutline.getBuilderClass().narrow(this.builderClass.type);
-			final JClass builderArrayListClass = this.pluginContext.arrayListClass.narrow(builderFieldElementType);
 			final JFieldVar builderField = this.builderClass.raw.fields().get(propertyOutline.getFieldName());
 			addVarargsMethod.body()._return(JExpr.invoke(addIterableMethod).arg(this.pluginContext.asList(addVarargsParam)));
 			if (addMethod == null) {
@@ -225,14 +235,14 @@ class BuilderGenerator {
 			} else {
 				final JConditional addIterableIfParamNull = addIterableMethod.body()._if(addIterableParam.ne(JExpr._null()));
 				final JConditional addIterableIfNull = addIterableIfParamNull._then()._if(JExpr._this().ref(builderField).eq(JExpr._null()));
-				addIterableIfNull._then().assign(JExpr._this().ref(builderField), JExpr._new(builderArrayListClass));
+				addIterableIfNull._then().assign(JExpr._this().ref(builderField), this.pluginContext.newArrayList(builderFieldElementType, propertyOutline));
 				final JForEach addIterableForEach = addIterableIfParamNull._then().forEach(elementType, BuilderGenerator.ITEM_VAR_NAME, addIterableParam);
 				final JExpression builderCreationExpression = JExpr._new(childBuilderType).arg(JExpr._this()).arg(addIterableForEach.var()).arg(this.settings.isCopyAlways() ? JExpr.TRUE : JExpr.FALSE);
 				addIterableForEach.body().add(JExpr._this().ref(builderField).invoke("add").arg(builderCreationExpression));
 				addIterableMethod.body()._return(JExpr._this());
 
 				final JConditional addIfNull = addMethod.body()._if(JExpr._this().ref(builderField).eq(JExpr._null()));
-				addIfNull._then().assign(JExpr._this().ref(builderField), JExpr._new(builderArrayListClass));
+				addIfNull._then().assign(JExpr._this().ref(builderField), this.pluginContext.newArrayList(builderFieldElementType, propertyOutline));
 				final JVar childBuilderVar = addMethod.body().decl(JMod.FINAL, childBuilderType, fieldName + this.settings.getBuilderFieldSuffix(), JExpr._new(childBuilderType).arg(JExpr._this()).arg(JExpr._null()).arg(JExpr.FALSE));
 				addMethod.body().add(JExpr._this().ref(builderField).invoke("add").arg(childBuilderVar));
 				addMethod.body()._return(childBuilderVar);
@@ -301,7 +311,6 @@ class BuilderGenerator {
 		}
 		if (this.implement) {
 			final JClass childBuilderType = childBuilderOutline == null ? this.pluginContext.buildableInterface : childBuilderOutline.getBuilderClass().narrow(this.builderClass.type);
-			final JClass builderArrayListClass = this.pluginContext.arrayListClass.narrow(childBuilderType);
 			final JClass builderListClass = this.pluginContext.listClass.narrow(childBuilderType);
 			final JFieldVar builderField = this.builderClass.raw.field(JMod.PRIVATE, builderListClass, fieldName);
 			addVarargsMethod.body().invoke(addIterableMethod).arg(this.pluginContext.asList(addVarargsParam));
@@ -310,7 +319,7 @@ class BuilderGenerator {
 			withVarargsMethod.body()._return(JExpr._this());
 			final JConditional addIterableIfParamNull = addIterableMethod.body()._if(addIterableParam.ne(JExpr._null()));
 			final JConditional addIterableIfNull = addIterableIfParamNull._then()._if(JExpr._this().ref(builderField).eq(JExpr._null()));
-			addIterableIfNull._then().assign(JExpr._this().ref(builderField), JExpr._new(builderArrayListClass));
+			addIterableIfNull._then().assign(JExpr._this().ref(builderField), this.pluginContext.newArrayList(childBuilderType, propertyOutline));
 			final JForEach jForEach = addIterableIfParamNull._then().forEach(elementType, BuilderGenerator.ITEM_VAR_NAME, addIterableParam);
 			final JExpression builderCreationExpression = childBuilderOutline == null
 					? JExpr._new(this.pluginContext.buildableClass).arg(jForEach.var())
@@ -321,15 +330,28 @@ class BuilderGenerator {
 			withIterableIfNull._then().add(JExpr._this().ref(builderField).invoke("clear"));
 			withIterableMethod.body()._return(JExpr.invoke(addIterableMethod).arg(withIterableParam));
 			final JConditional ifNull = initBody._if(JExpr._this().ref(builderField).ne(JExpr._null()));
-			final JVar collectionVar = ifNull._then().decl(JMod.FINAL, this.pluginContext.listClass.narrow(elementType), fieldName, JExpr._new(this.pluginContext.arrayListClass.narrow(elementType)).arg(JExpr._this().ref(builderField).invoke("size")));
-			final JForEach initForEach = ifNull._then().forEach(childBuilderType, BuilderGenerator.ITEM_VAR_NAME, JExpr._this().ref(builderField));
-			final JInvocation buildMethodInvocation = initForEach.var().invoke(this.settings.getBuildMethodName());
-			final JExpression buildExpression = childBuilderOutline == null ? JExpr.cast(elementType, buildMethodInvocation) : buildMethodInvocation;
-			initForEach.body().add(collectionVar.invoke("add").arg(buildExpression));
-			ifNull._then().assign(productParam.ref(fieldName), collectionVar);
+			final JBlock buildBlock;
+			if (isGeneratingParallelBuild()) {
+				final JClass parallelBuildClass = this.pluginContext.codeModel.ref(ParallelBuild.class);
+				final JConditional ifParallel = ifNull._then()._if(parallelBuildClass.staticInvoke("isParallel").arg(JExpr._this().ref(builderField).invoke("size")));
+				ifParallel._then().assign(productParam.ref(fieldName), parallelBuildClass.staticInvoke("buildAll").arg(JExpr._this().ref(builderField)));
+				buildBlock = ifParallel._else();
+			} else {
+				buildBlock = ifNull._then();
+			}
+			if (this.pluginContext.compact && PluginContext.BUILD_METHOD_NAME.equals(this.settings.getBuildMethodName())) {
+				buildBlock.assign(productParam.ref(fieldName), this.pluginContext.copiesClass.staticInvoke("build").arg(JExpr._this().ref(builderField)));
+			} else {
+				final JVar collectionVar = buildBlock.decl(JMod.FINAL, this.pluginContext.listClass.narrow(elementType), fieldName, JExpr._new(this.pluginContext.arrayListClass.narrow(elementType)).arg(JExpr._this().ref(builderField).invoke("size")));
+				final JForEach initForEach = buildBlock.forEach(childBuilderType, BuilderGenerator.ITEM_VAR_NAME, JExpr._this().ref(builderField));
+				final JInvocation buildMethodInvocation = initForEach.var().invoke(this.settings.getBuildMethodName());
+				final JExpression buildExpression = childBuilderOutline == null ? JExpr.cast(elementType, buildMethodInvocation) : buildMethodInvocation;
+				initForEach.body().add(collectionVar.invoke("add").arg(buildExpression));
+				buildBlock.assign(productParam.ref(fieldName), collectionVar);
+			}
 			if (addMethod != null) {
 				final JConditional addIfNull = addMethod.body()._if(JExpr._this().ref(builderField).eq(JExpr._null()));
-				addIfNull._then().assign(JExpr._this().ref(builderField), JExpr._new(builderArrayListClass));
+				addIfNull._then().assign(JExpr._this().ref(builderField), this.pluginContext.newArrayList(childBuilderType, propertyOutline));
 				final JVar childBuilderVar = addMethod.body().decl(JMod.FINAL, childBuilderType, fieldName + this.settings.getBuilderFieldSuffix(), JExpr._new(childBuilderType).arg(JExpr._this()).arg(JExpr._null()).arg(JExpr.FALSE));
 				addMethod.body().add(JExpr._this().ref(builderField).invoke("add").arg(childBuilderVar));
 				addMethod.body()._return(childBuilderVar);
@@ -656,6 +678,8 @@ class BuilderGenerator {
 								final JBlock maybeTryBlock = this.pluginContext.catchCloneNotSupported(currentBlock, elementType);
 								final JForEach forLoop = loop(maybeTryBlock, sourceRef, elementType, targetField, this.pluginContext.buildableInterface);
 								forLoop.body().invoke(targetField, "add").arg(nullSafe(forLoop.var(), JExpr._new(this.pluginContext.buildableClass).arg(forLoop.var().invoke(this.pluginContext.cloneMethodName))));
+							} else if (this.pluginContext.compact) {
+								currentBlock.assign(targetField, this.pluginContext.copiesClass.staticInvoke("toBuildables").arg(sourceRef));
 							} else {
 								final JForEach forLoop = loop(currentBlock, sourceRef, elementType, targetField, this.pluginContext.buildableInterface);
 								forLoop.body().invoke(targetField, "add").arg(nullSafe(forLoop.var(), JExpr._new(this.pluginContext.buildableClass).arg(forLoop.var())));
@@ -708,6 +732,9 @@ class BuilderGenerator {
 				}
 			}
 		}
+		if (this.implement && this.settings.isGeneratingValidation() && this.typeOutline instanceof DefinedClassOutline) {
+			new BuilderValidationGenerator(this.pluginContext, ((DefinedClassOutline)this.typeOutline).getClassOutline(), this.builderClass.raw).generateValidation(initBody, productParam);
+		}
 		if (superClass != null) {
 			generateExtendsClause(getBuilderDeclaration(superClass.getImplClass()));
 			if (this.implement) initBody._return(JExpr._super().invoke(initMethod).arg(productParam));
@@ -717,6 +744,9 @@ class BuilderGenerator {
 		}
 		generateImplementsClause();
 		generateBuildMethod(initMethod);
+		if (this.implement && isGeneratingParallelBuild()) {
+			generateBuildParallelMethods(superClass != null);
+		}
 		generateCopyToMethod(false);
 		generateNewCopyBuilderMethod(false);
 		if (this.implement && !this.definedClass.isAbstract()) {
@@ -733,6 +763,109 @@ class BuilderGenerator {
 			}
 		}
 		generateCopyOfBuilderMethods();
+		if (this.implement && this.settings.isGeneratingReset()) {
+			generateResetMethod(superClass != null);
+			if (this.settings.isGeneratingPooledBuilder() && !this.definedClass.isAbstract()) {
+				generatePooledBuilderMethod();
+			}
+		}
+	}
+
+	/**
+	 * Parallel builds need the child builders to implement {@link Buildable#build()},
+	 * which is the case only if the build method has its default name.
+	 */
+	private boolean isGeneratingParallelBuild() {
+		return this.settings.isGeneratingParallelBuild() && PluginContext.BUILD_METHOD_NAME.equals(this.settings.getBuildMethodName());
+	}
+
+	/**
+	 * Generates the "buildParallel" methods, which build the product of the builder
+	 * with large collections of child builders built concurrently on an executor.
+	 */
+	private void generateBuildParallelMethods(final boolean hasSuperClass) {
+		final JClass parallelBuildClass = this.pluginContext.codeModel.ref(ParallelBuild.class);
+		final JMethod buildParallelMethod = this.builderClass.raw.method(JMod.PUBLIC, this.definedClass, BuilderGenerator.BUILD_PARALLEL_METHOD_NAME);
+		final JVar executorParam = buildParallelMethod.param(JMod.FINAL, Executor.class, BuilderGenerator.EXECUTOR_PARAM_NAME);
+		final JVar thresholdParam = buildParallelMethod.param(JMod.FINAL, int.class, BuilderGenerator.THRESHOLD_PARAM_NAME);
+		buildParallelMethod.javadoc().append(getMessage("javadoc.method.buildParallel"));
+		buildParallelMethod.javadoc().addParam(executorParam).append(getMessage("javadoc.method.buildParallel.param.executor"));
+		buildParallelMethod.javadoc().addParam(thresholdParam).append(getMessage("javadoc.method.buildParallel.param.threshold"));
+		buildParallelMethod.javadoc().addReturn().append(getMessage("javadoc.method.buildParallel.returns"));
+		buildParallelMethod.body()._return(parallelBuildClass.staticInvoke("build").arg(executorParam).arg(thresholdParam).arg(JExpr._this()));
+		final JMethod convenienceMethod = this.builderClass.raw.method(JMod.PUBLIC, this.definedClass, BuilderGenerator.BUILD_PARALLEL_METHOD_NAME);
+		final JVar convenienceExecutorParam = convenienceMethod.param(JMod.FINAL, Executor.class, BuilderGenerator.EXECUTOR_PARAM_NAME);
+		convenienceMethod.javadoc().append(getMessage("javadoc.method.buildParallel"));
+		convenienceMethod.javadoc().addParam(convenienceExecutorParam).append(getMessage("javadoc.method.buildParallel.param.executor"));
+		convenienceMethod.javadoc().addReturn().append(getMessage("javadoc.method.buildParallel.returns"));
+		convenienceMethod.body()._return(JExpr.invoke(buildParallelMethod).arg(convenienceExecutorParam).arg(parallelBuildClass.staticRef("DEFAULT_THRESHOLD")));
+		if (hasSuperClass) {
+			buildParallelMethod.annotate(Override.class);
+			convenienceMethod.annotate(Override.class);
+		}
+	}
+
+	/**
+	 * Generates the "reset" method, which returns a builder to the state of a new builder,
+	 * so that it can be used to build another instance. Child builders are discarded
+	 * instead of being reset, because a reset child builder would build an empty object.
+	 */
+	private void generateResetMethod(final boolean hasSuperClass) {
+		final JMethod resetMethod = this.builderClass.raw.method(JMod.PUBLIC, this.builderClass.type, BuilderGenerator.RESET_METHOD_NAME);
+		resetMethod.javadoc().append(getMessage("javadoc.method.reset"));
+		resetMethod.javadoc().addReturn().append(getMessage("javadoc.method.reset.returns"));
+		if (hasSuperClass) {
+			resetMethod.annotate(Override.class);
+			resetMethod.body().invoke(JExpr._super(), resetMethod);
+		} else if (this.storedValueField != null) {
+			resetMethod.body().assign(this.storedValueField, JExpr._null());
+		}
+		for (final JFieldVar field : this.builderClass.raw.fields().values()) {
+			if ((field.mods().getValue() & (JMod.FINAL | JMod.STATIC)) == 0 && !field.name().equals(BuilderGenerator.STORED_VALUE_PARAM_NAME)) {
+				resetMethod.body().assign(JExpr._this().ref(field), defaultValue(field.type()));
+			}
+		}
+		resetMethod.body()._return(JExpr._this());
+	}
+
+	/**
+	 * Generates a static method returning a builder that is reused by all calls on the same thread.
+	 * The pooled builder is marked as in use until its build method is called, and a call
+	 * while it is in use, e.g. to build a nested object of the same class, gets a new builder instead.
+	 * The in-use flag is declared after the reset method has been generated, so it isn't reset.
+	 */
+	private void generatePooledBuilderMethod() {
+		final JClass builderType = this.builderClass.raw.narrow(Void.class);
+		final JFieldVar inUseField = this.builderClass.raw.field(JMod.PRIVATE, this.pluginContext.codeModel.BOOLEAN, BuilderGenerator.IN_USE_FIELD_NAME);
+		final JMethod buildMethod = this.builderClass.raw.getMethod(this.settings.getBuildMethodName(), new JType[0]);
+		final JBlock buildBody = buildMethod.body();
+		final int pos = buildBody.pos(0);
+		buildBody.assign(JExpr._this().ref(inUseField), JExpr.FALSE);
+		buildBody.pos(pos + 1);
+		final JFieldVar pooledBuilderField = this.definedClass.field(JMod.PRIVATE | JMod.STATIC | JMod.FINAL, this.pluginContext.codeModel.ref(ThreadLocal.class).narrow(builderType), BuilderGenerator.POOLED_BUILDER_FIELD_NAME,
+				JExpr._new(this.pluginContext.codeModel.ref(ThreadLocal.class).narrow(builderType)));
+		final JMethod pooledBuilderMethod = this.definedClass.method(JMod.PUBLIC | JMod.STATIC, builderType, BuilderGenerator.POOLED_BUILDER_METHOD_NAME);
+		pooledBuilderMethod.javadoc().append(getMessage("javadoc.method.pooledBuilder", this.definedClass.name()));
+		pooledBuilderMethod.javadoc().addReturn().append(getMessage("javadoc.method.pooledBuilder.returns", this.definedClass.name()));
+		final JVar builderVar = pooledBuilderMethod.body().decl(JMod.FINAL, builderType, BuilderGenerator.POOLED_BUILDER_VAR_NAME, pooledBuilderField.invoke("get"));
+		final JConditional ifNull = pooledBuilderMethod.body()._if(builderVar.eq(JExpr._null()));
+		final JVar newBuilderVar = ifNull._then().decl(JMod.FINAL, builderType, BuilderGenerator.NEW_BUILDER_VAR_NAME, JExpr._new(builderType).arg(JExpr._null()).arg(JExpr._null()).arg(JExpr.FALSE));
+		ifNull._then().assign(newBuilderVar.ref(inUseField), JExpr.TRUE);
+		ifNull._then().add(pooledBuilderField.invoke("set").arg(newBuilderVar));
+		ifNull._then()._return(newBuilderVar);
+		pooledBuilderMethod.body()._if(builderVar.ref(inUseField))._then()._return(JExpr._new(builderType).arg(JExpr._null()).arg(JExpr._null()).arg(JExpr.FALSE));
+		pooledBuilderMethod.body().assign(builderVar.ref(inUseField), JExpr.TRUE);
+		pooledBuilderMethod.body()._return(builderVar.invoke(BuilderGenerator.RESET_METHOD_NAME));
+	}
+
+	private JExpression defaultValue(final JType type) {
+		if (!type.isPrimitive()) {
+			return JExpr._null();
+		} else if (type == this.pluginContext.codeModel.BOOLEAN) {
+			return JExpr.FALSE;
+		} else {
+			return JExpr.cast(type, JExpr.lit(0));
+		}
 	}
 
 	private void generateBuilderMemberOverrides(final TypeOutline superClass) throws SAXException {
@@ -774,7 +907,7 @@ class BuilderGenerator {
 	JForEach loop(final JBlock block, final JExpression source, final JType sourceElementType, final JAssignmentTarget target, final JType targetElementType) {
 		final JConditional ifNull = block._if(source.eq(JExpr._null()));
 		ifNull._then().assign(target, JExpr._null());
-		ifNull._else().assign(target, JExpr._new(this.pluginContext.arrayListClass.narrow(targetElementType)));
+		ifNull._else().assign(target, JExpr._new(this.pluginContext.arrayListClass.narrow(targetElementType)).arg(source.invoke("size")));
 		return ifNull._else().forEach(sourceElementType, BuilderGenerator.ITEM_VAR_NAME, source);
 	}
 
@@ -40,8 +40,12 @@ public class BuilderGeneratorSettings {
 	private final boolean copyAlways;
 	private final String buildMethodName;
 	private final String endMethodName;
+	private final boolean generatingReset;
+	private final boolean generatingPooledBuilder;
+	private final boolean generatingValidation;
+	private final boolean generatingParallelBuild;
 
-	public BuilderGeneratorSettings(final boolean generatingPartialCopy, final boolean generatingNarrowCopy, final String newBuilderMethodName, final String newCopyBuilderMethodName, final String builderFieldSuffix, final ClassName builderClassName, final String copyToMethodName, final boolean copyAlways, final String buildMethodName, final String endMethodName) {
+	public BuilderGeneratorSettings(final boolean generatingPartialCopy, final boolean generatingNarrowCopy, final String newBuilderMethodName, final String newCopyBuilderMethodName, final String builderFieldSuffix, final ClassName builderClassName, final String copyToMethodName, final boolean copyAlways, final String buildMethodName, final String endMethodName, final boolean generatingReset, final boolean generatingPooledBuilder, final boolean generatingValidation, final boolean generatingParallelBuild) {
 		this.generatingPartialCopy = generatingPartialCopy;
 		this.generatingNarrowCopy = generatingNarrowCopy;
 		this.newBuilderMethodName = newBuilderMethodName;
@@ -52,6 +56,10 @@ public class BuilderGeneratorSettings {
 		this.copyAlways = copyAlways;
 		this.buildMethodName = buildMethodName;
 		this.endMethodName = endMethodName;
+		this.generatingReset = generatingReset;
+		this.generatingPooledBuilder = generatingPooledBuilder;
+		this.generatingValidation = generatingValidation;
+		this.generatingParallelBuild = generatingParallelBuild;
 	}
 
 	public boolean isGeneratingPartialCopy() {
@@ -93,4 +101,20 @@ public class BuilderGeneratorSettings {
 	public String getEndMethodName() {
 		return this.endMethodName;
 	}
+
+	public boolean isGeneratingReset() {
+		return this.generatingReset || this.generatingPooledBuilder;
+	}
+
+	public boolean isGeneratingPooledBuilder() {
+		return this.generatingPooledBuilder;
+	}
+
+	public boolean isGeneratingValidation() {
+		return this.generatingValidation;
+	}
+
+	public boolean isGeneratingParallelBuild() {
+		return this.generatingParallelBuild;
+	}
 }
@@ -0,0 +1,372 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2014 Klemm Software Consulting, Mirko Klemm
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+
+package com.kscs.util.plugins.xjc;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.text.MessageFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.ResourceBundle;
+import java.util.Set;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+import javax.xml.XMLConstants;
+
+import org.xml.sax.SAXException;
+import org.xml.sax.SAXParseException;
+
+import com.kscs.util.plugins.xjc.outline.ParticleOccurrences;
+import com.sun.codemodel.JBlock;
+import com.sun.codemodel.JClass;
+import com.sun.codemodel.JDefinedClass;
+import com.sun.codemodel.JExpr;
+import com.sun.codemodel.JExpression;
+import com.sun.codemodel.JFieldVar;
+import com.sun.codemodel.JForEach;
+import com.sun.codemodel.JInvocation;
+import com.sun.codemodel.JMod;
+import com.sun.codemodel.JOp;
+import com.sun.codemodel.JType;
+import com.sun.codemodel.JVar;
+import com.sun.tools.xjc.model.CAttributePropertyInfo;
+import com.sun.tools.xjc.model.CElementPropertyInfo;
+import com.sun.tools.xjc.model.CPropertyInfo;
+import com.sun.tools.xjc.outline.ClassOutline;
+import com.sun.tools.xjc.outline.FieldOutline;
+import com.sun.xml.xsom.XSAttributeUse;
+import com.sun.xml.xsom.XSComponent;
+import com.sun.xml.xsom.XSElementDecl;
+import com.sun.xml.xsom.XSFacet;
+import com.sun.xml.xsom.XSParticle;
+import com.sun.xml.xsom.XSRestrictionSimpleType;
+import com.sun.xml.xsom.XSSimpleType;
+
+/**
+ * Generates the checks of schema constraints into the "init" method of a builder,
+ * so that "build()" fails with an {@link IllegalStateException} if the product
+ * would not be valid against the schema.
+ * Checks are generated for required elements and attributes, the number of items
+ * of collection properties, and the length, pattern, enumeration and range facets
+ * of simple types. Patterns and enumerations are stored in static final fields of
+ * the builder class.
+ */
+class BuilderValidationGenerator {
+	private static final String ITEM_VAR_NAME = "_item";
+
+	private final PluginContext pluginContext;
+	private final ClassOutline classOutline;
+	private final JDefinedClass builderClass;
+	private final ResourceBundle resources;
+	private final ParticleOccurrences occurrences;
+
+	BuilderValidationGenerator(final PluginContext pluginContext, final ClassOutline classOutline, final JDefinedClass builderClass) {
+		this.pluginContext = pluginContext;
+		this.classOutline = classOutline;
+		this.builderClass = builderClass;
+		this.resources = ResourceBundle.getBundle(BuilderGenerator.class.getName());
+		this.occurrences = new ParticleOccurrences(classOutline);
+	}
+
+	void generateValidation(final JBlock body, final JVar productParam) throws SAXException {
+		for (final FieldOutline fieldOutline : this.classOutline.getDeclaredFields()) {
+			final CPropertyInfo propertyInfo = fieldOutline.getPropertyInfo();
+			final String fieldName = propertyInfo.getName(false);
+			final JFieldVar fieldVar = this.classOutline.implClass.fields().get(fieldName);
+			final XSComponent schemaComponent = propertyInfo.getSchemaComponent();
+			if (fieldVar == null) {
+				continue;
+			}
+			if (propertyInfo instanceof CElementPropertyInfo && schemaComponent instanceof XSParticle && ((XSParticle)schemaComponent).getTerm().isElementDecl()) {
+				final XSParticle particle = (XSParticle)schemaComponent;
+				final XSElementDecl elementDecl = particle.getTerm().asElementDecl();
+				final XSSimpleType simpleType = elementDecl.getType().isSimpleType() ? elementDecl.getType().asSimpleType() : null;
+				if (simpleType != null && simpleType.isList()) {
+					continue;
+				}
+				final boolean bounded = this.occurrences.contains(particle);
+				if (propertyInfo.isCollection()) {
+					generateCollectionValidation(body, productParam.ref(fieldName), fieldVar.type(), fieldName, bounded ? particle : null, simpleType);
+				} else {
+					generateSingleValidation(body, productParam.ref(fieldName), fieldVar.type(), fieldName, bounded && this.occurrences.getMinOccurs(particle) > 0 && !elementDecl.isNillable(), simpleType);
+				}
+			} else if (propertyInfo instanceof CAttributePropertyInfo && schemaComponent instanceof XSAttributeUse) {
+				final XSAttributeUse attributeUse = (XSAttributeUse)schemaComponent;
+				final XSSimpleType simpleType = attributeUse.getDecl().getType();
+				if (!propertyInfo.isCollection() && !simpleType.isList()) {
+					generateSingleValidation(body, productParam.ref(fieldName), fieldVar.type(), fieldName, attributeUse.isRequired(), simpleType);
+				}
+			}
+		}
+	}
+
+	private void generateSingleValidation(final JBlock body, final JExpression value, final JType type, final String fieldName, final boolean required, final XSSimpleType simpleType) throws SAXException {
+		if (required && !type.isPrimitive()) {
+			body._if(value.eq(JExpr._null()))._then()._throw(violation(fieldName, "is required", null));
+		}
+		final Facets facets = new Facets(simpleType);
+		if (facets.appliesTo(type)) {
+			generateFacetValidation(type.isPrimitive() ? body : body._if(value.ne(JExpr._null()))._then(), value, type, fieldName, facets);
+		}
+	}
+
+	private void generateCollectionValidation(final JBlock body, final JExpression value, final JType type, final String fieldName, final XSParticle particle, final XSSimpleType simpleType) throws SAXException {
+		if (!(type instanceof JClass) || ((JClass)type).getTypeParameters().isEmpty()) {
+			return;
+		}
+		if (particle != null) {
+			final JExpression size = JOp.cond(value.eq(JExpr._null()), JExpr.lit(0), value.invoke("size"));
+			final int minOccurs = this.occurrences.getMinOccurs(particle);
+			final int maxOccurs = this.occurrences.getMaxOccurs(particle);
+			if (minOccurs > 0) {
+				body._if(size.lt(JExpr.lit(minOccurs)))._then()._throw(violation(fieldName, "must have at least " + minOccurs + " items", null));
+			}
+			if (maxOccurs >= 0) {
+				body._if(size.gt(JExpr.lit(maxOccurs)))._then()._throw(violation(fieldName, "must have at most " + maxOccurs + " items", null));
+			}
+		}
+		final JClass itemType = ((JClass)type).getTypeParameters().get(0);
+		final Facets facets = new Facets(simpleType);
+		if (facets.appliesTo(itemType)) {
+			final JForEach forEach = body._if(value.ne(JExpr._null()))._then().forEach(itemType, BuilderValidationGenerator.ITEM_VAR_NAME, value);
+			generateFacetValidation(forEach.body()._if(forEach.var().ne(JExpr._null()))._then(), forEach.var(), itemType, fieldName, facets);
+		}
+	}
+
+	private void generateFacetValidation(final JBlock block, final JExpression value, final JType type, final String fieldName, final Facets facets) throws SAXException {
+		final ValueKind kind = ValueKind.of(type);
+		final String constantPrefix = this.pluginContext.outline.getModel().getNameConverter().toConstantName(fieldName);
+		if (kind == ValueKind.STRING || kind == ValueKind.BINARY) {
+			final JExpression length = kind == ValueKind.STRING ? value.invoke("codePointCount").arg(JExpr.lit(0)).arg(value.invoke("length")) : value.ref("length");
+			final XSFacet lengthFacet = facets.get(XSFacet.FACET_LENGTH);
+			final XSFacet minLengthFacet = facets.get(XSFacet.FACET_MINLENGTH);
+			final XSFacet maxLengthFacet = facets.get(XSFacet.FACET_MAXLENGTH);
+			if (lengthFacet != null) {
+				block._if(length.ne(JExpr.lit(Integer.parseInt(lengthFacet.getValue().value))))._then()._throw(violation(fieldName, "must have a length of " + lengthFacet.getValue().value, kind == ValueKind.STRING ? value : null));
+			}
+			if (minLengthFacet != null) {
+				block._if(length.lt(JExpr.lit(Integer.parseInt(minLengthFacet.getValue().value))))._then()._throw(violation(fieldName, "must have a length of at least " + minLengthFacet.getValue().value, kind == ValueKind.STRING ? value : null));
+			}
+			if (maxLengthFacet != null) {
+				block._if(length.gt(JExpr.lit(Integer.parseInt(maxLengthFacet.getValue().value))))._then()._throw(violation(fieldName, "must have a length of at most " + maxLengthFacet.getValue().value, kind == ValueKind.STRING ? value : null));
+			}
+		}
+		if (kind == ValueKind.STRING) {
+			int index = 0;
+			for (final List<XSFacet> patternStep : facets.patterns) {
+				final String regex;
+				try {
+					regex = toRegex(patternStep);
+					Pattern.compile(regex);
+				} catch (final PatternSyntaxException psex) {
+					this.pluginContext.errorHandler.warning(new SAXParseException(getMessage("error.unsupportedPattern", psex.getPattern(), this.classOutline.implClass.fullName(), fieldName, psex.getDescription()), patternStep.get(0).getLocator()));
+					continue;
+				}
+				final JFieldVar patternField = this.builderClass.field(JMod.PRIVATE | JMod.STATIC | JMod.FINAL, Pattern.class, constantPrefix + "_PATTERN" + (index++ > 0 ? "_" + index : ""), this.pluginContext.codeModel.ref(Pattern.class).staticInvoke("compile").arg(JExpr.lit(regex)));
+				block._if(patternField.invoke("matcher").arg(value).invoke("matches").not())._then()._throw(violation(fieldName, "must match the pattern \"" + toSchemaRegex(patternStep) + "\"", value));
+			}
+			if (!facets.enumerations.isEmpty()) {
+				final JInvocation asList = this.pluginContext.codeModel.ref(Arrays.class).staticInvoke("asList");
+				for (final XSFacet enumeration : facets.enumerations) {
+					asList.arg(JExpr.lit(enumeration.getValue().value));
+				}
+				final JClass setType = this.pluginContext.codeModel.ref(Set.class).narrow(String.class);
+				final JFieldVar valuesField = this.builderClass.field(JMod.PRIVATE | JMod.STATIC | JMod.FINAL, setType, constantPrefix + "_VALUES", JExpr._new(this.pluginContext.codeModel.ref(HashSet.class).narrow(String.class)).arg(asList));
+				block._if(valuesField.invoke("contains").arg(value).not())._then()._throw(violation(fieldName, "must be one of the enumerated values", value));
+			}
+		}
+		if (kind != null && kind.numeric) {
+			generateRangeValidation(block, value, type, kind, fieldName, constantPrefix, facets.get(XSFacet.FACET_MININCLUSIVE), "must be at least ");
+			generateRangeValidation(block, value, type, kind, fieldName, constantPrefix, facets.get(XSFacet.FACET_MINEXCLUSIVE), "must be greater than ");
+			generateRangeValidation(block, value, type, kind, fieldName, constantPrefix, facets.get(XSFacet.FACET_MAXINCLUSIVE), "must be at most ");
+			generateRangeValidation(block, value, type, kind, fieldName, constantPrefix, facets.get(XSFacet.FACET_MAXEXCLUSIVE), "must be less than ");
+		}
+	}
+
+	private void generateRangeValidation(final JBlock block, final JExpression value, final JType type, final ValueKind kind, final String fieldName, final String constantPrefix, final XSFacet facet, final String constraint) {
+		if (facet == null) {
+			return;
+		}
+		final String limit = facet.getValue().value.trim();
+		final JExpression left;
+		final JExpression right;
+		try {
+			switch (kind) {
+				case INTEGER:
+					left = value;
+					right = "long".equals(type.unboxify().fullName()) ? JExpr.lit(Long.parseLong(limit)) : JExpr.lit(Integer.parseInt(limit));
+					break;
+				case DECIMAL:
+					left = value;
+					right = JExpr.lit(Double.parseDouble(limit));
+					break;
+				default:
+					left = value.invoke("compareTo").arg(this.builderClass.field(JMod.PRIVATE | JMod.STATIC | JMod.FINAL, type, constantPrefix + "_" + this.pluginContext.outline.getModel().getNameConverter().toConstantName(facet.getName()),
+							JExpr._new((JClass)type).arg(JExpr.lit(kind == ValueKind.BIG_INTEGER ? new BigInteger(limit).toString() : new BigDecimal(limit).toString()))));
+					right = JExpr.lit(0);
+					break;
+			}
+		} catch (final NumberFormatException nfex) {
+			return;
+		}
+		final JExpression violated;
+		switch (facet.getName()) {
+			case XSFacet.FACET_MININCLUSIVE:
+				violated = left.lt(right);
+				break;
+			case XSFacet.FACET_MINEXCLUSIVE:
+				violated = left.lte(right);
+				break;
+			case XSFacet.FACET_MAXINCLUSIVE:
+				violated = left.gt(right);
+				break;
+			default:
+				violated = left.gte(right);
+				break;
+		}
+		block._if(violated)._then()._throw(violation(fieldName, constraint + limit, value));
+	}
+
+	private JInvocation violation(final String fieldName, final String constraint, final JExpression value) {
+		final JExpression message = JExpr.lit(this.classOutline.implClass.name() + "." + fieldName + " " + constraint + (value == null ? "" : ": "));
+		return JExpr._new(this.pluginContext.codeModel.ref(IllegalStateException.class)).arg(value == null ? message : message.plus(value));
+	}
+
+	/**
+	 * Translates the patterns of a derivation step into a Java regular expression
+	 * matching a value if it matches any of the patterns.
+	 */
+	private static String toRegex(final List<XSFacet> patterns) {
+		if (patterns.size() == 1) {
+			return SchemaRegexTranslator.translate(patterns.get(0).getValue().value);
+		}
+		final StringBuilder sb = new StringBuilder();
+		for (final XSFacet pattern : patterns) {
+			sb.append(sb.length() > 0 ? "|" : "").append("(?:").append(SchemaRegexTranslator.translate(pattern.getValue().value)).append(")");
+		}
+		return sb.toString();
+	}
+
+	private static String toSchemaRegex(final List<XSFacet> patterns) {
+		final StringBuilder sb = new StringBuilder();
+		for (final XSFacet pattern : patterns) {
+			sb.append(sb.length() > 0 ? "|" : "").append(pattern.getValue().value);
+		}
+		return sb.toString();
+	}
+
+	private String getMessage(final String key, final Object... args) {
+		return MessageFormat.format(this.resources.getString(key), args);
+	}
+
+	private enum ValueKind {
+		STRING(false), BINARY(false), INTEGER(true), DECIMAL(true), BIG_INTEGER(true), BIG_DECIMAL(true);
+
+		final boolean numeric;
+
+		ValueKind(final boolean numeric) {
+			this.numeric = numeric;
+		}
+
+		static ValueKind of(final JType type) {
+			switch (type.unboxify().fullName()) {
+				case "java.lang.String":
+					return STRING;
+				case "byte[]":
+					return BINARY;
+				case "int":
+				case "long":
+				case "short":
+				case "byte":
+					return INTEGER;
+				case "float":
+				case "double":
+					return DECIMAL;
+				case "java.math.BigInteger":
+					return BIG_INTEGER;
+				case "java.math.BigDecimal":
+					return BIG_DECIMAL;
+				default:
+					return null;
+			}
+		}
+	}
+
+	/**
+	 * The facets of a simple type and of the user-defined types it is derived from.
+	 * Single-valued facets and enumerations of a derived type override those of its
+	 * base types, while a value must match the patterns of every derivation step.
+	 */
+	private static class Facets {
+		final Map<String, XSFacet> facets = new LinkedHashMap<>();
+		final List<List<XSFacet>> patterns = new ArrayList<>();
+		final List<XSFacet> enumerations = new ArrayList<>();
+
+		Facets(final XSSimpleType simpleType) {
+			for (XSSimpleType type = simpleType; type != null && type.isRestriction() && !XMLConstants.W3C_XML_SCHEMA_NS_URI.equals(type.getTargetNamespace()); type = type.getSimpleBaseType()) {
+				final XSRestrictionSimpleType restriction = type.asRestriction();
+				final List<XSFacet> stepPatterns = new ArrayList<>();
+				final List<XSFacet> stepEnumerations = new ArrayList<>();
+				for (final XSFacet facet : restriction.getDeclaredFacets()) {
+					if (XSFacet.FACET_PATTERN.equals(facet.getName())) {
+						stepPatterns.add(facet);
+					} else if (XSFacet.FACET_ENUMERATION.equals(facet.getName())) {
+						stepEnumerations.add(facet);
+					} else if (!this.facets.containsKey(facet.getName())) {
+						this.facets.put(facet.getName(), facet);
+					}
+				}
+				if (!stepPatterns.isEmpty()) {
+					this.patterns.add(stepPatterns);
+				}
+				if (this.enumerations.isEmpty()) {
+					this.enumerations.addAll(stepEnumerations);
+				}
+			}
+		}
+
+		XSFacet get(final String name) {
+			return this.facets.get(name);
+		}
+
+		boolean appliesTo(final JType type) {
+			final ValueKind kind = ValueKind.of(type);
+			if (kind == null) {
+				return false;
+			} else if (kind.numeric) {
+				return this.facets.containsKey(XSFacet.FACET_MININCLUSIVE) || this.facets.containsKey(XSFacet.FACET_MINEXCLUSIVE) || this.facets.containsKey(XSFacet.FACET_MAXINCLUSIVE) || this.facets.containsKey(XSFacet.FACET_MAXEXCLUSIVE);
+			} else {
+				final boolean lengthChecked = this.facets.containsKey(XSFacet.FACET_LENGTH) || this.facets.containsKey(XSFacet.FACET_MINLENGTH) || this.facets.containsKey(XSFacet.FACET_MAXLENGTH);
+				return lengthChecked || kind == ValueKind.STRING && (!this.patterns.isEmpty() || !this.enumerations.isEmpty());
+			}
+		}
+	}
+}
@@ -43,5 +43,10 @@ public interface CopyGenerator {
 
 	JTypedInvocation generatePartialArgs(final JTypedInvocation invocation);
 
+	/**
+	 * @return true if the property tree is evaluated at runtime, so that collections of partially
+	 * copyable items can be copied by the shared helper methods of compact mode
+	 */
+	boolean isRuntimeTree();
 
 }
@@ -0,0 +1,266 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2014 Klemm Software Consulting, Mirko Klemm
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.kscs.util.plugins.xjc;
+
+import java.text.MessageFormat;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.ResourceBundle;
+import java.util.Set;
+
+import com.kscs.util.jaxb.PropertyTree;
+import com.kscs.util.jaxb.PropertyTreeUse;
+import com.kscs.util.plugins.xjc.codemodel.JTypedInvocation;
+import com.sun.codemodel.JBlock;
+import com.sun.codemodel.JDefinedClass;
+import com.sun.codemodel.JDocComment;
+import com.sun.codemodel.JExpr;
+import com.sun.codemodel.JExpression;
+import com.sun.codemodel.JFieldVar;
+import com.sun.codemodel.JInvocation;
+import com.sun.codemodel.JMethod;
+import com.sun.codemodel.JMod;
+import com.sun.codemodel.JType;
+import com.sun.codemodel.JVar;
+import com.sun.tools.xjc.outline.ClassOutline;
+
+/**
+ * Generates copy methods specialised for a fixed property tree, so that
+ * the decisions which properties to copy are made at generation time
+ * instead of evaluating the tree on every copy.
+ * For every distinct subtree reached from a profile's tree, a method is
+ * generated on all classes of the hierarchy of the property type, so that
+ * the copy of a property is still dispatched to its runtime class.
+ */
+class CopyProfileGenerator {
+	private static final ResourceBundle RESOURCE_BUNDLE = ResourceBundle.getBundle(DeepCopyGenerator.class.getName());
+	public static final String METHOD_NAME_PREFIX = "copyProfile";
+
+	private final PluginContext pluginContext;
+	private final String profileName;
+	private final String methodName;
+	private final PropertyTree propertyTree;
+	private final PropertyTreeUse propertyTreeUse;
+	private final Map<PropertyTree, String> methodNames = new HashMap<>();
+	private final Set<String> generatedMethods = new HashSet<>();
+	private final Deque<ProfileMethod> pendingMethods = new ArrayDeque<>();
+	private final Map<String, JFieldVar> treeConstants = new HashMap<>();
+
+	CopyProfileGenerator(final PluginContext pluginContext, final String profileName, final PropertyTree propertyTree, final PropertyTreeUse propertyTreeUse) {
+		this.pluginContext = pluginContext;
+		this.profileName = profileName;
+		this.methodName = CopyProfileGenerator.METHOD_NAME_PREFIX + Character.toUpperCase(profileName.charAt(0)) + profileName.substring(1);
+		this.propertyTree = propertyTree;
+		this.propertyTreeUse = propertyTreeUse;
+		this.methodNames.put(propertyTree, this.methodName);
+	}
+
+	void generateCopyMethods() {
+		for (final ClassOutline classOutline : this.pluginContext.outline.getClasses()) {
+			if (this.generatedMethods.add(classOutline.implClass.fullName() + "#" + this.methodName)) {
+				this.pendingMethods.add(new ProfileMethod(classOutline, this.propertyTree, this.methodName));
+			}
+		}
+		while (!this.pendingMethods.isEmpty()) {
+			generateCopyMethod(this.pendingMethods.remove());
+		}
+	}
+
+	private String requestCopyMethod(final ClassOutline propertyClass, final PropertyTree subTree) {
+		String subTreeMethodName = this.methodNames.get(subTree);
+		if (subTreeMethodName == null) {
+			subTreeMethodName = this.methodName + "_" + this.methodNames.size();
+			this.methodNames.put(subTree, subTreeMethodName);
+		}
+		final ClassOutline hierarchyRoot = getHierarchyRoot(propertyClass);
+		for (final ClassOutline classOutline : this.pluginContext.outline.getClasses()) {
+			if (getHierarchyRoot(classOutline) == hierarchyRoot && this.generatedMethods.add(classOutline.implClass.fullName() + "#" + subTreeMethodName)) {
+				this.pendingMethods.add(new ProfileMethod(classOutline, subTree, subTreeMethodName));
+			}
+		}
+		return subTreeMethodName;
+	}
+
+	private static ClassOutline getHierarchyRoot(final ClassOutline classOutline) {
+		return classOutline.getSuperClass() == null ? classOutline : getHierarchyRoot(classOutline.getSuperClass());
+	}
+
+	private void generateCopyMethod(final ProfileMethod profileMethod) {
+		final JDefinedClass definedClass = profileMethod.classOutline.implClass;
+		final JMethod copyMethod = definedClass.method(JMod.PUBLIC, definedClass, profileMethod.methodName);
+		if (profileMethod.methodName.equals(this.methodName)) {
+			copyMethod.javadoc().append(getMessage("copyProfile.javadoc.desc", this.profileName, this.propertyTreeUse, this.propertyTree));
+		} else {
+			copyMethod.javadoc().append(getMessage("copyProfile.javadoc.subTree", this.profileName, profileMethod.propertyTree));
+		}
+		final JBlock body = copyMethod.body();
+		final JVar newObjectVar;
+		if (profileMethod.classOutline.getSuperClass() != null) {
+			copyMethod.annotate(Override.class);
+			newObjectVar = body.decl(JMod.FINAL, definedClass, this.pluginContext.newObjectVarName, JExpr.cast(definedClass, JExpr._super().invoke(profileMethod.methodName)));
+		} else if (this.pluginContext.partialCopyableInterface.isAssignableFrom(definedClass._extends())) {
+			newObjectVar = body.decl(JMod.FINAL, definedClass, this.pluginContext.newObjectVarName, JExpr.cast(definedClass, JExpr._super().invoke(this.pluginContext.copyMethodName).arg(treeConstant(definedClass, profileMethod.propertyTree)).arg(useConst())));
+		} else if (this.pluginContext.copyableInterface.isAssignableFrom(definedClass._extends())) {
+			newObjectVar = body.decl(JMod.FINAL, definedClass, this.pluginContext.newObjectVarName, JExpr.cast(definedClass, JExpr._super().invoke(this.pluginContext.copyMethodName)));
+		} else {
+			newObjectVar = body.decl(JMod.FINAL, definedClass, this.pluginContext.newObjectVarName, null);
+			final JBlock maybeTryBlock = this.pluginContext.catchCloneNotSupported(body, definedClass._extends());
+			maybeTryBlock.assign(newObjectVar, JExpr.cast(definedClass, JExpr._super().invoke(this.pluginContext.cloneMethodName)));
+		}
+		new DeepCopyGenerator(this.pluginContext, profileMethod.classOutline).generateFieldCopyExpressions(new ProfileCopyGenerator(definedClass, profileMethod.propertyTree), body, newObjectVar, JExpr._this());
+		body._return(newObjectVar);
+	}
+
+	/**
+	 * Gets a constant holding a property tree, for copies delegated to methods that evaluate
+	 * the tree at runtime, so that the tree is parsed only once when the class is initialized.
+	 */
+	private JFieldVar treeConstant(final JDefinedClass definedClass, final PropertyTree tree) {
+		final String key = definedClass.fullName() + "#" + tree;
+		JFieldVar constant = this.treeConstants.get(key);
+		if (constant == null) {
+			final String constantPrefix = "_" + this.pluginContext.outline.getModel().getNameConverter().toConstantName(this.methodName) + "_TREE";
+			String constantName = constantPrefix;
+			for (int i = 1; definedClass.fields().containsKey(constantName); i++) {
+				constantName = constantPrefix + i;
+			}
+			constant = definedClass.field(JMod.PRIVATE | JMod.STATIC | JMod.FINAL, PropertyTree.class, constantName,
+					this.pluginContext.codeModel.ref(PropertyTree.class).staticInvoke("parse").arg(JExpr.lit(tree.toString())));
+			this.treeConstants.put(key, constant);
+		}
+		return constant;
+	}
+
+	private JExpression useConst() {
+		return this.propertyTreeUse == PropertyTreeUse.INCLUDE ? this.pluginContext.includeConst : this.pluginContext.excludeConst;
+	}
+
+	private String getMessage(final String resourceKey, final Object... args) {
+		return MessageFormat.format(CopyProfileGenerator.RESOURCE_BUNDLE.getString(resourceKey), args);
+	}
+
+	/**
+	 * Resolves the property tree of a profile method at generation time,
+	 * so that {@link DeepCopyGenerator} only generates the copies of the included properties,
+	 * and copies nested objects by the methods generated for their subtrees.
+	 */
+	private final class ProfileCopyGenerator implements CopyGenerator {
+		private final JDefinedClass definedClass;
+		private final PropertyTree propertyTree;
+
+		ProfileCopyGenerator(final JDefinedClass definedClass, final PropertyTree propertyTree) {
+			this.definedClass = definedClass;
+			this.propertyTree = propertyTree;
+		}
+
+		@Override
+		public void generatePartialArgs(final JDocComment javadoc) {
+		}
+
+		@Override
+		public PropertyTreeVarGenerator createPropertyTreeVarGenerator(final JBlock body, final String fieldName) {
+			return new TreeVarGenerator(this.definedClass, this.propertyTree.get(fieldName));
+		}
+
+		@Override
+		public JVar getPropertyTreeUseParam() {
+			return null;
+		}
+
+		@Override
+		public JVar getPropertyTreeParam() {
+			return null;
+		}
+
+		@Override
+		public JTypedInvocation generatePartialArgs(final JTypedInvocation invocation) {
+			return invocation;
+		}
+
+		@Override
+		public boolean isRuntimeTree() {
+			return false;
+		}
+	}
+
+	private final class TreeVarGenerator implements PropertyTreeVarGenerator {
+		private final JDefinedClass definedClass;
+		private final PropertyTree fieldTree;
+
+		TreeVarGenerator(final JDefinedClass definedClass, final PropertyTree fieldTree) {
+			this.definedClass = definedClass;
+			this.fieldTree = fieldTree;
+		}
+
+		@Override
+		public JVar getPropertyTreeVar() {
+			return null;
+		}
+
+		@Override
+		public JExpression generatePartialArgs(final JExpression invocation) {
+			if (this.fieldTree != null && invocation instanceof JInvocation) {
+				return ((JInvocation)invocation).arg(treeConstant(this.definedClass, this.fieldTree)).arg(useConst());
+			} else {
+				return invocation;
+			}
+		}
+
+		@Override
+		public JExpression generatePartialCopy(final JExpression value, final JType valueType) {
+			if (this.fieldTree == null) {
+				// Not mentioned in an exclusion tree: Copy everything
+				return value.invoke(CopyProfileGenerator.this.pluginContext.copyMethodName);
+			}
+			final ClassOutline propertyClass = CopyProfileGenerator.this.pluginContext.getClassOutline(valueType);
+			if (propertyClass == null) {
+				return generatePartialArgs(value.invoke(CopyProfileGenerator.this.pluginContext.copyMethodName));
+			}
+			return value.invoke(requestCopyMethod(propertyClass, this.fieldTree));
+		}
+
+		@Override
+		public JBlock generateEnclosingBlock(final JBlock body) {
+			final boolean included = CopyProfileGenerator.this.propertyTreeUse == PropertyTreeUse.INCLUDE ? this.fieldTree != null : this.fieldTree == null || !this.fieldTree.isLeaf();
+			// The code copying an excluded property goes to a block that is never added to the method
+			return included ? body : new JBlock();
+		}
+	}
+
+	private static final class ProfileMethod {
+		final ClassOutline classOutline;
+		final PropertyTree propertyTree;
+		final String methodName;
+
+		ProfileMethod(final ClassOutline classOutline, final PropertyTree propertyTree, final String methodName) {
+			this.classOutline = classOutline;
+			this.propertyTree = propertyTree;
+			this.methodName = methodName;
+		}
+	}
+}
@@ -65,17 +65,16 @@ public class DeepClonePlugin extends AbstractPlugin {
 	@Override
 	public boolean run(final Outline outline, final Options opt, final ErrorHandler errorHandler) throws SAXException {
 		final PluginContext pluginContext = PluginContext.get(outline, opt, errorHandler);
+		try (final PluginContext.PluginRun pluginRun = pluginContext.beginRun(this)) {
+			for (final ClassOutline classOutline : outline.getClasses()) {
+				classOutline.implClass._implements(Cloneable.class);
+			}
 
-
-		for (final ClassOutline classOutline : outline.getClasses()) {
-			classOutline.implClass._implements(Cloneable.class);
-		}
-
-		for (final ClassOutline classOutline : outline.getClasses()) {
-			generateCloneMethod(pluginContext, classOutline);
+			for (final ClassOutline classOutline : outline.getClasses()) {
+				generateCloneMethod(pluginContext, classOutline);
+			}
+			return true;
 		}
-		return true;
-
 	}
 
 	private void generateCloneMethod(final PluginContext pluginContext, final ClassOutline classOutline) {
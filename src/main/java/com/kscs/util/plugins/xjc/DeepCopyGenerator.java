@@ -66,9 +66,13 @@ public class DeepCopyGenerator {
 			final JClass fieldType = (JClass) field.type();
 			if (this.pluginContext.collectionClass.isAssignableFrom(fieldType)) {
 				final JClass elementType = fieldType.getTypeParameters().get(0);
-				if (this.pluginContext.partialCopyableInterface.isAssignableFrom(elementType)) {
+				if (this.pluginContext.partialCopyableInterface.isAssignableFrom(elementType) && this.pluginContext.compact && cloneGenerator.isRuntimeTree()) {
+					currentBlock.assign(targetField, treeVarGenerator.generatePartialArgs(this.pluginContext.copiesClass.staticInvoke("copyAll").arg(sourceField)));
+				} else if (this.pluginContext.partialCopyableInterface.isAssignableFrom(elementType)) {
 					final JForEach forLoop = this.pluginContext.loop(currentBlock, sourceField, elementType, targetField, elementType);
-					forLoop.body().invoke(targetField, "add").arg(nullSafe(forLoop.var(), this.pluginContext.castOnDemand(elementType, treeVarGenerator.generatePartialArgs(forLoop.var().invoke(this.pluginContext.copyMethodName)))));
+					forLoop.body().invoke(targetField, "add").arg(nullSafe(forLoop.var(), this.pluginContext.castOnDemand(elementType, treeVarGenerator.generatePartialCopy(forLoop.var(), elementType))));
+				} else if (this.pluginContext.copyableInterface.isAssignableFrom(elementType) && this.pluginContext.compact) {
+					currentBlock.assign(targetField, this.pluginContext.copiesClass.staticInvoke("copyAll").arg(sourceField));
 				} else if (this.pluginContext.copyableInterface.isAssignableFrom(elementType)) {
 					final JForEach forLoop = this.pluginContext.loop(currentBlock, sourceField, elementType, targetField, elementType);
 					forLoop.body().invoke(targetField, "add").arg(nullSafe(forLoop.var(), this.pluginContext.castOnDemand(elementType, forLoop.var().invoke(this.pluginContext.copyMethodName))));
@@ -83,7 +87,7 @@ public class DeepCopyGenerator {
 				this.pluginContext.generateImmutableFieldInit(body, targetObject, field);
 
 			} else if (this.pluginContext.partialCopyableInterface.isAssignableFrom(fieldType)) {
-				currentBlock.assign(targetField, nullSafe(sourceField, this.pluginContext.castOnDemand(fieldType, treeVarGenerator.generatePartialArgs(sourceField.invoke(this.pluginContext.copyMethodName)))));
+				currentBlock.assign(targetField, nullSafe(sourceField, this.pluginContext.castOnDemand(fieldType, treeVarGenerator.generatePartialCopy(sourceField, fieldType))));
 			} else if (this.pluginContext.copyableInterface.isAssignableFrom(fieldType)) {
 				currentBlock.assign(targetField, nullSafe(sourceField, this.pluginContext.castOnDemand(fieldType, sourceField.invoke(this.pluginContext.copyMethodName))));
 			} else if (this.pluginContext.cloneableInterface.isAssignableFrom(fieldType)) {
@@ -124,7 +128,7 @@ public class DeepCopyGenerator {
 	}
 
 
-	private void generateFieldCopyExpressions(final CopyGenerator cloneGenerator, final JBlock body, final JExpression targetObject, final JExpression sourceObject) {
+	void generateFieldCopyExpressions(final CopyGenerator cloneGenerator, final JBlock body, final JExpression targetObject, final JExpression sourceObject) {
 		for (final FieldOutline fieldOutline : this.classOutline.getDeclaredFields()) {
 			final JFieldVar field = PluginUtil.getDeclaredField(fieldOutline);
 			if (field != null) {
@@ -24,19 +24,29 @@
 
 package com.kscs.util.plugins.xjc;
 
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
 import com.kscs.util.jaxb.Copyable;
 import com.kscs.util.jaxb.PartialCopyable;
+import com.kscs.util.jaxb.PropertyProjection;
 import com.kscs.util.jaxb.PropertyTree;
 import com.kscs.util.jaxb.PropertyTreeUse;
 import com.kscs.util.jaxb.Selector;
 import com.kscs.util.plugins.xjc.base.AbstractPlugin;
 import com.kscs.util.plugins.xjc.base.Opt;
+import com.sun.codemodel.ClassType;
+import com.sun.codemodel.JClassAlreadyExistsException;
+import com.sun.codemodel.JDefinedClass;
 import com.sun.codemodel.JMethod;
+import com.sun.codemodel.JMod;
 import com.sun.tools.xjc.Options;
 import com.sun.tools.xjc.outline.ClassOutline;
 import com.sun.tools.xjc.outline.Outline;
 import org.xml.sax.ErrorHandler;
 import org.xml.sax.SAXException;
+import org.xml.sax.SAXParseException;
 
 /**
  * XJC Plugin to generate copy and partial copy methods
@@ -52,6 +62,14 @@ public class DeepCopyPlugin extends AbstractPlugin {
 	protected String selectorClassName = "Selector";
 	@Opt
 	protected final String rootSelectorClassName = "Select";
+	@Opt
+	protected String copyOnlyProfiles = "";
+	@Opt
+	protected String copyExceptProfiles = "";
+	@Opt
+	protected boolean generateProjections = false;
+	@Opt
+	protected String projectionClassName = "Projection";
 
 	@Override
 	public String getOptionName() {
@@ -61,47 +79,139 @@ public class DeepCopyPlugin extends AbstractPlugin {
 	@Override
 	public boolean run(final Outline outline, final Options opt, final ErrorHandler errorHandler) throws SAXException {
 		final PluginContext pluginContext = PluginContext.get(outline, opt, errorHandler);
+		try (final PluginContext.PluginRun pluginRun = pluginContext.beginRun(this)) {
+			if(this.generateTools) {
+				pluginContext.writeSourceFile(Copyable.class);
+			}
 
-		if(this.generateTools) {
-			pluginContext.writeSourceFile(Copyable.class);
-		}
+			if (this.generatePartialCloneMethod) {
+				if (this.generateTools) {
+					pluginContext.writeSourceFile(PropertyTreeUse.class);
+					pluginContext.writeSourceFile(PartialCopyable.class);
+					pluginContext.writeSourceFile(PropertyTree.class);
+					pluginContext.writeSourceFile(Selector.class);
+					if (this.generateProjections) {
+						pluginContext.writeSourceFile(PropertyProjection.class);
+					}
+				}
+				final SelectorGenerator selectorGenerator = new SelectorGenerator(pluginContext, Selector.class, this.selectorClassName, this.rootSelectorClassName, null, null, pluginContext.cloneGraphClass);
+				selectorGenerator.generateMetaFields();
+			}
 
-		if (this.generatePartialCloneMethod) {
-			if (this.generateTools) {
-				pluginContext.writeSourceFile(PropertyTreeUse.class);
-				pluginContext.writeSourceFile(PartialCopyable.class);
-				pluginContext.writeSourceFile(PropertyTree.class);
-				pluginContext.writeSourceFile(Selector.class);
+			for (final ClassOutline classOutline : outline.getClasses()) {
+				classOutline.implClass._implements(Copyable.class);
+				if(this.generatePartialCloneMethod) {
+					classOutline.implClass._implements(PartialCopyable.class);
+				}
 			}
-			final SelectorGenerator selectorGenerator = new SelectorGenerator(pluginContext, Selector.class, this.selectorClassName, this.rootSelectorClassName, null, null, pluginContext.cloneGraphClass);
-			selectorGenerator.generateMetaFields();
+
+			for (final ClassOutline classOutline : outline.getClasses()) {
+				final DeepCopyGenerator deepCopyGenerator = new DeepCopyGenerator(pluginContext, classOutline);
+				deepCopyGenerator.generateCreateCopyMethod(false);
+				if (this.generatePartialCloneMethod) {
+					final JMethod partialCopyMethod =  deepCopyGenerator.generateCreateCopyMethod(true);
+					deepCopyGenerator.generateConveniencePartialCopyMethod(partialCopyMethod, pluginContext.copyExceptMethodName, pluginContext.excludeConst);
+					deepCopyGenerator.generateConveniencePartialCopyMethod(partialCopyMethod, pluginContext.copyOnlyMethodName, pluginContext.includeConst);
+				}
+				if (this.generateConstructor) {
+					deepCopyGenerator.generateDefaultConstructor();
+					deepCopyGenerator.generateCopyConstructor(false);
+					if (this.generatePartialCloneMethod) {
+						deepCopyGenerator.generateCopyConstructor(true);
+					}
+				}
+			}
+			generateCopyProfiles(pluginContext, this.copyOnlyProfiles, PropertyTreeUse.INCLUDE, errorHandler);
+			generateCopyProfiles(pluginContext, this.copyExceptProfiles, PropertyTreeUse.EXCLUDE, errorHandler);
+			if (this.generatePartialCloneMethod && this.generateProjections) {
+				generateProjections(pluginContext, errorHandler);
+			}
+			return true;
 		}
+	}
 
-		for (final ClassOutline classOutline : outline.getClasses()) {
-			classOutline.implClass._implements(Copyable.class);
-			if(this.generatePartialCloneMethod) {
-				classOutline.implClass._implements(PartialCopyable.class);
+	private void generateCopyProfiles(final PluginContext pluginContext, final String profiles, final PropertyTreeUse propertyTreeUse, final ErrorHandler errorHandler) throws SAXException {
+		for (final String profile : profiles.split(";")) {
+			if (profile.trim().isEmpty()) {
+				continue;
+			}
+			if (!this.generatePartialCloneMethod) {
+				// Nested objects could only be copied in full, and the profile would be ignored below the top level
+				errorHandler.error(new SAXParseException(getMessage("error.invalidCopyProfile", profile, getMessage("error.copyProfileWithoutPartialClone")), null));
+				continue;
+			}
+			final int separatorIndex = profile.indexOf('=');
+			final String profileName = separatorIndex < 0 ? "" : profile.substring(0, separatorIndex).trim();
+			if (!isJavaIdentifier(profileName)) {
+				errorHandler.error(new SAXParseException(getMessage("error.invalidCopyProfile", profile, getMessage("error.invalidCopyProfileName")), null));
+				continue;
+			}
+			final PropertyTree propertyTree;
+			try {
+				propertyTree = PropertyTree.parse(profile.substring(separatorIndex + 1));
+			} catch (final IllegalArgumentException e) {
+				errorHandler.error(new SAXParseException(getMessage("error.invalidCopyProfile", profile, e.getMessage()), null));
+				continue;
+			}
+			try (final GenerationProfile.Measurement measurement = pluginContext.profile.phase("copy-profiles", profileName)) {
+				new CopyProfileGenerator(pluginContext, profileName, propertyTree, propertyTreeUse).generateCopyMethods();
 			}
 		}
+	}
 
-		for (final ClassOutline classOutline : outline.getClasses()) {
-			final DeepCopyGenerator deepCopyGenerator = new DeepCopyGenerator(pluginContext, classOutline);
-			deepCopyGenerator.generateCreateCopyMethod(false);
-			if (this.generatePartialCloneMethod) {
-				final JMethod partialCopyMethod =  deepCopyGenerator.generateCreateCopyMethod(true);
-				deepCopyGenerator.generateConveniencePartialCopyMethod(partialCopyMethod, pluginContext.copyExceptMethodName, pluginContext.excludeConst);
-				deepCopyGenerator.generateConveniencePartialCopyMethod(partialCopyMethod, pluginContext.copyOnlyMethodName, pluginContext.includeConst);
+	private void generateProjections(final PluginContext pluginContext, final ErrorHandler errorHandler) throws SAXException {
+		final Map<ClassOutline, ProjectionGenerator> projectionGenerators = new LinkedHashMap<>();
+		for (final ClassOutline classOutline : pluginContext.outline.getClasses()) {
+			createProjectionGenerator(pluginContext, errorHandler, classOutline, projectionGenerators);
+		}
+		final Map<ClassOutline, JDefinedClass> projectionClasses = new HashMap<>();
+		for (final Map.Entry<ClassOutline, ProjectionGenerator> entry : projectionGenerators.entrySet()) {
+			if (entry.getValue() != null) {
+				projectionClasses.put(entry.getKey(), entry.getValue().getProjectionClass());
 			}
-			if (this.generateConstructor) {
-				deepCopyGenerator.generateDefaultConstructor();
-				deepCopyGenerator.generateCopyConstructor(false);
-				if (this.generatePartialCloneMethod) {
-					deepCopyGenerator.generateCopyConstructor(true);
+		}
+		for (final Map.Entry<ClassOutline, ProjectionGenerator> entry : projectionGenerators.entrySet()) {
+			if (entry.getValue() != null) {
+				try (final GenerationProfile.Measurement measurement = pluginContext.profile.phase("copy-projections", entry.getKey().implClass.fullName())) {
+					entry.getValue().generate(projectionClasses);
 				}
 			}
 		}
-		return true;
+	}
 
+	/**
+	 * Declares the projection class of a class after those of its super classes.
+	 * Since the map keeps the order of declaration, the members of super classes are also generated first.
+	 * @return The generator, or null if the projection class or the projection class of a super class cannot be declared.
+	 */
+	private ProjectionGenerator createProjectionGenerator(final PluginContext pluginContext, final ErrorHandler errorHandler, final ClassOutline classOutline, final Map<ClassOutline, ProjectionGenerator> projectionGenerators) throws SAXException {
+		if (projectionGenerators.containsKey(classOutline)) {
+			return projectionGenerators.get(classOutline);
+		}
+		final ProjectionGenerator superGenerator = classOutline.getSuperClass() == null ? null : createProjectionGenerator(pluginContext, errorHandler, classOutline.getSuperClass(), projectionGenerators);
+		ProjectionGenerator projectionGenerator = null;
+		if (classOutline.getSuperClass() == null || superGenerator != null) {
+			try {
+				final JDefinedClass projectionClass = classOutline.implClass._class(JMod.PUBLIC | JMod.STATIC, this.projectionClassName, ClassType.CLASS);
+				projectionGenerator = new ProjectionGenerator(pluginContext, classOutline, superGenerator, projectionClass);
+			} catch (final JClassAlreadyExistsException e) {
+				errorHandler.warning(new SAXParseException(getMessage("error.projectionClassExists", classOutline.implClass.fullName(), this.projectionClassName), classOutline.target.getLocator(), e));
+			}
+		}
+		projectionGenerators.put(classOutline, projectionGenerator);
+		return projectionGenerator;
+	}
+
+	private static boolean isJavaIdentifier(final String name) {
+		if (name.isEmpty() || !Character.isJavaIdentifierStart(name.charAt(0))) {
+			return false;
+		}
+		for (int i = 1; i < name.length(); i++) {
+			if (!Character.isJavaIdentifierPart(name.charAt(i))) {
+				return false;
+			}
+		}
+		return true;
 	}
 
 
@@ -0,0 +1,292 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2014 Klemm Software Consulting, Mirko Klemm
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.kscs.util.plugins.xjc;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+import javax.xml.bind.JAXBElement;
+
+import com.kscs.util.jaxb.Patch;
+import com.kscs.util.plugins.xjc.base.PluginUtil;
+import com.sun.codemodel.JBlock;
+import com.sun.codemodel.JClass;
+import com.sun.codemodel.JConditional;
+import com.sun.codemodel.JDefinedClass;
+import com.sun.codemodel.JExpr;
+import com.sun.codemodel.JExpression;
+import com.sun.codemodel.JFieldRef;
+import com.sun.codemodel.JFieldVar;
+import com.sun.codemodel.JForEach;
+import com.sun.codemodel.JForLoop;
+import com.sun.codemodel.JMethod;
+import com.sun.codemodel.JMod;
+import com.sun.codemodel.JOp;
+import com.sun.codemodel.JSwitch;
+import com.sun.codemodel.JType;
+import com.sun.codemodel.JVar;
+import com.sun.tools.xjc.outline.ClassOutline;
+import com.sun.tools.xjc.outline.FieldOutline;
+
+/**
+ * Generates the <code>diff</code> methods of a class, which compare
+ * the fields of two objects directly and record the differences in a {@link Patch},
+ * and the <code>applyPatch</code> methods, which navigate along the paths
+ * of the recorded changes and set the changed fields.
+ */
+class DiffGenerator {
+	static final String OTHER_PARAM_NAME = "_other";
+	static final String THAT_VAR_NAME = "_that";
+	static final String PATCH_PARAM_NAME = "_patch";
+	static final String PATH_PARAM_NAME = "_path";
+	static final String CHANGE_PARAM_NAME = "_change";
+	static final String DEPTH_PARAM_NAME = "_depth";
+	static final String NODE_VAR_NAME = "_node";
+	static final String VALUE_VAR_NAME = "_value";
+	static final String ITEM_VAR_NAME = "_item";
+	static final String OTHER_ITEM_VAR_NAME = "_otherItem";
+	static final String DIFF_METHOD_NAME = "diff";
+	static final String APPLY_PATCH_METHOD_NAME = "applyPatch";
+	static final String APPLY_CHANGE_METHOD_NAME = "applyChange";
+
+	private final PluginContext pluginContext;
+	private final ClassOutline classOutline;
+	private final JDefinedClass definedClass;
+	private final JDefinedClass rootClass;
+	private final boolean hasSuperClass;
+	private final boolean hasCollectionProxies;
+	private final JClass patchClass;
+	private final JClass pathClass;
+
+	/**
+	 * @param rootClass The topmost generated superclass of the class,
+	 * which is the parameter type of the overridden methods.
+	 */
+	DiffGenerator(final PluginContext pluginContext, final ClassOutline classOutline, final JDefinedClass rootClass) {
+		this.pluginContext = pluginContext;
+		this.classOutline = classOutline;
+		this.definedClass = classOutline.implClass;
+		this.rootClass = rootClass;
+		this.hasSuperClass = classOutline.getSuperClass() != null;
+		final BoundPropertiesPlugin boundPropertiesPlugin = pluginContext.findPlugin(BoundPropertiesPlugin.class);
+		this.hasCollectionProxies = boundPropertiesPlugin != null && (boundPropertiesPlugin.isConstrained() || boundPropertiesPlugin.isBound());
+		this.patchClass = pluginContext.codeModel.ref(Patch.class);
+		this.pathClass = pluginContext.codeModel.ref(Patch.Path.class);
+	}
+
+	void generate() {
+		final List<DiffField> fields = new ArrayList<>();
+		for (final FieldOutline fieldOutline : this.classOutline.getDeclaredFields()) {
+			final JFieldVar field = PluginUtil.getDeclaredField(fieldOutline);
+			if (field != null && (field.mods().getValue() & JMod.STATIC) == 0) {
+				fields.add(new DiffField(fieldOutline, field));
+			}
+		}
+		if (!this.hasSuperClass) {
+			generateEntryMethods();
+		}
+		generateDiff(fields);
+		generateApplyChange(fields);
+	}
+
+	private void generateEntryMethods() {
+		final JMethod diffMethod = this.definedClass.method(JMod.PUBLIC, this.patchClass, DiffGenerator.DIFF_METHOD_NAME);
+		final JVar otherParam = diffMethod.param(JMod.FINAL, this.rootClass, DiffGenerator.OTHER_PARAM_NAME);
+		diffMethod.body()._if(JExpr.invoke("getClass").ne(otherParam.invoke("getClass")))._then()._throw(JExpr._new(this.pluginContext.codeModel.ref(IllegalArgumentException.class))
+				.arg(JExpr.lit("Cannot compare ").plus(JExpr.invoke("getClass").invoke("getName")).plus(JExpr.lit(" with ")).plus(otherParam.invoke("getClass").invoke("getName"))));
+		final JVar patchVar = diffMethod.body().decl(JMod.FINAL, this.patchClass, DiffGenerator.PATCH_PARAM_NAME, JExpr._new(this.patchClass));
+		diffMethod.body().invoke(DiffGenerator.DIFF_METHOD_NAME).arg(otherParam).arg(patchVar).arg(JExpr._null());
+		diffMethod.body()._return(patchVar);
+
+		final JMethod applyPatchMethod = this.definedClass.method(JMod.PUBLIC, this.pluginContext.voidType, DiffGenerator.APPLY_PATCH_METHOD_NAME);
+		final JVar patchParam = applyPatchMethod.param(JMod.FINAL, this.patchClass, DiffGenerator.PATCH_PARAM_NAME);
+		final JForEach forEach = applyPatchMethod.body().forEach(this.pluginContext.codeModel.ref(Patch.Change.class), DiffGenerator.CHANGE_PARAM_NAME, patchParam);
+		forEach.body().invoke(DiffGenerator.APPLY_CHANGE_METHOD_NAME).arg(forEach.var()).arg(JExpr.lit(0));
+	}
+
+	private void generateDiff(final List<DiffField> fields) {
+		final JMethod diffMethod = this.definedClass.method(JMod.PUBLIC, this.pluginContext.voidType, DiffGenerator.DIFF_METHOD_NAME);
+		final JVar otherParam = diffMethod.param(JMod.FINAL, this.rootClass, DiffGenerator.OTHER_PARAM_NAME);
+		final JVar patchParam = diffMethod.param(JMod.FINAL, this.patchClass, DiffGenerator.PATCH_PARAM_NAME);
+		final JVar pathParam = diffMethod.param(JMod.FINAL, this.pathClass, DiffGenerator.PATH_PARAM_NAME);
+		final JBlock body = diffMethod.body();
+		final JVar that;
+		if (this.hasSuperClass) {
+			diffMethod.annotate(Override.class);
+			body.invoke(JExpr._super(), diffMethod).arg(otherParam).arg(patchParam).arg(pathParam);
+			that = fields.isEmpty() ? otherParam : body.decl(JMod.FINAL, this.definedClass, DiffGenerator.THAT_VAR_NAME, JExpr.cast(this.definedClass, otherParam));
+		} else {
+			that = otherParam;
+		}
+		for (final DiffField diffField : fields) {
+			final JFieldRef thisRef = JExpr._this().ref(diffField.field);
+			final JFieldRef thatRef = that.ref(diffField.field);
+			final JExpression propertyName = JExpr.lit(diffField.propertyName);
+			if (diffField.collection) {
+				final JBlock block = body.block();
+				final JVar sizeVar = block.decl(JMod.FINAL, this.pluginContext.codeModel.INT, "_size", JOp.cond(thisRef.eq(JExpr._null()), JExpr.lit(0), thisRef.invoke("size")));
+				final JConditional ifSizeDiffers = block._if(sizeVar.ne(JOp.cond(thatRef.eq(JExpr._null()), JExpr.lit(0), thatRef.invoke("size"))));
+				ifSizeDiffers._then().invoke(patchParam, "add").arg(JExpr._new(this.pathClass).arg(pathParam).arg(propertyName)).arg(thisRef).arg(thatRef);
+				final JForLoop forLoop = ifSizeDiffers._else()._for();
+				final JVar indexVar = forLoop.init(this.pluginContext.codeModel.INT, "_i", JExpr.lit(0));
+				forLoop.test(indexVar.lt(sizeVar));
+				forLoop.update(indexVar.incr());
+				final JVar itemVar = forLoop.body().decl(JMod.FINAL, diffField.itemType, DiffGenerator.ITEM_VAR_NAME, thisRef.invoke("get").arg(indexVar));
+				final JVar otherItemVar = forLoop.body().decl(JMod.FINAL, diffField.itemType, DiffGenerator.OTHER_ITEM_VAR_NAME, thatRef.invoke("get").arg(indexVar));
+				generateDiffValue(forLoop.body(), diffField.itemType, itemVar, otherItemVar, patchParam,
+						JExpr._new(this.pathClass).arg(pathParam).arg(propertyName).arg(indexVar));
+			} else {
+				generateDiffValue(body, diffField.itemType, thisRef, thatRef, patchParam, JExpr._new(this.pathClass).arg(pathParam).arg(propertyName));
+			}
+		}
+	}
+
+	private void generateDiffValue(final JBlock block, final JType type, final JExpression thisValue, final JExpression thatValue, final JVar patchParam, final JExpression path) {
+		if (type.isPrimitive()) {
+			block._if(thisValue.ne(thatValue))._then().invoke(patchParam, "add").arg(path).arg(thisValue).arg(thatValue);
+		} else if (this.pluginContext.getClassOutline(type) != null) {
+			final JConditional ifSameClass = block._if(thisValue.ne(JExpr._null()).cand(thatValue.ne(JExpr._null())).cand(thisValue.invoke("getClass").eq(thatValue.invoke("getClass"))));
+			ifSameClass._then().invoke(thisValue, DiffGenerator.DIFF_METHOD_NAME).arg(thatValue).arg(patchParam).arg(path);
+			ifSameClass._elseif(thisValue.ne(JExpr._null()).cor(thatValue.ne(JExpr._null())))._then().invoke(patchParam, "add").arg(path).arg(thisValue).arg(thatValue);
+		} else if (isJAXBElement(type) && isDiffable(getElementValueType(type))) {
+			final JExpression thisElementValue = thisValue.invoke("getValue");
+			final JExpression thatElementValue = thatValue.invoke("getValue");
+			block._if(this.patchClass.staticInvoke("elementEquals").arg(thisValue).arg(thatValue).not()
+					.cor(thisValue.ne(JExpr._null()).cand(thisElementValue.ne(JExpr._null()))
+							.cand(thisElementValue.invoke("getClass").ne(thatElementValue.invoke("getClass"))
+									.cor(thisElementValue.invoke(DiffGenerator.DIFF_METHOD_NAME).arg(thatElementValue).invoke("isEmpty").not()))))._then()
+					.invoke(patchParam, "add").arg(path).arg(thisValue).arg(thatValue);
+		} else if (isJAXBElement(type) || isUntyped(type)) {
+			block._if(this.patchClass.staticInvoke("valueEquals").arg(thisValue).arg(thatValue).not())._then()
+					.invoke(patchParam, "add").arg(path).arg(thisValue).arg(thatValue);
+		} else {
+			block._if(this.pluginContext.codeModel.ref(Objects.class).staticInvoke("deepEquals").arg(thisValue).arg(thatValue).not())._then()
+					.invoke(patchParam, "add").arg(path).arg(thisValue).arg(thatValue);
+		}
+	}
+
+	private boolean isJAXBElement(final JType type) {
+		return type.erasure().fullName().equals(JAXBElement.class.getName()) && !((JClass)type).getTypeParameters().isEmpty();
+	}
+
+	/**
+	 * @return true if values of the type may be DOM nodes or JAXBElements.
+	 */
+	private static boolean isUntyped(final JType type) {
+		final String typeName = type.erasure().fullName();
+		return typeName.equals(Object.class.getName()) || typeName.equals(Serializable.class.getName()) || typeName.startsWith("org.w3c.dom.");
+	}
+
+	private static JType getElementValueType(final JType type) {
+		final JClass valueType = ((JClass)type).getTypeParameters().get(0);
+		return valueType.name().startsWith("?") ? valueType._extends() : valueType;
+	}
+
+	/**
+	 * @return true if the type is a generated class with diff methods.
+	 */
+	private boolean isDiffable(final JType type) {
+		ClassOutline classOutline = type == null ? null : this.pluginContext.getClassOutline(type);
+		if (classOutline == null) {
+			return false;
+		}
+		while (classOutline.getSuperClass() != null) {
+			classOutline = classOutline.getSuperClass();
+		}
+		return classOutline.target.getRefBaseClass() == null;
+	}
+
+	private void generateApplyChange(final List<DiffField> fields) {
+		final JMethod applyChangeMethod = this.definedClass.method(JMod.PUBLIC, this.pluginContext.voidType, DiffGenerator.APPLY_CHANGE_METHOD_NAME);
+		final JVar changeParam = applyChangeMethod.param(JMod.FINAL, Patch.Change.class, DiffGenerator.CHANGE_PARAM_NAME);
+		final JVar depthParam = applyChangeMethod.param(JMod.FINAL, this.pluginContext.codeModel.INT, DiffGenerator.DEPTH_PARAM_NAME);
+		if (this.hasSuperClass) {
+			applyChangeMethod.annotate(Override.class);
+		}
+		final JBlock body = applyChangeMethod.body();
+		final JVar nodeVar = body.decl(JMod.FINAL, this.pathClass, DiffGenerator.NODE_VAR_NAME, changeParam.invoke("getNode").arg(depthParam));
+		final JSwitch propertySwitch = body._switch(nodeVar.invoke("getPropertyName"));
+		boolean hasUncheckedCast = false;
+		for (final DiffField diffField : fields) {
+			final JFieldRef fieldRef = JExpr._this().ref(diffField.field);
+			final JBlock caseBody = propertySwitch._case(JExpr.lit(diffField.propertyName)).body();
+			final JExpression newValue = changeParam.invoke("getNewValue");
+			final boolean generatedClass = this.pluginContext.getClassOutline(diffField.itemType) != null;
+			if (diffField.collection) {
+				hasUncheckedCast = true;
+				final JConditional ifWhole = caseBody._if(nodeVar.invoke("getIndex").lt(JExpr.lit(0)));
+				final JBlock wholeBlock = ifWhole._then();
+				final JVar valueVar = wholeBlock.decl(JMod.FINAL, diffField.field.type(), DiffGenerator.VALUE_VAR_NAME, JExpr.cast(diffField.field.type(), newValue));
+				wholeBlock.assign(fieldRef, JOp.cond(valueVar.eq(JExpr._null()), JExpr._null(), this.pluginContext.newArrayList((JClass)diffField.itemType).arg(valueVar)));
+				this.pluginContext.generateImmutableFieldInit(wholeBlock, JExpr._this(), diffField.field);
+				if (this.hasCollectionProxies) {
+					wholeBlock.assign(JExpr._this().ref(diffField.field.name() + BoundPropertiesPlugin.PROXY_SUFFIX), JExpr._null());
+				}
+				final JExpression item = fieldRef.invoke("get").arg(nodeVar.invoke("getIndex"));
+				if (generatedClass) {
+					final JConditional ifLast = ifWhole._elseif(changeParam.invoke("isLast").arg(depthParam));
+					ifLast._then().invoke(fieldRef, "set").arg(nodeVar.invoke("getIndex")).arg(JExpr.cast(diffField.itemType, newValue));
+					ifLast._else().invoke(item, DiffGenerator.APPLY_CHANGE_METHOD_NAME).arg(changeParam).arg(depthParam.plus(JExpr.lit(1)));
+				} else {
+					ifWhole._else().invoke(fieldRef, "set").arg(nodeVar.invoke("getIndex")).arg(JExpr.cast(diffField.itemType, newValue));
+				}
+			} else if (generatedClass) {
+				final JConditional ifLast = caseBody._if(changeParam.invoke("isLast").arg(depthParam));
+				ifLast._then().assign(fieldRef, JExpr.cast(diffField.itemType, newValue));
+				ifLast._else().invoke(fieldRef, DiffGenerator.APPLY_CHANGE_METHOD_NAME).arg(changeParam).arg(depthParam.plus(JExpr.lit(1)));
+			} else {
+				hasUncheckedCast |= diffField.itemType instanceof JClass && !((JClass)diffField.itemType).getTypeParameters().isEmpty();
+				caseBody.assign(fieldRef, JExpr.cast(diffField.itemType.boxify(), newValue));
+			}
+			caseBody._break();
+		}
+		final JBlock defaultBody = propertySwitch._default().body();
+		if (this.hasSuperClass) {
+			defaultBody.invoke(JExpr._super(), applyChangeMethod).arg(changeParam).arg(depthParam);
+		} else {
+			defaultBody._throw(JExpr._new(this.pluginContext.codeModel.ref(IllegalArgumentException.class))
+					.arg(JExpr.lit("Unknown property ").plus(changeParam.invoke("getPath")).plus(JExpr.lit(" in " + this.definedClass.fullName()))));
+		}
+		if (hasUncheckedCast) {
+			applyChangeMethod.annotate(SuppressWarnings.class).param("value", "unchecked");
+		}
+	}
+
+	private static final class DiffField {
+		final JFieldVar field;
+		final String propertyName;
+		final boolean collection;
+		final JType itemType;
+
+		DiffField(final FieldOutline fieldOutline, final JFieldVar field) {
+			this.field = field;
+			this.propertyName = fieldOutline.getPropertyInfo().getName(false);
+			this.collection = fieldOutline.getPropertyInfo().isCollection() && !field.type().isArray();
+			this.itemType = this.collection ? ((JClass)field.type()).getTypeParameters().get(0) : field.type();
+		}
+	}
+}
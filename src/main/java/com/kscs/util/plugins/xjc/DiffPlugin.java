@@ -0,0 +1,74 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2014 Klemm Software Consulting, Mirko Klemm
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.kscs.util.plugins.xjc;
+
+import com.kscs.util.jaxb.Patch;
+import com.kscs.util.plugins.xjc.base.AbstractPlugin;
+import com.kscs.util.plugins.xjc.base.Opt;
+import com.sun.tools.xjc.Options;
+import com.sun.tools.xjc.outline.ClassOutline;
+import com.sun.tools.xjc.outline.Outline;
+import org.xml.sax.ErrorHandler;
+import org.xml.sax.SAXException;
+import org.xml.sax.SAXParseException;
+
+/**
+ * XJC Plugin to generate methods computing the differences
+ * between two instances of a generated class as a {@link Patch},
+ * and applying such a patch to another instance, without reflection.
+ */
+public class DiffPlugin extends AbstractPlugin {
+	@Opt
+	private boolean generateTools = true;
+
+	@Override
+	public String getOptionName() {
+		return "Xdiff";
+	}
+
+	@Override
+	public boolean run(final Outline outline, final Options opt, final ErrorHandler errorHandler) throws SAXException {
+		final PluginContext pluginContext = PluginContext.get(outline, opt, errorHandler);
+		try (final PluginContext.PluginRun pluginRun = pluginContext.beginRun(this)) {
+			if (this.generateTools) {
+				pluginContext.writeSourceFile(Patch.class);
+			}
+			for (final ClassOutline classOutline : outline.getClasses()) {
+				ClassOutline rootClass = classOutline;
+				while (rootClass.getSuperClass() != null) {
+					rootClass = rootClass.getSuperClass();
+				}
+				if (rootClass.target.getRefBaseClass() != null) {
+					errorHandler.warning(new SAXParseException(getMessage("error.episodeSuperClass", classOutline.implClass.fullName()), classOutline.target.getLocator()));
+				} else {
+					try (final GenerationProfile.Measurement classMeasurement = pluginContext.profile.phase("diff", classOutline.implClass.fullName())) {
+						new DiffGenerator(pluginContext, classOutline, rootClass.implClass).generate();
+					}
+				}
+			}
+			return true;
+		}
+	}
+}
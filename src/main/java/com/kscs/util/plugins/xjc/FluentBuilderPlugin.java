@@ -32,6 +32,7 @@ import org.xml.sax.SAXException;
 import org.xml.sax.SAXParseException;
 
 import com.kscs.util.jaxb.Buildable;
+import com.kscs.util.jaxb.ParallelBuild;
 import com.kscs.util.jaxb.PropertyTree;
 import com.kscs.util.jaxb.PropertyTreeUse;
 import com.kscs.util.jaxb.Selector;
@@ -79,6 +80,14 @@ public class FluentBuilderPlugin extends AbstractPlugin {
 	protected String buildMethodName = PluginContext.BUILD_METHOD_NAME;
 	@Opt
 	protected String endMethodName = "end";
+	@Opt
+	protected boolean generateReset = false;
+	@Opt
+	protected boolean generatePooledBuilder = false;
+	@Opt
+	protected boolean generateValidation = false;
+	@Opt
+	protected boolean generateParallelBuild = false;
 
 	@Override
 	public String getOptionName() {
@@ -89,43 +98,49 @@ public class FluentBuilderPlugin extends AbstractPlugin {
 	public boolean run(final Outline outline, final Options opt, final ErrorHandler errorHandler) throws SAXException {
 		final Map<String, BuilderOutline> builderClasses = new LinkedHashMap<>(outline.getClasses().size());
 		final PluginContext pluginContext = PluginContext.get(outline, opt, errorHandler);
-
-		if(this.generateTools) {
-			pluginContext.writeSourceFile(Buildable.class);
-		}
-		if (this.copyPartial) {
-			if (this.generateTools) {
-				pluginContext.writeSourceFile(PropertyTreeUse.class);
-				pluginContext.writeSourceFile(PropertyTree.class);
-				pluginContext.writeSourceFile(Selector.class);
+		try (final PluginContext.PluginRun pluginRun = pluginContext.beginRun(this)) {
+			if(this.generateTools) {
+				pluginContext.writeSourceFile(Buildable.class);
+				if (this.generateParallelBuild) {
+					pluginContext.writeSourceFile(ParallelBuild.class);
+				}
 			}
-			if (pluginContext.findPlugin(DeepCopyPlugin.class) == null) {
-				final SelectorGenerator selectorGenerator = new SelectorGenerator(pluginContext, Selector.class, this.selectorClassName, this.rootSelectorClassName, null, null, pluginContext.cloneGraphClass);
-				selectorGenerator.generateMetaFields();
+			if (this.copyPartial) {
+				if (this.generateTools) {
+					pluginContext.writeSourceFile(PropertyTreeUse.class);
+					pluginContext.writeSourceFile(PropertyTree.class);
+					pluginContext.writeSourceFile(Selector.class);
+				}
+				if (pluginContext.findPlugin(DeepCopyPlugin.class) == null) {
+					final SelectorGenerator selectorGenerator = new SelectorGenerator(pluginContext, Selector.class, this.selectorClassName, this.rootSelectorClassName, null, null, pluginContext.cloneGraphClass);
+					selectorGenerator.generateMetaFields();
+				}
 			}
-		}
 
-		for (final ClassOutline classOutline : outline.getClasses()) {
-			final JDefinedClass definedClass = classOutline.implClass;
-			try {
-				final BuilderOutline builderOutline = new BuilderOutline(new DefinedClassOutline(pluginContext, classOutline),
-						classOutline.implClass._class(JMod.PUBLIC | JMod.STATIC, this.builderClassName, ClassType.CLASS));
-				builderClasses.put(definedClass.fullName(), builderOutline);
-			} catch (final JClassAlreadyExistsException caex) {
-				errorHandler.warning(new SAXParseException(getMessage("error.builderClassExists", definedClass.name()), classOutline.target.getLocator(), caex));
+			for (final ClassOutline classOutline : outline.getClasses()) {
+				final JDefinedClass definedClass = classOutline.implClass;
+				try {
+					final BuilderOutline builderOutline = new BuilderOutline(new DefinedClassOutline(pluginContext, classOutline),
+							classOutline.implClass._class(JMod.PUBLIC | JMod.STATIC, this.builderClassName, ClassType.CLASS));
+					builderClasses.put(definedClass.fullName(), builderOutline);
+				} catch (final JClassAlreadyExistsException caex) {
+					errorHandler.warning(new SAXParseException(getMessage("error.builderClassExists", definedClass.name()), classOutline.target.getLocator(), caex));
+				}
 			}
-		}
 
-		for (final BuilderOutline builderOutline : builderClasses.values()) {
-			final BuilderGenerator builderGenerator = new BuilderGenerator(pluginContext, builderClasses, builderOutline, getSettings());
-			builderGenerator.buildProperties();
+			for (final Map.Entry<String, BuilderOutline> builderEntry : builderClasses.entrySet()) {
+				try (final GenerationProfile.Measurement classMeasurement = pluginContext.profile.phase("builder-properties", builderEntry.getKey())) {
+					final BuilderGenerator builderGenerator = new BuilderGenerator(pluginContext, builderClasses, builderEntry.getValue(), getSettings());
+					builderGenerator.buildProperties();
+				}
+			}
+			return true;
 		}
-		return true;
 	}
 
 	public BuilderGeneratorSettings getSettings() {
 		return new BuilderGeneratorSettings(this.copyPartial, this.narrow, this.newBuilderMethodName, this.newCopyBuilderMethodName, this.builderFieldSuffix,
 				new ClassName(this.builderInterfaceName, this.builderClassName), this.copyToMethodName,
-				this.copyAlways, this.buildMethodName, this.endMethodName);
+				this.copyAlways, this.buildMethodName, this.endMethodName, this.generateReset, this.generatePooledBuilder, this.generateValidation, this.generateParallelBuild);
 	}
 }
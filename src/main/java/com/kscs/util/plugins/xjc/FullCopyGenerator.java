@@ -28,6 +28,7 @@ import com.kscs.util.plugins.xjc.codemodel.JTypedInvocation;
 import com.sun.codemodel.JBlock;
 import com.sun.codemodel.JDocComment;
 import com.sun.codemodel.JExpression;
+import com.sun.codemodel.JType;
 import com.sun.codemodel.JVar;
 
 /**
@@ -58,6 +59,11 @@ public class FullCopyGenerator implements CopyGenerator {
 		return invocation;
 	}
 
+	@Override
+	public boolean isRuntimeTree() {
+		return true;
+	}
+
 	private static class TreeVarGenerator implements PropertyTreeVarGenerator {
 
 		@Override
@@ -70,6 +76,11 @@ public class FullCopyGenerator implements CopyGenerator {
 			return invocation;
 		}
 
+		@Override
+		public JExpression generatePartialCopy(final JExpression value, final JType valueType) {
+			return value.invoke(PluginContext.COPY_METHOD_NAME);
+		}
+
 		@Override
 		public JBlock generateEnclosingBlock(final JBlock body) {
 			return body;
@@ -0,0 +1,280 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2014 Klemm Software Consulting, Mirko Klemm
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.kscs.util.plugins.xjc;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Records wall time, allocated memory and invocation counts of
+ * plugin runs and of the individual generation phases within them.
+ * An instance is held by the {@link PluginContext}, and is only
+ * active if the {@link ProfilePlugin} has been activated. Otherwise,
+ * all measurements are no-ops.
+ *
+ * Measurements are nested: the figures of a plugin run include the
+ * figures of all phases measured while the plugin was running.
+ */
+public class GenerationProfile {
+	public static final String RUN_PHASE = "run";
+	public static final String FORMAT_JSON = "json";
+	public static final String FORMAT_CSV = "csv";
+
+	private static final Measurement NO_MEASUREMENT = new Measurement(null, null, false);
+
+	private final boolean enabled;
+	private final com.sun.management.ThreadMXBean allocationBean;
+	private final Map<String, Entry> entries = new LinkedHashMap<>();
+	private final Deque<String> plugins = new ArrayDeque<>();
+
+	public GenerationProfile(final boolean enabled) {
+		this.enabled = enabled;
+		this.allocationBean = enabled ? getAllocationBean() : null;
+	}
+
+	private static com.sun.management.ThreadMXBean getAllocationBean() {
+		final ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+		if (threadMXBean instanceof com.sun.management.ThreadMXBean) {
+			final com.sun.management.ThreadMXBean allocationBean = (com.sun.management.ThreadMXBean)threadMXBean;
+			if (allocationBean.isThreadAllocatedMemorySupported() && allocationBean.isThreadAllocatedMemoryEnabled()) {
+				return allocationBean;
+			}
+		}
+		return null;
+	}
+
+	public boolean isEnabled() {
+		return this.enabled;
+	}
+
+	/**
+	 * Starts measuring the run of a plugin. Phases measured before
+	 * the returned measurement is closed are attributed to this plugin.
+	 * @param pluginName Name of the plugin, usually its option name
+	 * @return A measurement to be closed when the plugin run ends
+	 */
+	public Measurement run(final String pluginName) {
+		if (!this.enabled) {
+			return GenerationProfile.NO_MEASUREMENT;
+		}
+		this.plugins.push(pluginName);
+		return new Measurement(this, getEntry(pluginName, GenerationProfile.RUN_PHASE, null), true);
+	}
+
+	/**
+	 * Starts measuring a generation phase for the whole model.
+	 * @param phase Name of the phase
+	 * @return A measurement to be closed when the phase ends
+	 */
+	public Measurement phase(final String phase) {
+		return phase(phase, null);
+	}
+
+	/**
+	 * Starts measuring a generation phase for a single target, e.g. a class.
+	 * @param phase Name of the phase
+	 * @param target Name of the target the phase works on, or null for the whole model
+	 * @return A measurement to be closed when the phase ends
+	 */
+	public Measurement phase(final String phase, final String target) {
+		if (!this.enabled) {
+			return GenerationProfile.NO_MEASUREMENT;
+		}
+		return new Measurement(this, getEntry(this.plugins.peek(), phase, target), false);
+	}
+
+	public Collection<Entry> getEntries() {
+		return this.entries.values();
+	}
+
+	public void write(final OutputStream outputStream, final String format) throws IOException {
+		final Writer writer = new OutputStreamWriter(outputStream, StandardCharsets.UTF_8);
+		if (GenerationProfile.FORMAT_CSV.equals(format)) {
+			writeCsv(writer);
+		} else {
+			writeJson(writer);
+		}
+		writer.flush();
+	}
+
+	private void writeJson(final Writer writer) throws IOException {
+		writer.write("{\n\t\"allocationSupported\": ");
+		writer.write(Boolean.toString(this.allocationBean != null));
+		writer.write(",\n\t\"entries\": [");
+		String separator = "\n";
+		for (final Entry entry : this.entries.values()) {
+			writer.write(separator);
+			writer.write("\t\t{\"plugin\": ");
+			writer.write(jsonString(entry.plugin));
+			writer.write(", \"phase\": ");
+			writer.write(jsonString(entry.phase));
+			writer.write(", \"target\": ");
+			writer.write(jsonString(entry.target));
+			writer.write(", \"count\": ");
+			writer.write(Long.toString(entry.count));
+			writer.write(", \"wallNanos\": ");
+			writer.write(Long.toString(entry.wallNanos));
+			writer.write(", \"allocatedBytes\": ");
+			writer.write(Long.toString(entry.allocatedBytes));
+			writer.write("}");
+			separator = ",\n";
+		}
+		writer.write("\n\t]\n}\n");
+	}
+
+	private void writeCsv(final Writer writer) throws IOException {
+		writer.write("plugin,phase,target,count,wallNanos,allocatedBytes\n");
+		for (final Entry entry : this.entries.values()) {
+			writer.write(csvString(entry.plugin));
+			writer.write(',');
+			writer.write(csvString(entry.phase));
+			writer.write(',');
+			writer.write(csvString(entry.target));
+			writer.write(',');
+			writer.write(Long.toString(entry.count));
+			writer.write(',');
+			writer.write(Long.toString(entry.wallNanos));
+			writer.write(',');
+			writer.write(Long.toString(entry.allocatedBytes));
+			writer.write('\n');
+		}
+	}
+
+	private static String jsonString(final String s) {
+		if (s == null) {
+			return "null";
+		}
+		final StringBuilder sb = new StringBuilder(s.length() + 2).append('"');
+		for (int i = 0; i < s.length(); i++) {
+			final char c = s.charAt(i);
+			if (c == '"' || c == '\\') {
+				sb.append('\\').append(c);
+			} else if (c < 0x20) {
+				sb.append(String.format("\\u%04x", (int)c));
+			} else {
+				sb.append(c);
+			}
+		}
+		return sb.append('"').toString();
+	}
+
+	private static String csvString(final String s) {
+		if (s == null) {
+			return "";
+		} else if (s.indexOf(',') >= 0 || s.indexOf('"') >= 0 || s.indexOf('\n') >= 0) {
+			return "\"" + s.replace("\"", "\"\"") + "\"";
+		} else {
+			return s;
+		}
+	}
+
+	private Entry getEntry(final String plugin, final String phase, final String target) {
+		final String key = plugin + "\u0000" + phase + "\u0000" + target;
+		Entry entry = this.entries.get(key);
+		if (entry == null) {
+			entry = new Entry(plugin, phase, target);
+			this.entries.put(key, entry);
+		}
+		return entry;
+	}
+
+	private long allocatedBytes() {
+		return this.allocationBean != null ? this.allocationBean.getThreadAllocatedBytes(Thread.currentThread().getId()) : -1L;
+	}
+
+	/**
+	 * Accumulated figures of one plugin, phase and target
+	 */
+	public static class Entry {
+		public final String plugin;
+		public final String phase;
+		public final String target;
+		private long count = 0;
+		private long wallNanos = 0;
+		private long allocatedBytes = 0;
+
+		Entry(final String plugin, final String phase, final String target) {
+			this.plugin = plugin;
+			this.phase = phase;
+			this.target = target;
+		}
+
+		public long getCount() {
+			return this.count;
+		}
+
+		public long getWallNanos() {
+			return this.wallNanos;
+		}
+
+		/**
+		 * @return Number of bytes allocated, or -1 if the JVM doesn't support measuring thread allocation
+		 */
+		public long getAllocatedBytes() {
+			return this.allocatedBytes;
+		}
+	}
+
+	/**
+	 * A running measurement, to be used in a try-with-resources block
+	 */
+	public static class Measurement implements AutoCloseable {
+		private final GenerationProfile profile;
+		private final Entry entry;
+		private final boolean pluginRun;
+		private final long startBytes;
+		private final long startNanos;
+
+		private Measurement(final GenerationProfile profile, final Entry entry, final boolean pluginRun) {
+			this.profile = profile;
+			this.entry = entry;
+			this.pluginRun = pluginRun;
+			this.startBytes = profile != null ? profile.allocatedBytes() : -1L;
+			this.startNanos = System.nanoTime();
+		}
+
+		@Override
+		public void close() {
+			if (this.entry != null) {
+				this.entry.count++;
+				this.entry.wallNanos += System.nanoTime() - this.startNanos;
+				this.entry.allocatedBytes = this.startBytes < 0 ? -1L : this.entry.allocatedBytes + this.profile.allocatedBytes() - this.startBytes;
+				if (this.pluginRun) {
+					this.profile.plugins.pop();
+				}
+			}
+		}
+	}
+}
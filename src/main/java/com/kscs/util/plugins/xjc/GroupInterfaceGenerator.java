@@ -38,16 +38,10 @@ import java.util.Map;
 import java.util.ResourceBundle;
 import java.util.logging.Logger;
 
-import javax.xml.bind.JAXB;
 import javax.xml.namespace.QName;
-import javax.xml.transform.Transformer;
-import javax.xml.transform.dom.DOMResult;
-import javax.xml.transform.dom.DOMSource;
-import javax.xml.transform.stream.StreamSource;
 
 import com.kscs.util.jaxb.PropertyVisitor;
 import com.kscs.util.jaxb._interface.Interface;
-import com.kscs.util.jaxb._interface.Interfaces;
 import com.kscs.util.plugins.xjc.base.AbstractXSFunction;
 import com.kscs.util.plugins.xjc.outline.DefinedInterfaceOutline;
 import com.kscs.util.plugins.xjc.outline.InterfaceOutline;
@@ -226,24 +220,11 @@ class GroupInterfaceGenerator {
 
 	private Map<QName, ReferencedInterfaceOutline> loadInterfaceEpisodes() {
 		try {
-			final Transformer transformer = GroupInterfacePlugin.TRANSFORMER_FACTORY.newTransformer(new StreamSource(GroupInterfaceGenerator.class.getResource("interface-bindings.xsl").toString()));
 			final Map<QName, ReferencedInterfaceOutline> interfaceMappings = new HashMap<>();
 			while(this.upstreamEpisodes.hasMoreElements()) {
-				final Map<QName, ReferencedInterfaceOutline> result;
-				try {
-					final StreamSource episodeInput = new StreamSource(this.upstreamEpisodes.nextElement().toString());
-					final DOMResult domResult = new DOMResult();
-					transformer.transform(episodeInput, domResult);
-					final Interfaces interfaces = JAXB.unmarshal(new DOMSource(domResult.getNode()), Interfaces.class);
-					final Map<QName, ReferencedInterfaceOutline> interfaceMappings1 = new HashMap<>();
-					for (final Interface iface : interfaces.getInterface()) {
-						interfaceMappings1.put(new QName(iface.getSchemaComponent().getNamespace(), iface.getSchemaComponent().getName()), new ReferencedInterfaceOutline(this.pluginContext.codeModel.ref(iface.getName()), this.settings.getSupportInterfaceNameSuffix()));
-					}
-					result = interfaceMappings1;
-				} catch (final Exception e) {
-					throw new RuntimeException(e);
+				for (final Interface iface : UpstreamEpisodeCache.getInterfaces(this.upstreamEpisodes.nextElement())) {
+					interfaceMappings.put(new QName(iface.getSchemaComponent().getNamespace(), iface.getSchemaComponent().getName()), new ReferencedInterfaceOutline(this.pluginContext.codeModel.ref(iface.getName()), this.settings.getSupportInterfaceNameSuffix()));
 				}
-				interfaceMappings.putAll(result);
 			}
 			return interfaceMappings;
 		} catch (final Exception e) {
@@ -95,6 +95,7 @@ public class GroupInterfacePlugin extends AbstractPlugin {
 	@Opt
 	private String downstreamEpisodeFile = "/META-INF/jaxb-interfaces.episode";
 	private GroupInterfaceGenerator generator = null;
+	private boolean released = false;
 	public static final TransformerFactory TRANSFORMER_FACTORY;
 	private static final DocumentBuilderFactory DOCUMENT_BUILDER_FACTORY;
 	private static final DocumentBuilder DOCUMENT_BUILDER;
@@ -128,8 +129,11 @@ public class GroupInterfacePlugin extends AbstractPlugin {
 	@Override
 	public boolean run(final Outline outline, final Options opt, final ErrorHandler errorHandler)
 			throws SAXException {
-		generate(PluginContext.get(outline, opt, errorHandler));
-		return true;
+		final PluginContext pluginContext = PluginContext.get(outline, opt, errorHandler);
+		try (final PluginContext.PluginRun pluginRun = pluginContext.beginRun(this)) {
+			generate(pluginContext);
+			return true;
+		}
 	}
 
 	public List<TypeOutline> getGroupInterfacesForClass(final PluginContext pluginContext, final String className) throws SAXException {
@@ -138,13 +142,27 @@ public class GroupInterfacePlugin extends AbstractPlugin {
 	}
 
 	private void generate(final PluginContext pluginContext) throws SAXException {
+		if (this.released) {
+			throw new IllegalStateException(getMessage("error.released"));
+		}
 		if (this.generator == null) {
+			pluginContext.addReleaseAction(new Runnable() {
+				@Override
+				public void run() {
+					GroupInterfacePlugin.this.generator = null;
+					GroupInterfacePlugin.this.released = true;
+				}
+			});
 			try {
 				final Enumeration<URL> interfaceEpisodeURLs = getClass().getClassLoader().getResources(this.upstreamEpisodeFile);
 				final EpisodeBuilder episodeBuilder = new EpisodeBuilder(pluginContext, this.downstreamEpisodeFile);
 				this.generator = new GroupInterfaceGenerator(pluginContext, interfaceEpisodeURLs, episodeBuilder, getSettings(pluginContext));
-				this.generator.generateGroupInterfaceModel();
-				episodeBuilder.build();
+				try (final GenerationProfile.Measurement measurement = pluginContext.profile.phase("group-interface-model")) {
+					this.generator.generateGroupInterfaceModel();
+				}
+				try (final GenerationProfile.Measurement measurement = pluginContext.profile.phase("episode")) {
+					episodeBuilder.build();
+				}
 			} catch(final IOException iox) {
 				throw new SAXException(iox);
 			}
@@ -72,65 +72,71 @@ public class ImmutablePlugin extends AbstractPlugin {
 	@Override
 	public boolean run(final Outline outline, final Options opt, final ErrorHandler errorHandler) throws SAXException {
 		final PluginContext pluginContext = PluginContext.get(outline, opt, errorHandler);
-		for (final ClassOutline classOutline : outline.getClasses()) {
-			final JDefinedClass definedClass = classOutline.implClass;
-			for (final FieldOutline fieldOutline : classOutline.getDeclaredFields()) {
-				final JFieldVar declaredField;
-				if (fieldOutline.getPropertyInfo().isCollection() && !(declaredField = PluginUtil.getDeclaredField(fieldOutline)).type().isArray()) {
-					final JClass elementType = ((JClass) declaredField.type()).getTypeParameters().get(0);
-					final JMethod oldGetter = definedClass.getMethod("get" + fieldOutline.getPropertyInfo().getName(true), new JType[0]);
-					final JType getterType = this.overrideCollectionClass != null ? pluginContext.codeModel.ref(this.overrideCollectionClass).narrow(elementType) : oldGetter.type();
-					if (fake) {
-						oldGetter.type(getterType);
-					} else {
-						final JFieldVar immutableField = definedClass.field(JMod.PROTECTED | JMod.TRANSIENT, getterType, getImmutableFieldName(declaredField), JExpr._null());
-						definedClass.methods().remove(oldGetter);
-						final JMethod newGetter = definedClass.method(JMod.PUBLIC, getterType, oldGetter.name());
-						final JConditional ifFieldNull = newGetter.body()._if(JExpr._this().ref(declaredField).eq(JExpr._null()));
-						ifFieldNull._then().assign(JExpr._this().ref(declaredField), JExpr._new(pluginContext.arrayListClass.narrow(elementType)));
+		try (final PluginContext.PluginRun pluginRun = pluginContext.beginRun(this)) {
+			for (final ClassOutline classOutline : outline.getClasses()) {
+				final JDefinedClass definedClass = classOutline.implClass;
+				for (final FieldOutline fieldOutline : classOutline.getDeclaredFields()) {
+					final JFieldVar declaredField;
+					if (fieldOutline.getPropertyInfo().isCollection() && !(declaredField = PluginUtil.getDeclaredField(fieldOutline)).type().isArray()) {
+						final JClass elementType = ((JClass) declaredField.type()).getTypeParameters().get(0);
+						final JMethod oldGetter = definedClass.getMethod("get" + fieldOutline.getPropertyInfo().getName(true), new JType[0]);
+						final JType getterType = this.overrideCollectionClass != null ? pluginContext.codeModel.ref(this.overrideCollectionClass).narrow(elementType) : oldGetter.type();
+						if (fake) {
+							oldGetter.type(getterType);
+						} else {
+							final JFieldVar immutableField = definedClass.field(JMod.PROTECTED | JMod.TRANSIENT, getterType, getImmutableFieldName(declaredField), JExpr._null());
+							definedClass.methods().remove(oldGetter);
+							final JMethod newGetter = definedClass.method(JMod.PUBLIC, getterType, oldGetter.name());
+							final JConditional ifFieldNull = newGetter.body()._if(JExpr._this().ref(declaredField).eq(JExpr._null()));
+							ifFieldNull._then().assign(JExpr._this().ref(declaredField), JExpr._new(pluginContext.arrayListClass.narrow(elementType)));
 
-						final JConditional ifImmutableFieldNull = newGetter.body()._if(JExpr._this().ref(immutableField).eq(JExpr._null()));
-						immutableInit(pluginContext, ifImmutableFieldNull._then(), JExpr._this(), declaredField);
+							final JConditional ifImmutableFieldNull = newGetter.body()._if(JExpr._this().ref(immutableField).eq(JExpr._null()));
+							immutableInit(pluginContext, ifImmutableFieldNull._then(), JExpr._this(), declaredField);
 
-						newGetter.body()._return(JExpr._this().ref(immutableField));
-					}
-				} else {
-					if (!fake) {
-						final String setterName = "set" + fieldOutline.getPropertyInfo().getName(true);
-						final JMethod setterMethod = definedClass.getMethod(setterName, new JType[]{fieldOutline.getRawType()});
-						if (setterMethod != null) {
-							setterMethod.mods().setProtected();
+							newGetter.body()._return(JExpr._this().ref(immutableField));
 						}
-					}
-				}
-				if (!fake && !"public".equalsIgnoreCase(this.constructorAccess)) {
-					final Iterator<JMethod> constructors = definedClass.constructors();
-					if (!constructors.hasNext()) {
-						// generate protected/private no-arg constructor
-						final JMethod constructor = definedClass.constructor("private".equalsIgnoreCase(this.constructorAccess) ? JMod.PRIVATE : JMod.PROTECTED);
-						constructor.javadoc().append(getMessage("comment.constructor"));
-						constructor.body().directStatement("// " + getMessage("comment.constructor"));
-					}
-					final List<JMethod> constructorsToChange = new ArrayList<>();
-					while (constructors.hasNext()) {
-						final JMethod constructor = constructors.next();
-						if (constructor.params().isEmpty() && (constructor.mods().getValue() & JMod.PUBLIC) == JMod.PUBLIC) {
-							constructorsToChange.add(constructor);
+					} else {
+						if (!fake) {
+							final String setterName = "set" + fieldOutline.getPropertyInfo().getName(true);
+							final JMethod setterMethod = definedClass.getMethod(setterName, new JType[]{fieldOutline.getRawType()});
+							if (setterMethod != null) {
+								setterMethod.mods().setProtected();
+							}
 						}
 					}
+					if (!fake && !"public".equalsIgnoreCase(this.constructorAccess)) {
+						final Iterator<JMethod> constructors = definedClass.constructors();
+						if (!constructors.hasNext()) {
+							// generate protected/private no-arg constructor
+							final JMethod constructor = definedClass.constructor("private".equalsIgnoreCase(this.constructorAccess) ? JMod.PRIVATE : JMod.PROTECTED);
+							constructor.javadoc().append(getMessage("comment.constructor"));
+							constructor.body().directStatement("// " + getMessage("comment.constructor"));
+						}
+						final List<JMethod> constructorsToChange = new ArrayList<>();
+						while (constructors.hasNext()) {
+							final JMethod constructor = constructors.next();
+							if (constructor.params().isEmpty() && (constructor.mods().getValue() & JMod.PUBLIC) == JMod.PUBLIC) {
+								constructorsToChange.add(constructor);
+							}
+						}
 
-					// use separate loop to avoid concurrentmodificationexception
-					for(final JMethod constructor:constructorsToChange) {
-						if ("private".equals(this.constructorAccess.toLowerCase())) {
-							constructor.mods().setPrivate();
-						} else {
-							constructor.mods().setProtected();
+						// use separate loop to avoid concurrentmodificationexception
+						for(final JMethod constructor:constructorsToChange) {
+							if ("private".equals(this.constructorAccess.toLowerCase())) {
+								constructor.mods().setPrivate();
+							} else {
+								constructor.mods().setProtected();
+							}
 						}
 					}
 				}
 			}
+			return true;
 		}
-		return true;
+	}
+
+	public String getConstructorAccess() {
+		return this.fake ? "public" : this.constructorAccess;
 	}
 
 	String getImmutableFieldName(final PropertyOutline fieldVar) {
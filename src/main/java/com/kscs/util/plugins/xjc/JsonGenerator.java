@@ -0,0 +1,500 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2014 Klemm Software Consulting, Mirko Klemm
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.kscs.util.plugins.xjc;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.xml.bind.JAXBElement;
+import javax.xml.namespace.QName;
+
+import com.kscs.util.jaxb.JsonReader;
+import com.kscs.util.jaxb.JsonWritable;
+import com.kscs.util.jaxb.JsonWriter;
+import com.kscs.util.plugins.xjc.base.PluginUtil;
+import com.sun.codemodel.JBlock;
+import com.sun.codemodel.JClass;
+import com.sun.codemodel.JConditional;
+import com.sun.codemodel.JDefinedClass;
+import com.sun.codemodel.JExpr;
+import com.sun.codemodel.JExpression;
+import com.sun.codemodel.JFieldRef;
+import com.sun.codemodel.JFieldVar;
+import com.sun.codemodel.JForEach;
+import com.sun.codemodel.JMethod;
+import com.sun.codemodel.JMod;
+import com.sun.codemodel.JOp;
+import com.sun.codemodel.JSwitch;
+import com.sun.codemodel.JType;
+import com.sun.codemodel.JVar;
+import com.sun.codemodel.JWhileLoop;
+import com.sun.tools.xjc.model.CClassInfo;
+import com.sun.tools.xjc.model.CElement;
+import com.sun.tools.xjc.model.CElementInfo;
+import com.sun.tools.xjc.model.CElementPropertyInfo;
+import com.sun.tools.xjc.model.CPropertyInfo;
+import com.sun.tools.xjc.model.CReferencePropertyInfo;
+import com.sun.tools.xjc.model.CTypeRef;
+import com.sun.tools.xjc.outline.Aspect;
+import com.sun.tools.xjc.outline.ClassOutline;
+import com.sun.tools.xjc.outline.FieldOutline;
+import com.sun.xml.bind.api.impl.NameConverter;
+
+/**
+ * Generates the {@link JsonWritable} implementation and the static
+ * <code>readJson</code> methods of a class, which write the properties of an object
+ * to a {@link JsonWriter} and read them back from a {@link JsonReader}.
+ * Properties with more than one possible element, i.e. choices and element references,
+ * are written as objects whose only property is named after the element.
+ */
+class JsonGenerator {
+	static final String WRITER_PARAM_NAME = "_writer";
+	static final String READER_PARAM_NAME = "_reader";
+	static final String TYPE_PARAM_NAME = "_type";
+	static final String NAME_PARAM_NAME = "_name";
+	static final String VALUE_VAR_NAME = "_value";
+	static final String ITEM_VAR_NAME = "_item";
+	static final String WRITE_JSON_METHOD_NAME = "writeJson";
+	static final String WRITE_FIELDS_METHOD_NAME = "writeJsonFields";
+	static final String READ_JSON_METHOD_NAME = "readJson";
+	static final String READ_FIELDS_METHOD_NAME = "readJsonFields";
+	static final String READ_FIELD_METHOD_NAME = "readJsonField";
+
+	private final PluginContext pluginContext;
+	private final ClassOutline classOutline;
+	private final JDefinedClass definedClass;
+	private final Map<ClassOutline, String> typeNames;
+	private final boolean hasSuperClass;
+	private final boolean hasCollectionProxies;
+	private final List<JsonField> fields = new ArrayList<>();
+	private final List<FieldOutline> unsupportedFields = new ArrayList<>();
+	private final Map<QName, JFieldVar> nameConstants = new HashMap<>();
+	private final Set<String> constantNames = new HashSet<>();
+
+	/**
+	 * @param typeNames The names written to the type property, of all classes for which
+	 * JSON methods are generated.
+	 */
+	JsonGenerator(final PluginContext pluginContext, final ClassOutline classOutline, final Map<ClassOutline, String> typeNames) {
+		this.pluginContext = pluginContext;
+		this.classOutline = classOutline;
+		this.definedClass = classOutline.implClass;
+		this.typeNames = typeNames;
+		this.hasSuperClass = classOutline.getSuperClass() != null;
+		final BoundPropertiesPlugin boundPropertiesPlugin = pluginContext.findPlugin(BoundPropertiesPlugin.class);
+		this.hasCollectionProxies = boundPropertiesPlugin != null && (boundPropertiesPlugin.isConstrained() || boundPropertiesPlugin.isBound());
+		for (final FieldOutline fieldOutline : classOutline.getDeclaredFields()) {
+			final JFieldVar field = PluginUtil.getDeclaredField(fieldOutline);
+			if (field != null && (field.mods().getValue() & JMod.STATIC) == 0) {
+				final JsonField jsonField = createField(fieldOutline, field);
+				if (jsonField != null) {
+					this.fields.add(jsonField);
+				} else {
+					this.unsupportedFields.add(fieldOutline);
+				}
+			}
+		}
+	}
+
+	/**
+	 * @return The fields that cannot be written, because their type is not supported.
+	 */
+	List<FieldOutline> getUnsupportedFields() {
+		return this.unsupportedFields;
+	}
+
+	private JsonField createField(final FieldOutline fieldOutline, final JFieldVar field) {
+		final CPropertyInfo propertyInfo = fieldOutline.getPropertyInfo();
+		final boolean collection = propertyInfo.isCollection() && !field.type().isArray();
+		final JType itemType = collection ? ((JClass)field.type()).getTypeParameters().get(0) : field.type();
+		final JsonField jsonField = new JsonField(propertyInfo.getName(false), field, itemType, collection);
+		if (propertyInfo instanceof CElementPropertyInfo && ((CElementPropertyInfo)propertyInfo).getTypes().size() > 1 && !((CElementPropertyInfo)propertyInfo).isValueList()) {
+			if (propertyInfo.getAdapter() != null) {
+				return null;
+			}
+			for (final CTypeRef typeRef : ((CElementPropertyInfo)propertyInfo).getTypes()) {
+				final JClass type = typeRef.getTarget().toType(this.pluginContext.outline, Aspect.EXPOSED).boxify();
+				if (!isSupported(type) || !jsonField.addChoice(new JsonChoice(typeRef.getTagName().getLocalPart(), null, type))) {
+					return null;
+				}
+			}
+		} else if (propertyInfo instanceof CReferencePropertyInfo) {
+			final CReferencePropertyInfo referencePropertyInfo = (CReferencePropertyInfo)propertyInfo;
+			if (referencePropertyInfo.isMixed() || referencePropertyInfo.getWildcard() != null || referencePropertyInfo.getElements().isEmpty()) {
+				return null;
+			}
+			for (final CElement element : referencePropertyInfo.getElements()) {
+				final JsonChoice choice;
+				if (element instanceof CClassInfo) {
+					choice = new JsonChoice(element.getElementName().getLocalPart(), null, ((CClassInfo)element).toType(this.pluginContext.outline, Aspect.EXPOSED));
+				} else if (element instanceof CElementInfo && !((CElementInfo)element).hasClass() && ((CElementInfo)element).getProperty().getAdapter() == null) {
+					choice = new JsonChoice(element.getElementName().getLocalPart(), element.getElementName(), ((CElementInfo)element).getContentInMemoryType().toType(this.pluginContext.outline, Aspect.EXPOSED).boxify());
+				} else {
+					return null;
+				}
+				if (!isSupported(choice.type) || !jsonField.addChoice(choice)) {
+					return null;
+				}
+			}
+		} else if (!isSupported(itemType)) {
+			return null;
+		}
+		return jsonField;
+	}
+
+	void generate(final List<ClassOutline> subClasses) {
+		final boolean polymorphic = this.hasSuperClass || !subClasses.isEmpty() || this.definedClass.isAbstract();
+		final JClass jsonWriter = this.pluginContext.codeModel.ref(JsonWriter.class);
+		final JClass ioException = this.pluginContext.codeModel.ref(IOException.class);
+
+		if (!this.hasSuperClass) {
+			this.definedClass._implements(JsonWritable.class);
+			final JMethod writeStreamMethod = this.definedClass.method(JMod.PUBLIC, this.pluginContext.voidType, JsonGenerator.WRITE_JSON_METHOD_NAME);
+			writeStreamMethod.annotate(Override.class);
+			writeStreamMethod._throws(ioException);
+			final JVar streamParam = writeStreamMethod.param(JMod.FINAL, Writer.class, JsonGenerator.WRITER_PARAM_NAME);
+			final JVar jsonWriterVar = writeStreamMethod.body().decl(JMod.FINAL, jsonWriter, "_jsonWriter", JExpr._new(jsonWriter).arg(streamParam));
+			writeStreamMethod.body().invoke(JsonGenerator.WRITE_JSON_METHOD_NAME).arg(jsonWriterVar);
+			writeStreamMethod.body().invoke(jsonWriterVar, "flush");
+		}
+		final JMethod writeJsonMethod = this.definedClass.method(JMod.PUBLIC, this.pluginContext.voidType, JsonGenerator.WRITE_JSON_METHOD_NAME);
+		writeJsonMethod.annotate(Override.class);
+		writeJsonMethod._throws(ioException);
+		final JVar writerParam = writeJsonMethod.param(JMod.FINAL, JsonWriter.class, JsonGenerator.WRITER_PARAM_NAME);
+		writeJsonMethod.body().invoke(writerParam, "beginObject");
+		if (polymorphic) {
+			writeJsonMethod.body().add(writerParam.invoke("name").arg(this.pluginContext.codeModel.ref(JsonReader.class).staticRef("TYPE_PROPERTY_NAME")).invoke("value").arg(JExpr.lit(this.typeNames.get(this.classOutline))));
+		}
+		writeJsonMethod.body().invoke(JsonGenerator.WRITE_FIELDS_METHOD_NAME).arg(writerParam);
+		writeJsonMethod.body().invoke(writerParam, "endObject");
+
+		final JMethod writeFieldsMethod = this.definedClass.method(JMod.PROTECTED, this.pluginContext.voidType, JsonGenerator.WRITE_FIELDS_METHOD_NAME);
+		writeFieldsMethod._throws(ioException);
+		final JVar writeFieldsWriterParam = writeFieldsMethod.param(JMod.FINAL, JsonWriter.class, JsonGenerator.WRITER_PARAM_NAME);
+		if (this.hasSuperClass) {
+			writeFieldsMethod.annotate(Override.class);
+			writeFieldsMethod.body().invoke(JExpr._super(), writeFieldsMethod).arg(writeFieldsWriterParam);
+		}
+		for (final JsonField jsonField : this.fields) {
+			generateWriteField(writeFieldsMethod.body(), writeFieldsWriterParam, jsonField);
+		}
+
+		final JMethod readJsonMethod = this.definedClass.method(JMod.PUBLIC | JMod.STATIC, this.definedClass, JsonGenerator.READ_JSON_METHOD_NAME);
+		readJsonMethod._throws(ioException);
+		final JVar readerParam = readJsonMethod.param(JMod.FINAL, JsonReader.class, JsonGenerator.READER_PARAM_NAME);
+		readJsonMethod.body()._if(readerParam.invoke("nextNull"))._then()._return(JExpr._null());
+		readJsonMethod.body().invoke(readerParam, "beginObject");
+		final JVar valueVar;
+		if (polymorphic) {
+			final JMethod readTypeMethod = this.definedClass.method(JMod.PUBLIC | JMod.STATIC, this.definedClass, JsonGenerator.READ_JSON_METHOD_NAME);
+			readTypeMethod._throws(ioException);
+			final JVar readTypeReaderParam = readTypeMethod.param(JMod.FINAL, JsonReader.class, JsonGenerator.READER_PARAM_NAME);
+			final JVar typeParam = readTypeMethod.param(JMod.FINAL, String.class, JsonGenerator.TYPE_PARAM_NAME);
+			final JSwitch typeSwitch = readTypeMethod.body()._switch(typeParam);
+			if (!this.definedClass.isAbstract()) {
+				final JBlock caseBody = typeSwitch._case(JExpr.lit(this.typeNames.get(this.classOutline))).body();
+				final JVar caseValueVar = caseBody.decl(JMod.FINAL, this.definedClass, JsonGenerator.VALUE_VAR_NAME, JExpr._new(this.definedClass));
+				caseBody.invoke(caseValueVar, JsonGenerator.READ_FIELDS_METHOD_NAME).arg(readTypeReaderParam);
+				caseBody._return(caseValueVar);
+			}
+			for (final ClassOutline subClass : subClasses) {
+				typeSwitch._case(JExpr.lit(this.typeNames.get(subClass))).body()._return(subClass.implClass.staticInvoke(readTypeMethod.name()).arg(readTypeReaderParam).arg(typeParam));
+			}
+			typeSwitch._default().body()._throw(JExpr._new(ioException)
+					.arg(JExpr.lit("Unexpected type \"").plus(typeParam).plus(JExpr.lit("\" for " + this.definedClass.fullName()))));
+			valueVar = readJsonMethod.body().decl(JMod.FINAL, this.definedClass, JsonGenerator.VALUE_VAR_NAME, JExpr.invoke(readTypeMethod).arg(readerParam).arg(readerParam.invoke("nextType")));
+		} else {
+			valueVar = readJsonMethod.body().decl(JMod.FINAL, this.definedClass, JsonGenerator.VALUE_VAR_NAME, JExpr._new(this.definedClass));
+			readJsonMethod.body().invoke(valueVar, JsonGenerator.READ_FIELDS_METHOD_NAME).arg(readerParam);
+		}
+		readJsonMethod.body().invoke(readerParam, "endObject");
+		readJsonMethod.body()._return(valueVar);
+
+		if (!this.hasSuperClass) {
+			final JMethod readFieldsMethod = this.definedClass.method(JMod.PROTECTED, this.pluginContext.voidType, JsonGenerator.READ_FIELDS_METHOD_NAME);
+			readFieldsMethod._throws(ioException);
+			final JVar readFieldsReaderParam = readFieldsMethod.param(JMod.FINAL, JsonReader.class, JsonGenerator.READER_PARAM_NAME);
+			final JWhileLoop whileLoop = readFieldsMethod.body()._while(readFieldsReaderParam.invoke("hasNext"));
+			whileLoop.body()._if(JExpr.invoke(JsonGenerator.READ_FIELD_METHOD_NAME).arg(readFieldsReaderParam).arg(readFieldsReaderParam.invoke("nextName")).not())._then()
+					.invoke(readFieldsReaderParam, "skipValue");
+		}
+		final JMethod readFieldMethod = this.definedClass.method(JMod.PROTECTED, this.pluginContext.codeModel.BOOLEAN, JsonGenerator.READ_FIELD_METHOD_NAME);
+		readFieldMethod._throws(ioException);
+		final JVar readFieldReaderParam = readFieldMethod.param(JMod.FINAL, JsonReader.class, JsonGenerator.READER_PARAM_NAME);
+		final JVar nameParam = readFieldMethod.param(JMod.FINAL, String.class, JsonGenerator.NAME_PARAM_NAME);
+		final JExpression defaultResult;
+		if (this.hasSuperClass) {
+			readFieldMethod.annotate(Override.class);
+			defaultResult = JExpr._super().invoke(readFieldMethod).arg(readFieldReaderParam).arg(nameParam);
+		} else {
+			defaultResult = JExpr.FALSE;
+		}
+		if (this.fields.isEmpty()) {
+			readFieldMethod.body()._return(defaultResult);
+		} else {
+			final JSwitch nameSwitch = readFieldMethod.body()._switch(nameParam);
+			for (final JsonField jsonField : this.fields) {
+				final JBlock caseBody = nameSwitch._case(JExpr.lit(jsonField.propertyName)).body();
+				generateReadField(caseBody, readFieldReaderParam, jsonField);
+				caseBody._return(JExpr.TRUE);
+			}
+			nameSwitch._default().body()._return(defaultResult);
+		}
+	}
+
+	private void generateWriteField(final JBlock body, final JVar writerParam, final JsonField jsonField) {
+		final JFieldRef fieldRef = JExpr._this().ref(jsonField.field);
+		if (jsonField.field.type().isPrimitive()) {
+			body.add(writerParam.invoke("name").arg(JExpr.lit(jsonField.propertyName)).invoke("value").arg(fieldRef));
+			return;
+		}
+		final JBlock block = body._if(fieldRef.ne(JExpr._null()))._then();
+		block.invoke(writerParam, "name").arg(JExpr.lit(jsonField.propertyName));
+		if (jsonField.collection) {
+			block.invoke(writerParam, "beginArray");
+			final JForEach forEach = block.forEach(jsonField.itemType, JsonGenerator.ITEM_VAR_NAME, fieldRef);
+			final JConditional ifNull = forEach.body()._if(forEach.var().eq(JExpr._null()));
+			ifNull._then().invoke(writerParam, "nullValue");
+			generateWriteItem(ifNull._else(), writerParam, jsonField, forEach.var());
+			block.invoke(writerParam, "endArray");
+		} else {
+			generateWriteItem(block, writerParam, jsonField, fieldRef);
+		}
+	}
+
+	private void generateWriteItem(final JBlock block, final JVar writerParam, final JsonField jsonField, final JExpression value) {
+		if (jsonField.choices.isEmpty()) {
+			generateWriteValue(block, writerParam, jsonField.itemType, value);
+		} else {
+			block.add(JExpr.invoke(jsonField.writeItemMethod()).arg(writerParam).arg(value));
+		}
+	}
+
+	private void generateWriteValue(final JBlock block, final JVar writerParam, final JType type, final JExpression value) {
+		if (isGeneratedClass(type)) {
+			block.invoke(value, JsonGenerator.WRITE_JSON_METHOD_NAME).arg(writerParam);
+		} else if (BinaryGenerator.isEnum(type)) {
+			block.invoke(writerParam, "value").arg(value.invoke("name"));
+		} else {
+			block.invoke(writerParam, "value").arg(value);
+		}
+	}
+
+	private void generateReadField(final JBlock block, final JVar readerParam, final JsonField jsonField) {
+		final JFieldRef fieldRef = JExpr._this().ref(jsonField.field);
+		if (jsonField.collection) {
+			final JBlock listBlock = block._if(readerParam.invoke("nextNull").not())._then();
+			listBlock.assign(fieldRef, this.pluginContext.newArrayList((JClass)jsonField.itemType));
+			listBlock.invoke(readerParam, "beginArray");
+			listBlock._while(readerParam.invoke("hasNext")).body().invoke(fieldRef, "add").arg(readItemExpression(readerParam, jsonField));
+			listBlock.invoke(readerParam, "endArray");
+			this.pluginContext.generateImmutableFieldInit(listBlock, JExpr._this(), jsonField.field);
+			if (this.hasCollectionProxies) {
+				listBlock.assign(JExpr._this().ref(jsonField.field.name() + BoundPropertiesPlugin.PROXY_SUFFIX), JExpr._null());
+			}
+		} else {
+			block.assign(fieldRef, readItemExpression(readerParam, jsonField));
+		}
+	}
+
+	private JExpression readItemExpression(final JVar readerParam, final JsonField jsonField) {
+		if (jsonField.choices.isEmpty()) {
+			return readValueExpression(readerParam, jsonField.itemType);
+		} else {
+			return JExpr.invoke(jsonField.readItemMethod()).arg(readerParam);
+		}
+	}
+
+	private JExpression readValueExpression(final JVar readerParam, final JType type) {
+		if (isGeneratedClass(type)) {
+			return ((JClass)type).staticInvoke(JsonGenerator.READ_JSON_METHOD_NAME).arg(readerParam);
+		} else if (BinaryGenerator.isEnum(type)) {
+			return JOp.cond(readerParam.invoke("nextNull"), JExpr._null(), ((JClass)type).staticInvoke("valueOf").arg(readerParam.invoke("nextString")));
+		} else if (!type.isPrimitive() && type.unboxify().isPrimitive()) {
+			return JOp.cond(readerParam.invoke("nextNull"), JExpr._null(), readerParam.invoke("next" + BinaryGenerator.valueTypeName(type)));
+		} else {
+			return readerParam.invoke("next" + BinaryGenerator.valueTypeName(type));
+		}
+	}
+
+	/**
+	 * Generates the methods writing and reading a single item of a property
+	 * with several possible elements.
+	 */
+	private void generateChoiceMethods(final JsonField jsonField) {
+		final JClass ioException = this.pluginContext.codeModel.ref(IOException.class);
+		final JClass jaxbElement = this.pluginContext.codeModel.ref(JAXBElement.class);
+		final JClass anyJaxbElement = jaxbElement.narrow(this.pluginContext.codeModel.wildcard());
+		final String methodSuffix = jsonField.propertyName.substring(0, 1).toUpperCase() + jsonField.propertyName.substring(1) + "Item";
+
+		final JMethod writeItemMethod = this.definedClass.method(JMod.PRIVATE | JMod.STATIC, this.pluginContext.voidType, JsonGenerator.WRITE_JSON_METHOD_NAME + methodSuffix);
+		writeItemMethod._throws(ioException);
+		final JVar writerParam = writeItemMethod.param(JMod.FINAL, JsonWriter.class, JsonGenerator.WRITER_PARAM_NAME);
+		final JVar itemParam = writeItemMethod.param(JMod.FINAL, jsonField.itemType, JsonGenerator.ITEM_VAR_NAME);
+		writeItemMethod.body().invoke(writerParam, "beginObject");
+		JConditional ifChoice = null;
+		for (final JsonChoice choice : jsonField.choices) {
+			final JExpression condition;
+			if (choice.elementName != null) {
+				condition = itemParam._instanceof(jaxbElement).cand(nameConstant(choice.elementName).invoke("equals").arg(JExpr.invoke(JExpr.cast(anyJaxbElement, itemParam), "getName")));
+			} else {
+				condition = itemParam._instanceof(choice.type);
+			}
+			ifChoice = ifChoice == null ? writeItemMethod.body()._if(condition) : ifChoice._elseif(condition);
+			final JBlock choiceBody = ifChoice._then();
+			choiceBody.invoke(writerParam, "name").arg(JExpr.lit(choice.name));
+			if (choice.elementName != null) {
+				final JVar valueVar = choiceBody.decl(JMod.FINAL, this.pluginContext.codeModel.ref(Object.class), JsonGenerator.VALUE_VAR_NAME, JExpr.invoke(JExpr.cast(anyJaxbElement, itemParam), "getValue"));
+				final JConditional ifNull = choiceBody._if(valueVar.eq(JExpr._null()));
+				ifNull._then().invoke(writerParam, "nullValue");
+				generateWriteValue(ifNull._else(), writerParam, choice.type, JExpr.cast(choice.type, valueVar));
+			} else {
+				generateWriteValue(choiceBody, writerParam, choice.type, JExpr.cast(choice.type, itemParam));
+			}
+		}
+		ifChoice._else()._throw(JExpr._new(ioException).arg(JExpr.lit("Unexpected value of type ").plus(itemParam.invoke("getClass").invoke("getName")).plus(JExpr.lit(" in property \"" + jsonField.propertyName + "\""))));
+		writeItemMethod.body().invoke(writerParam, "endObject");
+		jsonField.writeItemMethod = writeItemMethod;
+
+		final JMethod readItemMethod = this.definedClass.method(JMod.PRIVATE | JMod.STATIC, jsonField.itemType, JsonGenerator.READ_JSON_METHOD_NAME + methodSuffix);
+		readItemMethod._throws(ioException);
+		final JVar readerParam = readItemMethod.param(JMod.FINAL, JsonReader.class, JsonGenerator.READER_PARAM_NAME);
+		final JBlock body = readItemMethod.body();
+		body._if(readerParam.invoke("nextNull"))._then()._return(JExpr._null());
+		body.invoke(readerParam, "beginObject");
+		final JVar nameVar = body.decl(JMod.FINAL, this.pluginContext.codeModel.ref(String.class), JsonGenerator.NAME_PARAM_NAME, readerParam.invoke("nextName"));
+		final JVar valueVar = body.decl(JMod.FINAL, jsonField.itemType, JsonGenerator.VALUE_VAR_NAME, null);
+		final JSwitch nameSwitch = body._switch(nameVar);
+		for (final JsonChoice choice : jsonField.choices) {
+			final JBlock caseBody = nameSwitch._case(JExpr.lit(choice.name)).body();
+			final JExpression value = readValueExpression(readerParam, choice.type);
+			if (choice.elementName != null) {
+				caseBody.assign(valueVar, JExpr._new(jaxbElement.narrow(choice.type)).arg(nameConstant(choice.elementName)).arg(((JClass)choice.type).dotclass()).arg(value));
+			} else {
+				caseBody.assign(valueVar, value);
+			}
+			caseBody._break();
+		}
+		nameSwitch._default().body()._throw(JExpr._new(ioException).arg(JExpr.lit("Unexpected element \"").plus(nameVar).plus(JExpr.lit("\" in property \"" + jsonField.propertyName + "\""))));
+		body.invoke(readerParam, "endObject");
+		body._return(valueVar);
+		jsonField.readItemMethod = readItemMethod;
+	}
+
+	private boolean isSupported(final JType type) {
+		return isGeneratedClass(type) || BinaryGenerator.isEnum(type) || BinaryGenerator.valueTypeName(type) != null;
+	}
+
+	private boolean isGeneratedClass(final JType type) {
+		final ClassOutline typeClassOutline = this.pluginContext.getClassOutline(type);
+		return typeClassOutline != null && this.typeNames.containsKey(typeClassOutline);
+	}
+
+	private JFieldVar nameConstant(final QName name) {
+		JFieldVar constant = this.nameConstants.get(name);
+		if (constant == null) {
+			String constantName = "_" + NameConverter.standard.toClassName(name.getLocalPart()) + "_QNAME";
+			for (int i = 1; !this.constantNames.add(constantName) || this.definedClass.fields().containsKey(constantName); i++) {
+				constantName = "_" + NameConverter.standard.toClassName(name.getLocalPart()) + i + "_QNAME";
+			}
+			constant = this.definedClass.field(JMod.PRIVATE | JMod.STATIC | JMod.FINAL, QName.class, constantName,
+					JExpr._new(this.pluginContext.codeModel.ref(QName.class)).arg(name.getNamespaceURI()).arg(name.getLocalPart()));
+			this.nameConstants.put(name, constant);
+		}
+		return constant;
+	}
+
+	private final class JsonField {
+		final String propertyName;
+		final JFieldVar field;
+		final JType itemType;
+		final boolean collection;
+		final List<JsonChoice> choices = new ArrayList<>();
+		JMethod writeItemMethod = null;
+		JMethod readItemMethod = null;
+
+		JsonField(final String propertyName, final JFieldVar field, final JType itemType, final boolean collection) {
+			this.propertyName = propertyName;
+			this.field = field;
+			this.itemType = itemType;
+			this.collection = collection;
+		}
+
+		/**
+		 * Adds a possible element of the property. Elements wrapped in a {@link JAXBElement} are
+		 * distinguished by their name, all other elements by their class, so subclasses
+		 * are inserted before their superclasses.
+		 * @return false if there already is an element with the same name.
+		 */
+		boolean addChoice(final JsonChoice choice) {
+			int index = this.choices.size();
+			for (int i = this.choices.size() - 1; i >= 0; i--) {
+				final JsonChoice other = this.choices.get(i);
+				if (other.name.equals(choice.name)) {
+					return false;
+				} else if (other.elementName == null && (choice.elementName != null || ((JClass)other.type).isAssignableFrom((JClass)choice.type))) {
+					index = i;
+				}
+			}
+			this.choices.add(index, choice);
+			return true;
+		}
+
+		JMethod writeItemMethod() {
+			if (this.writeItemMethod == null) {
+				generateChoiceMethods(this);
+			}
+			return this.writeItemMethod;
+		}
+
+		JMethod readItemMethod() {
+			if (this.readItemMethod == null) {
+				generateChoiceMethods(this);
+			}
+			return this.readItemMethod;
+		}
+	}
+
+	private static final class JsonChoice {
+		final String name;
+		final QName elementName;
+		final JType type;
+
+		/**
+		 * @param elementName The name of the {@link JAXBElement} wrapping the value, or null if the value is not wrapped.
+		 */
+		JsonChoice(final String name, final QName elementName, final JType type) {
+			this.name = name;
+			this.elementName = elementName;
+			this.type = type;
+		}
+	}
+}
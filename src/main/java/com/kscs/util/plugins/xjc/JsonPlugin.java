@@ -0,0 +1,116 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2014 Klemm Software Consulting, Mirko Klemm
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.kscs.util.plugins.xjc;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import com.kscs.util.jaxb.JsonReader;
+import com.kscs.util.jaxb.JsonWritable;
+import com.kscs.util.jaxb.JsonWriter;
+import com.kscs.util.plugins.xjc.base.AbstractPlugin;
+import com.kscs.util.plugins.xjc.base.Opt;
+import com.sun.tools.xjc.Options;
+import com.sun.tools.xjc.model.CClassInfo;
+import com.sun.tools.xjc.outline.ClassOutline;
+import com.sun.tools.xjc.outline.FieldOutline;
+import com.sun.tools.xjc.outline.Outline;
+import org.xml.sax.ErrorHandler;
+import org.xml.sax.SAXException;
+import org.xml.sax.SAXParseException;
+
+/**
+ * XJC Plugin to generate methods writing instances
+ * of the generated classes as JSON, and reading them
+ * back, without reflection.
+ */
+public class JsonPlugin extends AbstractPlugin {
+	@Opt
+	private boolean generateTools = true;
+
+	@Override
+	public String getOptionName() {
+		return "Xjson";
+	}
+
+	@Override
+	public boolean run(final Outline outline, final Options opt, final ErrorHandler errorHandler) throws SAXException {
+		final PluginContext pluginContext = PluginContext.get(outline, opt, errorHandler);
+		try (final PluginContext.PluginRun pluginRun = pluginContext.beginRun(this)) {
+			if (this.generateTools) {
+				pluginContext.writeSourceFile(JsonWritable.class);
+				pluginContext.writeSourceFile(JsonWriter.class);
+				pluginContext.writeSourceFile(JsonReader.class);
+			}
+			final Map<ClassOutline, String> typeNames = new LinkedHashMap<>();
+			final Set<String> usedTypeNames = new HashSet<>();
+			for (final ClassOutline classOutline : outline.getClasses()) {
+				ClassOutline rootClass = classOutline;
+				while (rootClass.getSuperClass() != null) {
+					rootClass = rootClass.getSuperClass();
+				}
+				if (rootClass.target.getRefBaseClass() != null) {
+					errorHandler.warning(new SAXParseException(getMessage("error.episodeSuperClass", classOutline.implClass.fullName()), classOutline.target.getLocator()));
+				} else {
+					final String typeName = classOutline.target.getTypeName() != null ? classOutline.target.getTypeName().getLocalPart() : classOutline.implClass.name();
+					typeNames.put(classOutline, usedTypeNames.add(typeName) ? typeName : classOutline.implClass.fullName());
+				}
+			}
+			for (final ClassOutline classOutline : typeNames.keySet()) {
+				try (final GenerationProfile.Measurement classMeasurement = pluginContext.profile.phase("json", classOutline.implClass.fullName())) {
+					final JsonGenerator generator = new JsonGenerator(pluginContext, classOutline, typeNames);
+					for (final FieldOutline fieldOutline : generator.getUnsupportedFields()) {
+						errorHandler.warning(new SAXParseException(getMessage("error.unsupportedField", classOutline.implClass.fullName(), fieldOutline.getPropertyInfo().getName(false)), fieldOutline.getPropertyInfo().getLocator()));
+					}
+					generator.generate(findSubClasses(classOutline, typeNames.keySet()));
+				}
+			}
+			return true;
+		}
+	}
+
+	/**
+	 * Finds all concrete classes whose instances can be found in a property declared
+	 * with the given class, and have to be distinguished by their type name.
+	 */
+	private static List<ClassOutline> findSubClasses(final ClassOutline superClass, final Iterable<ClassOutline> classOutlines) {
+		final List<ClassOutline> subClasses = new ArrayList<>();
+		for (final ClassOutline classOutline : classOutlines) {
+			if (!classOutline.implClass.isAbstract()) {
+				for (CClassInfo baseClass = classOutline.target.getBaseClass(); baseClass != null; baseClass = baseClass.getBaseClass()) {
+					if (baseClass == superClass.target) {
+						subClasses.add(classOutline);
+						break;
+					}
+				}
+			}
+		}
+		return subClasses;
+	}
+}
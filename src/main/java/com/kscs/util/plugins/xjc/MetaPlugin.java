@@ -24,7 +24,13 @@
 package com.kscs.util.plugins.xjc;
 
 import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 import javax.xml.bind.JAXBElement;
 import javax.xml.namespace.QName;
@@ -34,6 +40,7 @@ import org.xml.sax.SAXException;
 import org.xml.sax.SAXParseException;
 
 import com.kscs.util.jaxb.CollectionProperty;
+import com.kscs.util.jaxb.ColumnBatch;
 import com.kscs.util.jaxb.CollectionPropertyInfo;
 import com.kscs.util.jaxb.IndirectCollectionProperty;
 import com.kscs.util.jaxb.IndirectCollectionPropertyInfo;
@@ -48,6 +55,7 @@ import com.kscs.util.jaxb.SinglePropertyInfo;
 import com.kscs.util.plugins.xjc.base.AbstractPlugin;
 import com.kscs.util.plugins.xjc.base.AbstractXSFunction;
 import com.kscs.util.plugins.xjc.base.Opt;
+import com.kscs.util.plugins.xjc.base.PluginUtil;
 import com.kscs.util.plugins.xjc.outline.DefinedPropertyOutline;
 import com.kscs.util.plugins.xjc.outline.PropertyOutline;
 import com.sun.codemodel.JBlock;
@@ -98,6 +106,7 @@ import com.sun.xml.xsom.visitor.XSFunction;
  * @author Mirko Klemm 2015-02-13
  */
 public class MetaPlugin extends AbstractPlugin {
+	private static final String NULL_MASK_SUFFIX = "Null";
 	private static final XSFunction<QName> SCHEMA_NAME_FUNC = new AbstractXSFunction<QName>() {
 		@Override
 		public QName attributeDecl(final XSAttributeDecl decl) {
@@ -268,6 +277,10 @@ public class MetaPlugin extends AbstractPlugin {
 	private boolean allowSet = true;
 	@Opt
 	private String visitMethodName = "visit";
+	@Opt
+	private boolean generateColumns = false;
+	@Opt
+	private String columnsClassName = "Columns";
 	private boolean fixedAttributeAsConstantProperty;
 
 	@Override
@@ -287,33 +300,50 @@ public class MetaPlugin extends AbstractPlugin {
 	@Override
 	public boolean run(final Outline outline, final Options opt, final ErrorHandler errorHandler) throws SAXException {
 		final PluginContext pluginContext = PluginContext.get(outline, opt, errorHandler);
-		if (this.extended && this.generateTools) {
-			pluginContext.writeSourceFile(PropertyInfo.class);
-			pluginContext.writeSourceFile(SinglePropertyInfo.class);
-			pluginContext.writeSourceFile(CollectionPropertyInfo.class);
-			pluginContext.writeSourceFile(IndirectCollectionPropertyInfo.class);
-			pluginContext.writeSourceFile(IndirectPrimitiveCollectionPropertyInfo.class);
-			pluginContext.writeSourceFile(PropertyVisitor.class);
-			pluginContext.writeSourceFile(Property.class);
-			pluginContext.writeSourceFile(SingleProperty.class);
-			pluginContext.writeSourceFile(CollectionProperty.class);
-			pluginContext.writeSourceFile(IndirectCollectionProperty.class);
-			pluginContext.writeSourceFile(IndirectPrimitiveCollectionProperty.class);
-			pluginContext.writeSourceFile(ItemProperty.class);
-		}
-		for (final ClassOutline classOutline : outline.getClasses()) {
-			generateMetaClass(pluginContext, classOutline, errorHandler);
-		}
-		return true;
+		try (final PluginContext.PluginRun pluginRun = pluginContext.beginRun(this)) {
+			if (this.extended && this.generateTools) {
+				pluginContext.writeSourceFile(PropertyInfo.class);
+				pluginContext.writeSourceFile(SinglePropertyInfo.class);
+				pluginContext.writeSourceFile(CollectionPropertyInfo.class);
+				pluginContext.writeSourceFile(IndirectCollectionPropertyInfo.class);
+				pluginContext.writeSourceFile(IndirectPrimitiveCollectionPropertyInfo.class);
+				pluginContext.writeSourceFile(PropertyVisitor.class);
+				pluginContext.writeSourceFile(Property.class);
+				pluginContext.writeSourceFile(SingleProperty.class);
+				pluginContext.writeSourceFile(CollectionProperty.class);
+				pluginContext.writeSourceFile(IndirectCollectionProperty.class);
+				pluginContext.writeSourceFile(IndirectPrimitiveCollectionProperty.class);
+				pluginContext.writeSourceFile(ItemProperty.class);
+				if (this.generateColumns) {
+					pluginContext.writeSourceFile(ColumnBatch.class);
+				}
+			}
+			final Map<FieldOutline, JExpression> metaFields = new HashMap<>();
+			for (final ClassOutline classOutline : outline.getClasses()) {
+				generateMetaClass(pluginContext, classOutline, metaFields, errorHandler);
+			}
+			if (this.generateColumns) {
+				if (this.extended) {
+					for (final ClassOutline classOutline : outline.getClasses()) {
+						try (final GenerationProfile.Measurement classMeasurement = pluginContext.profile.phase("meta-columns", classOutline.implClass.fullName())) {
+							generateColumnsClass(pluginContext, classOutline, metaFields, errorHandler);
+						}
+					}
+				} else {
+					errorHandler.warning(new SAXParseException(getMessage("error.columnsNotExtended"), outline.getModel().getLocator()));
+				}
+			}
+			return true;
+		}
 	}
 
-	private void generateMetaClass(final PluginContext pluginContext, final ClassOutline classOutline, final ErrorHandler errorHandler) throws SAXException {
+	private void generateMetaClass(final PluginContext pluginContext, final ClassOutline classOutline, final Map<FieldOutline, JExpression> metaFields, final ErrorHandler errorHandler) throws SAXException {
 		try {
 			final JDefinedClass metaClass = classOutline.implClass._class(JMod.PUBLIC | JMod.STATIC, this.metaClassName);
 			final JMethod visitMethod = generateVisitMethod(classOutline);
 			for (final FieldOutline fieldOutline : classOutline.getDeclaredFields()) {
 				if (this.extended) {
-					generateExtendedMetaField(pluginContext, metaClass, visitMethod, fieldOutline);
+					metaFields.put(fieldOutline, metaClass.staticRef(generateExtendedMetaField(pluginContext, metaClass, visitMethod, fieldOutline)));
 				} else {
 					generateNameOnlyMetaField(pluginContext, metaClass, fieldOutline);
 				}
@@ -333,7 +363,7 @@ public class MetaPlugin extends AbstractPlugin {
 		metaClass.field(JMod.PUBLIC | JMod.STATIC | JMod.FINAL | JMod.TRANSIENT, String.class, metaFieldName, JExpr.lit(propertyName));
 	}
 
-	private void generateExtendedMetaField(final PluginContext pluginContext, final JDefinedClass metaClass, final JMethod visitMethod, final FieldOutline fieldOutline) {
+	private JFieldVar generateExtendedMetaField(final PluginContext pluginContext, final JDefinedClass metaClass, final JMethod visitMethod, final FieldOutline fieldOutline) {
 		final PropertyOutline propertyOutline = new DefinedPropertyOutline(fieldOutline);
 		final String constantName = getConstantName(fieldOutline);
 		final Outline outline = pluginContext.outline;
@@ -453,6 +483,80 @@ public class MetaPlugin extends AbstractPlugin {
 		} else {
 			block.add(call);
 		}
+		return staticField;
+	}
+
+	/**
+	 * Generates a {@link ColumnBatch} subclass storing the single-valued properties
+	 * of simple types of a class, including inherited properties, in column arrays.
+	 * @param metaFields The expressions referencing the extended meta field of each property.
+	 */
+	private void generateColumnsClass(final PluginContext pluginContext, final ClassOutline classOutline, final Map<FieldOutline, JExpression> metaFields, final ErrorHandler errorHandler) throws SAXException {
+		final List<FieldOutline> fieldOutlines = new ArrayList<>();
+		for (ClassOutline declaringClass = classOutline; declaringClass != null; declaringClass = declaringClass.getSuperClass()) {
+			fieldOutlines.addAll(0, Arrays.asList(declaringClass.getDeclaredFields()));
+		}
+		final Set<String> columnNames = new HashSet<>();
+		final List<FieldOutline> columns = new ArrayList<>();
+		for (final FieldOutline fieldOutline : fieldOutlines) {
+			final JFieldVar field = PluginUtil.getDeclaredField(fieldOutline);
+			if (field != null && (field.mods().getValue() & JMod.STATIC) == 0 && metaFields.containsKey(fieldOutline) && !fieldOutline.getPropertyInfo().isCollection()
+					&& (BinaryGenerator.isEnum(field.type()) || (!field.type().isArray() && BinaryGenerator.valueTypeName(field.type()) != null))
+					&& columnNames.add(field.name()) && columnNames.add(field.name() + MetaPlugin.NULL_MASK_SUFFIX)) {
+				columns.add(fieldOutline);
+			}
+		}
+		if (columns.isEmpty()) {
+			return;
+		}
+		final JDefinedClass columnsClass;
+		try {
+			columnsClass = classOutline.implClass._class(JMod.PUBLIC | JMod.STATIC, this.columnsClassName);
+		} catch (final JClassAlreadyExistsException e) {
+			errorHandler.error(new SAXParseException(getMessage("error.metaClassExists", classOutline.implClass.name(), this.columnsClassName), classOutline.target.getLocator()));
+			return;
+		}
+		columnsClass._extends(pluginContext.codeModel.ref(ColumnBatch.class).narrow(classOutline.implClass));
+		columnsClass.javadoc().append("Stores instances of {@link " + classOutline.implClass.name() + "} in column arrays, which are reused when the batch is filled again.");
+		final JMethod constructor = columnsClass.constructor(JMod.PUBLIC);
+		final JVar capacityParam = constructor.param(JMod.FINAL, pluginContext.codeModel.INT, "capacity");
+		constructor.body().invoke("super").arg(capacityParam);
+		final JMethod storeMethod = columnsClass.method(JMod.PROTECTED, pluginContext.voidType, "store");
+		storeMethod.annotate(Override.class);
+		final JVar itemParam = storeMethod.param(JMod.FINAL, classOutline.implClass, "_item");
+		final JVar rowParam = storeMethod.param(JMod.FINAL, pluginContext.codeModel.INT, "_row");
+		for (final FieldOutline fieldOutline : columns) {
+			final JFieldVar field = PluginUtil.getDeclaredField(fieldOutline);
+			final JType fieldType = field.type();
+			final JFieldRef value = itemParam.ref(field);
+			final JExpression metaField = metaFields.get(fieldOutline);
+			if (fieldType.unboxify().isPrimitive()) {
+				final JType columnType = fieldType.unboxify();
+				final JFieldVar columnField = columnsClass.field(JMod.PUBLIC | JMod.FINAL, columnType.array(), field.name());
+				if (fieldType.isPrimitive()) {
+					constructor.body().assign(JExpr._this().ref(columnField), JExpr.invoke("column").arg(metaField).arg(JExpr.newArray(columnType, capacityParam)).arg(JExpr._null()));
+					storeMethod.body().assign(JExpr._this().ref(columnField).component(rowParam), value);
+				} else {
+					final JFieldVar nullMaskField = columnsClass.field(JMod.PUBLIC | JMod.FINAL, pluginContext.codeModel.BOOLEAN.array(), field.name() + MetaPlugin.NULL_MASK_SUFFIX);
+					constructor.body().assign(JExpr._this().ref(nullMaskField), JExpr.newArray(pluginContext.codeModel.BOOLEAN, capacityParam));
+					constructor.body().assign(JExpr._this().ref(columnField), JExpr.invoke("column").arg(metaField).arg(JExpr.newArray(columnType, capacityParam)).arg(JExpr._this().ref(nullMaskField)));
+					storeMethod.body().assign(JExpr._this().ref(nullMaskField).component(rowParam), value.eq(JExpr._null()));
+					storeMethod.body().assign(JExpr._this().ref(columnField).component(rowParam),
+							JOp.cond(value.eq(JExpr._null()), columnType == pluginContext.codeModel.BOOLEAN ? JExpr.FALSE : JExpr.lit(0), value));
+				}
+			} else {
+				final JClass stringType = pluginContext.codeModel.ref(String.class);
+				final JFieldVar columnField = columnsClass.field(JMod.PUBLIC | JMod.FINAL, stringType.array(), field.name());
+				constructor.body().assign(JExpr._this().ref(columnField), JExpr.invoke("column").arg(metaField).arg(JExpr.newArray(stringType, capacityParam)).arg(JExpr._null()));
+				final JExpression text;
+				if (fieldType.fullName().equals(String.class.getName())) {
+					text = value;
+				} else {
+					text = JOp.cond(value.eq(JExpr._null()), JExpr._null(), value.invoke(BinaryGenerator.isEnum(fieldType) ? "name" : "toString"));
+				}
+				storeMethod.body().assign(JExpr._this().ref(columnField).component(rowParam), text);
+			}
+		}
 	}
 
 	private boolean isVisitable(final PluginContext pluginContext, final JClass typeArg) {
@@ -54,19 +54,21 @@ public class ModifierPlugin extends AbstractPlugin {
 	@Override
 	public boolean run(final Outline outline, final Options opt, final ErrorHandler errorHandler) throws SAXException {
 		final PluginContext pluginContext = PluginContext.get(outline, opt, errorHandler);
-		for (final ClassOutline classOutline : outline.getClasses()) {
-			try {
-				final GroupInterfacePlugin groupInterfacePlugin = pluginContext.findPlugin(GroupInterfacePlugin.class);
-				if (groupInterfacePlugin != null) {
-					ModifierGenerator.generateClass(pluginContext, new DefinedClassOutline(pluginContext, classOutline), this.modifierClassName, this.modifierClassName, groupInterfacePlugin.getGroupInterfacesForClass(pluginContext, classOutline.implClass.fullName()), this.modifierMethodName);
-				} else {
-					ModifierGenerator.generateClass(pluginContext, new DefinedClassOutline(pluginContext, classOutline), this.modifierClassName, this.modifierMethodName);
+		try (final PluginContext.PluginRun pluginRun = pluginContext.beginRun(this)) {
+			for (final ClassOutline classOutline : outline.getClasses()) {
+				try {
+					final GroupInterfacePlugin groupInterfacePlugin = pluginContext.findPlugin(GroupInterfacePlugin.class);
+					if (groupInterfacePlugin != null) {
+						ModifierGenerator.generateClass(pluginContext, new DefinedClassOutline(pluginContext, classOutline), this.modifierClassName, this.modifierClassName, groupInterfacePlugin.getGroupInterfacesForClass(pluginContext, classOutline.implClass.fullName()), this.modifierMethodName);
+					} else {
+						ModifierGenerator.generateClass(pluginContext, new DefinedClassOutline(pluginContext, classOutline), this.modifierClassName, this.modifierMethodName);
+					}
+				} catch (final JClassAlreadyExistsException e) {
+					errorHandler.error(new SAXParseException(e.getMessage(), classOutline.target.getLocator()));
 				}
-			} catch (final JClassAlreadyExistsException e) {
-				errorHandler.error(new SAXParseException(e.getMessage(), classOutline.target.getLocator()));
 			}
+			return true;
 		}
-		return true;
 	}
 
 }
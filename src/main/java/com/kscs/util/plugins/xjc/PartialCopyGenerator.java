@@ -38,6 +38,7 @@ import com.sun.codemodel.JInvocation;
 import com.sun.codemodel.JMethod;
 import com.sun.codemodel.JMod;
 import com.sun.codemodel.JOp;
+import com.sun.codemodel.JType;
 import com.sun.codemodel.JVar;
 
 /**
@@ -83,6 +84,11 @@ class PartialCopyGenerator implements CopyGenerator {
 		return invocation.arg(this.propertyTreeParam).arg(this.propertyTreeUseParam);
 	}
 
+	@Override
+	public boolean isRuntimeTree() {
+		return true;
+	}
+
 	@Override
 	public void generatePartialArgs(final JDocComment javadoc) {
 		javadoc	.addParam(this.propertyTreeParam)
@@ -99,10 +105,13 @@ class PartialCopyGenerator implements CopyGenerator {
 		private final JVar fieldPathVar;
 
 		public TreeVarGenerator(final JBlock body, final String fieldName) {
+			final PluginContext pluginContext = PartialCopyGenerator.this.pluginContext;
 			this.fieldPathVar = body.decl(JMod.FINAL,
-					PartialCopyGenerator.this.pluginContext.codeModel._ref(PropertyTree.class),
+					pluginContext.codeModel._ref(PropertyTree.class),
 					fieldName + "PropertyTree",
-					JOp.cond(PartialCopyGenerator.this.propertyTreeParam.eq(JExpr._null()), JExpr._null(),PartialCopyGenerator.this.propertyTreeParam.invoke("get").arg(JExpr.lit(fieldName)))
+					pluginContext.compact
+							? pluginContext.copiesClass.staticInvoke("child").arg(PartialCopyGenerator.this.propertyTreeParam).arg(JExpr.lit(fieldName))
+							: JOp.cond(PartialCopyGenerator.this.propertyTreeParam.eq(JExpr._null()), JExpr._null(),PartialCopyGenerator.this.propertyTreeParam.invoke("get").arg(JExpr.lit(fieldName)))
 			);
 		}
 
@@ -122,12 +131,20 @@ class PartialCopyGenerator implements CopyGenerator {
 			}
 		}
 
+		@Override
+		public JExpression generatePartialCopy(final JExpression value, final JType valueType) {
+			return generatePartialArgs(value.invoke(PartialCopyGenerator.this.pluginContext.copyMethodName));
+		}
+
 		@Override
 		public JBlock generateEnclosingBlock(final JBlock body) {
 			return  body._if(getIncludeCondition(this.fieldPathVar))._then();
 		}
 
 		private JExpression getIncludeCondition(final JVar fieldPathVar) {
+			if (PartialCopyGenerator.this.pluginContext.compact) {
+				return PartialCopyGenerator.this.pluginContext.copiesClass.staticInvoke("includes").arg(PartialCopyGenerator.this.propertyTreeUseParam).arg(fieldPathVar);
+			}
 			return JOp.cond(
 					PartialCopyGenerator.this.propertyTreeUseParam.eq(PartialCopyGenerator.this.pluginContext.includeConst),
 					fieldPathVar.ne(JExpr._null()),
@@ -46,6 +46,7 @@ import org.xml.sax.ErrorHandler;
 import org.xml.sax.SAXException;
 
 import com.kscs.util.jaxb.Buildable;
+import com.kscs.util.jaxb.Copies;
 import com.kscs.util.jaxb.Copyable;
 import com.kscs.util.jaxb.PartialCopyable;
 import com.kscs.util.jaxb.PropertyTree;
@@ -109,6 +110,8 @@ public class PluginContext extends Plugin {
 	public static final String NEW_MODIFIER_METHOD_NAME = "modifier";
 	public static final String NEW_COPY_BUILDER_METHOD_NAME = "newCopyBuilder";
 	public static final String COPY_TO_METHOD_NAME = "copyTo";
+	public static final int SMALL_COLLECTION_MAX_OCCURS = 8;
+	public static final int DEFAULT_COLLECTION_CAPACITY = 10;
 	private static final String AS_LIST = "asList";
 	private static final String UNMODIFIABLE_LIST = "unmodifiableList";
 	public final JCodeModel codeModel;
@@ -140,10 +143,14 @@ public class PluginContext extends Plugin {
 	public final String newModifierMethodName;
 	public final String newCopyBuilderMethodName;
 	public final String newObjectVarName;
+	public final GenerationProfile profile;
+	public final boolean compact;
+	public final JClass copiesClass;
 	private final JClass collectionsClass;
 	private final JClass arraysClass;
 	private final Map<String, ClassOutline> classes;
 	private final Map<String, EnumOutline> enums;
+	private final List<Runnable> releaseActions = new ArrayList<>();
 
 	private PluginContext(final Outline outline, final Options opt, final ErrorHandler errorHandler) {
 		this.outline = outline;
@@ -186,6 +193,9 @@ public class PluginContext extends Plugin {
 		this.newObjectVarName = PluginContext.NEW_OBJECT_VAR_NAME;
 		this.buildableInterface = this.codeModel.ref(Buildable.class);
 		this.buildableClass = this.codeModel.ref(Buildable.PrimitiveBuildable.class);
+		this.profile = new GenerationProfile(findPlugin(opt, ProfilePlugin.class) != null);
+		this.compact = findPlugin(opt, CompactPlugin.class) != null;
+		this.copiesClass = this.codeModel.ref(Copies.class);
 	}
 
 	public static PluginContext get(final Outline outline, final Options opt, final ErrorHandler errorHandler) {
@@ -197,6 +207,44 @@ public class PluginContext extends Plugin {
 		return context;
 	}
 
+	/**
+	 * Marks the beginning of the {@code run} method of a plugin of this package.
+	 * The returned object must be closed at the end of the {@code run} method,
+	 * preferably by means of a try-with-resources block.
+	 * @param plugin The running plugin
+	 * @return An object to be closed when the plugin run has completed
+	 */
+	public PluginRun beginRun(final Plugin plugin) {
+		return new PluginRun(plugin, this.profile.run(plugin.getOptionName()));
+	}
+
+	/**
+	 * Registers an action releasing state that is only needed while the plugins
+	 * of this package are running. Release actions are invoked when the last
+	 * active plugin of this package has completed its run, so that the state
+	 * can be garbage-collected before XJC writes the generated code.
+	 * @param releaseAction The action to invoke
+	 */
+	public void addReleaseAction(final Runnable releaseAction) {
+		this.releaseActions.add(releaseAction);
+	}
+
+	private void completeRun(final Plugin plugin) {
+		final List<Plugin> activePlugins = this.opt.activePlugins;
+		for (int i = activePlugins.indexOf(plugin) + 1; i < activePlugins.size(); i++) {
+			if (activePlugins.get(i).getClass().getPackage() == PluginContext.class.getPackage()) {
+				return;
+			}
+		}
+		for (final Runnable releaseAction : this.releaseActions) {
+			releaseAction.run();
+		}
+		this.releaseActions.clear();
+		this.classes.clear();
+		this.enums.clear();
+		this.classesBySchemaComponent.clear();
+	}
+
 	public static <T> T coalesce(final T... args) {
 		for (final T t : args) {
 			if (t != null) {
@@ -353,10 +401,15 @@ public class PluginContext extends Plugin {
 		return this.enums.get(typeSpec.fullName());
 	}
 
+	/**
+	 * Generates a loop over a collection, which is preceded by the creation of a target list
+	 * with the size of the source collection, or the assignment of null to the target
+	 * if the source is null.
+	 */
 	public JForEach loop(final JBlock block, final JExpression source, final JType sourceElementType, final JAssignmentTarget target, final JType targetElementType) {
 		final JConditional ifNull = block._if(source.eq(JExpr._null()));
 		ifNull._then().assign(target, JExpr._null());
-		ifNull._else().assign(target, JExpr._new(this.arrayListClass.narrow(targetElementType)));
+		ifNull._else().assign(target, JExpr._new(this.arrayListClass.narrow(targetElementType)).arg(source.invoke("size")));
 		return ifNull._else().forEach(sourceElementType, "_item", source);
 	}
 
@@ -364,6 +417,24 @@ public class PluginContext extends Plugin {
 		return JExpr._new(this.arrayListClass.narrow(elementType));
 	}
 
+	/**
+	 * Creates a new empty list for the values of a property, with an initial capacity
+	 * derived from the occurrence bounds of the property in the schema.
+	 * A property with at most {@link #SMALL_COLLECTION_MAX_OCCURS} values gets a list with
+	 * exactly that capacity, a property requiring more values than an {@link ArrayList}
+	 * holds by default gets a list with the minimum number of values as capacity.
+	 */
+	public JInvocation newArrayList(final JClass elementType, final PropertyOutline propertyOutline) {
+		final int maxOccurs = propertyOutline.getMaxOccurs();
+		if (maxOccurs > 0 && maxOccurs <= PluginContext.SMALL_COLLECTION_MAX_OCCURS) {
+			return newArrayList(elementType).arg(JExpr.lit(maxOccurs));
+		} else if (propertyOutline.getMinOccurs() > PluginContext.DEFAULT_COLLECTION_CAPACITY) {
+			return newArrayList(elementType).arg(JExpr.lit(propertyOutline.getMinOccurs()));
+		} else {
+			return newArrayList(elementType);
+		}
+	}
+
 
 	public JDirectInnerClassRef ref(final JClass outer, final String name, final boolean isInterface, final boolean isAbstract, final JClass superClass) {
 		return new JDirectInnerClassRef(outer, name, isInterface, isAbstract, superClass);
@@ -498,4 +569,23 @@ public class PluginContext extends Plugin {
 	public JTypedInvocation _new(final JClass type) {
 		return new JTypedInvocation(type);
 	}
+
+	/**
+	 * Represents the run of a single plugin, see {@link #beginRun(Plugin)}
+	 */
+	public final class PluginRun implements AutoCloseable {
+		private final Plugin plugin;
+		private final GenerationProfile.Measurement measurement;
+
+		private PluginRun(final Plugin plugin, final GenerationProfile.Measurement measurement) {
+			this.plugin = plugin;
+			this.measurement = measurement;
+		}
+
+		@Override
+		public void close() {
+			this.measurement.close();
+			completeRun(this.plugin);
+		}
+	}
 }
@@ -0,0 +1,92 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2014 Klemm Software Consulting, Mirko Klemm
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.kscs.util.plugins.xjc;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+import com.kscs.util.plugins.xjc.base.AbstractPlugin;
+import com.kscs.util.plugins.xjc.base.Opt;
+import com.sun.codemodel.JResourceFile;
+import com.sun.tools.xjc.Options;
+import com.sun.tools.xjc.outline.Outline;
+import org.xml.sax.ErrorHandler;
+import org.xml.sax.SAXException;
+import org.xml.sax.SAXParseException;
+
+/**
+ * XJC Plugin to record the time and memory spent by the plugins
+ * of this package, and to write a report of them next to the
+ * generated sources.
+ */
+public class ProfilePlugin extends AbstractPlugin {
+	@Opt
+	private String reportFileName = "rich-contract-profile.json";
+	@Opt
+	private String reportFormat = GenerationProfile.FORMAT_JSON;
+
+	@Override
+	public String getOptionName() {
+		return "Xrich-contract-profile";
+	}
+
+	@Override
+	public boolean run(final Outline outline, final Options opt, final ErrorHandler errorHandler) throws SAXException {
+		final PluginContext pluginContext = PluginContext.get(outline, opt, errorHandler);
+		try (final PluginContext.PluginRun pluginRun = pluginContext.beginRun(this)) {
+			if (!GenerationProfile.FORMAT_JSON.equals(this.reportFormat) && !GenerationProfile.FORMAT_CSV.equals(this.reportFormat)) {
+				errorHandler.error(new SAXParseException(getMessage("error.unknownReportFormat", this.reportFormat), outline.getModel().getLocator()));
+				return false;
+			}
+			pluginContext.codeModel.rootPackage().addResourceFile(new ReportFile(pluginContext.profile, this.reportFileName, this.reportFormat));
+			return true;
+		}
+	}
+
+	/**
+	 * Writes the report when the code model is built,
+	 * i.e. after all plugins have completed.
+	 */
+	private static class ReportFile extends JResourceFile {
+		private final GenerationProfile profile;
+		private final String format;
+
+		ReportFile(final GenerationProfile profile, final String name, final String format) {
+			super(name);
+			this.profile = profile;
+			this.format = format;
+		}
+
+		@Override
+		protected boolean isResource() {
+			return false;
+		}
+
+		@Override
+		protected void build(final OutputStream os) throws IOException {
+			this.profile.write(os, this.format);
+		}
+	}
+}
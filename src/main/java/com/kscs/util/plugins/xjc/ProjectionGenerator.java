@@ -0,0 +1,239 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2014 Klemm Software Consulting, Mirko Klemm
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.kscs.util.plugins.xjc;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+
+import com.kscs.util.jaxb.PropertyProjection;
+import com.kscs.util.jaxb.PropertyTree;
+import com.kscs.util.jaxb.PropertyTreeUse;
+import com.kscs.util.plugins.xjc.base.PluginUtil;
+import com.sun.codemodel.ClassType;
+import com.sun.codemodel.JBlock;
+import com.sun.codemodel.JClass;
+import com.sun.codemodel.JClassAlreadyExistsException;
+import com.sun.codemodel.JDefinedClass;
+import com.sun.codemodel.JExpr;
+import com.sun.codemodel.JExpression;
+import com.sun.codemodel.JFieldVar;
+import com.sun.codemodel.JMethod;
+import com.sun.codemodel.JMod;
+import com.sun.codemodel.JOp;
+import com.sun.codemodel.JType;
+import com.sun.codemodel.JVar;
+import com.sun.tools.xjc.outline.ClassOutline;
+import com.sun.tools.xjc.outline.FieldOutline;
+
+/**
+ * Generates the nested projection class of a class, which gives read access
+ * to the properties of an instance selected by a {@link PropertyTree} without copying it,
+ * and the <code>project</code> methods creating projections.
+ * The projection class of a class extends the projection class of its super class.
+ * Getters of properties of generated types return the projections of their values,
+ * which are created on first access.
+ */
+class ProjectionGenerator {
+	static final String PROJECT_METHOD_NAME = "project";
+	static final String PROJECT_ONLY_METHOD_NAME = "projectOnly";
+	static final String PROJECT_EXCEPT_METHOD_NAME = "projectExcept";
+	static final String SOURCE_PARAM_NAME = "_source";
+	static final String CHILD_VAR_NAME = "_child";
+	static final String VALUE_VAR_NAME = "_value";
+	static final String LIST_PROJECTION_CLASS_SUFFIX = "List";
+
+	private final PluginContext pluginContext;
+	private final ClassOutline classOutline;
+	private final ProjectionGenerator superGenerator;
+	private final JDefinedClass definedClass;
+	private final JDefinedClass projectionClass;
+	private final Map<String, JType> getters = new HashMap<>();
+
+	ProjectionGenerator(final PluginContext pluginContext, final ClassOutline classOutline, final ProjectionGenerator superGenerator, final JDefinedClass projectionClass) {
+		this.pluginContext = pluginContext;
+		this.classOutline = classOutline;
+		this.superGenerator = superGenerator;
+		this.definedClass = classOutline.implClass;
+		this.projectionClass = projectionClass;
+		if (superGenerator != null) {
+			this.projectionClass._extends(superGenerator.projectionClass);
+		} else {
+			this.projectionClass._extends(pluginContext.codeModel.ref(PropertyProjection.class).narrow(this.definedClass));
+		}
+	}
+
+	JDefinedClass getProjectionClass() {
+		return this.projectionClass;
+	}
+
+	/**
+	 * Generates the members of the projection class, and the project methods of the generated class.
+	 * The generators of the super classes must have been run before.
+	 * @param projectionClasses The projection classes of all generated classes having one.
+	 */
+	void generate(final Map<ClassOutline, JDefinedClass> projectionClasses) {
+		if (this.superGenerator != null) {
+			this.getters.putAll(this.superGenerator.getters);
+		}
+		final JMethod constructor = this.projectionClass.constructor(JMod.PROTECTED);
+		final JVar sourceParam = constructor.param(JMod.FINAL, this.definedClass, ProjectionGenerator.SOURCE_PARAM_NAME);
+		final JVar treeParam = constructor.param(JMod.FINAL, PropertyTree.class, DeepCopyPlugin.PROPERTY_TREE_PARAM_NAME);
+		final JVar useParam = constructor.param(JMod.FINAL, PropertyTreeUse.class, DeepCopyPlugin.PROPERTY_TREE_USE_PARAM_NAME);
+		constructor.body().invoke("super").arg(sourceParam).arg(treeParam).arg(useParam);
+		for (final FieldOutline fieldOutline : this.classOutline.getDeclaredFields()) {
+			generateGetter(fieldOutline, projectionClasses);
+		}
+		for (final Iterator<JClass> iterator = this.definedClass._implements(); iterator.hasNext(); ) {
+			for (final JClass interfaceClass : ViewGenerator.findImplementedInterfaces(iterator.next(), this.getters, new LinkedHashSet<JClass>())) {
+				this.projectionClass._implements(interfaceClass);
+			}
+		}
+		generateProjectMethods();
+	}
+
+	private void generateProjectMethods() {
+		final JMethod projectMethod = this.definedClass.method(JMod.PUBLIC, this.projectionClass, ProjectionGenerator.PROJECT_METHOD_NAME);
+		final JVar treeParam = projectMethod.param(JMod.FINAL, PropertyTree.class, DeepCopyPlugin.PROPERTY_TREE_PARAM_NAME);
+		final JVar useParam = projectMethod.param(JMod.FINAL, PropertyTreeUse.class, DeepCopyPlugin.PROPERTY_TREE_USE_PARAM_NAME);
+		projectMethod.body()._return(JExpr._new(this.projectionClass).arg(JExpr._this()).arg(treeParam).arg(useParam));
+		generateConvenienceProjectMethod(projectMethod, ProjectionGenerator.PROJECT_ONLY_METHOD_NAME, this.pluginContext.includeConst);
+		generateConvenienceProjectMethod(projectMethod, ProjectionGenerator.PROJECT_EXCEPT_METHOD_NAME, this.pluginContext.excludeConst);
+		if (this.superGenerator != null) {
+			projectMethod.annotate(Override.class);
+		}
+	}
+
+	private void generateConvenienceProjectMethod(final JMethod projectMethod, final String methodName, final JExpression propertyTreeUse) {
+		final JMethod method = this.definedClass.method(JMod.PUBLIC, this.projectionClass, methodName);
+		final JVar treeParam = method.param(JMod.FINAL, PropertyTree.class, DeepCopyPlugin.PROPERTY_TREE_PARAM_NAME);
+		method.body()._return(JExpr.invoke(projectMethod).arg(treeParam).arg(propertyTreeUse));
+		if (this.superGenerator != null) {
+			method.annotate(Override.class);
+		}
+	}
+
+	private void generateGetter(final FieldOutline fieldOutline, final Map<ClassOutline, JDefinedClass> projectionClasses) {
+		final JMethod getter = PluginContext.findGetter(fieldOutline);
+		final JFieldVar field = PluginUtil.getDeclaredField(fieldOutline);
+		if (getter == null || field == null) {
+			return;
+		}
+		final JExpression value = JExpr.invoke(JExpr.cast(this.definedClass, JExpr._this().ref("source")), getter);
+		final JExpression childTree = JExpr.invoke("child").arg(JExpr.lit(field.name()));
+		final JType getterType = getter.type();
+		if (getterType instanceof JClass && this.pluginContext.collectionClass.isAssignableFrom(((JClass)getterType).erasure())) {
+			final List<JClass> typeParameters = ((JClass)getterType).getTypeParameters();
+			final JDefinedClass itemProjectionClass = typeParameters.isEmpty() ? null : findProjectionClass(typeParameters.get(0), projectionClasses);
+			if (itemProjectionClass != null) {
+				generateListProjectionGetter(fieldOutline, getter, typeParameters.get(0), itemProjectionClass, value, childTree);
+			} else {
+				final JMethod projectionGetter = this.projectionClass.method(JMod.PUBLIC, getterType, getter.name());
+				projectionGetter.body()._return(JOp.cond(JExpr.invoke("includes").arg(childTree), value, this.pluginContext.codeModel.ref(Collections.class).staticInvoke("emptyList")));
+				this.getters.put(getter.name(), getterType);
+			}
+		} else {
+			final JDefinedClass valueProjectionClass = findProjectionClass(getterType, projectionClasses);
+			if (valueProjectionClass != null) {
+				generateProjectionGetter(fieldOutline, getter, valueProjectionClass, value, childTree);
+			} else {
+				final JMethod projectionGetter = this.projectionClass.method(JMod.PUBLIC, getterType, getter.name());
+				projectionGetter.body()._return(JOp.cond(JExpr.invoke("includes").arg(childTree), value, defaultValue(getterType)));
+				this.getters.put(getter.name(), getterType);
+			}
+		}
+	}
+
+	private void generateProjectionGetter(final FieldOutline fieldOutline, final JMethod getter, final JDefinedClass valueProjectionClass, final JExpression value, final JExpression childTree) {
+		final JFieldVar projectionField = this.projectionClass.field(JMod.PRIVATE, valueProjectionClass, "_" + fieldOutline.getPropertyInfo().getName(false), JExpr._null());
+		final JMethod projectionGetter = this.projectionClass.method(JMod.PUBLIC, valueProjectionClass, getter.name());
+		final JBlock ifEmpty = projectionGetter.body()._if(JExpr._this().ref(projectionField).eq(JExpr._null()))._then();
+		final JVar childVar = ifEmpty.decl(JMod.FINAL, this.pluginContext.codeModel.ref(PropertyTree.class), ProjectionGenerator.CHILD_VAR_NAME, childTree);
+		final JBlock ifIncluded = ifEmpty._if(JExpr.invoke("includes").arg(childVar))._then();
+		final JVar valueVar = ifIncluded.decl(JMod.FINAL, getter.type(), ProjectionGenerator.VALUE_VAR_NAME, value);
+		ifIncluded._if(valueVar.ne(JExpr._null()))._then().assign(JExpr._this().ref(projectionField),
+				valueVar.invoke(ProjectionGenerator.PROJECT_METHOD_NAME).arg(childVar).arg(JExpr._this().ref("propertyTreeUse")));
+		projectionGetter.body()._return(JExpr._this().ref(projectionField));
+		this.getters.put(getter.name(), valueProjectionClass);
+	}
+
+	private void generateListProjectionGetter(final FieldOutline fieldOutline, final JMethod getter, final JClass itemType, final JDefinedClass itemProjectionClass, final JExpression value, final JExpression childTree) {
+		final JClass listType = this.pluginContext.codeModel.ref(List.class).narrow(itemProjectionClass);
+		final JDefinedClass listProjectionClass;
+		try {
+			listProjectionClass = this.projectionClass._class(JMod.PRIVATE | JMod.STATIC | JMod.FINAL, fieldOutline.getPropertyInfo().getName(true) + ProjectionGenerator.LIST_PROJECTION_CLASS_SUFFIX, ClassType.CLASS);
+		} catch (final JClassAlreadyExistsException e) {
+			throw new RuntimeException(e);
+		}
+		listProjectionClass._extends(this.pluginContext.codeModel.ref(PropertyProjection.ListProjection.class).narrow(itemType, itemProjectionClass));
+		final JMethod listConstructor = listProjectionClass.constructor(JMod.NONE);
+		final JVar listSourceParam = listConstructor.param(JMod.FINAL, this.pluginContext.codeModel.ref(List.class).narrow(itemType), ProjectionGenerator.SOURCE_PARAM_NAME);
+		final JVar listTreeParam = listConstructor.param(JMod.FINAL, PropertyTree.class, DeepCopyPlugin.PROPERTY_TREE_PARAM_NAME);
+		final JVar listUseParam = listConstructor.param(JMod.FINAL, PropertyTreeUse.class, DeepCopyPlugin.PROPERTY_TREE_USE_PARAM_NAME);
+		listConstructor.body().invoke("super").arg(listSourceParam).arg(listTreeParam).arg(listUseParam);
+		final JMethod projectMethod = listProjectionClass.method(JMod.PROTECTED, itemProjectionClass, ProjectionGenerator.PROJECT_METHOD_NAME);
+		projectMethod.annotate(Override.class);
+		final JVar itemParam = projectMethod.param(JMod.FINAL, itemType, ProjectionGenerator.VALUE_VAR_NAME);
+		final JVar itemTreeParam = projectMethod.param(JMod.FINAL, PropertyTree.class, DeepCopyPlugin.PROPERTY_TREE_PARAM_NAME);
+		final JVar itemUseParam = projectMethod.param(JMod.FINAL, PropertyTreeUse.class, DeepCopyPlugin.PROPERTY_TREE_USE_PARAM_NAME);
+		projectMethod.body()._return(itemParam.invoke(ProjectionGenerator.PROJECT_METHOD_NAME).arg(itemTreeParam).arg(itemUseParam));
+
+		final JFieldVar projectionField = this.projectionClass.field(JMod.PRIVATE, listType, "_" + fieldOutline.getPropertyInfo().getName(false), JExpr._null());
+		final JMethod projectionGetter = this.projectionClass.method(JMod.PUBLIC, listType, getter.name());
+		final JBlock ifEmpty = projectionGetter.body()._if(JExpr._this().ref(projectionField).eq(JExpr._null()))._then();
+		final JVar childVar = ifEmpty.decl(JMod.FINAL, this.pluginContext.codeModel.ref(PropertyTree.class), ProjectionGenerator.CHILD_VAR_NAME, childTree);
+		final JVar valueVar = ifEmpty.decl(JMod.FINAL, getter.type(), ProjectionGenerator.VALUE_VAR_NAME, JOp.cond(JExpr.invoke("includes").arg(childVar), value, JExpr._null()));
+		ifEmpty.assign(JExpr._this().ref(projectionField), JOp.cond(valueVar.eq(JExpr._null()),
+				this.pluginContext.codeModel.ref(Collections.class).staticInvoke("emptyList"),
+				JExpr._new(listProjectionClass).arg(valueVar).arg(childVar).arg(JExpr._this().ref("propertyTreeUse"))));
+		projectionGetter.body()._return(JExpr._this().ref(projectionField));
+		this.getters.put(getter.name(), listType);
+	}
+
+	private static JDefinedClass findProjectionClass(final JType type, final Map<ClassOutline, JDefinedClass> projectionClasses) {
+		for (final Map.Entry<ClassOutline, JDefinedClass> entry : projectionClasses.entrySet()) {
+			if (entry.getKey().implClass.fullName().equals(type.fullName())) {
+				return entry.getValue();
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * @return The value returned by the getter of an excluded property.
+	 */
+	private JExpression defaultValue(final JType type) {
+		if (!type.isPrimitive()) {
+			return JExpr._null();
+		} else if (type == this.pluginContext.codeModel.BOOLEAN) {
+			return JExpr.FALSE;
+		} else {
+			return JExpr.cast(type, JExpr.lit(0));
+		}
+	}
+}
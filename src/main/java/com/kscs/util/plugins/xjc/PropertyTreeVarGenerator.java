@@ -26,6 +26,7 @@ package com.kscs.util.plugins.xjc;
 
 import com.sun.codemodel.JBlock;
 import com.sun.codemodel.JExpression;
+import com.sun.codemodel.JType;
 import com.sun.codemodel.JVar;
 
 /**
@@ -36,6 +37,15 @@ public interface PropertyTreeVarGenerator {
 
 	JExpression generatePartialArgs(final JExpression invocation);
 
+	/**
+	 * Generates the expression copying a value of a type implementing
+	 * {@link com.kscs.util.jaxb.PartialCopyable} as far as this property tree requires.
+	 * @param value The expression evaluating to the value, must not be null at run time
+	 * @param valueType The static type of the value
+	 * @return The expression evaluating to the copy
+	 */
+	JExpression generatePartialCopy(final JExpression value, final JType valueType);
+
 	JBlock generateEnclosingBlock(final JBlock body);
 
 }
@@ -0,0 +1,288 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2014 Klemm Software Consulting, Mirko Klemm
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+
+package com.kscs.util.plugins.xjc;
+
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * Translates regular expressions of XML Schema "pattern" facets into equivalent
+ * {@link java.util.regex.Pattern} expressions.
+ * The two dialects differ in several ways: XML Schema has no anchors, so "^" and "$" are
+ * literal characters, it supports character class subtraction ("[a-z-[aeiou]]"),
+ * the name character escapes "\i" and "\c", Unicode block escapes named "\p{IsBlock}",
+ * and "\d", "\w" and "." have different meanings.
+ * Character classes are translated into unions and intersections of nested classes,
+ * and a complement is always expressed by De Morgan's laws, because a negated Java class
+ * containing nested classes is interpreted differently by different Java versions.
+ */
+final class SchemaRegexTranslator {
+	private static final String NAME_START_RANGES = ":A-Z_a-z\\x{C0}-\\x{D6}\\x{D8}-\\x{F6}\\x{F8}-\\x{2FF}\\x{370}-\\x{37D}\\x{37F}-\\x{1FFF}\\x{200C}-\\x{200D}"
+			+ "\\x{2070}-\\x{218F}\\x{2C00}-\\x{2FEF}\\x{3001}-\\x{D7FF}\\x{F900}-\\x{FDCF}\\x{FDF0}-\\x{FFFD}\\x{10000}-\\x{EFFFF}";
+	private static final String NAME_RANGES = SchemaRegexTranslator.NAME_START_RANGES + "\\-.0-9\\x{B7}\\x{300}-\\x{36F}\\x{203F}-\\x{2040}";
+
+	private final String regex;
+	private int pos = 0;
+
+	private SchemaRegexTranslator(final String regex) {
+		this.regex = regex;
+	}
+
+	/**
+	 * Translates an XML Schema regular expression into a Java regular expression.
+	 * @param regex The value of a "pattern" facet
+	 * @return A Java regular expression matching the same strings with {@link java.util.regex.Matcher#matches()}
+	 * @throws PatternSyntaxException if the expression isn't a valid XML Schema regular expression
+	 */
+	static String translate(final String regex) {
+		final SchemaRegexTranslator translator = new SchemaRegexTranslator(regex);
+		final String translated = translator.translateBranches();
+		if (translator.pos < regex.length()) {
+			throw translator.error("Unmatched closing ')'");
+		}
+		return translated;
+	}
+
+	private String translateBranches() {
+		final StringBuilder sb = new StringBuilder();
+		while (this.pos < this.regex.length()) {
+			final char c = this.regex.charAt(this.pos);
+			if (c == ')') {
+				break;
+			} else if (c == '|') {
+				sb.append('|');
+				this.pos++;
+			} else if (c == '(') {
+				this.pos++;
+				sb.append('(').append(translateBranches());
+				expect(')');
+				sb.append(')');
+			} else if (c == '?' || c == '*' || c == '+') {
+				sb.append(c);
+				this.pos++;
+			} else if (c == '{') {
+				final int end = this.regex.indexOf('}', this.pos);
+				if (end < 0 || !this.regex.substring(this.pos + 1, end).matches("[0-9]+(,[0-9]*)?")) {
+					throw error("Invalid quantifier");
+				}
+				sb.append(this.regex, this.pos, end + 1);
+				this.pos = end + 1;
+			} else if (c == '.') {
+				sb.append("[^\\n\\r]");
+				this.pos++;
+			} else if (c == '[') {
+				sb.append(translateCharClass().positive);
+			} else if (c == '\\') {
+				sb.append(translateEscape().positive);
+			} else if (c == ']' || c == '}') {
+				throw error("Unescaped '" + c + "'");
+			} else {
+				sb.append(literal(this.regex.codePointAt(this.pos)));
+				this.pos += Character.charCount(this.regex.codePointAt(this.pos));
+			}
+		}
+		return sb.toString();
+	}
+
+	/**
+	 * Translates a character class expression starting at "[", including a subtraction.
+	 */
+	private CharSet translateCharClass() {
+		expect('[');
+		final boolean negated = this.pos < this.regex.length() && this.regex.charAt(this.pos) == '^';
+		if (negated) {
+			this.pos++;
+		}
+		final StringBuilder union = new StringBuilder();
+		final StringBuilder intersection = new StringBuilder();
+		CharSet subtraction = null;
+		boolean first = true;
+		while (true) {
+			if (this.pos >= this.regex.length()) {
+				throw error("Unclosed character class");
+			}
+			final char c = this.regex.charAt(this.pos);
+			if (c == ']' && !first) {
+				this.pos++;
+				break;
+			} else if (c == '-' && !first && this.pos + 1 < this.regex.length() && this.regex.charAt(this.pos + 1) == '[') {
+				this.pos++;
+				subtraction = translateCharClass();
+				expect(']');
+				break;
+			}
+			final CharSet item;
+			if (c == '\\') {
+				final CharSet escape = translateEscape();
+				item = escape.single >= 0 ? translateRange(escape.single) : escape;
+			} else if (c == '[') {
+				throw error("Unescaped '[' in character class");
+			} else {
+				final int codePoint = this.regex.codePointAt(this.pos);
+				this.pos += Character.charCount(codePoint);
+				item = translateRange(codePoint);
+			}
+			union.append(item.positive);
+			intersection.append(intersection.length() > 0 ? "&&" : "").append(item.negative);
+			first = false;
+		}
+		final String base = "[" + union + "]";
+		final String complement = "[" + intersection + "]";
+		final CharSet charSet = negated ? new CharSet(complement, base) : new CharSet(base, complement);
+		return subtraction == null ? charSet : new CharSet("[" + charSet.positive + "&&" + subtraction.negative + "]", "[" + charSet.negative + subtraction.positive + "]");
+	}
+
+	/**
+	 * Completes a character range if the character just read is followed by "-" and an end character.
+	 */
+	private CharSet translateRange(final int from) {
+		if (this.pos + 1 < this.regex.length() && this.regex.charAt(this.pos) == '-' && this.regex.charAt(this.pos + 1) != '[' && this.regex.charAt(this.pos + 1) != ']') {
+			this.pos++;
+			final int to;
+			if (this.regex.charAt(this.pos) == '\\') {
+				final CharSet escape = translateEscape();
+				if (escape.single < 0) {
+					throw error("Invalid range end");
+				}
+				to = escape.single;
+			} else {
+				to = this.regex.codePointAt(this.pos);
+				this.pos += Character.charCount(to);
+			}
+			if (to < from) {
+				throw error("Invalid range");
+			}
+			final String range = literal(from) + "-" + literal(to);
+			return new CharSet("[" + range + "]", "[^" + range + "]");
+		}
+		return new CharSet("[" + literal(from) + "]", "[^" + literal(from) + "]", from);
+	}
+
+	private CharSet translateEscape() {
+		expect('\\');
+		if (this.pos >= this.regex.length()) {
+			throw error("Incomplete escape");
+		}
+		final char c = this.regex.charAt(this.pos++);
+		switch (c) {
+			case 'n':
+				return single('\n');
+			case 'r':
+				return single('\r');
+			case 't':
+				return single('\t');
+			case '\\': case '|': case '.': case '?': case '*': case '+': case '(': case ')':
+			case '{': case '}': case '-': case '[': case ']': case '^':
+				return single(c);
+			case 's':
+				return new CharSet("[ \\t\\n\\r]", "[^ \\t\\n\\r]");
+			case 'S':
+				return new CharSet("[^ \\t\\n\\r]", "[ \\t\\n\\r]");
+			case 'i':
+				return new CharSet("[" + SchemaRegexTranslator.NAME_START_RANGES + "]", "[^" + SchemaRegexTranslator.NAME_START_RANGES + "]");
+			case 'I':
+				return new CharSet("[^" + SchemaRegexTranslator.NAME_START_RANGES + "]", "[" + SchemaRegexTranslator.NAME_START_RANGES + "]");
+			case 'c':
+				return new CharSet("[" + SchemaRegexTranslator.NAME_RANGES + "]", "[^" + SchemaRegexTranslator.NAME_RANGES + "]");
+			case 'C':
+				return new CharSet("[^" + SchemaRegexTranslator.NAME_RANGES + "]", "[" + SchemaRegexTranslator.NAME_RANGES + "]");
+			case 'd':
+				return new CharSet("\\p{Nd}", "\\P{Nd}");
+			case 'D':
+				return new CharSet("\\P{Nd}", "\\p{Nd}");
+			case 'w':
+				return new CharSet("[^\\p{P}\\p{Z}\\p{C}]", "[\\p{P}\\p{Z}\\p{C}]");
+			case 'W':
+				return new CharSet("[\\p{P}\\p{Z}\\p{C}]", "[^\\p{P}\\p{Z}\\p{C}]");
+			case 'p':
+			case 'P':
+				final String property = translateProperty();
+				return c == 'p' ? new CharSet("\\p{" + property + "}", "\\P{" + property + "}") : new CharSet("\\P{" + property + "}", "\\p{" + property + "}");
+			default:
+				this.pos--;
+				throw error("Unsupported escape '\\" + c + "'");
+		}
+	}
+
+	private String translateProperty() {
+		expect('{');
+		final int end = this.regex.indexOf('}', this.pos);
+		if (end < 0) {
+			throw error("Unclosed property name");
+		}
+		final String name = this.regex.substring(this.pos, end);
+		this.pos = end + 1;
+		if (name.startsWith("Is")) {
+			return "In" + name.substring(2);
+		} else if (name.matches("[LMNPZSC][a-z]?")) {
+			return name;
+		}
+		throw error("Unknown character property \"" + name + "\"");
+	}
+
+	private CharSet single(final char c) {
+		return new CharSet("[" + literal(c) + "]", "[^" + literal(c) + "]", c);
+	}
+
+	private void expect(final char c) {
+		if (this.pos >= this.regex.length() || this.regex.charAt(this.pos) != c) {
+			throw error("'" + c + "' expected");
+		}
+		this.pos++;
+	}
+
+	private PatternSyntaxException error(final String description) {
+		return new PatternSyntaxException(description, this.regex, this.pos);
+	}
+
+	private static String literal(final int codePoint) {
+		if (codePoint < 0x80 && Character.isLetterOrDigit(codePoint)) {
+			return String.valueOf((char)codePoint);
+		} else if (codePoint > 0x20 && codePoint < 0x7F) {
+			return "\\" + (char)codePoint;
+		} else {
+			return "\\x{" + Integer.toHexString(codePoint).toUpperCase() + "}";
+		}
+	}
+
+	/**
+	 * A set of characters as a Java class expression and as the expression of its complement.
+	 */
+	private static class CharSet {
+		private final String positive;
+		private final String negative;
+		private final int single;
+
+		CharSet(final String positive, final String negative) {
+			this(positive, negative, -1);
+		}
+
+		CharSet(final String positive, final String negative, final int single) {
+			this.positive = positive;
+			this.negative = negative;
+			this.single = single;
+		}
+	}
+}
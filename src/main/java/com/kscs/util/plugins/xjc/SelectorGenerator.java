@@ -49,6 +49,7 @@ import com.sun.tools.xjc.outline.FieldOutline;
 class SelectorGenerator {
 
 	private static final Logger LOGGER = Logger.getLogger(SelectorGenerator.class.getName());
+	private static final String PROFILE_PHASE = "selector";
 
 	final Class<?> selectorBaseClass;
 	private final String selectorClassName ;
@@ -70,7 +71,9 @@ class SelectorGenerator {
 		this.selectorParamType = selectorParamType;
 		this.propertyPathClass = propertyPathClass;
 		for(final ClassOutline classOutline : pluginContext.outline.getClasses()) {
-			this.infoClasses.put(classOutline.implClass.fullName(), generateMetaClass(classOutline));
+			try (final GenerationProfile.Measurement measurement = pluginContext.profile.phase(SelectorGenerator.PROFILE_PHASE, classOutline.implClass.fullName())) {
+				this.infoClasses.put(classOutline.implClass.fullName(), generateMetaClass(classOutline));
+			}
 		}
 	}
 
@@ -130,8 +133,10 @@ class SelectorGenerator {
 	}
 
 	public void generateMetaFields() {
-		for(final MetaInfoOutline entry : this.infoClasses.values()) {
-			entry.generateMetaFields();
+		for(final Map.Entry<String, MetaInfoOutline> entry : this.infoClasses.entrySet()) {
+			try (final GenerationProfile.Measurement measurement = this.pluginContext.profile.phase(SelectorGenerator.PROFILE_PHASE, entry.getKey())) {
+				entry.getValue().generateMetaFields();
+			}
 		}
 	}
 
@@ -0,0 +1,123 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2014 Klemm Software Consulting, Mirko Klemm
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.kscs.util.plugins.xjc;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.kscs.util.jaxb.Copies;
+import com.kscs.util.jaxb.Copyable;
+import com.kscs.util.jaxb.PartialCopyable;
+import com.kscs.util.jaxb.PropertyTree;
+import com.kscs.util.jaxb.PropertyTreeUse;
+import com.kscs.util.jaxb.StaxCollectionReader;
+import com.kscs.util.jaxb.StaxReading;
+import com.kscs.util.jaxb.StaxWritable;
+import com.kscs.util.jaxb.StaxWriting;
+import com.kscs.util.plugins.xjc.base.AbstractPlugin;
+import com.kscs.util.plugins.xjc.base.Opt;
+import com.sun.codemodel.JDefinedClass;
+import com.sun.tools.xjc.Options;
+import com.sun.tools.xjc.model.CClassInfo;
+import com.sun.tools.xjc.outline.ClassOutline;
+import com.sun.tools.xjc.outline.Outline;
+import org.xml.sax.ErrorHandler;
+import org.xml.sax.SAXException;
+import org.xml.sax.SAXParseException;
+
+/**
+ * XJC Plugin to generate methods reading and writing
+ * instances of the generated classes directly from and to
+ * StAX streams, without the JAXB runtime.
+ */
+public class StaxPlugin extends AbstractPlugin {
+	@Opt
+	private boolean generateTools = true;
+	@Opt
+	private boolean generateReader = true;
+
+	@Override
+	public String getOptionName() {
+		return "Xstax";
+	}
+
+	@Override
+	public boolean run(final Outline outline, final Options opt, final ErrorHandler errorHandler) throws SAXException {
+		final PluginContext pluginContext = PluginContext.get(outline, opt, errorHandler);
+		try (final PluginContext.PluginRun pluginRun = pluginContext.beginRun(this)) {
+			final FluentBuilderPlugin fluentBuilderPlugin = this.generateReader ? pluginContext.findPlugin(FluentBuilderPlugin.class) : null;
+			if (this.generateTools) {
+				pluginContext.writeSourceFile(StaxWritable.class);
+				pluginContext.writeSourceFile(StaxWriting.class);
+				if (fluentBuilderPlugin != null) {
+					pluginContext.writeSourceFile(StaxReading.class);
+					pluginContext.writeSourceFile(StaxCollectionReader.class);
+					pluginContext.writeSourceFile(Copies.class);
+					pluginContext.writeSourceFile(Copyable.class);
+					pluginContext.writeSourceFile(PartialCopyable.class);
+					pluginContext.writeSourceFile(PropertyTree.class);
+					pluginContext.writeSourceFile(PropertyTreeUse.class);
+				}
+			}
+			for (final ClassOutline classOutline : outline.getClasses()) {
+				final StaxWriterGenerator writerGenerator = new StaxWriterGenerator(pluginContext, classOutline);
+				try (final GenerationProfile.Measurement classMeasurement = pluginContext.profile.phase("stax-writer", classOutline.implClass.fullName())) {
+					writerGenerator.generate();
+				}
+				if (fluentBuilderPlugin != null) {
+					final BuilderGeneratorSettings settings = fluentBuilderPlugin.getSettings();
+					final JDefinedClass builderClass = StaxReaderGenerator.findBuilderClass(classOutline, settings);
+					if (builderClass == null) {
+						errorHandler.warning(new SAXParseException(getMessage("error.noBuilder", classOutline.implClass.fullName()), classOutline.target.getLocator()));
+					} else {
+						try (final GenerationProfile.Measurement classMeasurement = pluginContext.profile.phase("stax-reader", classOutline.implClass.fullName())) {
+							new StaxReaderGenerator(pluginContext, writerGenerator, classOutline, builderClass, settings).generate(findSubClasses(outline, classOutline, settings));
+						}
+					}
+				}
+			}
+			return true;
+		}
+	}
+
+	/**
+	 * Finds all classes that can be named in an "xsi:type" attribute
+	 * in place of the given class.
+	 */
+	private static List<ClassOutline> findSubClasses(final Outline outline, final ClassOutline superClass, final BuilderGeneratorSettings settings) {
+		final List<ClassOutline> subClasses = new ArrayList<>();
+		for (final ClassOutline classOutline : outline.getClasses()) {
+			if (classOutline.target.getTypeName() != null && !classOutline.implClass.isAbstract() && StaxReaderGenerator.findBuilderClass(classOutline, settings) != null) {
+				for (CClassInfo baseClass = classOutline.target.getBaseClass(); baseClass != null; baseClass = baseClass.getBaseClass()) {
+					if (baseClass == superClass.target) {
+						subClasses.add(classOutline);
+						break;
+					}
+				}
+			}
+		}
+		return subClasses;
+	}
+}
@@ -0,0 +1,635 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2014 Klemm Software Consulting, Mirko Klemm
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.kscs.util.plugins.xjc;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.xml.bind.JAXBElement;
+import javax.xml.datatype.Duration;
+import javax.xml.datatype.XMLGregorianCalendar;
+import javax.xml.namespace.QName;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import com.kscs.util.jaxb.Copies;
+import com.kscs.util.jaxb.PropertyTree;
+import com.kscs.util.jaxb.PropertyTreeUse;
+import com.kscs.util.jaxb.StaxCollectionReader;
+import com.kscs.util.jaxb.StaxReading;
+import com.kscs.util.plugins.xjc.base.PluginUtil;
+import com.sun.codemodel.JBlock;
+import com.sun.codemodel.JClass;
+import com.sun.codemodel.JConditional;
+import com.sun.codemodel.JDefinedClass;
+import com.sun.codemodel.JExpr;
+import com.sun.codemodel.JExpression;
+import com.sun.codemodel.JFieldVar;
+import com.sun.codemodel.JForEach;
+import com.sun.codemodel.JForLoop;
+import com.sun.codemodel.JMethod;
+import com.sun.codemodel.JMod;
+import com.sun.codemodel.JOp;
+import com.sun.codemodel.JSwitch;
+import com.sun.codemodel.JType;
+import com.sun.codemodel.JVar;
+import com.sun.tools.xjc.model.CAdapter;
+import com.sun.tools.xjc.model.CAttributePropertyInfo;
+import com.sun.tools.xjc.model.CBuiltinLeafInfo;
+import com.sun.tools.xjc.model.CClass;
+import com.sun.tools.xjc.model.CClassInfo;
+import com.sun.tools.xjc.model.CElement;
+import com.sun.tools.xjc.model.CElementInfo;
+import com.sun.tools.xjc.model.CElementPropertyInfo;
+import com.sun.tools.xjc.model.CEnumLeafInfo;
+import com.sun.tools.xjc.model.CNonElement;
+import com.sun.tools.xjc.model.CPropertyInfo;
+import com.sun.tools.xjc.model.CReferencePropertyInfo;
+import com.sun.tools.xjc.model.CTypeRef;
+import com.sun.tools.xjc.model.CValuePropertyInfo;
+import com.sun.tools.xjc.outline.Aspect;
+import com.sun.tools.xjc.outline.ClassOutline;
+import com.sun.tools.xjc.outline.FieldOutline;
+import com.sun.xml.bind.v2.model.core.ID;
+
+/**
+ * Generates the static <code>readFrom</code> methods of a class,
+ * which read an instance from an {@link XMLStreamReader} by
+ * feeding the parsed values into the fluent builder of the class.
+ * Properties excluded by a {@link PropertyTree} are skipped without
+ * creating any objects for them.
+ */
+class StaxReaderGenerator {
+	static final String READER_PARAM_NAME = "_reader";
+	static final String NAMESPACE_PARAM_NAME = "_namespace";
+	static final String LOCAL_NAME_PARAM_NAME = "_localName";
+	static final String VALUE_PARAM_NAME = "_value";
+	static final String TEXT_VAR_NAME = "_text";
+	static final String TOKEN_VAR_NAME = "_token";
+	static final String PROPERTY_TREE_PARAM_NAME = "_propertyTree";
+	static final String PROPERTY_TREE_USE_PARAM_NAME = "_propertyTreeUse";
+	static final String READ_FROM_METHOD_NAME = "readFrom";
+	static final String READ_ATTRIBUTE_METHOD_NAME = "readAttribute";
+	static final String READ_CONTENT_METHOD_NAME = "readContent";
+	static final String READ_ELEMENT_METHOD_NAME = "readElement";
+	static final String READ_TEXT_METHOD_NAME = "readText";
+	static final String READ_ITEM_METHOD_NAME = "readItem";
+	static final String STREAM_METHOD_PREFIX = "stream";
+
+	private final PluginContext pluginContext;
+	private final StaxWriterGenerator writerGenerator;
+	private final ClassOutline classOutline;
+	private final JDefinedClass definedClass;
+	private final JDefinedClass builderClass;
+	private final BuilderGeneratorSettings settings;
+	private final JClass staxReading;
+	private final JClass copies;
+	private final JClass propertyTreeClass;
+	private final JClass propertyTreeUseClass;
+	private final boolean hasSuperClass;
+	private final Map<QName, PropertyReader> attributeReaders = new LinkedHashMap<>();
+	private final Map<QName, PropertyReader> elementReaders = new LinkedHashMap<>();
+	private PropertyReader wildcardReader = null;
+	private PropertyReader textReader = null;
+	private PropertyReader valueReader = null;
+	private final List<StreamedProperty> streamedProperties = new ArrayList<>();
+
+	StaxReaderGenerator(final PluginContext pluginContext, final StaxWriterGenerator writerGenerator, final ClassOutline classOutline, final JDefinedClass builderClass, final BuilderGeneratorSettings settings) {
+		this.pluginContext = pluginContext;
+		this.writerGenerator = writerGenerator;
+		this.classOutline = classOutline;
+		this.definedClass = classOutline.implClass;
+		this.builderClass = builderClass;
+		this.settings = settings;
+		this.staxReading = pluginContext.codeModel.ref(StaxReading.class);
+		this.copies = pluginContext.codeModel.ref(Copies.class);
+		this.propertyTreeClass = pluginContext.codeModel.ref(PropertyTree.class);
+		this.propertyTreeUseClass = pluginContext.codeModel.ref(PropertyTreeUse.class);
+		this.hasSuperClass = classOutline.target.getBaseClass() != null || classOutline.target.getRefBaseClass() != null;
+	}
+
+	/**
+	 * Finds the builder class generated by the {@link FluentBuilderPlugin}.
+	 * @return The builder class, or null if none has been generated.
+	 */
+	static JDefinedClass findBuilderClass(final ClassOutline classOutline, final BuilderGeneratorSettings settings) {
+		for (final Iterator<JDefinedClass> iterator = classOutline.implClass.classes(); iterator.hasNext(); ) {
+			final JDefinedClass innerClass = iterator.next();
+			if (innerClass.name().equals(settings.getBuilderClassName().getClassName())) {
+				return innerClass;
+			}
+		}
+		return null;
+	}
+
+	void generate(final List<ClassOutline> subClasses) {
+		generateStaticReadFromMethod(subClasses);
+		for (final FieldOutline fieldOutline : this.classOutline.getDeclaredFields()) {
+			final JFieldVar field = PluginUtil.getDeclaredField(fieldOutline);
+			if (field != null) {
+				final CPropertyInfo propertyInfo = fieldOutline.getPropertyInfo();
+				if (propertyInfo instanceof CAttributePropertyInfo) {
+					generateAttribute((CAttributePropertyInfo)propertyInfo, field);
+				} else if (propertyInfo instanceof CElementPropertyInfo) {
+					generateElement((CElementPropertyInfo)propertyInfo, field);
+				} else if (propertyInfo instanceof CReferencePropertyInfo) {
+					generateReference((CReferencePropertyInfo)propertyInfo);
+				} else if (propertyInfo instanceof CValuePropertyInfo) {
+					generateValue((CValuePropertyInfo)propertyInfo, field);
+				}
+			}
+		}
+		generateBuilderReadFromMethod();
+		generateReadAttributeMethod();
+		generateReadContentMethod();
+		generateReadElementMethod();
+		generateReadTextMethod();
+		for (final StreamedProperty streamedProperty : this.streamedProperties) {
+			generateStreamMethods(streamedProperty);
+		}
+	}
+
+	private void generateStaticReadFromMethod(final List<ClassOutline> subClasses) {
+		final JMethod readFromMethod = this.definedClass.method(JMod.PUBLIC | JMod.STATIC, this.definedClass, StaxReaderGenerator.READ_FROM_METHOD_NAME);
+		readFromMethod._throws(XMLStreamException.class);
+		final JVar readerParam = readFromMethod.param(JMod.FINAL, XMLStreamReader.class, StaxReaderGenerator.READER_PARAM_NAME);
+		final JVar propertyTreeParam = readFromMethod.param(JMod.FINAL, PropertyTree.class, StaxReaderGenerator.PROPERTY_TREE_PARAM_NAME);
+		final JVar propertyTreeUseParam = readFromMethod.param(JMod.FINAL, PropertyTreeUse.class, StaxReaderGenerator.PROPERTY_TREE_USE_PARAM_NAME);
+		final JBlock body = readFromMethod.body();
+		if (!subClasses.isEmpty()) {
+			final JVar xsiTypeVar = body.decl(JMod.FINAL, this.pluginContext.codeModel.ref(QName.class), "_xsiType", this.staxReading.staticInvoke("xsiType").arg(readerParam));
+			final JBlock ifXsiType = body._if(xsiTypeVar.ne(JExpr._null()))._then();
+			for (final ClassOutline subClass : subClasses) {
+				ifXsiType._if(this.writerGenerator.nameConstant(subClass.target.getTypeName()).invoke("equals").arg(xsiTypeVar))._then()
+						._return(readExpression(subClass.implClass, readerParam, propertyTreeParam, propertyTreeUseParam));
+			}
+		}
+		if (this.definedClass.isAbstract()) {
+			body._throw(JExpr._new(this.pluginContext.codeModel.ref(XMLStreamException.class)).arg(JExpr.lit("Cannot instantiate abstract type " + this.definedClass.fullName() + " without a matching xsi:type")).arg(readerParam.invoke("getLocation")));
+		} else {
+			body._return(readExpression(this.definedClass, readerParam, propertyTreeParam, propertyTreeUseParam));
+		}
+		final JMethod readAllMethod = this.definedClass.method(JMod.PUBLIC | JMod.STATIC, this.definedClass, StaxReaderGenerator.READ_FROM_METHOD_NAME);
+		readAllMethod._throws(XMLStreamException.class);
+		final JVar readAllReaderParam = readAllMethod.param(JMod.FINAL, XMLStreamReader.class, StaxReaderGenerator.READER_PARAM_NAME);
+		readAllMethod.body()._return(JExpr.invoke(readFromMethod).arg(readAllReaderParam).arg(JExpr._null()).arg(this.propertyTreeUseClass.staticRef("EXCLUDE")));
+	}
+
+	private JExpression readExpression(final JClass productClass, final JVar readerParam, final JVar propertyTreeParam, final JVar propertyTreeUseParam) {
+		return productClass.staticInvoke(this.settings.getNewBuilderMethodName()).invoke(StaxReaderGenerator.READ_FROM_METHOD_NAME).arg(readerParam).arg(propertyTreeParam).arg(propertyTreeUseParam).invoke(this.settings.getBuildMethodName());
+	}
+
+	private void generateBuilderReadFromMethod() {
+		final JClass builderType = this.builderClass.narrow(this.builderClass.typeParams()[0]);
+		final JMethod readFromMethod = this.builderClass.method(JMod.PUBLIC, builderType, StaxReaderGenerator.READ_FROM_METHOD_NAME);
+		readFromMethod._throws(XMLStreamException.class);
+		final JVar readerParam = readFromMethod.param(JMod.FINAL, XMLStreamReader.class, StaxReaderGenerator.READER_PARAM_NAME);
+		final JVar propertyTreeParam = readFromMethod.param(JMod.FINAL, PropertyTree.class, StaxReaderGenerator.PROPERTY_TREE_PARAM_NAME);
+		final JVar propertyTreeUseParam = readFromMethod.param(JMod.FINAL, PropertyTreeUse.class, StaxReaderGenerator.PROPERTY_TREE_USE_PARAM_NAME);
+		if (this.hasSuperClass) {
+			readFromMethod.annotate(Override.class);
+			readFromMethod.body().invoke(JExpr._super(), readFromMethod).arg(readerParam).arg(propertyTreeParam).arg(propertyTreeUseParam);
+		} else {
+			final JForLoop forLoop = readFromMethod.body()._for();
+			final JVar indexVar = forLoop.init(this.pluginContext.codeModel.INT, "_i", JExpr.lit(0));
+			forLoop.test(indexVar.lt(readerParam.invoke("getAttributeCount")));
+			forLoop.update(indexVar.incr());
+			forLoop.body().invoke(StaxReaderGenerator.READ_ATTRIBUTE_METHOD_NAME).arg(readerParam)
+					.arg(this.staxReading.staticInvoke("namespaceUri").arg(readerParam.invoke("getAttributeNamespace").arg(indexVar)))
+					.arg(readerParam.invoke("getAttributeLocalName").arg(indexVar))
+					.arg(readerParam.invoke("getAttributeValue").arg(indexVar))
+					.arg(propertyTreeParam)
+					.arg(propertyTreeUseParam);
+			readFromMethod.body().invoke(StaxReaderGenerator.READ_CONTENT_METHOD_NAME).arg(readerParam).arg(propertyTreeParam).arg(propertyTreeUseParam);
+		}
+		readFromMethod.body()._return(JExpr._this());
+		final JMethod readAllMethod = this.builderClass.method(JMod.PUBLIC, builderType, StaxReaderGenerator.READ_FROM_METHOD_NAME);
+		readAllMethod._throws(XMLStreamException.class);
+		if (this.hasSuperClass) {
+			readAllMethod.annotate(Override.class);
+		}
+		final JVar readAllReaderParam = readAllMethod.param(JMod.FINAL, XMLStreamReader.class, StaxReaderGenerator.READER_PARAM_NAME);
+		readAllMethod.body()._return(JExpr.invoke(readFromMethod).arg(readAllReaderParam).arg(JExpr._null()).arg(this.propertyTreeUseClass.staticRef("EXCLUDE")));
+	}
+
+	private void generateReadAttributeMethod() {
+		if (this.hasSuperClass && this.attributeReaders.isEmpty()) {
+			return;
+		}
+		final JMethod readAttributeMethod = this.builderClass.method(JMod.PROTECTED, this.pluginContext.codeModel.BOOLEAN, StaxReaderGenerator.READ_ATTRIBUTE_METHOD_NAME);
+		readAttributeMethod._throws(XMLStreamException.class);
+		final JVar readerParam = readAttributeMethod.param(JMod.FINAL, XMLStreamReader.class, StaxReaderGenerator.READER_PARAM_NAME);
+		final JVar namespaceParam = readAttributeMethod.param(JMod.FINAL, String.class, StaxReaderGenerator.NAMESPACE_PARAM_NAME);
+		final JVar localNameParam = readAttributeMethod.param(JMod.FINAL, String.class, StaxReaderGenerator.LOCAL_NAME_PARAM_NAME);
+		final JVar valueParam = readAttributeMethod.param(JMod.FINAL, String.class, StaxReaderGenerator.VALUE_PARAM_NAME);
+		final JVar propertyTreeParam = readAttributeMethod.param(JMod.FINAL, PropertyTree.class, StaxReaderGenerator.PROPERTY_TREE_PARAM_NAME);
+		final JVar propertyTreeUseParam = readAttributeMethod.param(JMod.FINAL, PropertyTreeUse.class, StaxReaderGenerator.PROPERTY_TREE_USE_PARAM_NAME);
+		generateNameSwitch(readAttributeMethod.body(), namespaceParam, localNameParam, propertyTreeParam, propertyTreeUseParam, null, this.attributeReaders);
+		if (this.hasSuperClass) {
+			readAttributeMethod.annotate(Override.class);
+			readAttributeMethod.body()._return(JExpr._super().invoke(readAttributeMethod).arg(readerParam).arg(namespaceParam).arg(localNameParam).arg(valueParam).arg(propertyTreeParam).arg(propertyTreeUseParam));
+		} else {
+			readAttributeMethod.body()._return(JExpr.FALSE);
+		}
+	}
+
+	private void generateReadContentMethod() {
+		if (this.valueReader != null) {
+			final JMethod readContentMethod = this.builderClass.method(JMod.PROTECTED, this.pluginContext.voidType, StaxReaderGenerator.READ_CONTENT_METHOD_NAME);
+			readContentMethod._throws(XMLStreamException.class);
+			final JVar readerParam = readContentMethod.param(JMod.FINAL, XMLStreamReader.class, StaxReaderGenerator.READER_PARAM_NAME);
+			final JVar propertyTreeParam = readContentMethod.param(JMod.FINAL, PropertyTree.class, StaxReaderGenerator.PROPERTY_TREE_PARAM_NAME);
+			final JVar propertyTreeUseParam = readContentMethod.param(JMod.FINAL, PropertyTreeUse.class, StaxReaderGenerator.PROPERTY_TREE_USE_PARAM_NAME);
+			if (this.hasSuperClass) {
+				readContentMethod.annotate(Override.class);
+			}
+			generateSelection(readContentMethod.body(), this.valueReader, propertyTreeParam, propertyTreeUseParam, readerParam);
+		} else if (!this.hasSuperClass) {
+			final JMethod readContentMethod = this.builderClass.method(JMod.PROTECTED, this.pluginContext.voidType, StaxReaderGenerator.READ_CONTENT_METHOD_NAME);
+			readContentMethod._throws(XMLStreamException.class);
+			final JVar readerParam = readContentMethod.param(JMod.FINAL, XMLStreamReader.class, StaxReaderGenerator.READER_PARAM_NAME);
+			final JVar propertyTreeParam = readContentMethod.param(JMod.FINAL, PropertyTree.class, StaxReaderGenerator.PROPERTY_TREE_PARAM_NAME);
+			final JVar propertyTreeUseParam = readContentMethod.param(JMod.FINAL, PropertyTreeUse.class, StaxReaderGenerator.PROPERTY_TREE_USE_PARAM_NAME);
+			final JClass constants = this.pluginContext.codeModel.ref(XMLStreamConstants.class);
+			final JVar textVar = readContentMethod.body().decl(this.pluginContext.codeModel.ref(StringBuilder.class), StaxReaderGenerator.TEXT_VAR_NAME, JExpr._null());
+			final JForLoop forLoop = readContentMethod.body()._for();
+			final JVar eventVar = forLoop.init(this.pluginContext.codeModel.INT, "_event", readerParam.invoke("next"));
+			forLoop.test(eventVar.ne(constants.staticRef("END_ELEMENT")));
+			forLoop.update(JExpr.assign(eventVar, readerParam.invoke("next")));
+			final JConditional ifStartElement = forLoop.body()._if(eventVar.eq(constants.staticRef("START_ELEMENT")));
+			final JBlock flushBlock = ifStartElement._then()._if(textVar.ne(JExpr._null()))._then();
+			flushBlock.invoke(StaxReaderGenerator.READ_TEXT_METHOD_NAME).arg(textVar.invoke("toString")).arg(propertyTreeParam).arg(propertyTreeUseParam);
+			flushBlock.assign(textVar, JExpr._null());
+			ifStartElement._then()._if(JExpr.invoke(StaxReaderGenerator.READ_ELEMENT_METHOD_NAME).arg(readerParam)
+					.arg(this.staxReading.staticInvoke("namespaceUri").arg(readerParam.invoke("getNamespaceURI")))
+					.arg(readerParam.invoke("getLocalName"))
+					.arg(propertyTreeParam)
+					.arg(propertyTreeUseParam).not())._then()
+					.staticInvoke(this.staxReading, "skipElement").arg(readerParam);
+			final JBlock textBlock = ifStartElement._elseif(eventVar.eq(constants.staticRef("CHARACTERS")).cor(eventVar.eq(constants.staticRef("CDATA"))).cor(eventVar.eq(constants.staticRef("SPACE"))))._then();
+			textBlock._if(textVar.eq(JExpr._null()))._then().assign(textVar, JExpr._new(this.pluginContext.codeModel.ref(StringBuilder.class)));
+			textBlock.invoke(textVar, "append").arg(readerParam.invoke("getText"));
+			readContentMethod.body()._if(textVar.ne(JExpr._null()))._then().invoke(StaxReaderGenerator.READ_TEXT_METHOD_NAME).arg(textVar.invoke("toString")).arg(propertyTreeParam).arg(propertyTreeUseParam);
+		}
+	}
+
+	private void generateReadElementMethod() {
+		if (this.hasSuperClass && this.elementReaders.isEmpty() && this.wildcardReader == null) {
+			return;
+		}
+		final JMethod readElementMethod = this.builderClass.method(JMod.PROTECTED, this.pluginContext.codeModel.BOOLEAN, StaxReaderGenerator.READ_ELEMENT_METHOD_NAME);
+		readElementMethod._throws(XMLStreamException.class);
+		final JVar readerParam = readElementMethod.param(JMod.FINAL, XMLStreamReader.class, StaxReaderGenerator.READER_PARAM_NAME);
+		final JVar namespaceParam = readElementMethod.param(JMod.FINAL, String.class, StaxReaderGenerator.NAMESPACE_PARAM_NAME);
+		final JVar localNameParam = readElementMethod.param(JMod.FINAL, String.class, StaxReaderGenerator.LOCAL_NAME_PARAM_NAME);
+		final JVar propertyTreeParam = readElementMethod.param(JMod.FINAL, PropertyTree.class, StaxReaderGenerator.PROPERTY_TREE_PARAM_NAME);
+		final JVar propertyTreeUseParam = readElementMethod.param(JMod.FINAL, PropertyTreeUse.class, StaxReaderGenerator.PROPERTY_TREE_USE_PARAM_NAME);
+		generateNameSwitch(readElementMethod.body(), namespaceParam, localNameParam, propertyTreeParam, propertyTreeUseParam, readerParam, this.elementReaders);
+		if (this.hasSuperClass) {
+			readElementMethod.annotate(Override.class);
+			final JExpression superInvocation = JExpr._super().invoke(readElementMethod).arg(readerParam).arg(namespaceParam).arg(localNameParam).arg(propertyTreeParam).arg(propertyTreeUseParam);
+			if (this.wildcardReader == null) {
+				readElementMethod.body()._return(superInvocation);
+				return;
+			}
+			readElementMethod.body()._if(superInvocation)._then()._return(JExpr.TRUE);
+		}
+		if (this.wildcardReader != null) {
+			generateSelection(readElementMethod.body(), this.wildcardReader, propertyTreeParam, propertyTreeUseParam, readerParam);
+			readElementMethod.body()._return(JExpr.TRUE);
+		} else {
+			readElementMethod.body()._return(JExpr.FALSE);
+		}
+	}
+
+	private void generateReadTextMethod() {
+		if (this.textReader != null || !this.hasSuperClass) {
+			final JMethod readTextMethod = this.builderClass.method(JMod.PROTECTED, this.pluginContext.voidType, StaxReaderGenerator.READ_TEXT_METHOD_NAME);
+			readTextMethod.param(JMod.FINAL, String.class, StaxReaderGenerator.TEXT_VAR_NAME);
+			final JVar propertyTreeParam = readTextMethod.param(JMod.FINAL, PropertyTree.class, StaxReaderGenerator.PROPERTY_TREE_PARAM_NAME);
+			final JVar propertyTreeUseParam = readTextMethod.param(JMod.FINAL, PropertyTreeUse.class, StaxReaderGenerator.PROPERTY_TREE_USE_PARAM_NAME);
+			if (this.hasSuperClass) {
+				readTextMethod.annotate(Override.class);
+			}
+			if (this.textReader != null) {
+				generateSelection(readTextMethod.body(), this.textReader, propertyTreeParam, propertyTreeUseParam, null);
+			}
+		}
+	}
+
+	private void generateNameSwitch(final JBlock body, final JVar namespaceParam, final JVar localNameParam, final JVar propertyTreeParam, final JVar propertyTreeUseParam, final JVar skippedReaderParam, final Map<QName, PropertyReader> readers) {
+		if (!readers.isEmpty()) {
+			final Map<String, List<QName>> namesByLocalName = new LinkedHashMap<>();
+			for (final QName name : readers.keySet()) {
+				List<QName> names = namesByLocalName.get(name.getLocalPart());
+				if (names == null) {
+					names = new ArrayList<>();
+					namesByLocalName.put(name.getLocalPart(), names);
+				}
+				names.add(name);
+			}
+			final JSwitch nameSwitch = body._switch(localNameParam);
+			for (final Map.Entry<String, List<QName>> entry : namesByLocalName.entrySet()) {
+				final JBlock caseBody = nameSwitch._case(JExpr.lit(entry.getKey())).body();
+				for (final QName name : entry.getValue()) {
+					final JBlock ifBlock = caseBody._if(JExpr.lit(name.getNamespaceURI()).invoke("equals").arg(namespaceParam))._then();
+					generateSelection(ifBlock, readers.get(name), propertyTreeParam, propertyTreeUseParam, skippedReaderParam);
+					ifBlock._return(JExpr.TRUE);
+				}
+				caseBody._break();
+			}
+		}
+	}
+
+	/**
+	 * Generates the code reading a property if it is selected by the property tree.
+	 * @param skippedReaderParam The reader to skip the current element if the property is not selected, or null.
+	 */
+	private void generateSelection(final JBlock body, final PropertyReader reader, final JVar propertyTreeParam, final JVar propertyTreeUseParam, final JVar skippedReaderParam) {
+		final JVar propertyTreeVar = body.decl(JMod.FINAL, this.propertyTreeClass, reader.propertyTreeVarName, this.copies.staticInvoke("child").arg(propertyTreeParam).arg(JExpr.lit(reader.propertyName)));
+		final JConditional ifIncluded = body._if(this.copies.staticInvoke("includes").arg(propertyTreeUseParam).arg(propertyTreeVar));
+		ifIncluded._then().add(reader.block);
+		if (skippedReaderParam != null) {
+			ifIncluded._else().staticInvoke(this.staxReading, "skipElement").arg(skippedReaderParam);
+		}
+	}
+
+	private void generateAttribute(final CAttributePropertyInfo propertyInfo, final JFieldVar field) {
+		final QName name = propertyInfo.getXmlName();
+		if (this.attributeReaders.containsKey(name)) {
+			return;
+		}
+		final JExpression valueParam = JExpr.ref(StaxReaderGenerator.VALUE_PARAM_NAME);
+		final PropertyReader reader = new PropertyReader(propertyInfo);
+		final JBlock block = reader.block;
+		if (propertyInfo.isCollection()) {
+			final JType elementType = ((JClass)field.type()).getTypeParameters().get(0);
+			final JExpression tokenValue = parseExpression(propertyInfo, propertyInfo.getTarget(), elementType, JExpr.ref(StaxReaderGenerator.TOKEN_VAR_NAME));
+			if (tokenValue == null || !hasBuilderMethod(PluginContext.ADD_METHOD_PREFIX, propertyInfo)) {
+				return;
+			}
+			final JForEach forEach = block.forEach(this.pluginContext.codeModel.ref(String.class), StaxReaderGenerator.TOKEN_VAR_NAME, this.staxReading.staticInvoke("tokens").arg(valueParam));
+			forEach.body().invoke(builderMethodName(PluginContext.ADD_METHOD_PREFIX, propertyInfo)).arg(tokenValue);
+		} else {
+			final JExpression value = parseExpression(propertyInfo, propertyInfo.getTarget(), field.type(), valueParam);
+			if (value == null || !hasBuilderMethod(PluginContext.WITH_METHOD_PREFIX, propertyInfo)) {
+				return;
+			}
+			block.invoke(builderMethodName(PluginContext.WITH_METHOD_PREFIX, propertyInfo)).arg(value);
+		}
+		this.attributeReaders.put(name, reader);
+	}
+
+	private void generateElement(final CElementPropertyInfo propertyInfo, final JFieldVar field) {
+		final String prefix = propertyInfo.isCollection() && !propertyInfo.isValueList() ? PluginContext.ADD_METHOD_PREFIX : PluginContext.WITH_METHOD_PREFIX;
+		if (!hasBuilderMethod(prefix, propertyInfo)) {
+			return;
+		}
+		final String methodName = builderMethodName(prefix, propertyInfo);
+		final JExpression readerParam = JExpr.ref(StaxReaderGenerator.READER_PARAM_NAME);
+		final JType valueType = propertyInfo.isCollection() ? ((JClass)field.type()).getTypeParameters().get(0) : field.type();
+		for (final CTypeRef typeRef : propertyInfo.getTypes()) {
+			final QName name = typeRef.getTagName();
+			if (this.elementReaders.containsKey(name)) {
+				continue;
+			}
+			final PropertyReader reader = new PropertyReader(propertyInfo);
+			final JBlock block = reader.block;
+			if (propertyInfo.isValueList()) {
+				final JExpression tokenValue = parseExpression(propertyInfo, typeRef.getTarget(), valueType, JExpr.ref(StaxReaderGenerator.TOKEN_VAR_NAME));
+				if (tokenValue == null || !hasBuilderMethod(PluginContext.ADD_METHOD_PREFIX, propertyInfo)) {
+					continue;
+				}
+				final JForEach forEach = block.forEach(this.pluginContext.codeModel.ref(String.class), StaxReaderGenerator.TOKEN_VAR_NAME, this.staxReading.staticInvoke("tokens").arg(readerParam.invoke("getElementText")));
+				forEach.body().invoke(builderMethodName(PluginContext.ADD_METHOD_PREFIX, propertyInfo)).arg(tokenValue);
+			} else {
+				final JExpression value = elementValueExpression(propertyInfo, typeRef.getTarget(), valueType, readerParam, reader);
+				if (value == null) {
+					continue;
+				}
+				block.invoke(methodName).arg(typeRef.isNillable() ? JOp.cond(this.staxReading.staticInvoke("readNil").arg(readerParam), JExpr._null(), value) : value);
+				if (propertyInfo.isCollection() && propertyInfo.getTypes().size() == 1 && typeRef.getTarget() instanceof CClass && propertyInfo.getAdapter() == null) {
+					this.streamedProperties.add(new StreamedProperty(propertyInfo, name, typeRef.getTarget().toType(this.pluginContext.outline, Aspect.EXPOSED).boxify()));
+				}
+			}
+			this.elementReaders.put(name, reader);
+		}
+	}
+
+	/**
+	 * Generates the static <code>stream&lt;Property&gt;</code> methods, which return a
+	 * {@link StaxCollectionReader} yielding the items of a repeating element one by one.
+	 */
+	private void generateStreamMethods(final StreamedProperty streamedProperty) {
+		final String methodName = StaxReaderGenerator.STREAM_METHOD_PREFIX + streamedProperty.propertyInfo.getName(true);
+		final JClass collectionReaderType = this.pluginContext.codeModel.ref(StaxCollectionReader.class).narrow(streamedProperty.itemClass);
+		final JMethod streamMethod = this.definedClass.method(JMod.PUBLIC | JMod.STATIC, collectionReaderType, methodName);
+		streamMethod._throws(XMLStreamException.class);
+		final JVar readerParam = streamMethod.param(JMod.FINAL, XMLStreamReader.class, StaxReaderGenerator.READER_PARAM_NAME);
+		final JVar propertyTreeParam = streamMethod.param(JMod.FINAL, PropertyTree.class, StaxReaderGenerator.PROPERTY_TREE_PARAM_NAME);
+		final JVar propertyTreeUseParam = streamMethod.param(JMod.FINAL, PropertyTreeUse.class, StaxReaderGenerator.PROPERTY_TREE_USE_PARAM_NAME);
+		final JDefinedClass collectionReaderClass = this.pluginContext.codeModel.anonymousClass(collectionReaderType);
+		final JMethod readItemMethod = collectionReaderClass.method(JMod.PROTECTED, streamedProperty.itemClass, StaxReaderGenerator.READ_ITEM_METHOD_NAME);
+		readItemMethod.annotate(Override.class);
+		readItemMethod._throws(XMLStreamException.class);
+		final JVar itemReaderParam = readItemMethod.param(JMod.FINAL, XMLStreamReader.class, StaxReaderGenerator.READER_PARAM_NAME);
+		readItemMethod.body()._return(streamedProperty.itemClass.staticInvoke(StaxReaderGenerator.READ_FROM_METHOD_NAME).arg(itemReaderParam).arg(propertyTreeParam).arg(propertyTreeUseParam));
+		streamMethod.body()._return(JExpr._new(collectionReaderClass).arg(readerParam).arg(this.writerGenerator.nameConstant(streamedProperty.itemName)));
+		final JMethod streamAllMethod = this.definedClass.method(JMod.PUBLIC | JMod.STATIC, collectionReaderType, methodName);
+		streamAllMethod._throws(XMLStreamException.class);
+		final JVar streamAllReaderParam = streamAllMethod.param(JMod.FINAL, XMLStreamReader.class, StaxReaderGenerator.READER_PARAM_NAME);
+		streamAllMethod.body()._return(JExpr.invoke(streamMethod).arg(streamAllReaderParam).arg(JExpr._null()).arg(this.propertyTreeUseClass.staticRef("EXCLUDE")));
+	}
+
+	private void generateReference(final CReferencePropertyInfo propertyInfo) {
+		final String prefix = propertyInfo.isCollection() ? PluginContext.ADD_METHOD_PREFIX : PluginContext.WITH_METHOD_PREFIX;
+		if (!hasBuilderMethod(prefix, propertyInfo)) {
+			return;
+		}
+		final String methodName = builderMethodName(prefix, propertyInfo);
+		final JExpression readerParam = JExpr.ref(StaxReaderGenerator.READER_PARAM_NAME);
+		for (final CElement element : propertyInfo.getElements()) {
+			final QName name = element.getElementName();
+			if (this.elementReaders.containsKey(name)) {
+				continue;
+			}
+			final PropertyReader reader = new PropertyReader(propertyInfo);
+			final JBlock block = reader.block;
+			if (element instanceof CClass) {
+				block.invoke(methodName).arg(readFromExpression(((CClass)element).toType(this.pluginContext.outline, Aspect.EXPOSED).boxify(), readerParam, reader));
+			} else if (element instanceof CElementInfo) {
+				final CElementInfo elementInfo = (CElementInfo)element;
+				if (elementInfo.getProperty().isValueList()) {
+					continue;
+				}
+				final JClass contentType = elementInfo.getContentInMemoryType().toType(this.pluginContext.outline, Aspect.EXPOSED).boxify();
+				final JExpression value = elementValueExpression(elementInfo.getProperty(), elementInfo.getContentType(), contentType, readerParam, reader);
+				if (value == null || contentType.erasure() != contentType) {
+					continue;
+				}
+				final JExpression nilSafeValue = JOp.cond(this.staxReading.staticInvoke("readNil").arg(readerParam), JExpr._null(), value);
+				if (elementInfo.hasClass()) {
+					block.invoke(methodName).arg(JExpr._new(this.pluginContext.outline.getElement(elementInfo).implClass).arg(nilSafeValue));
+				} else {
+					block.invoke(methodName).arg(JExpr._new(this.pluginContext.codeModel.ref(JAXBElement.class).narrow(contentType))
+							.arg(this.writerGenerator.nameConstant(name))
+							.arg(contentType.dotclass())
+							.arg(elementInfo.getScope() == null ? JExpr._null() : elementInfo.getScope().toType(this.pluginContext.outline, Aspect.EXPOSED).dotclass())
+							.arg(nilSafeValue));
+				}
+			} else {
+				continue;
+			}
+			this.elementReaders.put(name, reader);
+		}
+		if (propertyInfo.getWildcard() != null && this.wildcardReader == null) {
+			this.wildcardReader = new PropertyReader(propertyInfo);
+			this.wildcardReader.block.invoke(methodName).arg(this.staxReading.staticInvoke("readElement").arg(readerParam));
+		}
+		if (propertyInfo.isMixed() && propertyInfo.isCollection() && this.textReader == null) {
+			this.textReader = new PropertyReader(propertyInfo);
+			this.textReader.block.invoke(methodName).arg(JExpr.ref(StaxReaderGenerator.TEXT_VAR_NAME));
+		}
+	}
+
+	private void generateValue(final CValuePropertyInfo propertyInfo, final JFieldVar field) {
+		final JExpression value = parseExpression(propertyInfo, propertyInfo.getTarget(), field.type(), JExpr.ref(StaxReaderGenerator.READER_PARAM_NAME).invoke("getElementText"));
+		if (value != null && hasBuilderMethod(PluginContext.WITH_METHOD_PREFIX, propertyInfo)) {
+			this.valueReader = new PropertyReader(propertyInfo);
+			this.valueReader.block.invoke(builderMethodName(PluginContext.WITH_METHOD_PREFIX, propertyInfo)).arg(value);
+		}
+	}
+
+	private JExpression elementValueExpression(final CPropertyInfo propertyInfo, final CNonElement target, final JType valueType, final JExpression readerParam, final PropertyReader reader) {
+		if (target instanceof CClass && propertyInfo.getAdapter() == null) {
+			return readFromExpression(target.toType(this.pluginContext.outline, Aspect.EXPOSED).boxify(), readerParam, reader);
+		} else if (target == CBuiltinLeafInfo.ANYTYPE && propertyInfo.getAdapter() == null) {
+			return this.staxReading.staticInvoke("readElement").arg(readerParam);
+		} else {
+			return parseExpression(propertyInfo, target, valueType, readerParam.invoke("getElementText"));
+		}
+	}
+
+	private JExpression readFromExpression(final JClass productClass, final JExpression readerParam, final PropertyReader reader) {
+		return productClass.staticInvoke(StaxReaderGenerator.READ_FROM_METHOD_NAME).arg(readerParam).arg(JExpr.ref(reader.propertyTreeVarName)).arg(JExpr.ref(StaxReaderGenerator.PROPERTY_TREE_USE_PARAM_NAME));
+	}
+
+	/**
+	 * @return An expression converting the lexical representation to the value of the property,
+	 * or null if values of this type cannot be read.
+	 */
+	private JExpression parseExpression(final CPropertyInfo propertyInfo, final CNonElement target, final JType valueType, final JExpression text) {
+		final CAdapter adapter = propertyInfo.getAdapter();
+		if (adapter != null) {
+			return this.staxReading.staticInvoke("unmarshal").arg(this.writerGenerator.adapterConstant(adapter.getAdapterClass(this.pluginContext.outline))).arg(text);
+		} else if (propertyInfo.id() == ID.IDREF) {
+			return null;
+		} else if (target instanceof CEnumLeafInfo) {
+			final CNonElement base = ((CEnumLeafInfo)target).base;
+			final JExpression baseValue = parseExpression(propertyInfo, base, base.toType(this.pluginContext.outline, Aspect.EXPOSED), text);
+			return baseValue == null ? null : valueType.boxify().staticInvoke("fromValue").arg(baseValue);
+		}
+		final JType unboxedType = valueType.unboxify();
+		final String typeName = valueType.fullName();
+		if (typeName.equals(String.class.getName()) || typeName.equals(Object.class.getName())) {
+			return text;
+		} else if (unboxedType == this.pluginContext.codeModel.BOOLEAN) {
+			return this.staxReading.staticInvoke("parseBoolean").arg(text);
+		} else if (unboxedType == this.pluginContext.codeModel.BYTE) {
+			return this.staxReading.staticInvoke("parseByte").arg(text);
+		} else if (unboxedType == this.pluginContext.codeModel.SHORT) {
+			return this.staxReading.staticInvoke("parseShort").arg(text);
+		} else if (unboxedType == this.pluginContext.codeModel.INT) {
+			return this.staxReading.staticInvoke("parseInt").arg(text);
+		} else if (unboxedType == this.pluginContext.codeModel.LONG) {
+			return this.staxReading.staticInvoke("parseLong").arg(text);
+		} else if (unboxedType == this.pluginContext.codeModel.FLOAT) {
+			return this.staxReading.staticInvoke("parseFloat").arg(text);
+		} else if (unboxedType == this.pluginContext.codeModel.DOUBLE) {
+			return this.staxReading.staticInvoke("parseDouble").arg(text);
+		} else if (typeName.equals(BigInteger.class.getName())) {
+			return this.staxReading.staticInvoke("parseInteger").arg(text);
+		} else if (typeName.equals(BigDecimal.class.getName())) {
+			return this.staxReading.staticInvoke("parseDecimal").arg(text);
+		} else if (typeName.equals(XMLGregorianCalendar.class.getName())) {
+			return this.staxReading.staticInvoke("parseCalendar").arg(text);
+		} else if (typeName.equals(Duration.class.getName())) {
+			return this.staxReading.staticInvoke("parseDuration").arg(text);
+		} else if (typeName.equals(QName.class.getName())) {
+			return this.staxReading.staticInvoke("parseQName").arg(JExpr.ref(StaxReaderGenerator.READER_PARAM_NAME)).arg(text);
+		} else if (typeName.equals("byte[]")) {
+			return this.staxReading.staticInvoke("parseBase64").arg(text);
+		} else {
+			return null;
+		}
+	}
+
+	private String builderMethodName(final String prefix, final CPropertyInfo propertyInfo) {
+		return prefix + propertyInfo.getName(true);
+	}
+
+	private boolean hasBuilderMethod(final String prefix, final CPropertyInfo propertyInfo) {
+		final String methodName = builderMethodName(prefix, propertyInfo);
+		for (final JMethod method : this.builderClass.methods()) {
+			if (method.name().equals(methodName) && method.params().size() == 1) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * The code reading the value of a property, which is only executed
+	 * if the property is selected.
+	 */
+	private static final class PropertyReader {
+		final String propertyName;
+		final String propertyTreeVarName;
+		final JBlock block = new JBlock(false, false);
+
+		PropertyReader(final CPropertyInfo propertyInfo) {
+			this.propertyName = propertyInfo.getName(false);
+			this.propertyTreeVarName = this.propertyName + "PropertyTree";
+		}
+	}
+
+	private static final class StreamedProperty {
+		final CElementPropertyInfo propertyInfo;
+		final QName itemName;
+		final JClass itemClass;
+
+		StreamedProperty(final CElementPropertyInfo propertyInfo, final QName itemName, final JClass itemClass) {
+			this.propertyInfo = propertyInfo;
+			this.itemName = itemName;
+			this.itemClass = itemClass;
+		}
+	}
+}
@@ -0,0 +1,311 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2014 Klemm Software Consulting, Mirko Klemm
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.kscs.util.plugins.xjc;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.xml.namespace.QName;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+
+import com.kscs.util.jaxb.StaxWritable;
+import com.kscs.util.jaxb.StaxWriting;
+import com.kscs.util.plugins.xjc.base.PluginUtil;
+import com.sun.codemodel.JBlock;
+import com.sun.codemodel.JClass;
+import com.sun.codemodel.JConditional;
+import com.sun.codemodel.JDefinedClass;
+import com.sun.codemodel.JExpr;
+import com.sun.codemodel.JExpression;
+import com.sun.codemodel.JFieldVar;
+import com.sun.codemodel.JForEach;
+import com.sun.codemodel.JMethod;
+import com.sun.codemodel.JMod;
+import com.sun.codemodel.JType;
+import com.sun.codemodel.JVar;
+import com.sun.tools.xjc.model.CAdapter;
+import com.sun.tools.xjc.model.CAttributePropertyInfo;
+import com.sun.tools.xjc.model.CBuiltinLeafInfo;
+import com.sun.tools.xjc.model.CClass;
+import com.sun.tools.xjc.model.CClassInfo;
+import com.sun.tools.xjc.model.CElementPropertyInfo;
+import com.sun.tools.xjc.model.CEnumLeafInfo;
+import com.sun.tools.xjc.model.CNonElement;
+import com.sun.tools.xjc.model.CPropertyInfo;
+import com.sun.tools.xjc.model.CReferencePropertyInfo;
+import com.sun.tools.xjc.model.CTypeRef;
+import com.sun.tools.xjc.model.CValuePropertyInfo;
+import com.sun.tools.xjc.outline.Aspect;
+import com.sun.tools.xjc.outline.ClassOutline;
+import com.sun.tools.xjc.outline.FieldOutline;
+import com.sun.xml.bind.api.impl.NameConverter;
+import com.sun.xml.bind.v2.model.core.ID;
+
+/**
+ * Generates the {@link StaxWritable} implementation of a class,
+ * writing all properties directly to an {@link XMLStreamWriter}.
+ */
+class StaxWriterGenerator {
+	static final String WRITER_PARAM_NAME = "_writer";
+	static final String ITEM_VAR_NAME = "_item";
+	static final String WRITE_TO_METHOD_NAME = "writeTo";
+	static final String WRITE_ATTRIBUTES_METHOD_NAME = "writeAttributesTo";
+	static final String WRITE_CONTENT_METHOD_NAME = "writeContentTo";
+	static final String OTHER_ATTRIBUTES_FIELD_NAME = "otherAttributes";
+
+	private final PluginContext pluginContext;
+	private final ClassOutline classOutline;
+	private final JDefinedClass definedClass;
+	private final JClass staxWriting;
+	private final Map<QName, JFieldVar> nameConstants = new HashMap<>();
+	private final Map<String, JFieldVar> adapterConstants = new HashMap<>();
+	private final Set<String> constantNames = new HashSet<>();
+
+	StaxWriterGenerator(final PluginContext pluginContext, final ClassOutline classOutline) {
+		this.pluginContext = pluginContext;
+		this.classOutline = classOutline;
+		this.definedClass = classOutline.implClass;
+		this.staxWriting = pluginContext.codeModel.ref(StaxWriting.class);
+	}
+
+	void generate() {
+		final CClassInfo classInfo = this.classOutline.target;
+		final boolean hasSuperClass = classInfo.getBaseClass() != null || classInfo.getRefBaseClass() != null;
+		if (!hasSuperClass) {
+			this.definedClass._implements(StaxWritable.class);
+			generateWriteToMethod();
+		}
+		generateNameMethod("xmlTypeName", classInfo.getTypeName());
+		generateNameMethod("xmlElementName", classInfo.isElement() ? classInfo.getElementName() : null);
+		if (classInfo.isElement()) {
+			final JMethod writeRootMethod = this.definedClass.method(JMod.PUBLIC, this.pluginContext.voidType, StaxWriterGenerator.WRITE_TO_METHOD_NAME);
+			writeRootMethod._throws(XMLStreamException.class);
+			final JVar writerParam = writeRootMethod.param(JMod.FINAL, XMLStreamWriter.class, StaxWriterGenerator.WRITER_PARAM_NAME);
+			writeRootMethod.body().invoke(StaxWriterGenerator.WRITE_TO_METHOD_NAME).arg(writerParam).arg(nameConstant(classInfo.getElementName())).arg(JExpr._null());
+		}
+		final JMethod writeAttributesMethod = this.definedClass.method(JMod.PROTECTED, this.pluginContext.voidType, StaxWriterGenerator.WRITE_ATTRIBUTES_METHOD_NAME);
+		writeAttributesMethod._throws(XMLStreamException.class);
+		final JVar attributesWriterParam = writeAttributesMethod.param(JMod.FINAL, XMLStreamWriter.class, StaxWriterGenerator.WRITER_PARAM_NAME);
+		final JMethod writeContentMethod = this.definedClass.method(JMod.PROTECTED, this.pluginContext.voidType, StaxWriterGenerator.WRITE_CONTENT_METHOD_NAME);
+		writeContentMethod._throws(XMLStreamException.class);
+		final JVar contentWriterParam = writeContentMethod.param(JMod.FINAL, XMLStreamWriter.class, StaxWriterGenerator.WRITER_PARAM_NAME);
+		if (hasSuperClass) {
+			writeAttributesMethod.body().invoke(JExpr._super(), writeAttributesMethod).arg(attributesWriterParam);
+			writeContentMethod.body().invoke(JExpr._super(), writeContentMethod).arg(contentWriterParam);
+		}
+		JExpression idExpression = null;
+		for (final FieldOutline fieldOutline : this.classOutline.getDeclaredFields()) {
+			final JFieldVar field = PluginUtil.getDeclaredField(fieldOutline);
+			if (field != null) {
+				final CPropertyInfo propertyInfo = fieldOutline.getPropertyInfo();
+				final JExpression fieldRef = JExpr._this().ref(field);
+				if (propertyInfo instanceof CAttributePropertyInfo) {
+					generateAttribute(writeAttributesMethod.body(), attributesWriterParam, (CAttributePropertyInfo)propertyInfo, field, fieldRef);
+				} else if (propertyInfo instanceof CElementPropertyInfo) {
+					generateElement(writeContentMethod.body(), contentWriterParam, (CElementPropertyInfo)propertyInfo, field, fieldRef);
+				} else if (propertyInfo instanceof CReferencePropertyInfo) {
+					generateReference(writeContentMethod.body(), contentWriterParam, propertyInfo, fieldRef);
+				} else if (propertyInfo instanceof CValuePropertyInfo) {
+					final JExpression text = printExpression(contentWriterParam, propertyInfo, ((CValuePropertyInfo)propertyInfo).getTarget(), field.type(), fieldRef);
+					if (field.type().isPrimitive()) {
+						writeContentMethod.body().invoke(contentWriterParam, "writeCharacters").arg(text);
+					} else {
+						writeContentMethod.body()._if(fieldRef.ne(JExpr._null()))._then().invoke(contentWriterParam, "writeCharacters").arg(text);
+					}
+				}
+				if (propertyInfo.id() == ID.ID) {
+					idExpression = field.type().fullName().equals(String.class.getName()) ? fieldRef : PluginUtil.nullSafe(fieldRef, fieldRef.invoke("toString"));
+				}
+			}
+		}
+		final JFieldVar otherAttributesField = this.definedClass.fields().get(StaxWriterGenerator.OTHER_ATTRIBUTES_FIELD_NAME);
+		if (otherAttributesField != null) {
+			final JClass entryType = this.pluginContext.codeModel.ref(Map.Entry.class).narrow(QName.class, String.class);
+			final JForEach forEach = writeAttributesMethod.body().forEach(entryType, StaxWriterGenerator.ITEM_VAR_NAME, JExpr._this().ref(otherAttributesField).invoke("entrySet"));
+			forEach.body().staticInvoke(this.staxWriting, "writeAttribute").arg(attributesWriterParam).arg(forEach.var().invoke("getKey")).arg(forEach.var().invoke("getValue"));
+		}
+		if (idExpression != null || !hasSuperClass) {
+			final JMethod idMethod = this.definedClass.method(JMod.PUBLIC, String.class, "xmlId");
+			if (hasSuperClass) {
+				idMethod.annotate(Override.class);
+			}
+			idMethod.body()._return(idExpression == null ? JExpr._null() : idExpression);
+		}
+	}
+
+	private void generateWriteToMethod() {
+		final JMethod writeToMethod = this.definedClass.method(JMod.PUBLIC, this.pluginContext.voidType, StaxWriterGenerator.WRITE_TO_METHOD_NAME);
+		writeToMethod.annotate(Override.class);
+		writeToMethod._throws(XMLStreamException.class);
+		final JVar writerParam = writeToMethod.param(JMod.FINAL, XMLStreamWriter.class, StaxWriterGenerator.WRITER_PARAM_NAME);
+		final JVar elementNameParam = writeToMethod.param(JMod.FINAL, QName.class, "_elementName");
+		final JVar xsiTypeParam = writeToMethod.param(JMod.FINAL, QName.class, "_xsiType");
+		final JBlock body = writeToMethod.body();
+		body.staticInvoke(this.staxWriting, "writeStartElement").arg(writerParam).arg(elementNameParam);
+		body._if(xsiTypeParam.ne(JExpr._null()))._then().staticInvoke(this.staxWriting, "writeXsiType").arg(writerParam).arg(xsiTypeParam);
+		body.invoke(StaxWriterGenerator.WRITE_ATTRIBUTES_METHOD_NAME).arg(writerParam);
+		body.invoke(StaxWriterGenerator.WRITE_CONTENT_METHOD_NAME).arg(writerParam);
+		body.invoke(writerParam, "writeEndElement");
+	}
+
+	private void generateNameMethod(final String methodName, final QName name) {
+		final JMethod nameMethod = this.definedClass.method(JMod.PUBLIC, QName.class, methodName);
+		nameMethod.annotate(Override.class);
+		nameMethod.body()._return(name == null ? JExpr._null() : nameConstant(name));
+	}
+
+	private void generateAttribute(final JBlock body, final JVar writerParam, final CAttributePropertyInfo propertyInfo, final JFieldVar field, final JExpression fieldRef) {
+		final JExpression value;
+		if (propertyInfo.isCollection()) {
+			value = this.staxWriting.staticInvoke("printList").arg(writerParam).arg(fieldRef);
+		} else {
+			value = printExpression(writerParam, propertyInfo, propertyInfo.getTarget(), field.type(), fieldRef);
+		}
+		body.staticInvoke(this.staxWriting, "writeAttribute").arg(writerParam).arg(nameConstant(propertyInfo.getXmlName())).arg(value);
+	}
+
+	private void generateElement(final JBlock body, final JVar writerParam, final CElementPropertyInfo propertyInfo, final JFieldVar field, final JExpression fieldRef) {
+		final List<CTypeRef> typeRefs = sortBySpecificity(propertyInfo.getTypes());
+		if (propertyInfo.isValueList()) {
+			body._if(fieldRef.ne(JExpr._null()))._then().staticInvoke(this.staxWriting, "writeSimpleElement").arg(writerParam).arg(nameConstant(typeRefs.get(0).getTagName())).arg(this.staxWriting.staticInvoke("printList").arg(writerParam).arg(fieldRef));
+		} else if (propertyInfo.isCollection()) {
+			final JClass elementType = ((JClass)field.type()).getTypeParameters().get(0);
+			final JForEach forEach = body._if(fieldRef.ne(JExpr._null()))._then().forEach(elementType, StaxWriterGenerator.ITEM_VAR_NAME, fieldRef);
+			generateElementValue(forEach.body(), writerParam, propertyInfo, typeRefs, elementType, forEach.var());
+		} else if (field.type().isPrimitive()) {
+			generateTypeRefValue(body, writerParam, propertyInfo, typeRefs.get(0), field.type(), fieldRef);
+		} else {
+			generateElementValue(body, writerParam, propertyInfo, typeRefs, field.type(), fieldRef);
+		}
+	}
+
+	private void generateElementValue(final JBlock body, final JVar writerParam, final CElementPropertyInfo propertyInfo, final List<CTypeRef> typeRefs, final JType valueType, final JExpression value) {
+		final JConditional ifNotNull = body._if(value.ne(JExpr._null()));
+		if (typeRefs.size() == 1 && typeRefs.get(0).isNillable()) {
+			ifNotNull._else().staticInvoke(this.staxWriting, "writeNil").arg(writerParam).arg(nameConstant(typeRefs.get(0).getTagName()));
+		}
+		if (typeRefs.size() == 1) {
+			generateTypeRefValue(ifNotNull._then(), writerParam, propertyInfo, typeRefs.get(0), valueType, value);
+		} else {
+			JBlock elseBlock = ifNotNull._then();
+			for (final CTypeRef typeRef : typeRefs) {
+				final JClass refType = typeRef.getTarget().toType(this.pluginContext.outline, Aspect.EXPOSED).boxify();
+				final JConditional ifInstance = elseBlock._if(value._instanceof(refType));
+				generateTypeRefValue(ifInstance._then(), writerParam, propertyInfo, typeRef, refType, JExpr.cast(refType, value));
+				elseBlock = ifInstance._else();
+			}
+			elseBlock._throw(JExpr._new(this.pluginContext.codeModel.ref(XMLStreamException.class)).arg(JExpr.lit("Unexpected value of type ").plus(value.invoke("getClass").invoke("getName")).plus(JExpr.lit(" in property \"" + propertyInfo.getName(false) + "\""))));
+		}
+	}
+
+	private void generateTypeRefValue(final JBlock body, final JVar writerParam, final CPropertyInfo propertyInfo, final CTypeRef typeRef, final JType valueType, final JExpression value) {
+		final CNonElement target = typeRef.getTarget();
+		final JExpression name = nameConstant(typeRef.getTagName());
+		if (target instanceof CClass && propertyInfo.getAdapter() == null) {
+			body.staticInvoke(this.staxWriting, "writeElement").arg(writerParam).arg(name).arg(value).arg(target.toType(this.pluginContext.outline, Aspect.EXPOSED).boxify().dotclass());
+		} else if (target == CBuiltinLeafInfo.ANYTYPE && propertyInfo.getAdapter() == null) {
+			body.staticInvoke(this.staxWriting, "writeElement").arg(writerParam).arg(name).arg(value);
+		} else {
+			body.staticInvoke(this.staxWriting, "writeSimpleElement").arg(writerParam).arg(name).arg(printExpression(writerParam, propertyInfo, target, valueType, value));
+		}
+	}
+
+	private void generateReference(final JBlock body, final JVar writerParam, final CPropertyInfo propertyInfo, final JExpression fieldRef) {
+		if (propertyInfo.isCollection()) {
+			final JForEach forEach = body._if(fieldRef.ne(JExpr._null()))._then().forEach(this.pluginContext.codeModel.ref(Object.class), StaxWriterGenerator.ITEM_VAR_NAME, fieldRef);
+			forEach.body().staticInvoke(this.staxWriting, "writeItem").arg(writerParam).arg(forEach.var());
+		} else {
+			body.staticInvoke(this.staxWriting, "writeItem").arg(writerParam).arg(fieldRef);
+		}
+	}
+
+	private JExpression printExpression(final JVar writerParam, final CPropertyInfo propertyInfo, final CNonElement target, final JType valueType, final JExpression value) {
+		final CAdapter adapter = propertyInfo.getAdapter();
+		if (adapter != null) {
+			return this.staxWriting.staticInvoke("print").arg(writerParam).arg(this.staxWriting.staticInvoke("marshal").arg(adapterConstant(adapter.getAdapterClass(this.pluginContext.outline))).arg(value));
+		} else if (propertyInfo.id() == ID.IDREF) {
+			return this.staxWriting.staticInvoke("printIdRef").arg(value);
+		} else if (target instanceof CEnumLeafInfo) {
+			return this.staxWriting.staticInvoke("print").arg(writerParam).arg(PluginUtil.nullSafe(value, value.invoke("value")));
+		} else if (valueType.isPrimitive()) {
+			return this.staxWriting.staticInvoke("print").arg(value);
+		} else if (valueType.fullName().equals(String.class.getName())) {
+			return value;
+		} else {
+			return this.staxWriting.staticInvoke("print").arg(writerParam).arg(value);
+		}
+	}
+
+	JFieldVar nameConstant(final QName name) {
+		JFieldVar constant = this.nameConstants.get(name);
+		if (constant == null) {
+			constant = this.definedClass.field(JMod.PRIVATE | JMod.STATIC | JMod.FINAL, QName.class, constantName(NameConverter.standard.toClassName(name.getLocalPart()), "_QNAME"),
+					JExpr._new(this.pluginContext.codeModel.ref(QName.class)).arg(name.getNamespaceURI()).arg(name.getLocalPart()));
+			this.nameConstants.put(name, constant);
+		}
+		return constant;
+	}
+
+	JFieldVar adapterConstant(final JClass adapterClass) {
+		JFieldVar constant = this.adapterConstants.get(adapterClass.fullName());
+		if (constant == null) {
+			constant = this.definedClass.field(JMod.PRIVATE | JMod.STATIC | JMod.FINAL, adapterClass, constantName(adapterClass.name(), "_ADAPTER"), JExpr._new(adapterClass));
+			this.adapterConstants.put(adapterClass.fullName(), constant);
+		}
+		return constant;
+	}
+
+	private String constantName(final String baseName, final String suffix) {
+		String constantName = "_" + baseName + suffix;
+		for (int i = 1; !this.constantNames.add(constantName) || this.definedClass.fields().containsKey(constantName); i++) {
+			constantName = "_" + baseName + i + suffix;
+		}
+		return constantName;
+	}
+
+	/**
+	 * Orders the types of a choice so that subclasses are tested before their superclasses.
+	 */
+	private List<CTypeRef> sortBySpecificity(final List<CTypeRef> typeRefs) {
+		final List<CTypeRef> sorted = new ArrayList<>(typeRefs.size());
+		for (final CTypeRef typeRef : typeRefs) {
+			final JClass type = typeRef.getTarget().toType(this.pluginContext.outline, Aspect.EXPOSED).boxify();
+			int index = sorted.size();
+			for (int i = 0; i < sorted.size(); i++) {
+				if (sorted.get(i).getTarget().toType(this.pluginContext.outline, Aspect.EXPOSED).boxify().isAssignableFrom(type)) {
+					index = i;
+					break;
+				}
+			}
+			sorted.add(index, typeRef);
+		}
+		return sorted;
+	}
+}
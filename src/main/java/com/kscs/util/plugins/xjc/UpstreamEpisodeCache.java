@@ -0,0 +1,136 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2014 Klemm Software Consulting, Mirko Klemm
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.kscs.util.plugins.xjc;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.xml.bind.JAXB;
+import javax.xml.transform.Templates;
+import javax.xml.transform.TransformerConfigurationException;
+import javax.xml.transform.TransformerException;
+import javax.xml.transform.dom.DOMResult;
+import javax.xml.transform.dom.DOMSource;
+import javax.xml.transform.stream.StreamSource;
+
+import com.kscs.util.jaxb._interface.Interface;
+import com.kscs.util.jaxb._interface.Interfaces;
+
+/**
+ * Caches the interface declarations read from upstream episode files,
+ * so that a JVM running XJC repeatedly, like a build daemon, transforms
+ * and unmarshals each episode file only once as long as its content
+ * doesn't change.
+ * Only a digest of the content is kept for comparison, and the least recently
+ * used entries are evicted when more than {@link #MAX_ENTRIES} episode files are cached.
+ */
+final class UpstreamEpisodeCache {
+	private static final Templates INTERFACE_BINDINGS;
+	static final int MAX_ENTRIES = 32;
+	private static final Map<String, Entry> ENTRIES = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+		@Override
+		protected boolean removeEldestEntry(final Map.Entry<String, Entry> eldest) {
+			return size() > UpstreamEpisodeCache.MAX_ENTRIES;
+		}
+	};
+
+	static {
+		try {
+			INTERFACE_BINDINGS = GroupInterfacePlugin.TRANSFORMER_FACTORY.newTemplates(new StreamSource(GroupInterfaceGenerator.class.getResource("interface-bindings.xsl").toString()));
+		} catch (final TransformerConfigurationException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	private UpstreamEpisodeCache() {
+	}
+
+	static List<Interface> getInterfaces(final URL episodeUrl) throws IOException, TransformerException {
+		final String key = episodeUrl.toString();
+		final byte[] content = read(episodeUrl);
+		final byte[] digest = digest(content);
+		final Entry cached;
+		synchronized (UpstreamEpisodeCache.ENTRIES) {
+			cached = UpstreamEpisodeCache.ENTRIES.get(key);
+		}
+		if (cached != null && Arrays.equals(cached.digest, digest)) {
+			return cached.interfaces;
+		}
+		final DOMResult domResult = new DOMResult();
+		UpstreamEpisodeCache.INTERFACE_BINDINGS.newTransformer().transform(new StreamSource(new ByteArrayInputStream(content), key), domResult);
+		final Interfaces interfaces = JAXB.unmarshal(new DOMSource(domResult.getNode()), Interfaces.class);
+		final List<Interface> interfaceList = Collections.unmodifiableList(interfaces.getInterface());
+		synchronized (UpstreamEpisodeCache.ENTRIES) {
+			UpstreamEpisodeCache.ENTRIES.put(key, new Entry(digest, interfaceList));
+		}
+		return interfaceList;
+	}
+
+	static int size() {
+		synchronized (UpstreamEpisodeCache.ENTRIES) {
+			return UpstreamEpisodeCache.ENTRIES.size();
+		}
+	}
+
+	private static byte[] digest(final byte[] content) {
+		try {
+			return MessageDigest.getInstance("SHA-256").digest(content);
+		} catch (final NoSuchAlgorithmException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	private static byte[] read(final URL url) throws IOException {
+		try (final InputStream inputStream = url.openStream()) {
+			final ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+			final byte[] buffer = new byte[8192];
+			int read;
+			while ((read = inputStream.read(buffer)) >= 0) {
+				outputStream.write(buffer, 0, read);
+			}
+			return outputStream.toByteArray();
+		}
+	}
+
+	private static class Entry {
+		private final byte[] digest;
+		private final List<Interface> interfaces;
+
+		Entry(final byte[] digest, final List<Interface> interfaces) {
+			this.digest = digest;
+			this.interfaces = interfaces;
+		}
+	}
+}
@@ -0,0 +1,358 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2014 Klemm Software Consulting, Mirko Klemm
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.kscs.util.plugins.xjc;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import com.kscs.util.jaxb.BinaryView;
+import com.kscs.util.jaxb.ViewOutput;
+import com.sun.codemodel.ClassType;
+import com.sun.codemodel.JBlock;
+import com.sun.codemodel.JClass;
+import com.sun.codemodel.JClassAlreadyExistsException;
+import com.sun.codemodel.JDefinedClass;
+import com.sun.codemodel.JExpr;
+import com.sun.codemodel.JExpression;
+import com.sun.codemodel.JFieldRef;
+import com.sun.codemodel.JForLoop;
+import com.sun.codemodel.JMethod;
+import com.sun.codemodel.JMod;
+import com.sun.codemodel.JOp;
+import com.sun.codemodel.JSwitch;
+import com.sun.codemodel.JType;
+import com.sun.codemodel.JVar;
+import com.sun.tools.xjc.model.CDefaultValue;
+import com.sun.tools.xjc.outline.ClassOutline;
+
+/**
+ * Generates the <code>writeView</code> methods of a class, which store an object
+ * in the random-access layout of {@link ViewOutput}, and the nested view class, which
+ * implements the getters of the class by reading directly from such a buffer.
+ * The layout of an object is a type id followed by one fixed-size slot per field,
+ * where the slots of the super class come first.
+ */
+class ViewGenerator {
+	static final String OUTPUT_PARAM_NAME = "_output";
+	static final String OFFSET_PARAM_NAME = "_offset";
+	static final String BUFFER_PARAM_NAME = "_buffer";
+	static final String POSITION_PARAM_NAME = "_position";
+	static final String VALUE_VAR_NAME = "_value";
+	static final String LIST_VAR_NAME = "_list";
+	static final String WRITE_VIEW_METHOD_NAME = "writeView";
+	static final String WRITE_VIEW_FIELDS_METHOD_NAME = "writeViewFields";
+	static final String TO_VIEW_BUFFER_METHOD_NAME = "toViewBuffer";
+	static final String OF_METHOD_NAME = "of";
+	static final String VIEW_AT_METHOD_NAME = "viewAt";
+	static final String LIST_VIEW_CLASS_SUFFIX = "List";
+	static final int TYPE_ID_SIZE = 4;
+	static final int REFERENCE_SIZE = 4;
+
+	private final PluginContext pluginContext;
+	private final BinaryGenerator binaryGenerator;
+	private final ViewGenerator superGenerator;
+	private final JDefinedClass definedClass;
+	private final JDefinedClass viewClass;
+	private final JClass binaryView;
+	private final Map<BinaryGenerator.BinaryField, Integer> positions = new HashMap<>();
+	private final Map<String, JType> getters = new HashMap<>();
+	private final int size;
+
+	ViewGenerator(final PluginContext pluginContext, final BinaryGenerator binaryGenerator, final ViewGenerator superGenerator, final JDefinedClass viewClass) {
+		this.pluginContext = pluginContext;
+		this.binaryGenerator = binaryGenerator;
+		this.superGenerator = superGenerator;
+		this.definedClass = binaryGenerator.getClassOutline().implClass;
+		this.viewClass = viewClass;
+		this.binaryView = pluginContext.codeModel.ref(BinaryView.class);
+		if (superGenerator != null) {
+			this.viewClass._extends(superGenerator.viewClass);
+			this.getters.putAll(superGenerator.getters);
+		} else {
+			this.viewClass._extends(this.binaryView);
+		}
+		int position = superGenerator == null ? ViewGenerator.TYPE_ID_SIZE : superGenerator.size;
+		for (final BinaryGenerator.BinaryField binaryField : binaryGenerator.getFields()) {
+			this.positions.put(binaryField, position);
+			position += binaryField.collection ? ViewGenerator.REFERENCE_SIZE : slotSize(binaryField.valueType);
+		}
+		this.size = position;
+	}
+
+	/**
+	 * Finds the view class nested in a generated class.
+	 * @return The view class, or null if none has been generated.
+	 */
+	static JDefinedClass findViewClass(final ClassOutline classOutline, final String viewClassName) {
+		for (final Iterator<JDefinedClass> iterator = classOutline.implClass.classes(); iterator.hasNext(); ) {
+			final JDefinedClass innerClass = iterator.next();
+			if (viewClassName.equals(innerClass.name())) {
+				return innerClass;
+			}
+		}
+		return null;
+	}
+
+	void generate(final List<BinaryGenerator> subClasses, final String viewClassName) {
+		generateWriteMethods();
+		generateFactoryMethods(subClasses, viewClassName);
+		final JMethod constructor = this.viewClass.constructor(JMod.PROTECTED);
+		final JVar bufferParam = constructor.param(JMod.FINAL, ByteBuffer.class, ViewGenerator.BUFFER_PARAM_NAME);
+		final JVar offsetParam = constructor.param(JMod.FINAL, this.pluginContext.codeModel.INT, ViewGenerator.OFFSET_PARAM_NAME);
+		constructor.body().invoke("super").arg(bufferParam).arg(offsetParam);
+		for (final BinaryGenerator.BinaryField binaryField : this.binaryGenerator.getFields()) {
+			generateGetter(binaryField, viewClassName);
+		}
+		for (final Iterator<JClass> iterator = this.definedClass._implements(); iterator.hasNext(); ) {
+			for (final JClass interfaceClass : findImplementedInterfaces(iterator.next(), this.getters, new LinkedHashSet<JClass>())) {
+				this.viewClass._implements(interfaceClass);
+			}
+		}
+	}
+
+	private void generateWriteMethods() {
+		final boolean hasSuperClass = this.superGenerator != null;
+		final JMethod writeViewMethod = this.definedClass.method(JMod.PUBLIC, this.pluginContext.codeModel.INT, ViewGenerator.WRITE_VIEW_METHOD_NAME);
+		if (hasSuperClass) {
+			writeViewMethod.annotate(Override.class);
+		}
+		final JVar outputParam = writeViewMethod.param(JMod.FINAL, ViewOutput.class, ViewGenerator.OUTPUT_PARAM_NAME);
+		final JVar offsetVar = writeViewMethod.body().decl(JMod.FINAL, this.pluginContext.codeModel.INT, ViewGenerator.OFFSET_PARAM_NAME, outputParam.invoke("allocate").arg(JExpr.lit(this.size)));
+		writeViewMethod.body().invoke(outputParam, "putInt").arg(offsetVar).arg(JExpr.lit(this.binaryGenerator.getTypeId()));
+		writeViewMethod.body().invoke(ViewGenerator.WRITE_VIEW_FIELDS_METHOD_NAME).arg(outputParam).arg(offsetVar);
+		writeViewMethod.body()._return(offsetVar);
+
+		if (!hasSuperClass) {
+			final JClass viewOutput = this.pluginContext.codeModel.ref(ViewOutput.class);
+			final JMethod toViewBufferMethod = this.definedClass.method(JMod.PUBLIC, ByteBuffer.class, ViewGenerator.TO_VIEW_BUFFER_METHOD_NAME);
+			final JVar outputVar = toViewBufferMethod.body().decl(JMod.FINAL, viewOutput, ViewGenerator.OUTPUT_PARAM_NAME, JExpr._new(viewOutput).arg(this.definedClass.staticRef(BinaryGenerator.FINGERPRINT_FIELD_NAME)));
+			toViewBufferMethod.body().invoke(outputVar, "setRoot").arg(JExpr.invoke(writeViewMethod).arg(outputVar));
+			toViewBufferMethod.body()._return(outputVar.invoke("toByteBuffer"));
+		}
+
+		final JMethod writeFieldsMethod = this.definedClass.method(JMod.PROTECTED, this.pluginContext.voidType, ViewGenerator.WRITE_VIEW_FIELDS_METHOD_NAME);
+		final JVar fieldsOutputParam = writeFieldsMethod.param(JMod.FINAL, ViewOutput.class, ViewGenerator.OUTPUT_PARAM_NAME);
+		final JVar offsetParam = writeFieldsMethod.param(JMod.FINAL, this.pluginContext.codeModel.INT, ViewGenerator.OFFSET_PARAM_NAME);
+		if (hasSuperClass) {
+			writeFieldsMethod.annotate(Override.class);
+			writeFieldsMethod.body().invoke(JExpr._super(), writeFieldsMethod).arg(fieldsOutputParam).arg(offsetParam);
+		}
+		for (final BinaryGenerator.BinaryField binaryField : this.binaryGenerator.getFields()) {
+			final JFieldRef fieldRef = JExpr._this().ref(binaryField.field);
+			final JExpression position = offsetParam.plus(JExpr.lit(this.positions.get(binaryField)));
+			if (binaryField.collection) {
+				final JBlock block = writeFieldsMethod.body()._if(fieldRef.ne(JExpr._null()))._then();
+				final int itemSize = slotSize(binaryField.valueType);
+				final JVar listVar = block.decl(JMod.FINAL, this.pluginContext.codeModel.INT, ViewGenerator.LIST_VAR_NAME,
+						fieldsOutputParam.invoke("allocateAt").arg(position).arg(JExpr.lit(4).plus(fieldRef.invoke("size").mul(JExpr.lit(itemSize)))));
+				block.invoke(fieldsOutputParam, "putInt").arg(listVar).arg(fieldRef.invoke("size"));
+				final JForLoop forLoop = block._for();
+				final JVar indexVar = forLoop.init(this.pluginContext.codeModel.INT, "_i", JExpr.lit(0));
+				forLoop.test(indexVar.lt(fieldRef.invoke("size")));
+				forLoop.update(indexVar.incr());
+				generateWriteSlot(forLoop.body(), fieldsOutputParam, listVar.plus(JExpr.lit(4)).plus(indexVar.mul(JExpr.lit(itemSize))), binaryField.valueType, fieldRef.invoke("get").arg(indexVar));
+			} else {
+				generateWriteSlot(writeFieldsMethod.body(), fieldsOutputParam, position, binaryField.valueType, fieldRef);
+			}
+		}
+	}
+
+	private void generateFactoryMethods(final List<BinaryGenerator> subClasses, final String viewClassName) {
+		final JMethod viewAtMethod = this.viewClass.method(JMod.PUBLIC | JMod.STATIC, this.viewClass, ViewGenerator.VIEW_AT_METHOD_NAME);
+		final JVar bufferParam = viewAtMethod.param(JMod.FINAL, ByteBuffer.class, ViewGenerator.BUFFER_PARAM_NAME);
+		final JVar offsetParam = viewAtMethod.param(JMod.FINAL, this.pluginContext.codeModel.INT, ViewGenerator.OFFSET_PARAM_NAME);
+		viewAtMethod.body()._if(offsetParam.eq(JExpr.lit(0)))._then()._return(JExpr._null());
+		final JSwitch typeSwitch = viewAtMethod.body()._switch(bufferParam.invoke("getInt").arg(offsetParam));
+		if (!this.definedClass.isAbstract()) {
+			typeSwitch._case(JExpr.lit(this.binaryGenerator.getTypeId())).body()._return(JExpr._new(this.viewClass).arg(bufferParam).arg(offsetParam));
+		}
+		for (final BinaryGenerator subClass : subClasses) {
+			final JDefinedClass subViewClass = findViewClass(subClass.getClassOutline(), viewClassName);
+			if (subViewClass != null) {
+				typeSwitch._case(JExpr.lit(subClass.getTypeId())).body()._return(subViewClass.staticInvoke(viewAtMethod.name()).arg(bufferParam).arg(offsetParam));
+			}
+		}
+		typeSwitch._default().body()._throw(JExpr._new(this.pluginContext.codeModel.ref(IllegalArgumentException.class))
+				.arg(JExpr.lit("Unexpected type id ").plus(bufferParam.invoke("getInt").arg(offsetParam)).plus(JExpr.lit(" for " + this.definedClass.fullName()))));
+
+		final JMethod ofMethod = this.viewClass.method(JMod.PUBLIC | JMod.STATIC, this.viewClass, ViewGenerator.OF_METHOD_NAME);
+		final JVar ofBufferParam = ofMethod.param(JMod.FINAL, ByteBuffer.class, ViewGenerator.BUFFER_PARAM_NAME);
+		final JVar preparedVar = ofMethod.body().decl(JMod.FINAL, this.pluginContext.codeModel.ref(ByteBuffer.class), "_prepared",
+				this.binaryView.staticInvoke("prepare").arg(ofBufferParam).arg(this.definedClass.staticRef(BinaryGenerator.FINGERPRINT_FIELD_NAME)));
+		ofMethod.body()._return(JExpr.invoke(viewAtMethod).arg(preparedVar).arg(this.binaryView.staticInvoke("rootOffset").arg(preparedVar)));
+	}
+
+	private void generateGetter(final BinaryGenerator.BinaryField binaryField, final String viewClassName) {
+		final JMethod getter = PluginContext.findGetter(binaryField.fieldOutline);
+		if (getter == null) {
+			return;
+		}
+		final JExpression position = JExpr._this().ref("offset").plus(JExpr.lit(this.positions.get(binaryField)));
+		final JExpression buffer = JExpr._this().ref("buffer");
+		final JType itemType = viewType(binaryField.valueType, viewClassName);
+		if (itemType == null) {
+			return;
+		}
+		if (binaryField.collection) {
+			final JClass listType = this.pluginContext.codeModel.ref(List.class).narrow(itemType);
+			final JMethod viewGetter = this.viewClass.method(JMod.PUBLIC, listType, getter.name());
+			final JDefinedClass listView;
+			try {
+				listView = this.viewClass._class(JMod.PRIVATE | JMod.STATIC | JMod.FINAL, binaryField.fieldOutline.getPropertyInfo().getName(true) + ViewGenerator.LIST_VIEW_CLASS_SUFFIX, ClassType.CLASS);
+			} catch (final JClassAlreadyExistsException e) {
+				throw new RuntimeException(e);
+			}
+			listView._extends(this.pluginContext.codeModel.ref(BinaryView.ListView.class).narrow(itemType));
+			final JMethod listConstructor = listView.constructor(JMod.NONE);
+			final JVar listBufferParam = listConstructor.param(JMod.FINAL, ByteBuffer.class, ViewGenerator.BUFFER_PARAM_NAME);
+			final JVar listOffsetParam = listConstructor.param(JMod.FINAL, this.pluginContext.codeModel.INT, ViewGenerator.OFFSET_PARAM_NAME);
+			listConstructor.body().invoke("super").arg(listBufferParam).arg(listOffsetParam).arg(JExpr.lit(slotSize(binaryField.valueType)));
+			final JMethod itemMethod = listView.method(JMod.PROTECTED, itemType, "item");
+			itemMethod.annotate(Override.class);
+			final JVar bufferParam = itemMethod.param(JMod.FINAL, ByteBuffer.class, ViewGenerator.BUFFER_PARAM_NAME);
+			final JVar positionParam = itemMethod.param(JMod.FINAL, this.pluginContext.codeModel.INT, ViewGenerator.POSITION_PARAM_NAME);
+			itemMethod.body()._return(readSlotExpression(bufferParam, positionParam, binaryField.valueType, viewClassName));
+			viewGetter.body()._return(JExpr._new(listView).arg(buffer).arg(this.binaryView.staticInvoke("readInt").arg(buffer).arg(position)));
+			this.getters.put(getter.name(), listType);
+		} else {
+			final JType returnType = this.binaryGenerator.isGeneratedClass(binaryField.valueType) ? itemType : getter.type();
+			final JMethod viewGetter = this.viewClass.method(JMod.PUBLIC, returnType, getter.name());
+			final JExpression value = readSlotExpression(buffer, position, binaryField.valueType, viewClassName);
+			final CDefaultValue defaultValue = binaryField.fieldOutline.getPropertyInfo().defaultValue;
+			if (defaultValue != null && !binaryField.valueType.isPrimitive()) {
+				final JVar valueVar = viewGetter.body().decl(JMod.FINAL, binaryField.valueType, ViewGenerator.VALUE_VAR_NAME, value);
+				viewGetter.body()._return(JOp.cond(valueVar.eq(JExpr._null()), defaultValue.compute(binaryField.fieldOutline.parent().parent()), valueVar));
+			} else {
+				viewGetter.body()._return(value);
+			}
+			this.getters.put(getter.name(), returnType);
+		}
+	}
+
+	/**
+	 * Finds the interfaces of a generated class that a view class can implement,
+	 * because each of their methods is implemented by a getter of the view class.
+	 * If an interface has other methods, its super interfaces are tried instead.
+	 * @param getters The return types of the getters of the view class, by method name
+	 */
+	static Set<JClass> findImplementedInterfaces(final JClass interfaceClass, final Map<String, JType> getters, final Set<JClass> implementedInterfaces) {
+		if (isImplemented(interfaceClass, getters)) {
+			implementedInterfaces.add(interfaceClass);
+		} else if (interfaceClass instanceof JDefinedClass) {
+			for (final Iterator<JClass> iterator = interfaceClass._implements(); iterator.hasNext(); ) {
+				findImplementedInterfaces(iterator.next(), getters, implementedInterfaces);
+			}
+		}
+		return implementedInterfaces;
+	}
+
+	private static boolean isImplemented(final JClass interfaceClass, final Map<String, JType> getters) {
+		if (!(interfaceClass instanceof JDefinedClass)) {
+			return false;
+		}
+		for (final JMethod method : ((JDefinedClass)interfaceClass).methods()) {
+			final JType getterType = getters.get(method.name());
+			if (method.listParams().length > 0 || getterType == null || !getterType.fullName().equals(method.type().fullName())) {
+				return false;
+			}
+		}
+		for (final Iterator<JClass> iterator = interfaceClass._implements(); iterator.hasNext(); ) {
+			if (!isImplemented(iterator.next(), getters)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private void generateWriteSlot(final JBlock block, final JVar outputParam, final JExpression position, final JType type, final JExpression value) {
+		if (this.binaryGenerator.isGeneratedClass(type)) {
+			block._if(value.ne(JExpr._null()))._then().invoke(outputParam, "putInt").arg(position).arg(value.invoke(ViewGenerator.WRITE_VIEW_METHOD_NAME).arg(outputParam));
+		} else if (BinaryGenerator.isEnum(type)) {
+			block._if(value.ne(JExpr._null()))._then().invoke(outputParam, "putInt").arg(position).arg(value.invoke("ordinal").plus(JExpr.lit(1)));
+		} else if (isBoxed(type)) {
+			final JBlock ifPresent = block._if(value.ne(JExpr._null()))._then();
+			ifPresent.invoke(outputParam, "putBoolean").arg(position).arg(JExpr.TRUE);
+			ifPresent.invoke(outputParam, "put" + BinaryGenerator.valueTypeName(type)).arg(position.plus(JExpr.lit(1))).arg(value);
+		} else {
+			block.invoke(outputParam, "put" + BinaryGenerator.valueTypeName(type)).arg(position).arg(value);
+		}
+	}
+
+	private JExpression readSlotExpression(final JExpression buffer, final JExpression position, final JType type, final String viewClassName) {
+		if (this.binaryGenerator.isGeneratedClass(type)) {
+			return viewType(type, viewClassName).staticInvoke(ViewGenerator.VIEW_AT_METHOD_NAME).arg(buffer).arg(this.binaryView.staticInvoke("readInt").arg(buffer).arg(position));
+		} else if (BinaryGenerator.isEnum(type)) {
+			return this.binaryView.staticInvoke("readEnum").arg(((JClass)type).staticInvoke("values")).arg(buffer).arg(position);
+		} else if (isBoxed(type)) {
+			return JOp.cond(this.binaryView.staticInvoke("readBoolean").arg(buffer).arg(position),
+					this.binaryView.staticInvoke("read" + BinaryGenerator.valueTypeName(type)).arg(buffer).arg(position.plus(JExpr.lit(1))), JExpr._null());
+		} else {
+			return this.binaryView.staticInvoke("read" + BinaryGenerator.valueTypeName(type)).arg(buffer).arg(position);
+		}
+	}
+
+	/**
+	 * @return The type returned by the view class for values of the given type,
+	 * which is the view class of generated classes, or null if the generated class has no view class.
+	 */
+	private JClass viewType(final JType type, final String viewClassName) {
+		final ClassOutline classOutline = this.pluginContext.getClassOutline(type);
+		if (classOutline != null) {
+			return findViewClass(classOutline, viewClassName);
+		}
+		return type.boxify();
+	}
+
+	private static boolean isBoxed(final JType type) {
+		return !type.isPrimitive() && type.unboxify().isPrimitive();
+	}
+
+	/**
+	 * @return The number of bytes taken by a value of the given type in an object or list block.
+	 */
+	private static int slotSize(final JType type) {
+		if (isBoxed(type)) {
+			return 1 + slotSize(type.unboxify());
+		}
+		switch (type.fullName()) {
+			case "boolean":
+			case "byte":
+				return 1;
+			case "short":
+				return 2;
+			case "long":
+			case "double":
+				return 8;
+			default:
+				return 4;
+		}
+	}
+}
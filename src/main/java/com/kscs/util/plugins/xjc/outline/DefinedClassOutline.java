@@ -44,8 +44,9 @@ public class DefinedClassOutline implements DefinedTypeOutline {
 		this.pluginContext = pluginContext;
 		this.classOutline = classOutline;
 		final List<DefinedPropertyOutline> properties = new ArrayList<>(classOutline.getDeclaredFields().length);
+		final ParticleOccurrences occurrences = new ParticleOccurrences(classOutline);
 		for (final FieldOutline fieldOutline : classOutline.getDeclaredFields()) {
-			properties.add(new DefinedPropertyOutline(fieldOutline));
+			properties.add(new DefinedPropertyOutline(fieldOutline, occurrences));
 		}
 		this.declaredFields = Collections.unmodifiableList(properties);
 		if (this.classOutline.getSuperClass() != null) {
@@ -42,6 +42,8 @@ import com.sun.xml.bind.v2.model.core.ElementPropertyInfo;
 import com.sun.xml.bind.v2.model.core.PropertyInfo;
 import com.sun.xml.bind.v2.model.core.ReferencePropertyInfo;
 import com.sun.xml.bind.v2.model.core.TypeRef;
+import com.sun.xml.xsom.XSComponent;
+import com.sun.xml.xsom.XSParticle;
 
 /**
  * @author Mirko Klemm 2015-01-28
@@ -51,9 +53,15 @@ public class DefinedPropertyOutline implements PropertyOutline {
 	private final PropertyInfo<NType,NClass> propertyInfo;
 	private final List<TagRef> referencedItems;
 	private final JClass jaxbElementClass;
+	private final ParticleOccurrences occurrences;
 
 	public DefinedPropertyOutline(final FieldOutline fieldOutline) {
+		this(fieldOutline, new ParticleOccurrences(fieldOutline.parent()));
+	}
+
+	public DefinedPropertyOutline(final FieldOutline fieldOutline, final ParticleOccurrences occurrences) {
 		this.fieldOutline = fieldOutline;
+		this.occurrences = occurrences;
 		this.propertyInfo = fieldOutline.getPropertyInfo();
 		this.jaxbElementClass = fieldOutline.getRawType().owner().ref(JAXBElement.class);
 		if(this.propertyInfo instanceof ElementPropertyInfo) {
@@ -131,6 +139,18 @@ public class DefinedPropertyOutline implements PropertyOutline {
 		return this.referencedItems;
 	}
 
+	@Override
+	public int getMinOccurs() {
+		final XSComponent schemaComponent = this.fieldOutline.getPropertyInfo().getSchemaComponent();
+		return schemaComponent instanceof XSParticle ? this.occurrences.getMinOccurs((XSParticle)schemaComponent) : 0;
+	}
+
+	@Override
+	public int getMaxOccurs() {
+		final XSComponent schemaComponent = this.fieldOutline.getPropertyInfo().getSchemaComponent();
+		return schemaComponent instanceof XSParticle ? this.occurrences.getMaxOccurs((XSParticle)schemaComponent) : XSParticle.UNBOUNDED;
+	}
+
 	public boolean isArray() {
 		return getRawType().isArray();
 	}
@@ -0,0 +1,160 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2014 Klemm Software Consulting, Mirko Klemm
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.kscs.util.plugins.xjc.outline;
+
+import java.math.BigInteger;
+import java.util.HashMap;
+import java.util.Map;
+
+import com.sun.tools.xjc.outline.ClassOutline;
+import com.sun.xml.xsom.XSComponent;
+import com.sun.xml.xsom.XSElementDecl;
+import com.sun.xml.xsom.XSModelGroup;
+import com.sun.xml.xsom.XSParticle;
+import com.sun.xml.xsom.XSTerm;
+import com.sun.xml.xsom.XSType;
+
+/**
+ * The effective occurrence bounds of the particles in the content model of a class.
+ * The bounds of a particle are multiplied with those of all enclosing model groups,
+ * and a particle in a choice of more than one alternative is never required.
+ * The bounds of a model group particle are those of the number of values in all of its
+ * occurrences, as XJC binds a repeated model group to a single collection property.
+ */
+public class ParticleOccurrences {
+	private static final BigInteger MAX_INT = BigInteger.valueOf(Integer.MAX_VALUE);
+
+	private final Map<XSParticle, Occurs> occurrences = new HashMap<>();
+
+	public ParticleOccurrences(final ClassOutline classOutline) {
+		final XSComponent typeComponent = classOutline.target.getSchemaComponent();
+		final XSType type = typeComponent instanceof XSElementDecl ? ((XSElementDecl)typeComponent).getType() : typeComponent instanceof XSType ? (XSType)typeComponent : null;
+		if (type != null && type.isComplexType() && type.asComplexType().getContentType().asParticle() != null) {
+			collectOccurrences(type.asComplexType().getContentType().asParticle(), BigInteger.ONE, BigInteger.ONE);
+		}
+	}
+
+	/**
+	 * @return true if the particle is part of the content model of the class
+	 */
+	public boolean contains(final XSParticle particle) {
+		return this.occurrences.containsKey(particle);
+	}
+
+	/**
+	 * @return The effective minimum number of occurrences of the particle,
+	 * or its own minimum if it isn't part of the content model of the class.
+	 */
+	public int getMinOccurs(final XSParticle particle) {
+		final Occurs occurs = this.occurrences.get(particle);
+		return occurs != null ? occurs.min : toInt(particle.getMinOccurs().multiply(minValues(particle.getTerm())));
+	}
+
+	/**
+	 * @return The effective maximum number of occurrences of the particle, or {@link XSParticle#UNBOUNDED},
+	 * or its own maximum if it isn't part of the content model of the class.
+	 */
+	public int getMaxOccurs(final XSParticle particle) {
+		final Occurs occurs = this.occurrences.get(particle);
+		return occurs != null ? occurs.max : toMax(multiplyMax(particle.getMaxOccurs().signum() < 0 ? null : particle.getMaxOccurs(), maxValues(particle.getTerm())));
+	}
+
+	private void collectOccurrences(final XSParticle particle, final BigInteger min, final BigInteger max) {
+		final BigInteger particleMin = min.multiply(particle.getMinOccurs());
+		final BigInteger particleMax = multiplyMax(max, particle.getMaxOccurs().signum() < 0 ? null : particle.getMaxOccurs());
+		final XSTerm term = particle.getTerm();
+		this.occurrences.put(particle, new Occurs(toInt(particleMin.multiply(minValues(term))), toMax(multiplyMax(particleMax, maxValues(term)))));
+		final XSModelGroup modelGroup = getModelGroup(term);
+		if (modelGroup != null) {
+			final boolean choice = modelGroup.getCompositor() == XSModelGroup.Compositor.CHOICE && modelGroup.getSize() > 1;
+			for (final XSParticle child : modelGroup.getChildren()) {
+				collectOccurrences(child, choice ? BigInteger.ZERO : particleMin, particleMax);
+			}
+		}
+	}
+
+	private static BigInteger minValues(final XSTerm term) {
+		final XSModelGroup modelGroup = getModelGroup(term);
+		if (modelGroup == null) {
+			return BigInteger.ONE;
+		}
+		final boolean choice = modelGroup.getCompositor() == XSModelGroup.Compositor.CHOICE;
+		BigInteger minValues = null;
+		for (final XSParticle child : modelGroup.getChildren()) {
+			final BigInteger childMin = child.getMinOccurs().multiply(minValues(child.getTerm()));
+			minValues = minValues == null ? childMin : choice ? minValues.min(childMin) : minValues.add(childMin);
+		}
+		return minValues == null ? BigInteger.ZERO : minValues;
+	}
+
+	private static BigInteger maxValues(final XSTerm term) {
+		final XSModelGroup modelGroup = getModelGroup(term);
+		if (modelGroup == null) {
+			return BigInteger.ONE;
+		}
+		final boolean choice = modelGroup.getCompositor() == XSModelGroup.Compositor.CHOICE;
+		BigInteger maxValues = BigInteger.ZERO;
+		for (final XSParticle child : modelGroup.getChildren()) {
+			final BigInteger childMax = multiplyMax(child.getMaxOccurs().signum() < 0 ? null : child.getMaxOccurs(), maxValues(child.getTerm()));
+			if (childMax == null) {
+				return null;
+			}
+			maxValues = choice ? maxValues.max(childMax) : maxValues.add(childMax);
+		}
+		return maxValues;
+	}
+
+	private static XSModelGroup getModelGroup(final XSTerm term) {
+		return term.isModelGroup() ? term.asModelGroup() : term.isModelGroupDecl() ? term.asModelGroupDecl().getModelGroup() : null;
+	}
+
+	/**
+	 * Multiplies two upper bounds, where null is unbounded.
+	 */
+	private static BigInteger multiplyMax(final BigInteger left, final BigInteger right) {
+		if (left != null && left.signum() == 0 || right != null && right.signum() == 0) {
+			return BigInteger.ZERO;
+		}
+		return left == null || right == null ? null : left.multiply(right);
+	}
+
+	private static int toInt(final BigInteger value) {
+		return value.min(ParticleOccurrences.MAX_INT).intValue();
+	}
+
+	private static int toMax(final BigInteger value) {
+		return value == null || value.compareTo(ParticleOccurrences.MAX_INT) > 0 ? XSParticle.UNBOUNDED : value.intValue();
+	}
+
+	private static class Occurs {
+		final int min;
+		final int max;
+
+		Occurs(final int min, final int max) {
+			this.min = min;
+			this.max = max;
+		}
+	}
+}
@@ -48,6 +48,16 @@ public interface PropertyOutline {
 	boolean isIndirect();
 	List<TagRef> getChoiceProperties();
 
+	/**
+	 * @return The minimum number of values of this property according to the schema, or 0 if unknown.
+	 */
+	int getMinOccurs();
+
+	/**
+	 * @return The maximum number of values of this property according to the schema, or -1 if unbounded or unknown.
+	 */
+	int getMaxOccurs();
+
 	class TagRef {
 		private final QName tagName;
 		private final TypeInfo<NType,NClass> typeInfo;
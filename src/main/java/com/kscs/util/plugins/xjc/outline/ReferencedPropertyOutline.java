@@ -128,4 +128,14 @@ public class ReferencedPropertyOutline implements PropertyOutline {
 	public List<TagRef> getChoiceProperties() {
 		return Collections.emptyList();
 	}
+
+	@Override
+	public int getMinOccurs() {
+		return 0;
+	}
+
+	@Override
+	public int getMaxOccurs() {
+		return -1;
+	}
 }
@@ -0,0 +1,429 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2014 Klemm Software Consulting, Mirko Klemm
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.kscs.util.plugins.xjc.service;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.sun.codemodel.JCodeModel;
+import com.sun.tools.xjc.BadCommandLineException;
+import com.sun.tools.xjc.ModelLoader;
+import com.sun.tools.xjc.Options;
+import com.sun.tools.xjc.api.ErrorListener;
+import com.sun.tools.xjc.model.Model;
+import com.sun.tools.xjc.outline.Outline;
+import com.sun.tools.xjc.util.ErrorReceiverFilter;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXParseException;
+
+/**
+ * Long-lived code generation service, meant to be kept alive in a build
+ * daemon or worker JVM across many XJC invocations.
+ *
+ * XJC is run in-process, so the plugins of this package are loaded
+ * only once, and their static caches (e.g. of upstream episode files) survive
+ * between generations. The generated output of every invocation is cached
+ * together with the content hashes of all schema and binding files it was
+ * generated from, including all documents imported or included by the schemas.
+ * If none of these files has changed, a repeated invocation with the same
+ * arguments copies the cached output instead of parsing the schemas and building
+ * the model again.
+ *
+ * The cache key is made of the arguments, with the paths of all existing files
+ * made absolute. An episode file written with "-episode" is stored with the cached
+ * output and written again on a cache hit, as are the messages reported by XJC
+ * and the plugins. Any other output must be written to the target directory.
+ *
+ * Resources read from the class path, e.g. upstream episode files, are not
+ * tracked, since the class path of the service doesn't change during its lifetime.
+ * Generations are serialized, as XJC and some of the plugins are not thread-safe.
+ */
+public class GenerationService {
+	private static final Object GENERATION_LOCK = new Object();
+	private static final String FORMAT_VERSION = "2";
+	private static final String EPISODE_OPTION = "-episode";
+	private static final String OUTPUT_DIR_NAME = "output";
+	private static final String EPISODE_FILE_NAME = "sun-jaxb.episode";
+	private static final Map<File, GenerationService> INSTANCES = new HashMap<>();
+
+	private final File cacheDir;
+	private final int maxEntries;
+	private final Map<String, CacheEntry> entries;
+
+	/**
+	 * @param cacheDir Directory to store cached output in
+	 * @param maxEntries Maximum number of cached generations, least recently used entries are evicted
+	 */
+	public GenerationService(final File cacheDir, final int maxEntries) {
+		this.cacheDir = cacheDir;
+		this.maxEntries = maxEntries;
+		this.entries = new LinkedHashMap<String, CacheEntry>(16, 0.75f, true) {
+			@Override
+			protected boolean removeEldestEntry(final Map.Entry<String, CacheEntry> eldest) {
+				if (size() > GenerationService.this.maxEntries) {
+					delete(eldest.getValue().entryDir.toPath());
+					return true;
+				}
+				return false;
+			}
+		};
+	}
+
+	/**
+	 * Gets the service instance for a cache directory, creating it if necessary.
+	 * This way, independent build steps running in the same JVM share one cache.
+	 * @param cacheDir Directory to store cached output in
+	 * @return The shared service instance for the given directory
+	 */
+	public static GenerationService forCacheDir(final File cacheDir) {
+		synchronized (GenerationService.INSTANCES) {
+			final File key = cacheDir.getAbsoluteFile();
+			GenerationService service = GenerationService.INSTANCES.get(key);
+			if (service == null) {
+				service = new GenerationService(key, 64);
+				GenerationService.INSTANCES.put(key, service);
+			}
+			return service;
+		}
+	}
+
+	/**
+	 * Generates code, or copies it from the cache if the same generation has
+	 * already been performed with unchanged input files.
+	 * @param targetDir Directory to write the generated code to
+	 * @param args XJC command line arguments, including grammars and plugin options, but excluding "-d"
+	 * @return The result of the generation, which isn't successful if XJC or a plugin reported an error,
+	 * in which case nothing has been written to the target directory
+	 * @throws IOException If reading input or writing output fails
+	 * @throws BadCommandLineException If the arguments are invalid
+	 */
+	public Result generate(final File targetDir, final List<String> args) throws IOException, BadCommandLineException {
+		if (args.contains("-d")) {
+			throw new BadCommandLineException("The target directory must not be specified in the arguments");
+		}
+		final File episodeFile = getEpisodeFile(args);
+		final String key = hash(GenerationService.FORMAT_VERSION + "\u0000" + String.join("\u0000", normalize(args)));
+		synchronized (GenerationService.GENERATION_LOCK) {
+			final CacheEntry cached = this.entries.get(key);
+			if (cached != null && cached.isUpToDate()) {
+				cached.copyTo(targetDir, episodeFile);
+				return new Result(true, true, cached.messages);
+			}
+			final File entryDir = new File(this.cacheDir, key);
+			final File outputDir = new File(entryDir, GenerationService.OUTPUT_DIR_NAME);
+			delete(entryDir.toPath());
+			if (!outputDir.mkdirs()) {
+				throw new IOException("Cannot create directory " + outputDir);
+			}
+			final List<String> messages = new ArrayList<>();
+			boolean stored = false;
+			final boolean successful;
+			try {
+				final Map<String, String> dependencies = run(replaceEpisodeFile(args, new File(entryDir, GenerationService.EPISODE_FILE_NAME)), outputDir, messages);
+				successful = dependencies != null;
+				if (successful) {
+					final CacheEntry entry = new CacheEntry(entryDir, dependencies, messages);
+					this.entries.put(key, entry);
+					stored = true;
+					entry.copyTo(targetDir, episodeFile);
+				}
+			} finally {
+				if (!stored) {
+					this.entries.remove(key);
+					delete(entryDir.toPath());
+				}
+			}
+			return new Result(false, successful, messages);
+		}
+	}
+
+	/**
+	 * Makes the paths of existing files and of the episode file in the arguments absolute,
+	 * so that they don't depend on the working directory.
+	 */
+	static List<String> normalize(final List<String> args) {
+		final List<String> normalized = new ArrayList<>(args.size());
+		String previous = null;
+		for (final String arg : args) {
+			final File file = new File(arg);
+			normalized.add(!arg.startsWith("-") && (GenerationService.EPISODE_OPTION.equals(previous) || file.exists()) ? file.toPath().toAbsolutePath().normalize().toString() : arg);
+			previous = arg;
+		}
+		return normalized;
+	}
+
+	private static File getEpisodeFile(final List<String> args) {
+		final int index = args.indexOf(GenerationService.EPISODE_OPTION);
+		return index >= 0 && index + 1 < args.size() ? new File(args.get(index + 1)).getAbsoluteFile() : null;
+	}
+
+	private static List<String> replaceEpisodeFile(final List<String> args, final File episodeFile) {
+		final int index = args.indexOf(GenerationService.EPISODE_OPTION);
+		if (index < 0 || index + 1 >= args.size()) {
+			return args;
+		}
+		final List<String> replaced = new ArrayList<>(args);
+		replaced.set(index + 1, episodeFile.getAbsolutePath());
+		return replaced;
+	}
+
+	private Map<String, String> run(final List<String> args, final File outputDir, final List<String> messages) throws IOException, BadCommandLineException {
+		final Options opt = new Options();
+		opt.parseArguments(args.toArray(new String[args.size()]));
+		opt.targetDir = outputDir;
+		if (opt.getSchemaLanguage() == null) {
+			opt.setSchemaLanguage(opt.guessSchemaLanguage());
+		}
+		final RecordingEntityResolver entityResolver = new RecordingEntityResolver(opt.entityResolver);
+		opt.entityResolver = entityResolver;
+		final ErrorReceiverFilter errorReceiver = new ErrorReceiverFilter(new MessageCollector(messages));
+		final Thread thread = Thread.currentThread();
+		final ClassLoader contextClassLoader = thread.getContextClassLoader();
+		thread.setContextClassLoader(opt.getUserClassLoader(contextClassLoader));
+		try {
+			final Model model = ModelLoader.load(opt, new JCodeModel(), errorReceiver);
+			if (model == null || errorReceiver.hadError()) {
+				return null;
+			}
+			final Outline outline = model.generateCode(opt, errorReceiver);
+			if (outline == null || errorReceiver.hadError()) {
+				return null;
+			}
+			model.codeModel.build(opt.createCodeWriter());
+		} finally {
+			thread.setContextClassLoader(contextClassLoader);
+		}
+		final List<String> systemIds = new ArrayList<>();
+		for (final InputSource grammar : opt.getGrammars()) {
+			systemIds.add(grammar.getSystemId());
+		}
+		for (final InputSource bindFile : opt.getBindFiles()) {
+			systemIds.add(bindFile.getSystemId());
+		}
+		systemIds.addAll(entityResolver.getSystemIds());
+		final Map<String, String> dependencies = new LinkedHashMap<>();
+		for (final String systemId : systemIds) {
+			final String contentHash = hashContent(systemId);
+			if (contentHash == null) {
+				// a dependency that cannot be read again can never be validated, so don't cache
+				return Collections.emptyMap();
+			}
+			dependencies.put(systemId, contentHash);
+		}
+		return dependencies;
+	}
+
+	static String hashContent(final String systemId) {
+		if (systemId == null) {
+			return null;
+		}
+		try (final InputStream inputStream = new URL(systemId).openStream()) {
+			final MessageDigest digest = newDigest();
+			final byte[] buffer = new byte[8192];
+			int read;
+			while ((read = inputStream.read(buffer)) >= 0) {
+				digest.update(buffer, 0, read);
+			}
+			return toHex(digest.digest());
+		} catch (final IOException e) {
+			return null;
+		}
+	}
+
+	private static String hash(final String s) {
+		return toHex(newDigest().digest(s.getBytes(StandardCharsets.UTF_8)));
+	}
+
+	private static MessageDigest newDigest() {
+		try {
+			return MessageDigest.getInstance("SHA-256");
+		} catch (final NoSuchAlgorithmException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	private static String toHex(final byte[] bytes) {
+		final StringBuilder sb = new StringBuilder(bytes.length * 2);
+		for (final byte b : bytes) {
+			sb.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+		}
+		return sb.toString();
+	}
+
+	private static void copy(final Path source, final Path target) throws IOException {
+		Files.walkFileTree(source, new SimpleFileVisitor<Path>() {
+			@Override
+			public FileVisitResult preVisitDirectory(final Path dir, final BasicFileAttributes attrs) throws IOException {
+				Files.createDirectories(target.resolve(source.relativize(dir)));
+				return FileVisitResult.CONTINUE;
+			}
+
+			@Override
+			public FileVisitResult visitFile(final Path file, final BasicFileAttributes attrs) throws IOException {
+				Files.copy(file, target.resolve(source.relativize(file)), StandardCopyOption.REPLACE_EXISTING);
+				return FileVisitResult.CONTINUE;
+			}
+		});
+	}
+
+	private static void delete(final Path path) {
+		if (Files.exists(path)) {
+			try {
+				Files.walkFileTree(path, new SimpleFileVisitor<Path>() {
+					@Override
+					public FileVisitResult visitFile(final Path file, final BasicFileAttributes attrs) throws IOException {
+						Files.delete(file);
+						return FileVisitResult.CONTINUE;
+					}
+
+					@Override
+					public FileVisitResult postVisitDirectory(final Path dir, final IOException exc) throws IOException {
+						Files.delete(dir);
+						return FileVisitResult.CONTINUE;
+					}
+				});
+			} catch (final IOException e) {
+				// stale cache directories are overwritten the next time
+			}
+		}
+	}
+
+	/**
+	 * Result of a generation
+	 */
+	public static class Result {
+		private final boolean cached;
+		private final boolean successful;
+		private final List<String> messages;
+
+		Result(final boolean cached, final boolean successful, final List<String> messages) {
+			this.cached = cached;
+			this.successful = successful;
+			this.messages = Collections.unmodifiableList(messages);
+		}
+
+		/**
+		 * @return true if the output has been copied from the cache without running XJC
+		 */
+		public boolean isCached() {
+			return this.cached;
+		}
+
+		/**
+		 * @return false if XJC or a plugin reported an error, and no output has been written
+		 */
+		public boolean isSuccessful() {
+			return this.successful;
+		}
+
+		/**
+		 * @return Errors and warnings reported by XJC
+		 */
+		public List<String> getMessages() {
+			return this.messages;
+		}
+	}
+
+	private static class CacheEntry {
+		private final File entryDir;
+		private final Map<String, String> dependencies;
+		private final List<String> messages;
+
+		CacheEntry(final File entryDir, final Map<String, String> dependencies, final List<String> messages) {
+			this.entryDir = entryDir;
+			this.dependencies = dependencies;
+			this.messages = new ArrayList<>(messages);
+		}
+
+		boolean isUpToDate() {
+			if (this.dependencies.isEmpty() || !new File(this.entryDir, GenerationService.OUTPUT_DIR_NAME).isDirectory()) {
+				return false;
+			}
+			for (final Map.Entry<String, String> dependency : this.dependencies.entrySet()) {
+				if (!dependency.getValue().equals(hashContent(dependency.getKey()))) {
+					return false;
+				}
+			}
+			return true;
+		}
+
+		void copyTo(final File targetDir, final File episodeFile) throws IOException {
+			copy(new File(this.entryDir, GenerationService.OUTPUT_DIR_NAME).toPath(), targetDir.toPath());
+			final File cachedEpisodeFile = new File(this.entryDir, GenerationService.EPISODE_FILE_NAME);
+			if (episodeFile != null && cachedEpisodeFile.isFile()) {
+				Files.createDirectories(episodeFile.getAbsoluteFile().getParentFile().toPath());
+				Files.copy(cachedEpisodeFile.toPath(), episodeFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+			}
+		}
+	}
+
+	private static class MessageCollector implements ErrorListener {
+		private final List<String> messages;
+
+		MessageCollector(final List<String> messages) {
+			this.messages = messages;
+		}
+
+		private void add(final String severity, final SAXParseException exception) {
+			this.messages.add(severity + ": " + exception.getMessage() + (exception.getSystemId() != null ? " (" + exception.getSystemId() + ":" + exception.getLineNumber() + ")" : ""));
+		}
+
+		@Override
+		public void error(final SAXParseException exception) {
+			add("ERROR", exception);
+		}
+
+		@Override
+		public void fatalError(final SAXParseException exception) {
+			add("FATAL", exception);
+		}
+
+		@Override
+		public void warning(final SAXParseException exception) {
+			add("WARNING", exception);
+		}
+
+		@Override
+		public void info(final SAXParseException exception) {
+		}
+	}
+}
@@ -0,0 +1,75 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2014 Klemm Software Consulting, Mirko Klemm
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.kscs.util.plugins.xjc.service;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+import org.xml.sax.EntityResolver;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+
+/**
+ * Records the system IDs of all documents XJC resolves while
+ * loading the schema, i.e. all imported and included documents.
+ */
+class RecordingEntityResolver implements EntityResolver {
+	private final EntityResolver delegate;
+	private final Set<String> systemIds = new LinkedHashSet<>();
+
+	RecordingEntityResolver(final EntityResolver delegate) {
+		this.delegate = delegate;
+	}
+
+	@Override
+	public InputSource resolveEntity(final String publicId, final String systemId) throws SAXException, IOException {
+		final InputSource inputSource = this.delegate != null ? this.delegate.resolveEntity(publicId, systemId) : null;
+		if (inputSource != null && inputSource.getSystemId() != null) {
+			record(inputSource.getSystemId());
+		} else {
+			record(systemId);
+		}
+		return inputSource;
+	}
+
+	private void record(final String systemId) {
+		// the schema validator asks for schema locations before they are resolved
+		// against the importing document, those are recorded when XSOM resolves them
+		try {
+			if (systemId != null && new URI(systemId).isAbsolute()) {
+				this.systemIds.add(systemId);
+			}
+		} catch (final URISyntaxException e) {
+			// not a document XJC can read either
+		}
+	}
+
+	Set<String> getSystemIds() {
+		return this.systemIds;
+	}
+}
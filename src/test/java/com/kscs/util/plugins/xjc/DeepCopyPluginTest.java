@@ -0,0 +1,119 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2014 Klemm Software Consulting, Mirko Klemm
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.kscs.util.plugins.xjc;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import com.kscs.util.plugins.xjc.service.GenerationService;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests generation of copy profiles
+ */
+public class DeepCopyPluginTest {
+	private static final String SCHEMA = "<schema xmlns=\"http://www.w3.org/2001/XMLSchema\" xmlns:t=\"urn:profile\" targetNamespace=\"urn:profile\" elementFormDefault=\"qualified\">"
+			+ "<complexType name=\"Item\"><sequence><element name=\"name\" type=\"string\"/><element name=\"value\" type=\"int\"/></sequence></complexType>"
+			+ "<complexType name=\"Container\"><sequence><element name=\"title\" type=\"string\"/>"
+			+ "<element name=\"item\" type=\"t:Item\" maxOccurs=\"unbounded\"/></sequence></complexType>"
+			+ "<element name=\"container\" type=\"t:Container\"/></schema>";
+	private static final String CONTAINER_PATH = "profile/Container.java";
+	private File workDir;
+	private File schemaFile;
+
+	@BeforeClass
+	public static void disableXjcAssertions() {
+		DeepCopyPluginTest.class.getClassLoader().setPackageAssertionStatus("com.sun.tools.xjc", false);
+	}
+
+	@Before
+	public void createSchema() throws Exception {
+		this.workDir = Files.createTempDirectory("rich-contract-copy").toFile();
+		this.schemaFile = new File(this.workDir, "profile.xsd");
+		Files.write(this.schemaFile.toPath(), DeepCopyPluginTest.SCHEMA.getBytes(StandardCharsets.UTF_8));
+	}
+
+	@After
+	public void deleteWorkDir() {
+		delete(this.workDir);
+	}
+
+	private static void delete(final File file) {
+		final File[] children = file.listFiles();
+		if (children != null) {
+			for (final File child : children) {
+				delete(child);
+			}
+		}
+		file.delete();
+	}
+
+	private GenerationService.Result generate(final String... pluginArgs) throws Exception {
+		final List<String> args = new ArrayList<String>();
+		args.add(this.schemaFile.getAbsolutePath());
+		args.addAll(Arrays.asList(pluginArgs));
+		return new GenerationService(new File(this.workDir, "cache"), 4).generate(new File(this.workDir, "out"), args);
+	}
+
+	@Test
+	public void testProfileWithoutPartialCopyIsRejected() throws Exception {
+		final GenerationService.Result result = generate("-Xcopy", "-partial=n", "-copyOnlyProfiles=Summary=title,item.name");
+		assertFalse(result.isSuccessful());
+		assertTrue(result.getMessages().toString(), result.getMessages().toString().contains("-partial=n"));
+	}
+
+	@Test
+	public void testCompactProfileDoesNotParseTreeOnCopy() throws Exception {
+		final GenerationService.Result result = generate("-Xcopy", "-copyOnlyProfiles=Summary=title,item.name", "-Xrich-contract-compact");
+		assertTrue(result.getMessages().toString(), result.isSuccessful());
+		final List<String> lines = Files.readAllLines(new File(this.workDir, "out/" + DeepCopyPluginTest.CONTAINER_PATH).toPath(), StandardCharsets.UTF_8);
+		boolean inProfile = false;
+		boolean hasProfile = false;
+		for (final String line : lines) {
+			if (line.contains("PropertyTree.parse(")) {
+				assertTrue(line, line.contains("static"));
+			}
+			if (line.contains(" copyProfileSummary() {")) {
+				inProfile = hasProfile = true;
+			} else if (inProfile && line.trim().equals("}") && !line.startsWith("        ")) {
+				inProfile = false;
+			} else if (inProfile) {
+				// items are copied by the method generated for the sub-profile, not with a tree evaluated at runtime
+				assertFalse(line, line.contains("copyAll("));
+			}
+		}
+		assertTrue(hasProfile);
+	}
+}
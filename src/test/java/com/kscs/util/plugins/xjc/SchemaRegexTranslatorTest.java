@@ -0,0 +1,91 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2014 Klemm Software Consulting, Mirko Klemm
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+
+package com.kscs.util.plugins.xjc;
+
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests translation of XML Schema regular expressions
+ */
+public class SchemaRegexTranslatorTest {
+	@Test
+	public void testSubtraction() {
+		assertMatches("[a-z-[aeiou]]+", "bcd", "xyz");
+		assertNotMatches("[a-z-[aeiou]]+", "bad", "BCD", "");
+		assertMatches("[^a-z-[0-9]]", "A", "-");
+		assertNotMatches("[^a-z-[0-9]]", "a", "5");
+		assertMatches("[a-z-[aeiou-[e]]]", "b", "e");
+		assertNotMatches("[a-z-[aeiou-[e]]]", "a");
+	}
+
+	@Test
+	public void testLiteralAnchors() {
+		assertMatches("^[0-9]+$", "^12$");
+		assertNotMatches("^[0-9]+$", "12");
+		assertMatches("a|^b", "a", "^b");
+		assertMatches("[$^]+", "$^");
+	}
+
+	@Test
+	public void testEscapes() {
+		assertMatches("\\i\\c*", "a-b.c", "_x1", "été");
+		assertNotMatches("\\i\\c*", "1a", "-a", "a b");
+		assertMatches("\\d+", "12", "٣");
+		assertMatches("\\p{IsBasicLatin}+", "abc");
+		assertNotMatches("\\p{IsBasicLatin}+", "ä");
+		assertMatches("[\\p{Lu}\\d]+", "A1");
+		assertMatches("[^\\s\\d]+", "ab");
+		assertNotMatches("[^\\s\\d]+", "a b", "a1");
+		assertMatches("a.c", "abc");
+		assertNotMatches("a.c", "a\nc");
+		assertMatches("[+\\-*/&]", "&", "-");
+	}
+
+	@Test(expected = PatternSyntaxException.class)
+	public void testInvalid() {
+		SchemaRegexTranslator.translate("[a-z");
+	}
+
+	private static void assertMatches(final String schemaRegex, final String... values) {
+		final Pattern pattern = Pattern.compile(SchemaRegexTranslator.translate(schemaRegex));
+		for (final String value : values) {
+			assertTrue(schemaRegex + " should match \"" + value + "\"", pattern.matcher(value).matches());
+		}
+	}
+
+	private static void assertNotMatches(final String schemaRegex, final String... values) {
+		final Pattern pattern = Pattern.compile(SchemaRegexTranslator.translate(schemaRegex));
+		for (final String value : values) {
+			assertFalse(schemaRegex + " should not match \"" + value + "\"", pattern.matcher(value).matches());
+		}
+	}
+}
@@ -0,0 +1,72 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2014 Klemm Software Consulting, Mirko Klemm
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+
+package com.kscs.util.plugins.xjc;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+
+import com.kscs.util.jaxb._interface.Interface;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests caching of upstream episode files
+ */
+public class UpstreamEpisodeCacheTest {
+	private static final String EPISODE = "<bindings xmlns=\"http://java.sun.com/xml/ns/jaxb\" xmlns:kscs=\"http://www.kscs.com/util/jaxb/bindings\" xmlns:tns=\"urn:test\" version=\"2.1\">"
+			+ "<bindings scd=\"group::tns:g%d\"><kscs:interface ref=\"com.example.G%d\"/></bindings></bindings>";
+
+	@Test
+	public void testCacheIsBounded() throws Exception {
+		final File dir = Files.createTempDirectory("episode-cache").toFile();
+		try {
+			final File first = writeEpisode(dir, 0);
+			final List<Interface> interfaces = UpstreamEpisodeCache.getInterfaces(first.toURI().toURL());
+			assertEquals("com.example.G0", interfaces.get(0).getName());
+			assertSame(interfaces, UpstreamEpisodeCache.getInterfaces(first.toURI().toURL()));
+			for (int i = 1; i <= UpstreamEpisodeCache.MAX_ENTRIES * 2; i++) {
+				UpstreamEpisodeCache.getInterfaces(writeEpisode(dir, i).toURI().toURL());
+			}
+			assertTrue(UpstreamEpisodeCache.size() <= UpstreamEpisodeCache.MAX_ENTRIES);
+		} finally {
+			for (final File file : dir.listFiles()) {
+				file.delete();
+			}
+			dir.delete();
+		}
+	}
+
+	private static File writeEpisode(final File dir, final int index) throws Exception {
+		final File file = new File(dir, "episode" + index + ".episode");
+		Files.write(file.toPath(), String.format(UpstreamEpisodeCacheTest.EPISODE, index, index).getBytes(StandardCharsets.UTF_8));
+		return file;
+	}
+}
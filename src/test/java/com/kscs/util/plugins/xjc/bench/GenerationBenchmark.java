@@ -0,0 +1,262 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2014 Klemm Software Consulting, Mirko Klemm
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.kscs.util.plugins.xjc.bench;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.sun.tools.xjc.Driver;
+
+/**
+ * Runs XJC in-process on synthetic schemas created by {@link SyntheticSchemaGenerator},
+ * once for each configured plugin combination, and prints generation time and
+ * peak heap usage as CSV to standard output.
+ *
+ * Run with {@code mvn -Pbenchmark test}, parameters can be set via the
+ * {@code benchmark.*} properties defined in the "benchmark" profile of the POM.
+ * To see scaling behaviour, specify several comma-separated type counts.
+ *
+ * Arguments are given as "name=value" pairs:
+ * <ul>
+ *     <li>typeCounts: Comma-separated list of type counts, e.g. "100,200,400"</li>
+ *     <li>depth, attributeGroups, modelGroups, choiceWidth, modules, groupMembers:
+ *     see {@link SyntheticSchemaGenerator}</li>
+ *     <li>iterations: Number of measured iterations per combination</li>
+ *     <li>warmup: Number of unmeasured warmup iterations per combination</li>
+ *     <li>combinations: Semicolon-separated list of combinations, each being
+ *     a space-separated list of XJC plugin arguments. Default is no plugin,
+ *     each plugin alone, and all plugins that can be used together.</li>
+ * </ul>
+ */
+public class GenerationBenchmark {
+	public static final List<String> ALL_PLUGINS = Collections.unmodifiableList(Arrays.asList(
+			"-Xfluent-builder", "-Ximmutable", "-Xgroup-contract", "-Xclone", "-Xcopy", "-Xconstrained-properties", "-Xmeta", "-Xmodifier", "-Xstax", "-Xbinary", "-Xdiff", "-Xjson"));
+	public static final List<String> COMPATIBLE_PLUGINS = Collections.unmodifiableList(Arrays.asList(
+			"-Xfluent-builder", "-Ximmutable", "-Xgroup-contract", "-Xclone", "-Xcopy", "-Xmeta", "-Xmodifier", "-Xstax", "-Xbinary", "-Xdiff", "-Xjson"));
+
+	private final SyntheticSchemaGenerator schemaGenerator;
+	private final File workDir;
+
+	public GenerationBenchmark(final SyntheticSchemaGenerator schemaGenerator, final File workDir) {
+		this.schemaGenerator = schemaGenerator;
+		this.workDir = workDir;
+	}
+
+	public static void main(final String[] args) throws IOException {
+		final Map<String, String> params = new LinkedHashMap<>();
+		params.put("typeCounts", "100,200,400");
+		params.put("depth", "3");
+		params.put("attributeGroups", "2");
+		params.put("modelGroups", "2");
+		params.put("choiceWidth", "3");
+		params.put("modules", "1");
+		params.put("groupMembers", "3");
+		params.put("iterations", "3");
+		params.put("warmup", "1");
+		params.put("combinations", "");
+		for (final String arg : args) {
+			final int eq = arg.indexOf('=');
+			if (eq > 0 && eq < arg.length() - 1) {
+				params.put(arg.substring(0, eq), arg.substring(eq + 1));
+			}
+		}
+		final List<List<String>> combinations = parseCombinations(params.get("combinations"));
+		final int iterations = Integer.parseInt(params.get("iterations"));
+		final int warmup = Integer.parseInt(params.get("warmup"));
+		System.out.println("types,depth,attributeGroups,modelGroups,choiceWidth,modules,combination,iteration,exitCode,millis,peakHeapBytes");
+		for (final String typeCount : params.get("typeCounts").split(",")) {
+			final SyntheticSchemaGenerator schemaGenerator = new SyntheticSchemaGenerator(
+					Integer.parseInt(typeCount.trim()),
+					Integer.parseInt(params.get("depth")),
+					Integer.parseInt(params.get("attributeGroups")),
+					Integer.parseInt(params.get("modelGroups")),
+					Integer.parseInt(params.get("choiceWidth")),
+					Integer.parseInt(params.get("modules")),
+					Integer.parseInt(params.get("groupMembers")));
+			final File workDir = Files.createTempDirectory("rich-contract-bench").toFile();
+			try {
+				final GenerationBenchmark benchmark = new GenerationBenchmark(schemaGenerator, workDir);
+				for (final List<String> combination : combinations) {
+					for (int i = 0; i < warmup; i++) {
+						benchmark.run(combination);
+					}
+					for (int i = 0; i < iterations; i++) {
+						final Result result = benchmark.run(combination);
+						System.out.println(schemaGenerator.getTypeCount() + "," + schemaGenerator.getInheritanceDepth() + ","
+								+ schemaGenerator.getAttributeGroupFanOut() + "," + schemaGenerator.getModelGroupFanOut() + ","
+								+ schemaGenerator.getChoiceWidth() + "," + schemaGenerator.getModuleCount() + ","
+								+ "\"" + result.getCombination() + "\"," + i + "," + result.getExitCode() + ","
+								+ result.getMillis() + "," + result.getPeakHeapBytes());
+					}
+				}
+			} finally {
+				delete(workDir);
+			}
+		}
+	}
+
+	static List<List<String>> parseCombinations(final String spec) {
+		final List<List<String>> combinations = new ArrayList<>();
+		if (spec == null || spec.trim().isEmpty()) {
+			combinations.add(Collections.<String>emptyList());
+			for (final String plugin : GenerationBenchmark.ALL_PLUGINS) {
+				combinations.add(Collections.singletonList(plugin));
+			}
+			combinations.add(GenerationBenchmark.COMPATIBLE_PLUGINS);
+		} else {
+			for (final String combination : spec.split(";")) {
+				final String trimmed = combination.trim();
+				combinations.add(trimmed.isEmpty() ? Collections.<String>emptyList() : Arrays.asList(trimmed.split("\\s+")));
+			}
+		}
+		return combinations;
+	}
+
+	/**
+	 * Generates the schema and runs XJC once with the given plugin arguments.
+	 * @param pluginArgs XJC plugin arguments
+	 * @return The result of the run
+	 * @throws IOException if the schema or the generated code cannot be written
+	 */
+	public Result run(final List<String> pluginArgs) throws IOException {
+		final File schemaDir = new File(this.workDir, "xsd");
+		final File outputDir = new File(this.workDir, "out");
+		delete(schemaDir);
+		delete(outputDir);
+		final List<File> schemaFiles = this.schemaGenerator.generate(schemaDir);
+		// the group-contract episode file is written to META-INF, which XJC doesn't create by itself
+		if (!new File(outputDir, "META-INF").mkdirs()) {
+			throw new IOException("Cannot create directory " + outputDir);
+		}
+		final List<String> args = new ArrayList<>();
+		args.add("-quiet");
+		args.add("-extension");
+		args.add("-d");
+		args.add(outputDir.getAbsolutePath());
+		for (final File schemaFile : schemaFiles) {
+			args.add(schemaFile.getAbsolutePath());
+		}
+		args.addAll(pluginArgs);
+		final List<MemoryPoolMXBean> heapPools = new ArrayList<>();
+		for (final MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+			if (pool.getType() == MemoryType.HEAP) {
+				heapPools.add(pool);
+			}
+		}
+		System.gc();
+		for (final MemoryPoolMXBean pool : heapPools) {
+			pool.resetPeakUsage();
+		}
+		final ByteArrayOutputStream messages = new ByteArrayOutputStream();
+		final PrintStream messageStream = new PrintStream(messages, true);
+		final long start = System.nanoTime();
+		final int exitCode;
+		try {
+			exitCode = Driver.run(args.toArray(new String[args.size()]), messageStream, messageStream);
+		} catch (final Exception e) {
+			throw new IOException(e);
+		}
+		final long millis = (System.nanoTime() - start) / 1000000L;
+		long peakHeapBytes = 0;
+		for (final MemoryPoolMXBean pool : heapPools) {
+			peakHeapBytes += pool.getPeakUsage().getUsed();
+		}
+		return new Result(String.join(" ", pluginArgs), exitCode, millis, peakHeapBytes, outputDir, messages.toString());
+	}
+
+	static void delete(final File file) {
+		final File[] children = file.listFiles();
+		if (children != null) {
+			for (final File child : children) {
+				delete(child);
+			}
+		}
+		file.delete();
+	}
+
+	/**
+	 * Result of a single XJC run
+	 */
+	public static class Result {
+		private final String combination;
+		private final int exitCode;
+		private final long millis;
+		private final long peakHeapBytes;
+		private final File outputDir;
+		private final String messages;
+
+		Result(final String combination, final int exitCode, final long millis, final long peakHeapBytes, final File outputDir, final String messages) {
+			this.combination = combination;
+			this.exitCode = exitCode;
+			this.millis = millis;
+			this.peakHeapBytes = peakHeapBytes;
+			this.outputDir = outputDir;
+			this.messages = messages;
+		}
+
+		public String getCombination() {
+			return this.combination;
+		}
+
+		public int getExitCode() {
+			return this.exitCode;
+		}
+
+		public long getMillis() {
+			return this.millis;
+		}
+
+		/**
+		 * @return Sum of the peak usages of all heap memory pools during the run.
+		 * Since the pools may have peaked at different times, this is an upper bound.
+		 */
+		public long getPeakHeapBytes() {
+			return this.peakHeapBytes;
+		}
+
+		public File getOutputDir() {
+			return this.outputDir;
+		}
+
+		/**
+		 * @return Status and error messages written by XJC
+		 */
+		public String getMessages() {
+			return this.messages;
+		}
+	}
+}
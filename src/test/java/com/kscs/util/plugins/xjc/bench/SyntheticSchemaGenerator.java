@@ -0,0 +1,240 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2014 Klemm Software Consulting, Mirko Klemm
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.kscs.util.plugins.xjc.bench;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Generates synthetic XML schemas of configurable size and shape,
+ * to measure how generation time and memory of the plugins scale
+ * with the schema.
+ *
+ * Types are arranged in inheritance chains of {@link #inheritanceDepth}
+ * types each. Every type references {@link #attributeGroupFanOut} attribute groups
+ * and {@link #modelGroupFanOut} model groups, which are shared by all types at the
+ * same inheritance level, so that every group has many implementing classes.
+ * Every type also contains a choice of {@link #choiceWidth} elements referencing other types.
+ *
+ * Types can be split into {@link #moduleCount} schema files with separate namespaces,
+ * each of them importing all preceding ones, the same way a schema would be split into
+ * several modules compiled with episode files. References only point to types in
+ * the same or a preceding module.
+ */
+public class SyntheticSchemaGenerator {
+	public static final String NAMESPACE_PREFIX = "http://www.kscs.com/jaxb2/contract/synthetic/m";
+	private static final String FILE_PREFIX = "synthetic-m";
+
+	private final int typeCount;
+	private final int inheritanceDepth;
+	private final int attributeGroupFanOut;
+	private final int modelGroupFanOut;
+	private final int choiceWidth;
+	private final int moduleCount;
+	private final int groupMemberCount;
+
+	public SyntheticSchemaGenerator(final int typeCount, final int inheritanceDepth, final int attributeGroupFanOut, final int modelGroupFanOut, final int choiceWidth, final int moduleCount, final int groupMemberCount) {
+		if (typeCount < 1 || inheritanceDepth < 1 || moduleCount < 1 || moduleCount > typeCount) {
+			throw new IllegalArgumentException("typeCount, inheritanceDepth and moduleCount must be positive, and moduleCount must not exceed typeCount");
+		}
+		this.typeCount = typeCount;
+		this.inheritanceDepth = inheritanceDepth;
+		this.attributeGroupFanOut = attributeGroupFanOut;
+		this.modelGroupFanOut = modelGroupFanOut;
+		this.choiceWidth = choiceWidth;
+		this.moduleCount = moduleCount;
+		this.groupMemberCount = groupMemberCount;
+	}
+
+	public int getTypeCount() {
+		return this.typeCount;
+	}
+
+	public int getInheritanceDepth() {
+		return this.inheritanceDepth;
+	}
+
+	public int getAttributeGroupFanOut() {
+		return this.attributeGroupFanOut;
+	}
+
+	public int getModelGroupFanOut() {
+		return this.modelGroupFanOut;
+	}
+
+	public int getChoiceWidth() {
+		return this.choiceWidth;
+	}
+
+	public int getModuleCount() {
+		return this.moduleCount;
+	}
+
+	public int getGroupMemberCount() {
+		return this.groupMemberCount;
+	}
+
+	/**
+	 * Writes the schema files to the given directory.
+	 * @param targetDir Directory to write the schema files to, will be created if it doesn't exist
+	 * @return The schema files, one per module, in module order
+	 * @throws IOException if a file cannot be written
+	 */
+	public List<File> generate(final File targetDir) throws IOException {
+		if (!targetDir.isDirectory() && !targetDir.mkdirs()) {
+			throw new IOException("Cannot create directory " + targetDir);
+		}
+		final List<File> files = new ArrayList<>(this.moduleCount);
+		for (int module = 0; module < this.moduleCount; module++) {
+			final File file = new File(targetDir, SyntheticSchemaGenerator.FILE_PREFIX + module + ".xsd");
+			try (final PrintWriter writer = new PrintWriter(new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8))) {
+				writeModule(writer, module);
+			}
+			files.add(file);
+		}
+		return files;
+	}
+
+	private void writeModule(final PrintWriter w, final int module) {
+		w.println("<?xml version=\"1.0\" encoding=\"UTF-8\"?>");
+		w.println("<xs:schema xmlns:xs=\"http://www.w3.org/2001/XMLSchema\" elementFormDefault=\"qualified\"");
+		w.println("\t\ttargetNamespace=\"" + namespace(module) + "\"");
+		for (int m = 0; m <= module; m++) {
+			w.println("\t\txmlns:m" + m + "=\"" + namespace(m) + "\"");
+		}
+		w.println("\t\t>");
+		for (int m = 0; m < module; m++) {
+			w.println("\t<xs:import namespace=\"" + namespace(m) + "\" schemaLocation=\"" + SyntheticSchemaGenerator.FILE_PREFIX + m + ".xsd\"/>");
+		}
+		for (int level = 0; level < this.inheritanceDepth; level++) {
+			for (int f = 0; f < this.attributeGroupFanOut; f++) {
+				final int group = level * this.attributeGroupFanOut + f;
+				w.println("\t<xs:attributeGroup name=\"AttributeGroup" + group + "\">");
+				for (int i = 0; i < this.groupMemberCount; i++) {
+					w.println("\t\t<xs:attribute name=\"ag" + group + "a" + i + "\" type=\"" + (i % 2 == 0 ? "xs:string" : "xs:int") + "\"/>");
+				}
+				w.println("\t</xs:attributeGroup>");
+			}
+			for (int f = 0; f < this.modelGroupFanOut; f++) {
+				final int group = level * this.modelGroupFanOut + f;
+				w.println("\t<xs:group name=\"ModelGroup" + group + "\">");
+				w.println("\t\t<xs:sequence>");
+				for (int i = 0; i < this.groupMemberCount; i++) {
+					w.println("\t\t\t<xs:element name=\"mg" + group + "e" + i + "\" type=\"" + (i % 2 == 0 ? "xs:string" : "xs:dateTime") + "\" minOccurs=\"0\"" + (i % 3 == 2 ? " maxOccurs=\"unbounded\"" : "") + "/>");
+				}
+				w.println("\t\t</xs:sequence>");
+				w.println("\t</xs:group>");
+			}
+		}
+		final int firstType = firstType(module);
+		final int lastType = firstType(module + 1);
+		for (int type = firstType; type < lastType; type++) {
+			writeType(w, module, type);
+		}
+		w.println("</xs:schema>");
+	}
+
+	private void writeType(final PrintWriter w, final int module, final int type) {
+		final int level = type % this.inheritanceDepth;
+		final String indent;
+		w.println("\t<xs:element name=\"type" + type + "\" type=\"" + typeRef(type) + "\"/>");
+		w.println("\t<xs:complexType name=\"Type" + type + "\">");
+		if (level > 0) {
+			w.println("\t\t<xs:complexContent>");
+			w.println("\t\t\t<xs:extension base=\"" + typeRef(type - 1) + "\">");
+			indent = "\t\t\t\t";
+		} else {
+			indent = "\t\t";
+		}
+		w.println(indent + "<xs:sequence>");
+		w.println(indent + "\t<xs:element name=\"t" + type + "Name\" type=\"xs:string\"/>");
+		w.println(indent + "\t<xs:element name=\"t" + type + "Value\" type=\"xs:int\" minOccurs=\"0\" maxOccurs=\"unbounded\"/>");
+		for (int f = 0; f < this.modelGroupFanOut; f++) {
+			w.println(indent + "\t<xs:group ref=\"m" + module + ":ModelGroup" + (level * this.modelGroupFanOut + f) + "\"/>");
+		}
+		if (this.choiceWidth > 0) {
+			w.println(indent + "\t<xs:choice minOccurs=\"0\">");
+			for (int c = 0; c < this.choiceWidth; c++) {
+				w.println(indent + "\t\t<xs:element name=\"t" + type + "Choice" + c + "\" type=\"" + typeRef(referencedType(type, c)) + "\"/>");
+			}
+			w.println(indent + "\t</xs:choice>");
+		}
+		w.println(indent + "\t<xs:element name=\"t" + type + "Child\" type=\"" + typeRef(referencedType(type, this.choiceWidth)) + "\" minOccurs=\"0\" maxOccurs=\"unbounded\"/>");
+		w.println(indent + "</xs:sequence>");
+		for (int f = 0; f < this.attributeGroupFanOut; f++) {
+			w.println(indent + "<xs:attributeGroup ref=\"m" + module + ":AttributeGroup" + (level * this.attributeGroupFanOut + f) + "\"/>");
+		}
+		w.println(indent + "<xs:attribute name=\"t" + type + "Label\" type=\"xs:string\"/>");
+		if (level > 0) {
+			w.println("\t\t\t</xs:extension>");
+			w.println("\t\t</xs:complexContent>");
+		}
+		w.println("\t</xs:complexType>");
+	}
+
+	/**
+	 * Picks a deterministic, pseudo-random type that is declared
+	 * in the same or a preceding module.
+	 */
+	private int referencedType(final int type, final int index) {
+		return (type * 31 + index * 17) % (type + 1);
+	}
+
+	private int firstType(final int module) {
+		return (int)((long)module * this.typeCount / this.moduleCount);
+	}
+
+	private int moduleOf(final int type) {
+		int module = (int)((long)type * this.moduleCount / this.typeCount);
+		while (firstType(module + 1) <= type) {
+			module++;
+		}
+		while (firstType(module) > type) {
+			module--;
+		}
+		return module;
+	}
+
+	private String typeRef(final int type) {
+		return "m" + moduleOf(type) + ":Type" + type;
+	}
+
+	private static String namespace(final int module) {
+		return SyntheticSchemaGenerator.NAMESPACE_PREFIX + module;
+	}
+
+	@Override
+	public String toString() {
+		return "types=" + this.typeCount + " depth=" + this.inheritanceDepth + " attributeGroups=" + this.attributeGroupFanOut
+				+ " modelGroups=" + this.modelGroupFanOut + " choiceWidth=" + this.choiceWidth + " modules=" + this.moduleCount
+				+ " groupMembers=" + this.groupMemberCount;
+	}
+}
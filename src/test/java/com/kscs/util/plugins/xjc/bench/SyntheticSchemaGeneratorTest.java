@@ -0,0 +1,79 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2014 Klemm Software Consulting, Mirko Klemm
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.kscs.util.plugins.xjc.bench;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Runs all plugins once on a small synthetic schema
+ */
+public class SyntheticSchemaGeneratorTest {
+	private File workDir;
+
+	@BeforeClass
+	public static void disableXjcAssertions() {
+		// XJC's BeanGenerator asserts it isn't asked for its classes while generating them, which
+		// the group-contract plugin does. XJC is never run with assertions enabled outside of tests.
+		SyntheticSchemaGeneratorTest.class.getClassLoader().setPackageAssertionStatus("com.sun.tools.xjc", false);
+	}
+
+	@Before
+	public void createWorkDir() throws Exception {
+		this.workDir = Files.createTempDirectory("rich-contract-bench").toFile();
+	}
+
+	@After
+	public void deleteWorkDir() {
+		GenerationBenchmark.delete(this.workDir);
+	}
+
+	@Test
+	public void testGenerateSchemaModules() throws Exception {
+		final SyntheticSchemaGenerator generator = new SyntheticSchemaGenerator(10, 3, 2, 2, 3, 3, 3);
+		final List<File> files = generator.generate(new File(this.workDir, "xsd"));
+		assertEquals(3, files.size());
+		for (final File file : files) {
+			assertTrue(file.isFile());
+		}
+	}
+
+	@Test
+	public void testRunAllCompatiblePlugins() throws Exception {
+		final GenerationBenchmark benchmark = new GenerationBenchmark(new SyntheticSchemaGenerator(12, 3, 2, 2, 3, 2, 3), this.workDir);
+		final GenerationBenchmark.Result result = benchmark.run(GenerationBenchmark.COMPATIBLE_PLUGINS);
+		assertEquals(result.getMessages(), 0, result.getExitCode());
+		assertTrue(new File(result.getOutputDir(), "com/kscs/jaxb2/contract/synthetic/m0/Type0.java").isFile());
+	}
+}
@@ -0,0 +1,170 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2014 Klemm Software Consulting, Mirko Klemm
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.kscs.util.plugins.xjc.service;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.List;
+
+import com.kscs.util.plugins.xjc.bench.SyntheticSchemaGenerator;
+import com.sun.tools.xjc.BadCommandLineException;
+import org.junit.After;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests caching of generated output
+ */
+public class GenerationServiceTest {
+	private static final String TYPE_0_PATH = "com/kscs/jaxb2/contract/synthetic/m0/Type0.java";
+	private File workDir;
+
+	@BeforeClass
+	public static void disableXjcAssertions() {
+		GenerationServiceTest.class.getClassLoader().setPackageAssertionStatus("com.sun.tools.xjc", false);
+	}
+
+	@Before
+	public void createWorkDir() throws Exception {
+		this.workDir = Files.createTempDirectory("rich-contract-service").toFile();
+	}
+
+	@After
+	public void deleteWorkDir() {
+		delete(this.workDir);
+	}
+
+	private static void delete(final File file) {
+		final File[] children = file.listFiles();
+		if (children != null) {
+			for (final File child : children) {
+				delete(child);
+			}
+		}
+		file.delete();
+	}
+
+	@Test
+	public void testRepeatedGenerationIsCached() throws Exception {
+		final List<File> schemaFiles = new SyntheticSchemaGenerator(6, 2, 1, 1, 2, 2, 2).generate(new File(this.workDir, "xsd"));
+		final GenerationService service = new GenerationService(new File(this.workDir, "cache"), 4);
+		// only the second module is given, the first one is imported by it
+		final List<String> args = Arrays.asList(schemaFiles.get(1).getAbsolutePath(), "-Xfluent-builder", "-Xcopy");
+
+		final GenerationService.Result first = service.generate(new File(this.workDir, "out1"), args);
+		assertFalse(first.getMessages().toString(), first.isCached());
+		assertTrue(first.isSuccessful());
+		assertTrue(new File(this.workDir, "out1/" + GenerationServiceTest.TYPE_0_PATH).isFile());
+
+		final GenerationService.Result second = service.generate(new File(this.workDir, "out2"), args);
+		assertTrue(second.isCached());
+		assertTrue(second.isSuccessful());
+		assertTrue(new File(this.workDir, "out2/" + GenerationServiceTest.TYPE_0_PATH).isFile());
+
+		try (final OutputStream os = new FileOutputStream(schemaFiles.get(0), true)) {
+			os.write("<!-- changed -->".getBytes(StandardCharsets.UTF_8));
+		}
+		final GenerationService.Result third = service.generate(new File(this.workDir, "out3"), args);
+		assertFalse(third.isCached());
+		assertTrue(new File(this.workDir, "out3/" + GenerationServiceTest.TYPE_0_PATH).isFile());
+	}
+
+	@Test
+	public void testCacheHitRestoresMessagesAndEpisode() throws Exception {
+		final List<File> schemaFiles = new SyntheticSchemaGenerator(2, 1, 1, 1, 1, 1, 1).generate(new File(this.workDir, "xsd"));
+		final GenerationService service = new GenerationService(new File(this.workDir, "cache"), 4);
+		final File episodeFile = new File(this.workDir, "episode/test.episode");
+		final List<String> args = Arrays.asList(schemaFiles.get(0).getAbsolutePath(), "-episode", episodeFile.getPath(), "-Xmeta", "-generateColumns=y");
+
+		final GenerationService.Result first = service.generate(new File(this.workDir, "out1"), args);
+		assertFalse(first.isCached());
+		assertTrue(first.getMessages().toString(), first.getMessages().toString().contains("WARNING"));
+		assertTrue(episodeFile.isFile());
+		assertTrue(episodeFile.delete());
+
+		final GenerationService.Result second = service.generate(new File(this.workDir, "out2"), args);
+		assertTrue(second.isCached());
+		assertEquals(first.getMessages(), second.getMessages());
+		assertTrue(episodeFile.isFile());
+	}
+
+	@Test
+	public void testRelativePathsShareCacheEntry() throws Exception {
+		final List<File> schemaFiles = new SyntheticSchemaGenerator(2, 1, 1, 1, 1, 1, 1).generate(new File(this.workDir, "xsd"));
+		final GenerationService service = new GenerationService(new File(this.workDir, "cache"), 4);
+		final Path schemaPath = schemaFiles.get(0).toPath().toAbsolutePath();
+		final Path workingDir = Paths.get("").toAbsolutePath();
+		Assume.assumeTrue(schemaPath.getRoot().equals(workingDir.getRoot()));
+
+		assertFalse(service.generate(new File(this.workDir, "out1"), Arrays.asList(schemaPath.toString(), "-Xfluent-builder")).isCached());
+		assertTrue(service.generate(new File(this.workDir, "out2"), Arrays.asList(workingDir.relativize(schemaPath).toString(), "-Xfluent-builder")).isCached());
+	}
+
+	@Test
+	public void testFailedGenerationLeavesNoCacheEntry() throws Exception {
+		final List<File> schemaFiles = new SyntheticSchemaGenerator(2, 1, 1, 1, 1, 1, 1).generate(new File(this.workDir, "xsd"));
+		final File cacheDir = new File(this.workDir, "cache");
+		final GenerationService service = new GenerationService(cacheDir, 4);
+		try {
+			service.generate(new File(this.workDir, "out"), Arrays.asList(schemaFiles.get(0).getAbsolutePath(), "-Xno-such-plugin"));
+			fail("Expected BadCommandLineException");
+		} catch (final BadCommandLineException e) {
+			assertArrayEquals(new String[0], cacheDir.list());
+		}
+	}
+
+	@Test
+	public void testInvalidSchemaIsNotSuccessful() throws Exception {
+		final File schemaFile = new File(this.workDir, "invalid.xsd");
+		Files.write(schemaFile.toPath(), ("<schema xmlns=\"http://www.w3.org/2001/XMLSchema\" targetNamespace=\"urn:invalid\">"
+				+ "<element name=\"invalid\" type=\"undefined-type\"/></schema>").getBytes(StandardCharsets.UTF_8));
+		final File cacheDir = new File(this.workDir, "cache");
+		final File outputDir = new File(this.workDir, "out");
+		final GenerationService service = new GenerationService(cacheDir, 4);
+		final List<String> args = Arrays.asList(schemaFile.getAbsolutePath(), "-Xfluent-builder");
+
+		final GenerationService.Result result = service.generate(outputDir, args);
+		assertFalse(result.isSuccessful());
+		assertFalse(result.isCached());
+		assertTrue(result.getMessages().toString(), result.getMessages().toString().contains("ERROR"));
+		assertArrayEquals(new String[0], cacheDir.list());
+		assertFalse(outputDir.exists());
+		assertFalse(service.generate(outputDir, args).isSuccessful());
+	}
+}
@@ -0,0 +1,215 @@
+package com.kscs.util.jaxb;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Externalizable;
+import java.io.File;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.StringWriter;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.List;
+
+import javax.xml.bind.JAXBContext;
+import javax.xml.bind.JAXBElement;
+import javax.xml.bind.JAXBException;
+import javax.xml.bind.Marshaller;
+import javax.xml.datatype.DatatypeFactory;
+import javax.xml.namespace.QName;
+
+import com.kscs.jaxb2.contract.test.Blacksmith;
+import com.kscs.jaxb2.contract.test.City;
+import com.kscs.jaxb2.contract.test.DerivedType;
+import com.kscs.jaxb2.contract.test.IdentifyingProperties;
+import com.kscs.jaxb2.contract.test.Person;
+import com.kscs.jaxb2.contract.test.Tourist;
+import com.kscs.jaxb2.contract.test.UserProperties;
+import com.kscs.jaxb2.contract.test.Worker;
+import org.junit.Assert;
+import org.junit.Test;
+import org.w3._2001.xinclude.FallbackType;
+import org.w3._2001.xinclude.IncludeType;
+
+/**
+ * Test for the BinaryPlugin
+ */
+public class BinaryPluginTest {
+	@Test
+	public void testRoundTripTestSchema() throws Exception {
+		final Tourist tourist = Tourist.builder()
+				.withId("t1")
+				.withDestination("Thailand")
+				.withDepartureDate(DatatypeFactory.newInstance().newXMLGregorianCalendar("2016-05-01"))
+				.withAge(42)
+				.withAddress().withStreet("Hermannstädter Str. 10")
+					.withCity().withPostalCode("53000").withTown("Bonn")
+						.addInhabitants(Worker.builder().withName("Worker").withPhoneNumber(-12345L).withSalary(new BigDecimal("1000.50")).withCompany("company").build())
+						.addInhabitants(Blacksmith.builder().withName("Smith").withTools("hammer", "tongs").withAnvil("big").build())
+					.end()
+				.end()
+				.build();
+		final Tourist readTourist = Tourist.readBinary(new ByteArrayInputStream(writeBinary(tourist)));
+		Assert.assertTrue(readTourist.getAddress().getCity().getInhabitants().get(0) instanceof Worker);
+		Assert.assertTrue(readTourist.getAddress().getCity().getInhabitants().get(1) instanceof Blacksmith);
+		assertMarshalledEquals(tourist, readTourist, tourist.xmlElementName());
+
+		final DerivedType derived = DerivedType.builder().withName("MyName").withSimpleElement("Simple Name").withChildren("a", "b", "c")
+				.addListEntries().withDescription("Entry").withTasks("task1", "task2").end()
+				.build();
+		assertMarshalledEquals(derived, DerivedType.readBinary(new ByteArrayInputStream(writeBinary(derived))), new QName("http://www.kscs.com/jaxb2/contract/test", "derived"));
+	}
+
+	@Test
+	public void testRepeatedStrings() throws Exception {
+		final City.Builder<Void> cityBuilder = City.builder().withPostalCode("53000").withTown("Bonn");
+		for (int i = 0; i < 100; i++) {
+			cityBuilder.addInhabitants(Worker.builder().withName("Worker " + i).withSalary(new BigDecimal(i)).withCompany("Kreuzer Consulting Services").build());
+		}
+		final City city = cityBuilder.build();
+		final byte[] binary = writeBinary(city);
+		Assert.assertTrue(binary.length < 100 * "Kreuzer Consulting Services".length());
+		final City readCity = City.readBinary(new ByteArrayInputStream(binary));
+		Assert.assertEquals(100, readCity.getInhabitants().size());
+		Assert.assertEquals("Worker 99", readCity.getInhabitants().get(99).getName());
+		Assert.assertEquals(new BigDecimal(99), ((Worker)readCity.getInhabitants().get(99)).getSalary());
+	}
+
+	@Test
+	public void testMultipleObjects() throws Exception {
+		final ByteArrayOutputStream stream = new ByteArrayOutputStream();
+		final BinaryOutput output = new BinaryOutput(stream);
+		output.writeHeader(City.BINARY_FINGERPRINT);
+		for (int i = 0; i < 3; i++) {
+			City.builder().withTown("Town " + i).build().writeBinary(output);
+		}
+		output.flush();
+		final BinaryInput input = new BinaryInput(new ByteArrayInputStream(stream.toByteArray()));
+		input.readHeader(City.BINARY_FINGERPRINT);
+		for (int i = 0; i < 3; i++) {
+			Assert.assertEquals("Town " + i, City.readBinary(input).getTown());
+		}
+	}
+
+	@Test
+	public void testExternalizable() throws Exception {
+		final City city = City.builder().withPostalCode("53000").withTown("Bonn")
+				.addInhabitants(Worker.builder().withName("Worker").withSalary(new BigDecimal("1000.50")).withCompany("company").build())
+				.addInhabitants(Blacksmith.builder().withName("Smith").withTools("hammer", "tongs").build())
+				.build();
+		Assert.assertTrue(city instanceof Externalizable);
+		final ByteArrayOutputStream stream = new ByteArrayOutputStream();
+		try (final ObjectOutputStream out = new ObjectOutputStream(stream)) {
+			out.writeObject(city);
+			out.writeObject("end");
+		}
+		try (final ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(stream.toByteArray()))) {
+			final City readCity = (City)in.readObject();
+			Assert.assertEquals("end", in.readObject());
+			Assert.assertEquals(2, readCity.getInhabitants().size());
+			Assert.assertEquals(Arrays.asList("hammer", "tongs"), ((Blacksmith)readCity.getInhabitants().get(1)).getTools());
+			assertMarshalledEquals(city, readCity, new QName("http://www.kscs.com/jaxb2/contract/test", "city"));
+		}
+	}
+
+	@Test
+	public void testNotExternalizableWithUnsupportedFields() {
+		Assert.assertFalse(Externalizable.class.isAssignableFrom(FallbackType.class));
+		Assert.assertFalse(Externalizable.class.isAssignableFrom(IncludeType.class));
+		Assert.assertTrue(BinaryWritable.class.isAssignableFrom(FallbackType.class));
+	}
+
+	@Test
+	public void testView() throws Exception {
+		final Tourist.View view = Tourist.View.of(createTourist().toViewBuffer());
+		assertTouristView(view);
+		Assert.assertTrue(view instanceof UserProperties);
+		Assert.assertTrue(view instanceof IdentifyingProperties);
+		Assert.assertEquals(42, ((UserProperties)view).getAge());
+	}
+
+	@Test
+	public void testMappedView() throws Exception {
+		final File file = File.createTempFile("tourist", ".view");
+		try {
+			try (final FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.WRITE)) {
+				channel.write(createTourist().toViewBuffer());
+			}
+			try (final FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+				assertTouristView(Tourist.View.of(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size())));
+			}
+		} finally {
+			Assert.assertTrue(file.delete());
+		}
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testIncompatibleViewFingerprint() {
+		final ByteBuffer buffer = City.builder().withTown("Bonn").build().toViewBuffer();
+		buffer.put(4, (byte)(buffer.get(4) ^ 1));
+		City.View.of(buffer);
+	}
+
+	@Test(expected = IOException.class)
+	public void testIncompatibleFingerprint() throws Exception {
+		final byte[] binary = writeBinary(City.builder().withTown("Bonn").build());
+		binary[4] ^= 1;
+		City.readBinary(new ByteArrayInputStream(binary));
+	}
+
+	private static Tourist createTourist() throws Exception {
+		return Tourist.builder()
+				.withId("t1")
+				.withDestination("Thailand")
+				.withDepartureDate(DatatypeFactory.newInstance().newXMLGregorianCalendar("2016-05-01"))
+				.withAge(42)
+				.withAddress().withStreet("Hermannstädter Str. 10")
+					.withCity().withPostalCode("53000").withTown("Bonn")
+						.addInhabitants(Worker.builder().withName("Worker").withPhoneNumber(-12345L).withSalary(new BigDecimal("1000.50")).withCompany("company").build())
+						.addInhabitants(Blacksmith.builder().withName("Smith").withTools("hammer", "tongs").withAnvil("big").build())
+					.end()
+				.end()
+				.build();
+	}
+
+	private static void assertTouristView(final Tourist.View view) throws Exception {
+		Assert.assertEquals("t1", view.getId());
+		Assert.assertEquals("Thailand", view.getDestination());
+		Assert.assertEquals(DatatypeFactory.newInstance().newXMLGregorianCalendar("2016-05-01"), view.getDepartureDate());
+		Assert.assertEquals(42, view.getAge());
+		Assert.assertNull(view.getFirstName());
+		Assert.assertEquals("Hermannstädter Str. 10", view.getAddress().getStreet());
+		final List<Person.View> inhabitants = view.getAddress().getCity().getInhabitants();
+		Assert.assertEquals(2, inhabitants.size());
+		Assert.assertEquals(-12345L, inhabitants.get(0).getPhoneNumber());
+		Assert.assertEquals(new BigDecimal("1000.50"), ((Worker.View)inhabitants.get(0)).getSalary());
+		Assert.assertEquals("Smith", inhabitants.get(1).getName());
+		Assert.assertEquals(Arrays.asList("hammer", "tongs"), ((Blacksmith.View)inhabitants.get(1)).getTools());
+	}
+
+	private static byte[] writeBinary(final BinaryWritable object) throws IOException {
+		final ByteArrayOutputStream stream = new ByteArrayOutputStream();
+		object.writeBinary(stream);
+		return stream.toByteArray();
+	}
+
+	private static <T> void assertMarshalledEquals(final T expected, final T actual, final QName elementName) throws JAXBException {
+		@SuppressWarnings("unchecked")
+		final Class<T> type = (Class<T>)expected.getClass();
+		Assert.assertSame(type, actual.getClass());
+		final JAXBContext jaxbContext = JAXBContext.newInstance(type);
+		Assert.assertEquals(marshal(jaxbContext, new JAXBElement<>(elementName, type, expected)), marshal(jaxbContext, new JAXBElement<>(elementName, type, actual)));
+	}
+
+	private static String marshal(final JAXBContext jaxbContext, final JAXBElement<?> element) throws JAXBException {
+		final StringWriter stringWriter = new StringWriter();
+		final Marshaller marshaller = jaxbContext.createMarshaller();
+		marshaller.setProperty(Marshaller.JAXB_FORMATTED_OUTPUT, true);
+		marshaller.marshal(element, stringWriter);
+		return stringWriter.toString();
+	}
+}
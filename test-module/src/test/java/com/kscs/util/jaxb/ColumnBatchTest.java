@@ -0,0 +1,61 @@
+package com.kscs.util.jaxb;
+
+import java.math.BigDecimal;
+import java.util.Iterator;
+
+import com.kscs.jaxb2.contract.test.City;
+import com.kscs.jaxb2.contract.test.Person;
+import com.kscs.jaxb2.contract.test.Worker;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Test for the columns generated by the MetaPlugin
+ */
+public class ColumnBatchTest {
+	@Test
+	public void testFillBatches() {
+		final City city = City.builder().withTown("Bonn")
+				.addInhabitants(Worker.builder().withName("Worker 0").withPhoneNumber(100L).build())
+				.addInhabitants(Worker.builder().withName("Worker 1").withPhoneNumber(101L).build())
+				.addInhabitants(Worker.builder().withName("Worker 2").withPhoneNumber(102L).build())
+				.build();
+		final Person.Columns columns = new Person.Columns(2);
+		final String[] names = columns.name;
+		final Iterator<Person> inhabitants = City.PropInfo.INHABITANTS.get(city).iterator();
+
+		Assert.assertEquals(2, columns.fill(inhabitants));
+		Assert.assertTrue(columns.isFull());
+		Assert.assertEquals("Worker 0", columns.name[0]);
+		Assert.assertEquals(101L, columns.phoneNumber[1]);
+
+		Assert.assertEquals(1, columns.fill(inhabitants));
+		Assert.assertSame(names, columns.name);
+		Assert.assertEquals("Worker 2", columns.name[0]);
+		Assert.assertEquals(102L, columns.phoneNumber[0]);
+		Assert.assertNull(columns.name[1]);
+
+		Assert.assertEquals(0, columns.fill(inhabitants));
+		Assert.assertEquals(0, columns.size());
+	}
+
+	@Test
+	public void testColumns() {
+		final Worker.Columns columns = new Worker.Columns(4);
+		Assert.assertTrue(columns.add(Worker.builder().withName("Worker").withSalary(new BigDecimal("1000.50")).build()));
+		Assert.assertTrue(columns.add(Worker.builder().build()));
+		Assert.assertEquals(4, columns.getProperties().size());
+		Assert.assertEquals(Person.PropInfo.NAME, columns.getProperties().get(0));
+		Assert.assertSame(columns.name, columns.getColumn(Person.PropInfo.NAME));
+		Assert.assertSame(columns.salary, columns.getColumn(Worker.PropInfo.SALARY));
+		Assert.assertEquals("1000.50", columns.salary[0]);
+		Assert.assertFalse(columns.isNull(2, 0));
+		Assert.assertTrue(columns.isNull(2, 1));
+		Assert.assertFalse(columns.isNull(1, 1));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testMissingColumn() {
+		new Person.Columns(1).getColumn(City.PropInfo.INHABITANTS);
+	}
+}
@@ -0,0 +1,76 @@
+package com.kscs.util.jaxb;
+
+import java.io.File;
+import java.math.BigDecimal;
+import java.util.Arrays;
+import com.kscs.jaxb2.contract.test.compact.Blacksmith;
+import com.kscs.jaxb2.contract.test.compact.City;
+import com.kscs.jaxb2.contract.test.compact.Person;
+import com.kscs.jaxb2.contract.test.compact.Tourist;
+import com.kscs.jaxb2.contract.test.compact.Worker;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Test for the code generated with -Xrich-contract-compact
+ */
+public class CompactTest {
+	private final BeanAssert beanAssert = new BeanAssert("com.kscs.jaxb2.contract.test");
+
+	@Test
+	public void testBuilderCopy() {
+		final Tourist tourist = createTourist(4);
+		final Tourist copy = Tourist.copyOf(tourist).build();
+		this.beanAssert.assertPropertyEquality(tourist, copy);
+		Assert.assertNotSame(tourist.getAddress().getCity(), copy.getAddress().getCity());
+		Assert.assertEquals(Arrays.asList("hammer", "tongs"), ((Blacksmith)copy.getAddress().getCity().getInhabitants().get(1)).getTools());
+	}
+
+	@Test
+	public void testPartialCopy() {
+		final Tourist tourist = createTourist(4);
+		final Tourist copy = Tourist.copyExcept(tourist, PropertyTree.parse("**.name")).build();
+		Assert.assertEquals("Thailand", copy.getDestination());
+		final Person inhabitant = copy.getAddress().getCity().getInhabitants().get(0);
+		Assert.assertNull(inhabitant.getName());
+		Assert.assertEquals("Company 0", ((Worker)inhabitant).getCompany());
+
+		final Tourist builderCopy = Tourist.copyOnly(tourist, Tourist.Select._root().address().city().town()._root.destination().build()).build();
+		Assert.assertEquals("Thailand", builderCopy.getDestination());
+		Assert.assertEquals("Bonn", builderCopy.getAddress().getCity().getTown());
+		Assert.assertNull(builderCopy.getAddress().getCity().getPostalCode());
+		Assert.assertTrue(builderCopy.getAddress().getCity().getInhabitants().isEmpty());
+	}
+
+	@Test
+	public void testCollectionCopy() {
+		final City city = createTourist(4).getAddress().getCity();
+		final City copy = city.createCopy();
+		this.beanAssert.assertPropertyEquality(city, copy);
+		Assert.assertNotSame(city.getInhabitants().get(0), copy.getInhabitants().get(0));
+
+		final City partialCopy = city.copyOnly(PropertyTree.parse("inhabitants.name"));
+		Assert.assertEquals(4, partialCopy.getInhabitants().size());
+		Assert.assertNotSame(city.getInhabitants().get(1), partialCopy.getInhabitants().get(1));
+		Assert.assertEquals("Smith 1", partialCopy.getInhabitants().get(1).getName());
+	}
+
+	@Test
+	public void testProfileReport() {
+		Assert.assertTrue(new File("target/generated-sources/xjc-compact/rich-contract-profile.json").isFile());
+	}
+
+	private static Tourist createTourist(final int inhabitants) {
+		final City.Builder<?> cityBuilder = City.builder().withPostalCode("53000").withTown("Bonn");
+		for (int i = 0; i < inhabitants; i++) {
+			if (i % 2 == 0) {
+				cityBuilder.addInhabitants(Worker.builder().withName("Worker " + i).withPhoneNumber(i).withSalary(new BigDecimal(i).movePointLeft(2)).withCompany("Company " + i).build());
+			} else {
+				cityBuilder.addInhabitants(Blacksmith.builder().withName("Smith " + i).withPhoneNumber(i).withTools("hammer", "tongs").withAnvil("anvil " + i).build());
+			}
+		}
+		return Tourist.builder().withId("t1").withDestination("Thailand").withAge(42)
+				.withAddress().withStreet("Hermannstr. 10").withCity(cityBuilder.build()).end()
+				.build();
+	}
+}
@@ -0,0 +1,36 @@
+package com.kscs.util.jaxb;
+
+import com.kscs.jaxb2.contract.test.Person;
+import com.kscs.jaxb2.contract.test.Tourist;
+import com.kscs.jaxb2.contract.test.Worker;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Test for the copy profiles generated by the DeepCopyPlugin
+ */
+public class CopyProfileTest {
+	private final BeanAssert beanAssert = new BeanAssert("com.kscs.jaxb2.contract.test");
+
+	@Test
+	public void testCopyOnlyProfile() {
+		final Tourist tourist = StaxWriteBenchmark.createTourist(4);
+		final Tourist copy = tourist.copyProfileSummary();
+		this.beanAssert.assertPropertyEquality(tourist.copyOnly(PropertyTree.parse("destination,address.city.{town,inhabitants.name}")), copy);
+		Assert.assertEquals("Bonn", copy.getAddress().getCity().getTown());
+		Assert.assertNotSame(tourist.getAddress().getCity(), copy.getAddress().getCity());
+		Assert.assertEquals(4, copy.getAddress().getCity().getInhabitants().size());
+	}
+
+	@Test
+	public void testCopyExceptProfile() {
+		final Tourist tourist = StaxWriteBenchmark.createTourist(4);
+		final Tourist copy = tourist.copyProfileAnonymous();
+		this.beanAssert.assertPropertyEquality(tourist.copyExcept(PropertyTree.parse("**.name")), copy);
+		Assert.assertEquals("Thailand", copy.getDestination());
+		final Person inhabitant = copy.getAddress().getCity().getInhabitants().get(0);
+		Assert.assertTrue(inhabitant instanceof Worker);
+		Assert.assertNotSame(tourist.getAddress().getCity().getInhabitants().get(0), inhabitant);
+		Assert.assertEquals("Company 0", ((Worker)inhabitant).getCompany());
+	}
+}
@@ -0,0 +1,116 @@
+package com.kscs.util.jaxb;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+
+import com.kscs.jaxb2.contract.test.Blacksmith;
+import com.kscs.jaxb2.contract.test.City;
+import com.kscs.jaxb2.contract.test.Tourist;
+import com.kscs.jaxb2.contract.test.Worker;
+import org.junit.Assert;
+import org.junit.Test;
+import org.w3._1999.xhtml.Hgroup;
+import org.w3._1999.xhtml.ObjectFactory;
+import org.w3._1999.xhtml.PhrasingContentElement;
+import org.w3._2001.xinclude.FallbackType;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+
+/**
+ * Test for the DiffPlugin
+ */
+public class DiffPluginTest {
+	@Test
+	public void testDiff() {
+		final Tourist original = createTourist("Thailand", 42, "Smith");
+		final Tourist changed = createTourist("Vietnam", 43, "Jones");
+		final Patch patch = original.diff(changed);
+		final List<String> paths = new ArrayList<>();
+		for (final Patch.Change change : patch) {
+			paths.add(change.getPath().toString());
+		}
+		Assert.assertEquals(3, patch.size());
+		Assert.assertTrue(paths.contains("destination"));
+		Assert.assertTrue(paths.contains("age"));
+		Assert.assertTrue(paths.contains("address.city.inhabitants[1].name"));
+		Assert.assertTrue(original.diff(createTourist("Thailand", 42, "Smith")).isEmpty());
+	}
+
+	@Test
+	public void testApplyPatch() {
+		final Tourist original = createTourist("Thailand", 42, "Smith");
+		final Tourist changed = createTourist("Vietnam", 43, "Jones");
+		final Tourist patched = createTourist("Thailand", 42, "Smith");
+		patched.applyPatch(original.diff(changed));
+		Assert.assertTrue(patched.diff(changed).isEmpty());
+		new BeanAssert("com.kscs.jaxb2.contract.test").assertPropertyEquality(changed, patched);
+		Assert.assertEquals("Thailand", original.getDestination());
+	}
+
+	@Test
+	public void testChangedListAndClass() {
+		final City original = City.builder().withTown("Bonn")
+				.addInhabitants(Worker.builder().withName("Worker").withSalary(BigDecimal.ONE).build())
+				.build();
+		final City otherClass = City.builder().withTown("Bonn")
+				.addInhabitants(Blacksmith.builder().withName("Worker").build())
+				.build();
+		final Patch classPatch = original.diff(otherClass);
+		Assert.assertEquals(1, classPatch.size());
+		Assert.assertEquals("inhabitants[0]", classPatch.getChanges().get(0).getPath().toString());
+
+		final City longer = City.builder().withTown("Bonn")
+				.addInhabitants(Worker.builder().withName("Worker").withSalary(BigDecimal.ONE).build())
+				.addInhabitants(Worker.builder().withName("Worker 2").build())
+				.build();
+		final Patch listPatch = original.diff(longer);
+		Assert.assertEquals(1, listPatch.size());
+		Assert.assertEquals("inhabitants", listPatch.getChanges().get(0).getPath().toString());
+		original.applyPatch(listPatch);
+		Assert.assertEquals(2, original.getInhabitants().size());
+		Assert.assertEquals("Worker 2", original.getInhabitants().get(1).getName());
+	}
+
+	@Test
+	public void testJAXBElementAndDomValues() throws Exception {
+		final Hgroup hgroup = createHgroup("Title");
+		Assert.assertTrue(hgroup.diff(createHgroup("Title")).isEmpty());
+		final Patch elementPatch = hgroup.diff(createHgroup("Other Title"));
+		Assert.assertEquals(1, elementPatch.size());
+		Assert.assertEquals("h1OrH2OrH3[0]", elementPatch.getChanges().get(0).getPath().toString());
+
+		final FallbackType fallback = createFallback("Text");
+		Assert.assertTrue(fallback.diff(createFallback("Text")).isEmpty());
+		Assert.assertEquals(1, fallback.diff(createFallback("Other Text")).size());
+	}
+
+	private static Hgroup createHgroup(final String text) {
+		return Hgroup.builder()
+				.addH1OrH2OrH3(new ObjectFactory().createH1(PhrasingContentElement.builder().withTitle("h1").addContent(text).build()))
+				.build();
+	}
+
+	private static FallbackType createFallback(final String text) throws Exception {
+		final Document document = DocumentBuilderFactory.newInstance().newDocumentBuilder().newDocument();
+		final Element element = document.createElementNS("urn:test", "paragraph");
+		element.setTextContent(text);
+		return FallbackType.builder().addContent(element).build();
+	}
+
+	private static Tourist createTourist(final String destination, final int age, final String smithName) {
+		return Tourist.builder()
+				.withId("t1")
+				.withDestination(destination)
+				.withAge(age)
+				.withAddress().withStreet("Hermannstädter Str. 10")
+					.withCity().withPostalCode("53000").withTown("Bonn")
+						.addInhabitants(Worker.builder().withName("Worker").withSalary(new BigDecimal("1000.50")).withCompany("company").build())
+						.addInhabitants(Blacksmith.builder().withName(smithName).withTools("hammer", "tongs").build())
+					.end()
+				.end()
+				.build();
+	}
+}
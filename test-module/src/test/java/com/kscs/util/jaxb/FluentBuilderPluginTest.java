@@ -2,9 +2,13 @@ package com.kscs.util.jaxb;
 
 import javax.xml.bind.JAXB;
 import java.io.File;
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.concurrent.ForkJoinPool;
 import com.kscs.jaxb2.contract.test.CompanyMember;
 import com.kscs.jaxb2.contract.test.DerivedType;
 import com.kscs.jaxb2.contract.test.IdentifyingProperties;
+import com.kscs.jaxb2.contract.test.ListEntry;
 import com.kscs.jaxb2.contract.test.Tourist;
 import com.kscs.jaxb2.contract.test.Worker;
 import org.junit.Assert;
@@ -37,6 +41,91 @@ public class FluentBuilderPluginTest {
 		CompanyMember.builder().withUniqueName("Lala").build();
 	}
 
+	@Test
+	public void testFluentBuilderReset() {
+		final Tourist.Builder<Void> builder = Tourist.builder();
+		final Tourist first = builder.withAddress().withStreet("Hermannstädter Str. 10").end().withDestination("Thailand").build();
+		final Tourist second = builder.reset().withDestination("Vietnam").build();
+
+		Assert.assertEquals("Thailand", first.getDestination());
+		Assert.assertEquals("Hermannstädter Str. 10", first.getAddress().getStreet());
+		Assert.assertEquals("Vietnam", second.getDestination());
+		Assert.assertNull(second.getAddress());
+		Assert.assertNull(Tourist.copyOf(first).reset().build().getDestination());
+	}
+
+	@Test
+	public void testPooledBuilder() {
+		final Worker.Builder<Void> builder = Worker.pooledBuilder();
+		final Worker first = builder.withName("Worker 1").withCompany("Company 1").build();
+		final Worker.Builder<Void> secondBuilder = Worker.pooledBuilder();
+		final Worker second = secondBuilder.withName("Worker 2").build();
+
+		Assert.assertSame(builder, secondBuilder);
+		Assert.assertEquals("Company 1", first.getCompany());
+		Assert.assertEquals("Worker 2", second.getName());
+		Assert.assertNull(second.getCompany());
+		Assert.assertNotSame(first, second);
+	}
+
+	@Test
+	public void testPooledBuilderInUse() {
+		final Worker.Builder<Void> outer = Worker.pooledBuilder().withName("Outer").withCompany("Company 1");
+		final Worker.Builder<Void> inner = Worker.pooledBuilder();
+		final Worker innerWorker = inner.withName("Inner").build();
+		final Worker outerWorker = outer.build();
+
+		Assert.assertNotSame(outer, inner);
+		Assert.assertEquals("Inner", innerWorker.getName());
+		Assert.assertNull(innerWorker.getCompany());
+		Assert.assertEquals("Outer", outerWorker.getName());
+		Assert.assertEquals("Company 1", outerWorker.getCompany());
+		final Worker.Builder<Void> next = Worker.pooledBuilder();
+		next.build();
+		Assert.assertSame(outer, next);
+	}
+
+	@Test
+	public void testFluentBuilderBoundedList() throws Exception {
+		final ListEntry.Builder<Void> builder = ListEntry.builder().withDescription("Entry").addLabels("a", "b").addLabels("c").addNotes("x");
+		Assert.assertEquals(4, capacity(builder, "labels"));
+		Assert.assertEquals(4, capacity(builder, "notes"));
+		final ListEntry listEntry = builder.build();
+		final ListEntry copy = ListEntry.copyOf(listEntry).build();
+
+		Assert.assertEquals(3, listEntry.getLabels().size());
+		Assert.assertEquals("c", listEntry.getLabels().get(2));
+		Assert.assertEquals(listEntry.getLabels(), copy.getLabels());
+		Assert.assertEquals(listEntry.getLabels(), listEntry.createCopy().getLabels());
+	}
+
+	private static int capacity(final Object builder, final String fieldName) throws Exception {
+		final Field listField = builder.getClass().getDeclaredField(fieldName);
+		listField.setAccessible(true);
+		final Field elementDataField = ArrayList.class.getDeclaredField("elementData");
+		elementDataField.setAccessible(true);
+		return ((Object[])elementDataField.get(listField.get(builder))).length;
+	}
+
+	@Test
+	public void testBuildParallel() {
+		final DerivedType.Builder<Void> builder = DerivedType.builder().withName("Parallel");
+		for (int i = 0; i < 1000; i++) {
+			builder.addListEntries().withDescription("Entry " + i).addTasks("Task " + i).end().addChildren("Child " + i);
+		}
+		final DerivedType parallel = builder.buildParallel(ForkJoinPool.commonPool(), 16);
+		final DerivedType sequential = builder.build();
+
+		Assert.assertEquals(1000, parallel.getListEntries().size());
+		Assert.assertEquals(1000, parallel.getChildren().size());
+		for (int i = 0; i < 1000; i++) {
+			Assert.assertEquals("Entry " + i, parallel.getListEntries().get(i).getDescription());
+			Assert.assertEquals(sequential.getListEntries().get(i).getTasks(), parallel.getListEntries().get(i).getTasks());
+			Assert.assertEquals("Child " + i, parallel.getChildren().get(i));
+		}
+		Assert.assertEquals(sequential.getChildren(), parallel.getChildren());
+	}
+
 	@Test
 	public void testFluentBuilderNull() {
 		final Tourist tourist = Tourist.builder().withAddress().withCity(null).withStreet("Hermannstädter Str. 10").end().withDestination("Thailand").build();
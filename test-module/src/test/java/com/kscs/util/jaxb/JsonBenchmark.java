@@ -0,0 +1,134 @@
+package com.kscs.util.jaxb;
+
+import java.io.CharArrayWriter;
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import javax.xml.bind.JAXBContext;
+import javax.xml.bind.JAXBException;
+import javax.xml.bind.Marshaller;
+import javax.xml.bind.Unmarshaller;
+
+import com.kscs.jaxb2.contract.test.Tourist;
+
+/**
+ * Compares the throughput of the generated {@code writeJson} and {@code readJson}
+ * methods with that of JAXB {@link Marshaller} and {@link Unmarshaller} writing
+ * and reading the same objects as XML, and prints the results as CSV.
+ * The XHTML sample is not used, because its mixed content cannot be written as JSON.
+ *
+ * Run with {@code mvn -Pbenchmark test}. Arguments are given as "name=value" pairs:
+ * <ul>
+ *     <li>copies: Number of inhabitants of the city in the sample document</li>
+ *     <li>warmupSeconds: Time to run each variant before measuring</li>
+ *     <li>seconds: Time to measure each variant</li>
+ * </ul>
+ */
+public class JsonBenchmark {
+	public static void main(final String[] args) throws Exception {
+		final Map<String, String> params = new LinkedHashMap<>();
+		params.put("copies", "100");
+		params.put("warmupSeconds", "5");
+		params.put("seconds", "10");
+		for (final String arg : args) {
+			final int eq = arg.indexOf('=');
+			if (eq > 0 && eq < arg.length() - 1) {
+				params.put(arg.substring(0, eq), arg.substring(eq + 1));
+			}
+		}
+		final int copies = Integer.parseInt(params.get("copies"));
+		final long warmupNanos = Long.parseLong(params.get("warmupSeconds")) * 1000000000L;
+		final long nanos = Long.parseLong(params.get("seconds")) * 1000000000L;
+
+		final JAXBContext touristContext = JAXBContext.newInstance(Tourist.class);
+		final Tourist tourist = StaxWriteBenchmark.createTourist(copies);
+
+		final String touristXml = toXml(touristContext, tourist);
+		final String touristJson = toJson(tourist);
+		final Unmarshaller touristUnmarshaller = touristContext.createUnmarshaller();
+
+		System.out.println("document,method,chars,operations,opsPerSecond");
+		run("test-schema", "Marshaller", marshaller(touristContext, tourist), warmupNanos, nanos);
+		run("test-schema", "writeJson", writeJson(tourist), warmupNanos, nanos);
+		run("test-schema", "Unmarshaller", new Operation() {
+			@Override
+			public int run() throws Exception {
+				touristUnmarshaller.unmarshal(new StringReader(touristXml));
+				return touristXml.length();
+			}
+		}, warmupNanos, nanos);
+		run("test-schema", "readJson", new Operation() {
+			@Override
+			public int run() throws Exception {
+				Tourist.readJson(new JsonReader(new StringReader(touristJson)));
+				return touristJson.length();
+			}
+		}, warmupNanos, nanos);
+	}
+
+	private static void run(final String document, final String method, final Operation operation, final long warmupNanos, final long nanos) throws Exception {
+		final long warmupEnd = System.nanoTime() + warmupNanos;
+		while (System.nanoTime() < warmupEnd) {
+			operation.run();
+		}
+		long chars = 0;
+		long count = 0;
+		final long start = System.nanoTime();
+		final long end = start + nanos;
+		long now;
+		do {
+			chars += operation.run();
+			count++;
+			now = System.nanoTime();
+		} while (now < end);
+		final double seconds = (now - start) / 1e9;
+		System.out.println(String.format("%s,%s,%d,%d,%.1f", document, method, chars / count, count, count / seconds));
+	}
+
+	private static Operation marshaller(final JAXBContext jaxbContext, final Object object) throws JAXBException {
+		final Marshaller marshaller = jaxbContext.createMarshaller();
+		final CharArrayWriter writer = new CharArrayWriter();
+		return new Operation() {
+			@Override
+			public int run() throws Exception {
+				writer.reset();
+				marshaller.marshal(object, writer);
+				return writer.size();
+			}
+		};
+	}
+
+	private static Operation writeJson(final JsonWritable object) {
+		final CharArrayWriter writer = new CharArrayWriter();
+		return new Operation() {
+			@Override
+			public int run() throws Exception {
+				writer.reset();
+				object.writeJson(writer);
+				return writer.size();
+			}
+		};
+	}
+
+	private static String toXml(final JAXBContext jaxbContext, final Object object) throws JAXBException {
+		final StringWriter writer = new StringWriter();
+		jaxbContext.createMarshaller().marshal(object, writer);
+		return writer.toString();
+	}
+
+	private static String toJson(final JsonWritable object) throws IOException {
+		final StringWriter writer = new StringWriter();
+		object.writeJson(writer);
+		return writer.toString();
+	}
+
+	private interface Operation {
+		/**
+		 * @return The number of characters written or read
+		 */
+		int run() throws Exception;
+	}
+}
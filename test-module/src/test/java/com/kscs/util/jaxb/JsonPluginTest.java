@@ -0,0 +1,95 @@
+package com.kscs.util.jaxb;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.math.BigDecimal;
+
+import javax.xml.bind.JAXBContext;
+import javax.xml.namespace.QName;
+import javax.xml.transform.stream.StreamSource;
+
+import com.kscs.jaxb2.contract.test.Blacksmith;
+import com.kscs.jaxb2.contract.test.City;
+import com.kscs.jaxb2.contract.test.Tourist;
+import com.kscs.jaxb2.contract.test.Worker;
+import org.junit.Assert;
+import org.junit.Test;
+import org.w3._1999.xhtml.Hgroup;
+import org.w3._1999.xhtml.Html;
+
+/**
+ * Test for the JsonPlugin
+ */
+public class JsonPluginTest {
+	@Test
+	public void testRoundTrip() throws Exception {
+		final Tourist tourist = StaxWriteBenchmark.createTourist(4);
+		final String json = toJson(tourist);
+		Assert.assertTrue(json.contains("\"@type\":\"worker\""));
+		Assert.assertTrue(json.contains("\"@type\":\"blacksmith\""));
+		Assert.assertTrue(json.contains("\"tools\":[\"hammer\",\"tongs\"]"));
+		final Tourist read = Tourist.readJson(new JsonReader(new StringReader(json)));
+		new BeanAssert("com.kscs.jaxb2.contract.test").assertPropertyEquality(tourist, read);
+		Assert.assertTrue(read.getAddress().getCity().getInhabitants().get(1) instanceof Blacksmith);
+		Assert.assertEquals(json, toJson(read));
+	}
+
+	@Test
+	public void testReadSkipsUnknownProperties() throws Exception {
+		final String json = "{\"town\": \"Bonn\", \"mayor\": {\"name\": \"x\", \"terms\": [1, 2, {\"a\": null}]},\n"
+				+ "\"postalCode\": null, \"inhabitants\": [{\"@type\": \"worker\", \"name\": \"W\\u00f6rker \\\"1\\\"\", \"salary\": 1.5e3}, null]}";
+		final City city = City.readJson(new JsonReader(new StringReader(json)));
+		Assert.assertEquals("Bonn", city.getTown());
+		Assert.assertNull(city.getPostalCode());
+		Assert.assertEquals(2, city.getInhabitants().size());
+		Assert.assertEquals("Wörker \"1\"", city.getInhabitants().get(0).getName());
+		Assert.assertEquals(0, new BigDecimal("1500").compareTo(((Worker)city.getInhabitants().get(0)).getSalary()));
+		Assert.assertNull(city.getInhabitants().get(1));
+	}
+
+	@Test
+	public void testUnknownType() throws Exception {
+		try {
+			City.readJson(new JsonReader(new StringReader("{\"inhabitants\": [{\"@type\": \"tourist\"}]}")));
+			Assert.fail("Expected IOException");
+		} catch (final IOException e) {
+			Assert.assertTrue(e.getMessage().contains("tourist"));
+		}
+	}
+
+	@Test
+	public void testEscaping() throws Exception {
+		final Tourist tourist = Tourist.builder().withId("t1").withDestination("\"Tab\"\t\\ \u0001 \u2028 ä€").withAge(1).build();
+		final String json = toJson(tourist);
+		Assert.assertTrue(json.contains("\\\"Tab\\\"\\t\\\\ \\u0001 \\u2028"));
+		Assert.assertEquals(tourist.getDestination(), Tourist.readJson(new JsonReader(new StringReader(json))).getDestination());
+	}
+
+	@Test
+	public void testChoicesRoundTrip() throws Exception {
+		final Html html = (Html)JAXBContext.newInstance(Html.class).createUnmarshaller().unmarshal(new StringReader(StaxWriteBenchmark.createXhtml(1)));
+		final String json = toJson(html);
+		Assert.assertTrue(json.contains("\"metaDataElements\":[{\"meta\":{"));
+		Assert.assertTrue(json.contains("{\"link\":{"));
+		Assert.assertEquals(json, toJson(Html.readJson(new JsonReader(new StringReader(json)))));
+	}
+
+	@Test
+	public void testElementReferencesRoundTrip() throws Exception {
+		final String xml = "<hgroup xmlns=\"http://www.w3.org/1999/xhtml\"><h1>Title</h1><h2>Subtitle</h2></hgroup>";
+		final Hgroup hgroup = JAXBContext.newInstance(Html.class).createUnmarshaller().unmarshal(new StreamSource(new StringReader(xml)), Hgroup.class).getValue();
+		final String json = toJson(hgroup);
+		Assert.assertTrue(json.contains("[{\"h1\":{"));
+		final Hgroup read = Hgroup.readJson(new JsonReader(new StringReader(json)));
+		Assert.assertEquals(2, read.getH1OrH2OrH3().size());
+		Assert.assertEquals(new QName("http://www.w3.org/1999/xhtml", "h2"), read.getH1OrH2OrH3().get(1).getName());
+		Assert.assertEquals(json, toJson(read));
+	}
+
+	private static String toJson(final JsonWritable object) throws IOException {
+		final StringWriter writer = new StringWriter();
+		object.writeJson(writer);
+		return writer.toString();
+	}
+}
@@ -0,0 +1,56 @@
+package com.kscs.util.jaxb;
+
+import java.util.List;
+
+import com.kscs.jaxb2.contract.test.Person;
+import com.kscs.jaxb2.contract.test.Tourist;
+import com.kscs.jaxb2.contract.test.Worker;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Test for the projection classes generated by the DeepCopyPlugin
+ */
+public class ProjectionTest {
+	@Test
+	public void testProjectOnly() {
+		final Tourist tourist = StaxWriteBenchmark.createTourist(4);
+		final Tourist.Projection projection = tourist.projectOnly(PropertyTree.parse("destination,address.city.{town,inhabitants.name}"));
+		Assert.assertEquals("Thailand", projection.getDestination());
+		Assert.assertNull(projection.getId());
+		Assert.assertNull(projection.getAddress().getStreet());
+		Assert.assertEquals("Bonn", projection.getAddress().getCity().getTown());
+		Assert.assertNull(projection.getAddress().getCity().getPostalCode());
+		Assert.assertSame(projection.getAddress(), projection.getAddress());
+		final List<Person.Projection> inhabitants = projection.getAddress().getCity().getInhabitants();
+		Assert.assertEquals(4, inhabitants.size());
+		Assert.assertEquals("Worker 0", inhabitants.get(0).getName());
+		Assert.assertSame(inhabitants.get(0), inhabitants.get(0));
+		Assert.assertTrue(inhabitants.get(0) instanceof Worker.Projection);
+		Assert.assertNull(((Worker.Projection)inhabitants.get(0)).getCompany());
+	}
+
+	@Test
+	public void testProjectExcept() {
+		final Tourist tourist = StaxWriteBenchmark.createTourist(4);
+		final Tourist.Projection projection = tourist.projectExcept(PropertyTree.parse("**.name,address.street"));
+		Assert.assertEquals("Thailand", projection.getDestination());
+		Assert.assertNull(projection.getAddress().getStreet());
+		final Worker.Projection worker = (Worker.Projection)projection.getAddress().getCity().getInhabitants().get(0);
+		Assert.assertNull(worker.getName());
+		Assert.assertEquals("Company 0", worker.getCompany());
+		Assert.assertSame(tourist, projection.source());
+	}
+
+	@Test
+	public void testProjectionMatchesCopy() {
+		final Tourist tourist = StaxWriteBenchmark.createTourist(2);
+		final PropertyTree propertyTree = PropertyTree.parse("age,address.city");
+		final Tourist.Projection projection = tourist.projectOnly(propertyTree);
+		final Tourist copy = tourist.copyOnly(propertyTree);
+		Assert.assertEquals(copy.getAge(), projection.getAge());
+		Assert.assertNull(projection.getDestination());
+		Assert.assertEquals(copy.getAddress().getCity().getTown(), projection.getAddress().getCity().getTown());
+		Assert.assertEquals(copy.getAddress().getCity().getInhabitants().size(), projection.getAddress().getCity().getInhabitants().size());
+	}
+}
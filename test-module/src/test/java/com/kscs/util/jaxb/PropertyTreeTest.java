@@ -0,0 +1,180 @@
+package com.kscs.util.jaxb;
+
+import com.kscs.jaxb2.contract.test.Person;
+import com.kscs.jaxb2.contract.test.Tourist;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Test for PropertyTree and the generated selectors
+ */
+public class PropertyTreeTest {
+	@Test
+	public void testBuildIsCached() {
+		final Tourist.Select root = Tourist.Select._root();
+		root.address().city().town();
+		final PropertyTree tree = root.build();
+		Assert.assertSame(tree, root.build());
+		Assert.assertSame(tree, root.address().city().build());
+
+		root.destination();
+		final PropertyTree extended = root.build();
+		Assert.assertNotSame(tree, extended);
+		Assert.assertNotNull(extended.get("destination"));
+		Assert.assertNull(tree.get("destination"));
+	}
+
+	@Test
+	public void testEquality() {
+		final PropertyTree tree = Tourist.Select._root().address().city().town()._root.destination().build();
+		final PropertyTree sameTree = PropertyTree.builder().with("destination").root().with("address").with("city").with("town").build();
+		final PropertyTree otherTree = PropertyTree.builder().with("address").with("city").with("inhabitants").build();
+		Assert.assertEquals(tree, sameTree);
+		Assert.assertEquals(tree.hashCode(), sameTree.hashCode());
+		Assert.assertNotEquals(tree, otherTree);
+		Assert.assertEquals(tree.get("address"), sameTree.get("address"));
+	}
+
+	@Test
+	public void testWildcard() {
+		final Tourist tourist = StaxWriteBenchmark.createTourist(2);
+		final Tourist copy = Tourist.copyOnly(tourist, PropertyTree.builder().with("address").withAny().build()).build();
+		Assert.assertNull(copy.getDestination());
+		Assert.assertEquals(tourist.getAddress().getStreet(), copy.getAddress().getStreet());
+		Assert.assertNotNull(copy.getAddress().getCity());
+		Assert.assertNull(copy.getAddress().getCity().getTown());
+	}
+
+	@Test
+	public void testDepth() {
+		final Tourist tourist = StaxWriteBenchmark.createTourist(2);
+		final Tourist topLevel = Tourist.copyOnly(tourist, PropertyTree.builder().withDepth(1).build()).build();
+		Assert.assertEquals("Thailand", topLevel.getDestination());
+		Assert.assertEquals(42, topLevel.getAge());
+		Assert.assertNotNull(topLevel.getAddress());
+		Assert.assertNull(topLevel.getAddress().getStreet());
+
+		final Tourist truncated = Tourist.copyExcept(tourist, PropertyTree.builder().withDepth(3).build()).build();
+		Assert.assertEquals(tourist.getAddress().getStreet(), truncated.getAddress().getStreet());
+		Assert.assertNotNull(truncated.getAddress().getCity());
+		Assert.assertNull(truncated.getAddress().getCity().getTown());
+		Assert.assertTrue(truncated.getAddress().getCity().getInhabitants().isEmpty());
+	}
+
+	@Test
+	public void testRecursive() {
+		final Tourist tourist = StaxWriteBenchmark.createTourist(2);
+		final PropertyTree excludeNames = PropertyTree.builder().withDescendants().with("name").build();
+		Assert.assertSame(excludeNames.get("address"), excludeNames.get("address").get("city"));
+		final Tourist copy = Tourist.copyExcept(tourist, excludeNames).build();
+		Assert.assertEquals("Thailand", copy.getDestination());
+		Assert.assertEquals("Bonn", copy.getAddress().getCity().getTown());
+		Assert.assertEquals(2, copy.getAddress().getCity().getInhabitants().size());
+		for (int i = 0; i < 2; i++) {
+			final Person inhabitant = copy.getAddress().getCity().getInhabitants().get(i);
+			Assert.assertNull(inhabitant.getName());
+			Assert.assertEquals(tourist.getAddress().getCity().getInhabitants().get(i).getPhoneNumber(), inhabitant.getPhoneNumber());
+		}
+
+		final PropertyTree excludeTownAndNames = PropertyTree.builder().with("address").with("city").with("town").root().withDescendants().with("name").build();
+		final Tourist otherCopy = Tourist.copyExcept(tourist, excludeTownAndNames).build();
+		Assert.assertNull(otherCopy.getAddress().getCity().getTown());
+		Assert.assertEquals("53000", otherCopy.getAddress().getCity().getPostalCode());
+		Assert.assertNull(otherCopy.getAddress().getCity().getInhabitants().get(0).getName());
+	}
+
+	@Test
+	public void testRecursiveInclude() {
+		final Tourist tourist = StaxWriteBenchmark.createTourist(2);
+		final Tourist copy = Tourist.copyOnly(tourist, PropertyTree.parse("**.street")).build();
+		Assert.assertEquals("Thailand", copy.getDestination());
+		Assert.assertEquals("Bonn", copy.getAddress().getCity().getTown());
+		Assert.assertEquals(tourist.getAddress().getCity().getInhabitants().get(0).getName(), copy.getAddress().getCity().getInhabitants().get(0).getName());
+	}
+
+	@Test
+	public void testTrailingRecursiveExclude() {
+		final Tourist tourist = StaxWriteBenchmark.createTourist(2);
+		final PropertyTree excludeCityContent = PropertyTree.parse("address.city.**");
+		Assert.assertTrue(excludeCityContent.get("address").get("city").get("town").isLeaf());
+		final Tourist copy = Tourist.copyExcept(tourist, excludeCityContent).build();
+		Assert.assertEquals("Thailand", copy.getDestination());
+		Assert.assertEquals(tourist.getAddress().getStreet(), copy.getAddress().getStreet());
+		Assert.assertNotNull(copy.getAddress().getCity());
+		Assert.assertNull(copy.getAddress().getCity().getTown());
+		Assert.assertNull(copy.getAddress().getCity().getPostalCode());
+		Assert.assertTrue(copy.getAddress().getCity().getInhabitants().isEmpty());
+	}
+
+	@Test
+	public void testParse() {
+		final PropertyTree tree = PropertyTree.parse("destination, address.{street,city.town}");
+		final PropertyTree builtTree = Tourist.Select._root().destination()._root.address().street()._parent.city().town().build();
+		Assert.assertEquals(builtTree, tree);
+		Assert.assertSame(tree, PropertyTree.parse("destination, address.{street,city.town}"));
+		Assert.assertEquals("destination,address.{street,city.town}", tree.toString());
+		Assert.assertEquals(tree, PropertyTree.parse(tree.toString()));
+		Assert.assertEquals(PropertyTree.parse("address.street,address.city.town,destination"), tree);
+		Assert.assertEquals(PropertyTree.builder().withDescendants().with("name").build(), PropertyTree.parse("**.name"));
+		Assert.assertTrue(PropertyTree.parse("").isLeaf());
+	}
+
+	@Test
+	public void testParseErrors() {
+		for (final String expression : new String[] {"a.", "a,,b", "a.{b,c", "a.b}", "a.***", "a b"}) {
+			try {
+				PropertyTree.parse(expression);
+				Assert.fail("Expected failure for \"" + expression + "\"");
+			} catch (final IllegalArgumentException e) {
+				Assert.assertTrue(e.getMessage().contains(expression));
+			}
+		}
+	}
+
+	@Test
+	public void testUnion() {
+		final PropertyTree left = PropertyTree.parse("destination,address.city.town");
+		final PropertyTree right = PropertyTree.parse("age,address.{street,city.town}");
+		final PropertyTree union = left.union(right);
+		Assert.assertEquals(PropertyTree.parse("destination,age,address.{street,city.town}"), union);
+		Assert.assertSame(left.get("destination"), union.get("destination"));
+		Assert.assertSame(right.get("age"), union.get("age"));
+		Assert.assertSame(right.get("address"), union.get("address"));
+		Assert.assertSame(right, right.union(PropertyTree.parse("address.city")));
+		Assert.assertSame(right.get("address"), PropertyTree.parse("address.street").union(right).get("address"));
+		Assert.assertSame(left, left.union(PropertyTree.parse("address.city")));
+	}
+
+	@Test
+	public void testIntersection() {
+		final PropertyTree left = PropertyTree.parse("destination,address.{street,city.{town,inhabitants.name}}");
+		final PropertyTree right = PropertyTree.parse("age,address.city.{town,inhabitants.name}");
+		final PropertyTree intersection = left.intersection(right);
+		Assert.assertEquals(PropertyTree.parse("address.city.{town,inhabitants.name}"), intersection);
+		Assert.assertSame(left.get("address").get("city"), intersection.get("address").get("city"));
+		Assert.assertSame(left, left.intersection(left.union(right)));
+	}
+
+	@Test
+	public void testDifference() {
+		final PropertyTree left = PropertyTree.parse("destination,address.{street,city.{town,postalCode}}");
+		final PropertyTree difference = left.difference(PropertyTree.parse("destination,address.city.town"));
+		Assert.assertEquals(PropertyTree.parse("address.{street,city.postalCode}"), difference);
+		Assert.assertSame(left.get("address").get("street"), difference.get("address").get("street"));
+		Assert.assertSame(left, left.difference(PropertyTree.parse("age")));
+		Assert.assertTrue(left.difference(left).isLeaf());
+	}
+
+	@Test
+	public void testIncludes() {
+		final PropertyTree tree = PropertyTree.parse("destination,address.*.town");
+		Assert.assertTrue(tree.includes("destination"));
+		Assert.assertTrue(tree.includes("address", "city", "town"));
+		Assert.assertFalse(tree.includes("address", "city", "postalCode"));
+		Assert.assertFalse(tree.includes("age"));
+		Assert.assertTrue(tree.includes());
+		final PropertyTree names = PropertyTree.parse("**.name");
+		Assert.assertTrue(names.includes("address", "city", "inhabitants", "name"));
+		Assert.assertTrue(names.get("address").get("city").get("inhabitants").get("name").isLeaf());
+	}
+}
@@ -0,0 +1,191 @@
+package com.kscs.util.jaxb;
+
+import java.io.InputStream;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.math.BigDecimal;
+
+import javax.xml.bind.JAXBContext;
+import javax.xml.bind.JAXBElement;
+import javax.xml.bind.JAXBException;
+import javax.xml.bind.Marshaller;
+import javax.xml.namespace.QName;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.stream.XMLStreamWriter;
+import javax.xml.transform.stream.StreamSource;
+
+import com.kscs.jaxb2.contract.test.Blacksmith;
+import com.kscs.jaxb2.contract.test.City;
+import com.kscs.jaxb2.contract.test.DerivedType;
+import com.kscs.jaxb2.contract.test.Person;
+import com.kscs.jaxb2.contract.test.Tourist;
+import com.kscs.jaxb2.contract.test.Worker;
+import org.junit.Assert;
+import org.junit.Test;
+import org.w3._1999.xhtml.Html;
+
+/**
+ * Test for the StaxPlugin
+ */
+public class StaxPluginTest {
+	@Test
+	public void testWriteToTestSchema() throws Exception {
+		final Tourist tourist = createTourist();
+		final String xml = writeTo(tourist, tourist.xmlElementName());
+		Assert.assertTrue(xml.contains("type=\"ns1:worker\""));
+		Assert.assertTrue(xml.contains("type=\"ns1:blacksmith\""));
+		assertRoundTrip(tourist, tourist.xmlElementName(), xml);
+
+		final DerivedType derived = createDerived();
+		final QName derivedName = new QName("http://www.kscs.com/jaxb2/contract/test", "derived");
+		assertRoundTrip(derived, derivedName, writeTo(derived, derivedName));
+	}
+
+	@Test
+	public void testWriteToXhtml() throws Exception {
+		final JAXBContext jaxbContext = JAXBContext.newInstance(Html.class);
+		final Html html = (Html)jaxbContext.createUnmarshaller().unmarshal(getClass().getResource("/sample.xhtml"));
+		final String xml = writeTo(html, html.xmlElementName());
+		Assert.assertTrue(xml.contains("xml:lang=\"en\""));
+		assertRoundTrip(html, html.xmlElementName(), xml);
+	}
+
+	@Test
+	public void testReadFromTestSchema() throws Exception {
+		final Tourist tourist = createTourist();
+		final Tourist readTourist = Tourist.readFrom(createReader(writeTo(tourist, tourist.xmlElementName())));
+		Assert.assertTrue(readTourist.getAddress().getCity().getInhabitants().get(0) instanceof Worker);
+		Assert.assertTrue(readTourist.getAddress().getCity().getInhabitants().get(1) instanceof Blacksmith);
+		assertMarshalledEquals(tourist, readTourist, tourist.xmlElementName());
+
+		final DerivedType derived = createDerived();
+		final QName derivedName = new QName("http://www.kscs.com/jaxb2/contract/test", "derived");
+		assertMarshalledEquals(derived, DerivedType.readFrom(createReader(writeTo(derived, derivedName))), derivedName);
+	}
+
+	@Test
+	public void testReadFromSelection() throws Exception {
+		final Tourist tourist = createTourist();
+		final String xml = writeTo(tourist, tourist.xmlElementName());
+
+		final PropertyTree includeTree = Tourist.Select._root().address().city().town().build();
+		final Tourist included = Tourist.readFrom(createReader(xml), includeTree, PropertyTreeUse.INCLUDE);
+		Assert.assertNull(included.getDestination());
+		Assert.assertNull(included.getAddress().getStreet());
+		Assert.assertEquals("Bonn", included.getAddress().getCity().getTown());
+		Assert.assertTrue(included.getAddress().getCity().getInhabitants().isEmpty());
+		assertMarshalledEquals(Tourist.copyOf(tourist, includeTree, PropertyTreeUse.INCLUDE).build(), included, tourist.xmlElementName());
+
+		final PropertyTree excludeTree = Tourist.Select._root().address().city().inhabitants().build();
+		final Tourist excluded = Tourist.readFrom(createReader(xml), excludeTree, PropertyTreeUse.EXCLUDE);
+		Assert.assertEquals("Thailand", excluded.getDestination());
+		Assert.assertTrue(excluded.getAddress().getCity().getInhabitants().isEmpty());
+		assertMarshalledEquals(Tourist.copyExcept(tourist, excludeTree).build(), excluded, tourist.xmlElementName());
+	}
+
+	@Test
+	public void testStreamCollection() throws Exception {
+		final City.Builder<Void> cityBuilder = City.builder().withPostalCode("53000").withTown("Bonn");
+		for (int i = 0; i < 25; i++) {
+			cityBuilder.addInhabitants(Worker.builder().withName("Worker " + i).withSalary(new BigDecimal(i)).withCompany("company").build());
+		}
+		final City city = cityBuilder.build();
+		final String xml = writeTo(city, new QName("http://www.kscs.com/jaxb2/contract/test", "city"));
+
+		final StaxCollectionReader<Person> inhabitants = City.streamInhabitants(createReader(xml));
+		int count = 0;
+		while (inhabitants.hasNext()) {
+			final Person inhabitant = inhabitants.next();
+			Assert.assertTrue(inhabitant instanceof Worker);
+			Assert.assertEquals("Worker " + count, inhabitant.getName());
+			count++;
+		}
+		Assert.assertEquals(25, count);
+		Assert.assertFalse(inhabitants.hasNext());
+
+		final StaxCollectionReader<Person> batches = City.streamInhabitants(createReader(xml));
+		Assert.assertEquals(10, batches.nextBatch(10).size());
+		Assert.assertEquals(10, batches.nextBatch(10).size());
+		Assert.assertEquals(5, batches.nextBatch(10).size());
+		Assert.assertTrue(batches.nextBatch(10).isEmpty());
+
+		final StaxCollectionReader<Person> names = City.streamInhabitants(createReader(xml), Person.Select._root().name().build(), PropertyTreeUse.INCLUDE);
+		final Worker worker = (Worker)names.next();
+		Assert.assertEquals("Worker 0", worker.getName());
+		Assert.assertNull(worker.getCompany());
+	}
+
+	@Test
+	public void testReadFromXhtml() throws Exception {
+		final JAXBContext jaxbContext = JAXBContext.newInstance(Html.class);
+		final Html html = (Html)jaxbContext.createUnmarshaller().unmarshal(getClass().getResource("/sample.xhtml"));
+		try (final InputStream inputStream = getClass().getResourceAsStream("/sample.xhtml")) {
+			final XMLStreamReader reader = XMLInputFactory.newInstance().createXMLStreamReader(inputStream);
+			reader.nextTag();
+			assertMarshalledEquals(html, Html.readFrom(reader), html.xmlElementName());
+		}
+	}
+
+	private static Tourist createTourist() {
+		return Tourist.builder()
+				.withId("t1")
+				.withDestination("Thailand")
+				.withAge(42)
+				.withAddress().withStreet("Hermannstädter Str. 10")
+					.withCity().withPostalCode("53000").withTown("Bonn")
+						.addInhabitants(Worker.builder().withName("Worker").withPhoneNumber(12345L).withSalary(new BigDecimal("1000.50")).withCompany("company").build())
+						.addInhabitants(Blacksmith.builder().withName("Smith").withTools("hammer", "tongs").withAnvil("big").build())
+					.end()
+				.end()
+				.build();
+	}
+
+	private static DerivedType createDerived() {
+		return DerivedType.builder().withName("MyName").withSimpleElement("Simple Name").withChildren("a", "b", "c")
+				.addListEntries().withDescription("Entry").withTasks("task1", "task2").end()
+				.build();
+	}
+
+	private static XMLStreamReader createReader(final String xml) throws XMLStreamException {
+		final XMLStreamReader reader = XMLInputFactory.newInstance().createXMLStreamReader(new StringReader(xml));
+		reader.nextTag();
+		return reader;
+	}
+
+	private static String writeTo(final StaxWritable object, final QName elementName) throws XMLStreamException {
+		final StringWriter stringWriter = new StringWriter();
+		final XMLStreamWriter writer = XMLOutputFactory.newInstance().createXMLStreamWriter(stringWriter);
+		writer.writeStartDocument();
+		object.writeTo(writer, elementName, null);
+		writer.writeEndDocument();
+		writer.close();
+		return stringWriter.toString();
+	}
+
+	private static <T> void assertRoundTrip(final T expected, final QName elementName, final String xml) throws JAXBException {
+		@SuppressWarnings("unchecked")
+		final Class<T> type = (Class<T>)expected.getClass();
+		final JAXBContext jaxbContext = JAXBContext.newInstance(type);
+		final T actual = jaxbContext.createUnmarshaller().unmarshal(new StreamSource(new StringReader(xml)), type).getValue();
+		Assert.assertEquals(marshal(jaxbContext, new JAXBElement<>(elementName, type, expected)), marshal(jaxbContext, new JAXBElement<>(elementName, type, actual)));
+	}
+
+	private static <T> void assertMarshalledEquals(final T expected, final T actual, final QName elementName) throws JAXBException {
+		@SuppressWarnings("unchecked")
+		final Class<T> type = (Class<T>)expected.getClass();
+		Assert.assertSame(type, actual.getClass());
+		final JAXBContext jaxbContext = JAXBContext.newInstance(type);
+		Assert.assertEquals(marshal(jaxbContext, new JAXBElement<>(elementName, type, expected)), marshal(jaxbContext, new JAXBElement<>(elementName, type, actual)));
+	}
+
+	private static String marshal(final JAXBContext jaxbContext, final JAXBElement<?> element) throws JAXBException {
+		final StringWriter stringWriter = new StringWriter();
+		final Marshaller marshaller = jaxbContext.createMarshaller();
+		marshaller.setProperty(Marshaller.JAXB_FORMATTED_OUTPUT, true);
+		marshaller.marshal(element, stringWriter);
+		return stringWriter.toString();
+	}
+}
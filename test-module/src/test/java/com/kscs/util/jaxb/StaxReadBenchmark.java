@@ -0,0 +1,109 @@
+package com.kscs.util.jaxb;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import javax.xml.bind.JAXBContext;
+import javax.xml.bind.JAXBException;
+import javax.xml.bind.Unmarshaller;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import com.kscs.jaxb2.contract.test.Tourist;
+import org.w3._1999.xhtml.Html;
+
+/**
+ * Compares the throughput of the generated {@code readFrom} methods
+ * with that of a JAXB {@link Unmarshaller} reading from the same kind of
+ * {@link XMLStreamReader}, and prints the results as CSV.
+ *
+ * Run with {@code mvn -Pbenchmark test}. Arguments are the same as for {@link StaxWriteBenchmark}.
+ */
+public class StaxReadBenchmark {
+	private static final XMLInputFactory INPUT_FACTORY = XMLInputFactory.newInstance();
+
+	public static void main(final String[] args) throws Exception {
+		final Map<String, String> params = new LinkedHashMap<>();
+		params.put("copies", "100");
+		params.put("warmupSeconds", "5");
+		params.put("seconds", "10");
+		for (final String arg : args) {
+			final int eq = arg.indexOf('=');
+			if (eq > 0 && eq < arg.length() - 1) {
+				params.put(arg.substring(0, eq), arg.substring(eq + 1));
+			}
+		}
+		final int copies = Integer.parseInt(params.get("copies"));
+		final long warmupNanos = Long.parseLong(params.get("warmupSeconds")) * 1000000000L;
+		final long nanos = Long.parseLong(params.get("seconds")) * 1000000000L;
+
+		final JAXBContext htmlContext = JAXBContext.newInstance(Html.class);
+		final JAXBContext touristContext = JAXBContext.newInstance(Tourist.class);
+		final byte[] xhtml = StaxWriteBenchmark.createXhtml(copies).getBytes(StandardCharsets.UTF_8);
+		final ByteArrayOutputStream touristBuffer = new ByteArrayOutputStream();
+		touristContext.createMarshaller().marshal(StaxWriteBenchmark.createTourist(copies), touristBuffer);
+		final byte[] tourist = touristBuffer.toByteArray();
+
+		System.out.println("document,method,bytes,operations,opsPerSecond,megabytesPerSecond");
+		run("xhtml", "Unmarshaller", unmarshaller(htmlContext), xhtml, warmupNanos, nanos);
+		run("xhtml", "readFrom", new Operation() {
+			@Override
+			public Object run(final XMLStreamReader reader) throws Exception {
+				return Html.readFrom(reader);
+			}
+		}, xhtml, warmupNanos, nanos);
+		run("test-schema", "Unmarshaller", unmarshaller(touristContext), tourist, warmupNanos, nanos);
+		run("test-schema", "readFrom", new Operation() {
+			@Override
+			public Object run(final XMLStreamReader reader) throws Exception {
+				return Tourist.readFrom(reader);
+			}
+		}, tourist, warmupNanos, nanos);
+	}
+
+	private static void run(final String document, final String method, final Operation operation, final byte[] input, final long warmupNanos, final long nanos) throws Exception {
+		final long warmupEnd = System.nanoTime() + warmupNanos;
+		while (System.nanoTime() < warmupEnd) {
+			read(operation, input);
+		}
+		long count = 0;
+		final long start = System.nanoTime();
+		final long end = start + nanos;
+		long now;
+		do {
+			read(operation, input);
+			count++;
+			now = System.nanoTime();
+		} while (now < end);
+		final double seconds = (now - start) / 1e9;
+		System.out.println(String.format("%s,%s,%d,%d,%.1f,%.1f", document, method, input.length, count, count / seconds, input.length * count / seconds / (1024 * 1024)));
+	}
+
+	private static Object read(final Operation operation, final byte[] input) throws Exception {
+		final XMLStreamReader reader = StaxReadBenchmark.INPUT_FACTORY.createXMLStreamReader(new ByteArrayInputStream(input));
+		try {
+			reader.nextTag();
+			return operation.run(reader);
+		} finally {
+			reader.close();
+		}
+	}
+
+	private static Operation unmarshaller(final JAXBContext jaxbContext) throws JAXBException {
+		final Unmarshaller unmarshaller = jaxbContext.createUnmarshaller();
+		return new Operation() {
+			@Override
+			public Object run(final XMLStreamReader reader) throws XMLStreamException, JAXBException {
+				return unmarshaller.unmarshal(reader);
+			}
+		};
+	}
+
+	private interface Operation {
+		Object run(XMLStreamReader reader) throws Exception;
+	}
+}
@@ -0,0 +1,169 @@
+package com.kscs.util.jaxb;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.StringReader;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import javax.xml.bind.JAXBContext;
+import javax.xml.bind.JAXBException;
+import javax.xml.bind.Marshaller;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamWriter;
+
+import com.kscs.jaxb2.contract.test.Blacksmith;
+import com.kscs.jaxb2.contract.test.City;
+import com.kscs.jaxb2.contract.test.Tourist;
+import com.kscs.jaxb2.contract.test.Worker;
+import org.w3._1999.xhtml.Html;
+
+/**
+ * Compares the throughput of the generated {@code writeTo} methods
+ * with that of a JAXB {@link Marshaller} writing to the same kind of
+ * {@link XMLStreamWriter}, and prints the results as CSV.
+ *
+ * Run with {@code mvn -Pbenchmark test}. Arguments are given as "name=value" pairs:
+ * <ul>
+ *     <li>copies: Number of copies of the sample document body, and number of inhabitants per city</li>
+ *     <li>warmupSeconds: Time to run each variant before measuring</li>
+ *     <li>seconds: Time to measure each variant</li>
+ * </ul>
+ */
+public class StaxWriteBenchmark {
+	private static final XMLOutputFactory OUTPUT_FACTORY = XMLOutputFactory.newInstance();
+
+	public static void main(final String[] args) throws Exception {
+		final Map<String, String> params = new LinkedHashMap<>();
+		params.put("copies", "100");
+		params.put("warmupSeconds", "5");
+		params.put("seconds", "10");
+		for (final String arg : args) {
+			final int eq = arg.indexOf('=');
+			if (eq > 0 && eq < arg.length() - 1) {
+				params.put(arg.substring(0, eq), arg.substring(eq + 1));
+			}
+		}
+		final int copies = Integer.parseInt(params.get("copies"));
+		final long warmupNanos = Long.parseLong(params.get("warmupSeconds")) * 1000000000L;
+		final long nanos = Long.parseLong(params.get("seconds")) * 1000000000L;
+
+		long start = System.nanoTime();
+		final JAXBContext htmlContext = JAXBContext.newInstance(Html.class);
+		System.out.println("# JAXBContext for xhtml created in " + (System.nanoTime() - start) / 1000000 + "ms");
+		start = System.nanoTime();
+		final JAXBContext touristContext = JAXBContext.newInstance(Tourist.class);
+		System.out.println("# JAXBContext for test schema created in " + (System.nanoTime() - start) / 1000000 + "ms");
+
+		final Html html = (Html)htmlContext.createUnmarshaller().unmarshal(new StringReader(createXhtml(copies)));
+		final Tourist tourist = createTourist(copies);
+
+		System.out.println("document,method,bytes,operations,opsPerSecond,megabytesPerSecond");
+		run("xhtml", "Marshaller", marshaller(htmlContext, html), warmupNanos, nanos);
+		run("xhtml", "writeTo", writeTo(html), warmupNanos, nanos);
+		run("test-schema", "Marshaller", marshaller(touristContext, tourist), warmupNanos, nanos);
+		run("test-schema", "writeTo", writeTo(tourist), warmupNanos, nanos);
+	}
+
+	private static void run(final String document, final String method, final Operation operation, final long warmupNanos, final long nanos) throws Exception {
+		final CountingOutputStream out = new CountingOutputStream();
+		final long warmupEnd = System.nanoTime() + warmupNanos;
+		while (System.nanoTime() < warmupEnd) {
+			operation.run(out);
+		}
+		out.count = 0;
+		long count = 0;
+		final long start = System.nanoTime();
+		final long end = start + nanos;
+		long now;
+		do {
+			operation.run(out);
+			count++;
+			now = System.nanoTime();
+		} while (now < end);
+		final double seconds = (now - start) / 1e9;
+		System.out.println(String.format("%s,%s,%d,%d,%.1f,%.1f", document, method, out.count / count, count, count / seconds, out.count / seconds / (1024 * 1024)));
+	}
+
+	private static Operation marshaller(final JAXBContext jaxbContext, final Object object) throws JAXBException {
+		final Marshaller marshaller = jaxbContext.createMarshaller();
+		return new Operation() {
+			@Override
+			public void run(final OutputStream out) throws Exception {
+				final XMLStreamWriter writer = StaxWriteBenchmark.OUTPUT_FACTORY.createXMLStreamWriter(out, "UTF-8");
+				marshaller.marshal(object, writer);
+				writer.close();
+			}
+		};
+	}
+
+	private static Operation writeTo(final StaxWritable object) {
+		return new Operation() {
+			@Override
+			public void run(final OutputStream out) throws Exception {
+				final XMLStreamWriter writer = StaxWriteBenchmark.OUTPUT_FACTORY.createXMLStreamWriter(out, "UTF-8");
+				writer.writeStartDocument("UTF-8", "1.0");
+				object.writeTo(writer, object.xmlElementName(), null);
+				writer.writeEndDocument();
+				writer.close();
+			}
+		};
+	}
+
+	static String createXhtml(final int copies) throws IOException {
+		final String sample;
+		try (final InputStream in = StaxWriteBenchmark.class.getResourceAsStream("/sample.xhtml")) {
+			final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+			final byte[] bytes = new byte[4096];
+			int read;
+			while ((read = in.read(bytes)) >= 0) {
+				buffer.write(bytes, 0, read);
+			}
+			sample = new String(buffer.toByteArray(), StandardCharsets.UTF_8);
+		}
+		final int bodyStart = sample.indexOf('>', sample.indexOf("<body")) + 1;
+		final int bodyEnd = sample.indexOf("</body>");
+		final String body = sample.substring(bodyStart, bodyEnd).replaceAll(" id=\"[^\"]*\"", "");
+		final StringBuilder sb = new StringBuilder(sample.substring(0, bodyStart));
+		for (int i = 0; i < copies; i++) {
+			sb.append(body);
+		}
+		return sb.append(sample.substring(bodyEnd)).toString();
+	}
+
+	static Tourist createTourist(final int inhabitants) {
+		final City.Builder<?> cityBuilder = City.builder().withPostalCode("53000").withTown("Bonn");
+		for (int i = 0; i < inhabitants; i++) {
+			if (i % 2 == 0) {
+				cityBuilder.addInhabitants(Worker.builder().withName("Worker " + i).withPhoneNumber(i).withSalary(new BigDecimal(i).movePointLeft(2)).withCompany("Company " + i).build());
+			} else {
+				cityBuilder.addInhabitants(Blacksmith.builder().withName("Smith " + i).withPhoneNumber(i).withTools("hammer", "tongs").withAnvil("anvil " + i).build());
+			}
+		}
+		return Tourist.builder().withId("t1").withDestination("Thailand").withAge(42)
+				.withAddress().withStreet("Hermannstädter Str. 10").withCity(cityBuilder.build()).end()
+				.build();
+	}
+
+	private interface Operation {
+		void run(OutputStream out) throws Exception;
+	}
+
+	private static class CountingOutputStream extends OutputStream {
+		long count = 0;
+
+		@Override
+		public void write(final int b) {
+			this.count++;
+		}
+
+		@Override
+		public void write(final byte[] b, final int off, final int len) {
+			this.count += len;
+		}
+	}
+}
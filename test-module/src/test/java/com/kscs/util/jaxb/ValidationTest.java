@@ -0,0 +1,68 @@
+package com.kscs.util.jaxb;
+
+import java.math.BigDecimal;
+
+import com.kscs.jaxb2.contract.validation.ExpressOrder;
+import com.kscs.jaxb2.contract.validation.Order;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Test for the validation generated into the builders by the FluentBuilderPlugin
+ */
+public class ValidationTest {
+	@Test
+	public void testValidOrder() {
+		final Order order = validOrder().withPrice(new BigDecimal("9.95")).addLines("second", "third").build();
+		Assert.assertEquals("AB-12", order.getOrderId());
+		Assert.assertEquals(3, order.getLines().size());
+		Assert.assertNull(order.getPhone());
+	}
+
+	@Test
+	public void testRequired() {
+		assertInvalid(validOrder().withOrderId(null), "orderId");
+		assertInvalid(validOrder().withCurrency(null), "currency");
+		assertInvalid(ExpressOrder.builder().withOrderId("AB-12").withStatus("open").withQuantity(1).addLines("first").withEmail("a@b.c").withCurrency("EUR"), "deadline");
+	}
+
+	@Test
+	public void testOccurrences() {
+		assertInvalid(Order.builder().withOrderId("AB-12").withStatus("open").withQuantity(1).withEmail("a@b.c").withCurrency("EUR"), "lines");
+		assertInvalid(validOrder().addLines("second", "third", "fourth"), "lines");
+	}
+
+	@Test
+	public void testFacets() {
+		assertInvalid(validOrder().withOrderId("ab-12"), "orderId");
+		assertInvalid(validOrder().withOrderId("AB-1234567"), "orderId");
+		assertInvalid(validOrder().withStatus("closed"), "status");
+		assertInvalid(validOrder().withQuantity(0), "quantity");
+		assertInvalid(validOrder().withQuantity(101), "quantity");
+		assertInvalid(validOrder().withPrice(BigDecimal.ZERO), "price");
+		assertInvalid(validOrder().addLines(""), "lines");
+		assertInvalid(validOrder().withCurrency("EURO"), "currency");
+	}
+
+	@Test
+	public void testSchemaPatterns() {
+		final Order order = validOrder().withInitials("JFK").withReference("^ref-1.a$").build();
+		Assert.assertEquals("JFK", order.getInitials());
+		assertInvalid(validOrder().withInitials("JAK"), "initials");
+		assertInvalid(validOrder().withReference("ref-1"), "reference");
+		assertInvalid(validOrder().withReference("^1ref$"), "reference");
+	}
+
+	private static Order.Builder<Void> validOrder() {
+		return Order.builder().withOrderId("AB-12").withStatus("open").withQuantity(1).addLines("first").withEmail("a@b.c").withCurrency("EUR");
+	}
+
+	private static void assertInvalid(final Order.Builder<?> builder, final String propertyName) {
+		try {
+			builder.build();
+			Assert.fail("Expected validation of \"" + propertyName + "\" to fail");
+		} catch (final IllegalStateException isex) {
+			Assert.assertTrue(isex.getMessage(), isex.getMessage().contains("." + propertyName + " "));
+		}
+	}
+}